@@ -3,12 +3,14 @@ package com.video;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 视频转换工具后端服务启动类
  */
 @SpringBootApplication(scanBasePackages = "com.video")
 @EnableAsync
+@EnableScheduling
 public class VideoBackendApplication {
     
     public static void main(String[] args) {
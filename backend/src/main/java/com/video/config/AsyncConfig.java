@@ -1,10 +1,13 @@
 package com.video.config;
 
+import com.video.service.impl.FairJobQueue;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 
 /**
@@ -14,6 +17,9 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsyncConfig {
     
+    /**
+     * 成品视频渲染线程池
+     */
     @Bean(name = "videoProcessExecutor")
     public Executor videoProcessExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -24,4 +30,70 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 媒体分段并行处理线程池
+     * 每个线程负责读取一个 ffmpeg 分段进程的输出，实际并发由 FFmpegProcessSupervisor 的配额限制
+     */
+    @Bean(name = "mediaSegmentExecutor")
+    public ThreadPoolTaskExecutor mediaSegmentExecutor() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(cpus);
+        executor.setMaxPoolSize(cpus * 2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("MediaSegment-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 处理流水线：媒体阶段（验证、音频提取、语音识别，CPU 密集），线程数默认等于 CPU 核数
+     * 作为流水线入口，队列按优先级和客户端公平出队（见 FairJobQueue）
+     */
+    @Bean(name = "mediaStageExecutor")
+    public ThreadPoolTaskExecutor mediaStageExecutor(@Value("${task.pipeline.media.threads:0}") int threads,
+            @Value("${task.pipeline.media.queue-capacity:100}") int queueCapacity,
+            @Value("${task.pipeline.media.interactive-weight:4}") int interactiveWeight) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor() {
+            @Override
+            protected BlockingQueue<Runnable> createQueue(int capacity) {
+                return new FairJobQueue(capacity, interactiveWeight);
+            }
+        };
+        return stageExecutor(executor, size, queueCapacity, "MediaStage-");
+    }
+
+    /**
+     * 处理流水线：文本阶段（翻译、分词，大部分时间在等待 OpenAI 响应），线程数远多于核数
+     */
+    @Bean(name = "textStageExecutor")
+    public ThreadPoolTaskExecutor textStageExecutor(@Value("${task.pipeline.text.threads:32}") int threads,
+            @Value("${task.pipeline.text.queue-capacity:100}") int queueCapacity) {
+        return stageExecutor(new ThreadPoolTaskExecutor(), threads, queueCapacity, "TextStage-");
+    }
+
+    /**
+     * 处理流水线：输出阶段（生成并写入字幕文件）
+     */
+    @Bean(name = "outputStageExecutor")
+    public ThreadPoolTaskExecutor outputStageExecutor(@Value("${task.pipeline.output.threads:2}") int threads,
+            @Value("${task.pipeline.output.queue-capacity:100}") int queueCapacity) {
+        return stageExecutor(new ThreadPoolTaskExecutor(), threads, queueCapacity, "OutputStage-");
+    }
+
+    /**
+     * 流水线阶段使用固定大小、预先启动全部线程的线程池，上游阶段可以直接把任务放进队列并在队列满时等待
+     */
+    private static ThreadPoolTaskExecutor stageExecutor(ThreadPoolTaskExecutor executor, int threads,
+            int queueCapacity, String threadNamePrefix) {
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setPrestartAllCoreThreads(true);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.video.config;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * FFmpeg 能力快照
+ * 由 FFmpegCapabilityRegistry 在启动和后台刷新时生成，创建后不可变
+ */
+public final class FFmpegCapabilities {
+
+    private final boolean ffmpegAvailable;
+    private final boolean ffprobeAvailable;
+    private final String ffmpegVersion;
+    private final String ffprobeVersion;
+    private final Set<String> encoders;
+    private final Set<String> decoders;
+    private final Set<String> filters;
+    private final Set<String> muxers;
+    private final String errorMessage;
+    private final LocalDateTime probeTime;
+
+    public FFmpegCapabilities(boolean ffmpegAvailable, boolean ffprobeAvailable,
+            String ffmpegVersion, String ffprobeVersion,
+            Set<String> encoders, Set<String> decoders, Set<String> filters, Set<String> muxers,
+            String errorMessage, LocalDateTime probeTime) {
+        this.ffmpegAvailable = ffmpegAvailable;
+        this.ffprobeAvailable = ffprobeAvailable;
+        this.ffmpegVersion = ffmpegVersion;
+        this.ffprobeVersion = ffprobeVersion;
+        this.encoders = Collections.unmodifiableSet(encoders);
+        this.decoders = Collections.unmodifiableSet(decoders);
+        this.filters = Collections.unmodifiableSet(filters);
+        this.muxers = Collections.unmodifiableSet(muxers);
+        this.errorMessage = errorMessage;
+        this.probeTime = probeTime;
+    }
+
+    /**
+     * 尚未完成首次探测时使用的空快照
+     */
+    public static FFmpegCapabilities unavailable(String errorMessage) {
+        return new FFmpegCapabilities(false, false, null, null,
+                Collections.<String>emptySet(), Collections.<String>emptySet(),
+                Collections.<String>emptySet(), Collections.<String>emptySet(),
+                errorMessage, LocalDateTime.now());
+    }
+
+    public boolean hasEncoder(String name) {
+        return encoders.contains(name);
+    }
+
+    public boolean hasDecoder(String name) {
+        return decoders.contains(name);
+    }
+
+    public boolean hasFilter(String name) {
+        return filters.contains(name);
+    }
+
+    public boolean hasMuxer(String name) {
+        return muxers.contains(name);
+    }
+
+    // Getters
+    public boolean isFFmpegAvailable() {
+        return ffmpegAvailable;
+    }
+
+    public boolean isFFprobeAvailable() {
+        return ffprobeAvailable;
+    }
+
+    public String getFFmpegVersion() {
+        return ffmpegVersion;
+    }
+
+    public String getFFprobeVersion() {
+        return ffprobeVersion;
+    }
+
+    public Set<String> getEncoders() {
+        return encoders;
+    }
+
+    public Set<String> getDecoders() {
+        return decoders;
+    }
+
+    public Set<String> getFilters() {
+        return filters;
+    }
+
+    public Set<String> getMuxers() {
+        return muxers;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public LocalDateTime getProbeTime() {
+        return probeTime;
+    }
+}
@@ -0,0 +1,214 @@
+package com.video.config;
+
+import com.video.media.FFmpegProcessSupervisor;
+import com.video.media.ProcessResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * FFmpeg 能力注册表
+ * 启动时探测一次 ffmpeg/ffprobe 的版本和支持的编解码器、滤镜、封装格式，之后在后台定期刷新。
+ * 请求路径上只读取缓存的快照，不再启动任何进程。
+ */
+@Component
+public class FFmpegCapabilityRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(FFmpegCapabilityRegistry.class);
+
+    /** 编解码器/封装格式列表中表头与内容之间的分隔行 */
+    private static final Pattern SEPARATOR_LINE = Pattern.compile("^\\s*-+\\s*$");
+
+    /** 滤镜列表行，例如 " T.C volume            A->A       Change input volume." */
+    private static final Pattern FILTER_LINE = Pattern.compile("^\\s*[T.][S.][C.]\\s+(\\S+)\\s+\\S+->\\S+");
+
+    private final FFmpegConfig ffmpegConfig;
+    private final FFmpegProcessSupervisor processSupervisor;
+
+    @Value("${ffmpeg.capability.probe-timeout:10000}")
+    private long probeTimeoutMs;
+
+    private volatile FFmpegCapabilities capabilities = FFmpegCapabilities.unavailable("FFmpeg 能力尚未探测");
+
+    public FFmpegCapabilityRegistry(FFmpegConfig ffmpegConfig, FFmpegProcessSupervisor processSupervisor) {
+        this.ffmpegConfig = ffmpegConfig;
+        this.processSupervisor = processSupervisor;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 后台定期刷新能力快照（例如运维替换了 FFmpeg 二进制文件）
+     */
+    @Scheduled(fixedDelayString = "${ffmpeg.capability.refresh-interval:300000}",
+            initialDelayString = "${ffmpeg.capability.refresh-interval:300000}")
+    public void refresh() {
+        FFmpegCapabilities snapshot = probe();
+        capabilities = snapshot;
+        if (snapshot.isFFmpegAvailable()) {
+            log.info("FFmpeg 能力探测完成: 版本={}, 编码器={}, 解码器={}, 滤镜={}, 封装格式={}",
+                    snapshot.getFFmpegVersion(), snapshot.getEncoders().size(), snapshot.getDecoders().size(),
+                    snapshot.getFilters().size(), snapshot.getMuxers().size());
+        } else {
+            log.error("FFmpeg 能力探测失败: {}", snapshot.getErrorMessage());
+        }
+    }
+
+    /**
+     * 获取当前能力快照
+     */
+    public FFmpegCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * 检查 FFmpeg 是否可用（读取缓存快照）
+     */
+    public boolean isFFmpegAvailable() {
+        return capabilities.isFFmpegAvailable();
+    }
+
+    /**
+     * 获取能力快照的状态信息
+     */
+    public String getStatus() {
+        FFmpegCapabilities snapshot = capabilities;
+        StringBuilder status = new StringBuilder();
+        status.append("- FFmpeg可用性: ").append(snapshot.isFFmpegAvailable()).append("\n");
+        status.append("- FFprobe可用性: ").append(snapshot.isFFprobeAvailable()).append("\n");
+        status.append("- FFmpeg版本: ").append(snapshot.getFFmpegVersion()).append("\n");
+        status.append("- FFprobe版本: ").append(snapshot.getFFprobeVersion()).append("\n");
+        status.append("- 编码器数量: ").append(snapshot.getEncoders().size()).append("\n");
+        status.append("- 解码器数量: ").append(snapshot.getDecoders().size()).append("\n");
+        status.append("- 滤镜数量: ").append(snapshot.getFilters().size()).append("\n");
+        status.append("- 封装格式数量: ").append(snapshot.getMuxers().size()).append("\n");
+        status.append("- 探测时间: ").append(snapshot.getProbeTime()).append("\n");
+        if (snapshot.getErrorMessage() != null) {
+            status.append("- 探测错误: ").append(snapshot.getErrorMessage()).append("\n");
+        }
+        return status.toString();
+    }
+
+    /**
+     * 执行一次完整探测，生成新的能力快照
+     */
+    private FFmpegCapabilities probe() {
+        String ffmpegPath = ffmpegConfig.getFFmpegPath();
+        String ffprobePath = ffmpegConfig.getFFprobePath();
+        if (ffmpegPath == null || ffprobePath == null) {
+            return FFmpegCapabilities.unavailable("FFmpeg 配置未初始化，请检查 FFmpeg 安装");
+        }
+
+        List<String> ffmpegVersionOutput = runCommand(ffmpegPath, "-version");
+        if (ffmpegVersionOutput == null) {
+            return FFmpegCapabilities.unavailable("无法执行 " + ffmpegPath + " -version");
+        }
+
+        List<String> ffprobeVersionOutput = runCommand(ffprobePath, "-version");
+
+        Set<String> encoders = parseListing(runCommand(ffmpegPath, "-hide_banner", "-encoders"));
+        Set<String> decoders = parseListing(runCommand(ffmpegPath, "-hide_banner", "-decoders"));
+        Set<String> muxers = parseListing(runCommand(ffmpegPath, "-hide_banner", "-muxers"));
+        Set<String> filters = parseFilters(runCommand(ffmpegPath, "-hide_banner", "-filters"));
+
+        return new FFmpegCapabilities(true, ffprobeVersionOutput != null,
+                parseVersion(ffmpegVersionOutput), parseVersion(ffprobeVersionOutput),
+                encoders, decoders, filters, muxers,
+                ffprobeVersionOutput == null ? "无法执行 " + ffprobePath + " -version" : null,
+                LocalDateTime.now());
+    }
+
+    /**
+     * 通过进程监管器执行探测命令并返回输出行，失败或超时返回 null
+     */
+    private List<String> runCommand(String... command) {
+        try {
+            ProcessResult result = processSupervisor.run("capability-probe", probeTimeoutMs,
+                    threads -> Arrays.asList(command));
+            if (result.isTimedOut()) {
+                log.warn("FFmpeg 探测命令超时: {}", String.join(" ", command));
+                return null;
+            }
+            if (result.getExitCode() != 0) {
+                log.warn("FFmpeg 探测命令失败 (退出码: {}): {}\n{}", result.getExitCode(), String.join(" ", command),
+                        result.getErrorOutput());
+                return null;
+            }
+            // -version 和各类列表都输出到标准输出
+            return Arrays.asList(result.getOutput().split("\\r?\\n"));
+        } catch (Exception e) {
+            log.debug("FFmpeg 探测命令执行异常: {} - {}", String.join(" ", command), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 从 -version 输出的第一行解析版本号，例如 "ffmpeg version 6.0 Copyright ..."
+     */
+    private String parseVersion(List<String> output) {
+        if (output == null || output.isEmpty()) {
+            return null;
+        }
+        String[] parts = output.get(0).trim().split("\\s+");
+        for (int i = 0; i < parts.length - 1; i++) {
+            if ("version".equals(parts[i])) {
+                return parts[i + 1];
+            }
+        }
+        return output.get(0).trim();
+    }
+
+    /**
+     * 解析 -encoders / -decoders / -muxers 的输出：分隔行之后每行的第二列是名称
+     */
+    private Set<String> parseListing(List<String> output) {
+        Set<String> names = new HashSet<>();
+        if (output == null) {
+            return names;
+        }
+        boolean inBody = false;
+        for (String line : output) {
+            if (!inBody) {
+                inBody = SEPARATOR_LINE.matcher(line).matches();
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 2) {
+                // 封装格式名称可能是逗号分隔的别名列表，例如 "mov,mp4,m4a"
+                names.addAll(Arrays.asList(parts[1].split(",")));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 解析 -filters 的输出
+     */
+    private Set<String> parseFilters(List<String> output) {
+        Set<String> names = new HashSet<>();
+        if (output == null) {
+            return names;
+        }
+        for (String line : output) {
+            Matcher matcher = FILTER_LINE.matcher(line);
+            if (matcher.find()) {
+                names.add(matcher.group(1));
+            }
+        }
+        return names;
+    }
+}
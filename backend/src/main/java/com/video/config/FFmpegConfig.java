@@ -14,6 +14,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
 
 /**
  * FFmpeg 配置类
@@ -24,6 +25,9 @@ public class FFmpegConfig {
 
     private static final Logger log = LoggerFactory.getLogger(FFmpegConfig.class);
 
+    /** 检测系统 FFmpeg 时等待 ffmpeg -version 的最长时间 */
+    private static final long DETECT_TIMEOUT_SECONDS = 10;
+
     @Value("${file.temp-path:./temp/}")
     private String tempPath;
 
@@ -82,10 +86,18 @@ public class FFmpegConfig {
      */
     private boolean isSystemFFmpegAvailable() {
         try {
+            // 输出直接丢弃，不需要读取管道；卡住的 ffmpeg 在超时后被结束，不会阻塞启动
+            File nullDevice = new File(System.getProperty("os.name").toLowerCase().contains("win") ? "NUL" : "/dev/null");
             ProcessBuilder pb = new ProcessBuilder("ffmpeg", "-version");
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.appendTo(nullDevice));
             Process process = pb.start();
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
+            if (!process.waitFor(DETECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                log.warn("系统 FFmpeg 检测超时 ({}s)", DETECT_TIMEOUT_SECONDS);
+                return false;
+            }
+            if (process.exitValue() == 0) {
                 log.info("系统 FFmpeg 可用");
                 return true;
             }
@@ -254,40 +266,6 @@ public class FFmpegConfig {
             }
         }
 
-        status.append("- FFmpeg可用性: ").append(isFFmpegAvailable()).append("\n");
         return status.toString();
     }
-
-    /**
-     * 检查 FFmpeg 是否可用
-     */
-    public boolean isFFmpegAvailable() {
-        try {
-            ProcessBuilder pb = new ProcessBuilder(ffmpegPath, "-version");
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-
-            // 读取输出
-            java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(process.getInputStream()));
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
-                log.info("FFmpeg可用性检查通过，版本信息: {}",
-                        output.toString().split("\n")[0]); // 只显示第一行版本信息
-                return true;
-            } else {
-                log.error("FFmpeg可用性检查失败 (退出码: {}): \n{}", exitCode, output.toString());
-                return false;
-            }
-        } catch (Exception e) {
-            log.error("FFmpeg可用性检查异常: {}", e.getMessage(), e);
-            return false;
-        }
-    }
-}
\ No newline at end of file
+}
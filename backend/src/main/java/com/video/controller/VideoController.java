@@ -1,18 +1,60 @@
 package com.video.controller;
 
+import com.video.common.RangeFileResponder;
 import com.video.common.Result;
+import com.video.config.FFmpegCapabilityRegistry;
 import com.video.config.FFmpegConfig;
+import com.video.media.FFmpegProcessSupervisor;
+import com.video.media.PcmAnalyzer;
+import com.video.media.PcmFormat;
+import com.video.media.SegmentedVideoEncoder;
+import com.video.media.SpeechInterval;
+import com.video.media.WavFile;
+import com.video.media.WaveformPeaks;
+import com.video.model.TaskPage;
+import com.video.model.UploadSession;
 import com.video.model.VideoTask;
+import com.video.service.ChunkedUploadService;
+import com.video.service.StorageLifecycleService;
+import com.video.service.TaskEventService;
+import com.video.service.AdmissionRejectedException;
 import com.video.service.AudioExtractionService;
+import com.video.service.ProcessingPriority;
+import com.video.service.VideoOutputService;
 import com.video.service.VideoService;
 import com.video.service.WhisperService;
 import com.video.service.TranslationService;
+import com.video.service.VoiceActivityService;
+import com.video.service.WaveformService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
-
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 视频处理控制器
@@ -24,19 +66,48 @@ public class VideoController {
 
     private static final Logger log = LoggerFactory.getLogger(VideoController.class);
 
+    /** 任务列表可投影的字段 */
+    private static final Set<String> TASK_FIELDS = new HashSet<>();
+
+    static {
+        for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(VideoTask.class)) {
+            if (property.getReadMethod() != null && !"class".equals(property.getName())) {
+                TASK_FIELDS.add(property.getName());
+            }
+        }
+    }
+
     private final VideoService videoService;
     private final AudioExtractionService audioExtractionService;
     private final WhisperService whisperService;
     private final FFmpegConfig ffmpegConfig;
+    private final FFmpegCapabilityRegistry capabilityRegistry;
+    private final FFmpegProcessSupervisor processSupervisor;
     private final TranslationService translationService;
+    private final VoiceActivityService voiceActivityService;
+    private final WaveformService waveformService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final StorageLifecycleService storageLifecycleService;
+    private final TaskEventService taskEventService;
 
     public VideoController(VideoService videoService, AudioExtractionService audioExtractionService,
-            WhisperService whisperService, FFmpegConfig ffmpegConfig, TranslationService translationService) {
+            WhisperService whisperService, FFmpegConfig ffmpegConfig, FFmpegCapabilityRegistry capabilityRegistry,
+            FFmpegProcessSupervisor processSupervisor, TranslationService translationService,
+            VoiceActivityService voiceActivityService, WaveformService waveformService,
+            ChunkedUploadService chunkedUploadService, StorageLifecycleService storageLifecycleService,
+            TaskEventService taskEventService) {
         this.videoService = videoService;
         this.audioExtractionService = audioExtractionService;
         this.whisperService = whisperService;
         this.ffmpegConfig = ffmpegConfig;
+        this.capabilityRegistry = capabilityRegistry;
+        this.processSupervisor = processSupervisor;
         this.translationService = translationService;
+        this.voiceActivityService = voiceActivityService;
+        this.waveformService = waveformService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.storageLifecycleService = storageLifecycleService;
+        this.taskEventService = taskEventService;
     }
 
     /**
@@ -89,23 +160,112 @@ public class VideoController {
         }
     }
 
+    /**
+     * 创建分片上传会话，返回 uploadId、分片大小和分片数
+     */
+    @PostMapping("/upload/init")
+    public Result<UploadSession> initChunkedUpload(@RequestParam String fileName, @RequestParam long fileSize,
+            @RequestParam(required = false) Integer chunkSize) {
+        try {
+            return Result.success(chunkedUploadService.initUpload(fileName, fileSize, chunkSize));
+        } catch (Exception e) {
+            log.error("创建分片上传会话失败", e);
+            return Result.error("创建分片上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 上传一个分片：请求体为分片原始字节，X-Chunk-Sha256 为其 SHA-256
+     * 直接读取请求体流写入目标文件，不经过 multipart 解析和容器临时文件；各分片可并行上传
+     */
+    @PutMapping("/upload/{uploadId}/chunk/{index}")
+    public Result<UploadSession> uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-Sha256", required = false) String checksum,
+            HttpServletRequest request) {
+        try {
+            return Result.success(chunkedUploadService.writeChunk(uploadId, index, request.getInputStream(),
+                    checksum));
+        } catch (Exception e) {
+            log.error("分片上传失败: {} #{}", uploadId, index, e);
+            return Result.error("分片上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询分片上传进度，断线重连后据 missingChunks 续传
+     */
+    @GetMapping("/upload/{uploadId}")
+    public Result<UploadSession> getChunkedUpload(@PathVariable String uploadId) {
+        try {
+            return Result.success(chunkedUploadService.getUpload(uploadId));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 完成分片上传：验证视频并创建任务
+     */
+    @PostMapping("/upload/{uploadId}/complete")
+    public Result<VideoTask> completeChunkedUpload(@PathVariable String uploadId) {
+        try {
+            VideoTask task = chunkedUploadService.completeUpload(uploadId);
+            return Result.success(task);
+        } catch (Exception e) {
+            log.error("完成分片上传失败", e);
+            return Result.error("❌ 视频上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消分片上传
+     */
+    @DeleteMapping("/upload/{uploadId}")
+    public Result<Void> abortChunkedUpload(@PathVariable String uploadId) {
+        try {
+            chunkedUploadService.abortUpload(uploadId);
+            return Result.success();
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
     /**
      * 开始处理视频
+     * priority=interactive|bulk，不指定时重新处理已完成或失败的任务按交互式，其余按批量；
+     * 客户端由服务端确定：已认证时为用户名，否则为来源地址，不采用客户端自报的标识，限额和轮转无法靠换标识绕过。
+     * 未被接纳时返回 429（该客户端排队过多）或 503（服务饱和），Retry-After 为建议的重试秒数
      */
     @PostMapping("/process/{taskId}")
-    public Result<Void> processVideo(@PathVariable Long taskId) {
+    public ResponseEntity<Result<Void>> processVideo(@PathVariable Long taskId,
+            @RequestParam(required = false) String priority,
+            HttpServletRequest request) {
         try {
             log.info("开始处理视频任务: {}", taskId);
 
+            ProcessingPriority processingPriority = null;
+            if (priority != null && !priority.isEmpty()) {
+                try {
+                    processingPriority = ProcessingPriority.valueOf(priority.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(Result.error("不支持的优先级: " + priority));
+                }
+            }
+
             // 先检查任务状态
             VideoTask task = videoService.getTask(taskId);
             if ("UPLOAD_FAILED".equals(task.getStatus())) {
-                return Result.error("❌ 无法处理失败的任务: " + task.getErrorMessage() +
-                        "\n\n请重新上传有效的视频文件");
+                return ResponseEntity.ok(Result.error("❌ 无法处理失败的任务: " + task.getErrorMessage() +
+                        "\n\n请重新上传有效的视频文件"));
             }
 
-            videoService.processVideo(taskId);
-            return Result.success();
+            videoService.processVideo(taskId, processingPriority, clientOf(request));
+            return ResponseEntity.ok(Result.success());
+        } catch (AdmissionRejectedException e) {
+            log.warn("处理请求未被接纳: 任务 {}, {}", taskId, e.getMessage());
+            return ResponseEntity.status(e.isClientLimited() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Result.error("❌ " + e.getMessage()));
         } catch (Exception e) {
             log.error("视频处理失败", e);
 
@@ -119,17 +279,196 @@ public class VideoController {
                         "• 建议：重新上传完整的视频文件";
             }
 
-            return Result.error("❌ 视频处理失败: " + errorMsg + suggestion);
+            return ResponseEntity.ok(Result.error("❌ 视频处理失败: " + errorMsg + suggestion));
+        }
+    }
+
+    /**
+     * 准入控制使用的客户端标识：已认证的用户名，否则为来源地址
+     * 部署在反向代理之后时需开启 server.forward-headers-strategy，来源地址才是真实的客户端地址
+     */
+    private static String clientOf(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null && principal.getName() != null) {
+            return "user:" + principal.getName();
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 生成带字幕的成品视频（异步），完成后任务的 outputPath 指向成品视频
+     * mode=burn（默认）烧录进画面，可指定编码预设；mode=soft 以字幕轨道封装，不重新编码
+     */
+    @PostMapping("/render/{taskId}")
+    public Result<Void> renderVideo(@PathVariable Long taskId,
+            @RequestParam(defaultValue = VideoOutputService.MODE_BURN) String mode,
+            @RequestParam(required = false) String preset) {
+        try {
+            log.info("开始生成成品视频: {} (模式: {}, 预设: {})", taskId, mode, preset);
+
+            VideoTask task = videoService.getTask(taskId);
+            if (task.getSubtitlePath() == null) {
+                return Result.error("任务尚未生成字幕，请先处理视频");
+            }
+            if (!VideoOutputService.MODE_BURN.equals(mode) && !VideoOutputService.MODE_SOFT.equals(mode)) {
+                return Result.error("不支持的输出模式: " + mode + "，可选: burn, soft");
+            }
+            if (preset != null && !preset.isEmpty() && !SegmentedVideoEncoder.PRESETS.contains(preset)) {
+                return Result.error("不支持的编码预设: " + preset + "，可选: " + SegmentedVideoEncoder.PRESETS);
+            }
+
+            videoService.renderVideo(taskId, mode, preset);
+            return Result.success();
+        } catch (Exception e) {
+            log.error("生成成品视频失败", e);
+            return Result.error("生成成品视频失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 波形峰值概况：各层的分辨率和峰值数，前端据此选择缩放级别
+     */
+    @GetMapping("/waveform/{taskId}/info")
+    public Result<Map<String, Object>> getWaveformInfo(@PathVariable Long taskId) {
+        try {
+            VideoTask task = videoService.getTask(taskId);
+            WaveformPeaks peaks = waveformService.getPeaks(task.getFilePath());
+
+            List<Map<String, Object>> levels = new ArrayList<>();
+            for (int level = 0; level < peaks.getLevelCount(); level++) {
+                Map<String, Object> info = new LinkedHashMap<>();
+                info.put("level", level);
+                info.put("samplesPerPeak", peaks.getSamplesPerPeak(level));
+                info.put("peakCount", peaks.getPeakCount(level));
+                levels.add(info);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("sampleRate", peaks.getSampleRate());
+            result.put("duration", peaks.getDuration());
+            result.put("levels", levels);
+            return Result.success(result);
+        } catch (Exception e) {
+            log.error("获取波形信息失败", e);
+            return Result.error("获取波形信息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 波形峰值数据：指定层和时间范围内的 int16 (min, max) 对，小端二进制
+     * 指定 peaksPerSecond（前端当前缩放下每秒需要的峰值数）时自动选择满足密度的最粗一层，否则使用 level
+     * 响应头 X-Waveform-Start-Peak 为第一个峰值的序号，X-Waveform-Samples-Per-Peak 为该层分辨率；
+     * 出错时返回 Result.error
+     */
+    @GetMapping("/waveform/{taskId}")
+    public ResponseEntity<?> getWaveform(@PathVariable Long taskId,
+            @RequestParam(defaultValue = "0") int level,
+            @RequestParam(required = false) Double peaksPerSecond,
+            @RequestParam(defaultValue = "0") double start,
+            @RequestParam(defaultValue = "-1") double end) {
+        try {
+            VideoTask task = videoService.getTask(taskId);
+            WaveformPeaks peaks = waveformService.getPeaks(task.getFilePath());
+            if (peaksPerSecond != null) {
+                level = peaks.levelForPeaksPerSecond(peaksPerSecond);
+            }
+            if (level < 0 || level >= peaks.getLevelCount()) {
+                return ResponseEntity.badRequest()
+                        .body(Result.error("波形层号超出范围: " + level + "，共 " + peaks.getLevelCount() + " 层"));
+            }
+
+            ByteBuffer slice = peaks.slice(level, start, end);
+            byte[] body = new byte[slice.remaining()];
+            slice.get(body);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header("X-Waveform-Level", String.valueOf(level))
+                    .header("X-Waveform-Sample-Rate", String.valueOf(peaks.getSampleRate()))
+                    .header("X-Waveform-Samples-Per-Peak", String.valueOf(peaks.getSamplesPerPeak(level)))
+                    .header("X-Waveform-Start-Peak", String.valueOf(peaks.peakIndexAt(level, start)))
+                    .body(body);
+        } catch (Exception e) {
+            log.error("获取波形数据失败", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Result.error("获取波形数据失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 下载任务相关文件：video（上传的视频）、audio（提取的音频）、subtitle（字幕）、output（成品视频）
+     * 支持 Range 和条件请求，编辑器可直接在大文件中拖动进度
+     */
+    @GetMapping("/download/{taskId}/{artifact}")
+    public void download(@PathVariable Long taskId, @PathVariable String artifact, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        VideoTask task;
+        try {
+            task = videoService.getTask(taskId);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+            return;
+        }
+
+        String baseName = task.getOriginalName() == null ? String.valueOf(taskId)
+                : task.getOriginalName().replaceAll("\\.[^.]+$", "");
+        String path;
+        MediaType contentType;
+        String downloadName;
+        switch (artifact) {
+            case "video":
+                path = task.getFilePath();
+                downloadName = task.getOriginalName();
+                contentType = MediaTypeFactory.getMediaType(task.getFileName())
+                        .orElse(MediaType.APPLICATION_OCTET_STREAM);
+                break;
+            case "audio":
+                path = task.getFilePath() == null ? null : audioExtractionService.findExtractedAudio(task.getFilePath());
+                downloadName = baseName + ".wav";
+                contentType = MediaType.parseMediaType("audio/wav");
+                break;
+            case "subtitle":
+                path = task.getSubtitlePath();
+                downloadName = baseName + ".srt";
+                contentType = MediaType.parseMediaType("application/x-subrip;charset=UTF-8");
+                break;
+            case "output":
+                path = task.getOutputPath();
+                downloadName = path == null ? null : baseName + path.substring(path.lastIndexOf('_'));
+                contentType = path == null ? MediaType.APPLICATION_OCTET_STREAM
+                        : MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+                break;
+            default:
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "不支持的文件类型: " + artifact + "，可选: video, audio, subtitle, output");
+                return;
+        }
+
+        if (path == null || !Files.isRegularFile(Paths.get(path))) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "文件不存在: " + artifact);
+            return;
+        }
+        storageLifecycleService.touch(path);
+        RangeFileResponder.send(Paths.get(path), contentType, downloadName, request, response);
+    }
+
+    /**
+     * 上传目录和临时目录的占用、配额和磁盘剩余空间
+     */
+    @GetMapping("/storage")
+    public Result<List<StorageLifecycleService.DirectoryUsage>> getStorageUsage() {
+        return Result.success(storageLifecycleService.getUsage());
+    }
+
     /**
      * 获取任务状态
+     * ETag 为任务的快照版本，客户端带 If-None-Match 且任务未变化时返回 304
      */
     @GetMapping("/task/{taskId}")
-    public Result<VideoTask> getTask(@PathVariable Long taskId) {
+    public Result<VideoTask> getTask(@PathVariable Long taskId, WebRequest webRequest) {
         try {
             VideoTask task = videoService.getTask(taskId);
+            if (webRequest.checkNotModified("\"" + task.getVersion() + "\"")) {
+                return null;
+            }
             return Result.success(task);
         } catch (Exception e) {
             log.error("获取任务状态失败", e);
@@ -138,19 +477,91 @@ public class VideoController {
     }
 
     /**
-     * 获取任务列表
+     * 获取任务列表（按创建时间倒序）
+     * 返回的 version 可作为之后增量查询的 sinceVersion；传 sinceVersion 时只返回之后变化过的任务（按版本升序），
+     * 忽略 status 和 cursor
+     * @param status 状态过滤，可传多个
+     * @param cursor 上一页返回的 nextCursor
+     * @param limit 每页数量，0 表示返回全部
+     * @param fields 只返回这些字段（逗号分隔），为空时返回完整任务
+     * @param sinceVersion 上次返回的 version
      */
     @GetMapping("/tasks")
-    public Result<List<VideoTask>> getTasks() {
+    public Result<TaskPage<?>> getTasks(@RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) Long sinceVersion) {
         try {
-            List<VideoTask> tasks = videoService.getAllTasks();
-            return Result.success(tasks);
+            if (limit < 0) {
+                return Result.error("limit 不能小于 0");
+            }
+            if (fields != null) {
+                for (String field : fields) {
+                    if (!TASK_FIELDS.contains(field)) {
+                        return Result.error("未知的任务字段: " + field);
+                    }
+                }
+            }
+            TaskPage<VideoTask> page = sinceVersion != null
+                    ? videoService.listTasksChangedSince(sinceVersion, limit)
+                    : videoService.listTasks(status, cursor, limit);
+            if (fields == null || fields.isEmpty()) {
+                return Result.success(page);
+            }
+            List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+            for (VideoTask task : page.getItems()) {
+                BeanWrapper wrapper = new BeanWrapperImpl(task);
+                Map<String, Object> item = new LinkedHashMap<>();
+                for (String field : fields) {
+                    item.put(field, wrapper.getPropertyValue(field));
+                }
+                items.add(item);
+            }
+            TaskPage<Map<String, Object>> projected = new TaskPage<>(items, page.getNextCursor(), page.getTotal());
+            projected.setVersion(page.getVersion());
+            return Result.success(projected);
         } catch (Exception e) {
             log.error("获取任务列表失败", e);
             return Result.error("获取任务列表失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 任务总数和各状态的任务数
+     */
+    @GetMapping("/tasks/count")
+    public Result<Map<String, Object>> countTasks() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("total", videoService.countTasks());
+        counts.put("byStatus", videoService.countTasksByStatus());
+        return Result.success(counts);
+    }
+
+    /**
+     * 订阅全部任务的状态变化（SSE，事件名 task，数据为任务 JSON）
+     * 客户端先用 /tasks 取一次列表，之后只接收变化
+     */
+    @GetMapping(value = "/tasks/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeTasks() {
+        return taskEventService.subscribe(null, null);
+    }
+
+    /**
+     * 订阅单个任务的状态变化（SSE），连接后先推送一次当前状态
+     */
+    @GetMapping(value = "/task/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeTask(@PathVariable Long taskId, HttpServletResponse response) throws IOException {
+        VideoTask task;
+        try {
+            task = videoService.getTask(taskId);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+            return null;
+        }
+        return taskEventService.subscribe(taskId, task);
+    }
+
     /**
      * 更新字幕
      */
@@ -181,13 +592,18 @@ public class VideoController {
             // 获取音频信息
             AudioExtractionService.AudioInfo audioInfo = audioExtractionService.getAudioInfo(audioPath);
 
+            // 电平和削波检查（直接读取映射的 WAV 数据）
+            PcmAnalyzer.Summary summary = PcmAnalyzer.summarize(WavFile.open(Paths.get(audioPath)).samples());
+
             String result = String.format(
                     "音频提取成功！\\n" +
                             "音频文件: %s\\n" +
                             "时长: %.2f秒\\n" +
                             "采样率: %dHz\\n" +
-                            "声道数: %d",
-                    audioPath, audioInfo.getDuration(), audioInfo.getSampleRate(), audioInfo.getChannels());
+                            "声道数: %d\\n" +
+                            "电平: %s",
+                    audioPath, audioInfo.getDuration(), audioInfo.getSampleRate(), audioInfo.getChannels(),
+                    summary);
 
             return Result.success(result);
         } catch (Exception e) {
@@ -196,6 +612,54 @@ public class VideoController {
         }
     }
 
+    /**
+     * 测试流式音频提取功能（不写临时文件）
+     */
+    @PostMapping("/test/stream-audio/{taskId}")
+    public Result<String> testStreamAudio(@PathVariable Long taskId) {
+        try {
+            log.info("测试流式音频提取: {}", taskId);
+            VideoTask task = videoService.getTask(taskId);
+
+            long startTime = System.currentTimeMillis();
+            int[] peak = new int[1];
+            long samples = audioExtractionService.streamAudio(task.getFilePath(), (chunk, sampleOffset) -> {
+                while (chunk.remaining() >= 2) {
+                    peak[0] = Math.max(peak[0], Math.abs(chunk.getShort()));
+                }
+            });
+
+            String result = String.format(
+                    "流式音频提取成功！\\n" +
+                            "样本数: %d\\n" +
+                            "时长: %.2f秒\\n" +
+                            "峰值: %d\\n" +
+                            "耗时: %dms",
+                    samples, PcmFormat.samplesToSeconds(samples), peak[0],
+                    System.currentTimeMillis() - startTime);
+
+            return Result.success(result);
+        } catch (Exception e) {
+            log.error("测试流式音频提取失败", e);
+            return Result.error("测试流式音频提取失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 测试语音活动检测（流式读取视频音频，返回语音区间）
+     */
+    @PostMapping("/test/vad/{taskId}")
+    public Result<List<SpeechInterval>> testVoiceActivity(@PathVariable Long taskId) {
+        try {
+            log.info("测试语音活动检测: {}", taskId);
+            VideoTask task = videoService.getTask(taskId);
+            return Result.success(voiceActivityService.detectSpeechInVideo(task.getFilePath()));
+        } catch (Exception e) {
+            log.error("测试语音活动检测失败", e);
+            return Result.error("测试语音活动检测失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 测试语音识别功能
      */
@@ -288,7 +752,10 @@ public class VideoController {
             status.append("服务状态检查:\\n\\n");
 
             // 详细的FFmpeg状态
-            status.append(ffmpegConfig.getFFmpegStatus()).append("\\n");
+            status.append(ffmpegConfig.getFFmpegStatus());
+            status.append(capabilityRegistry.getStatus()).append("\\n");
+            status.append(processSupervisor.getStatus()).append("\\n");
+            status.append(videoService.getPipelineStatus()).append("\\n");
 
             // 检查Whisper
             boolean whisperAvailable = ((com.video.service.impl.WhisperServiceImpl) whisperService)
@@ -299,9 +766,19 @@ public class VideoController {
             status.append("\\n").append(((com.video.service.impl.TranslationServiceImpl) translationService)
                     .getServiceStatus()).append("\\n");
 
+            // 磁盘占用
+            status.append("\\n磁盘占用:\\n");
+            for (StorageLifecycleService.DirectoryUsage usage : storageLifecycleService.getUsage()) {
+                status.append("  ").append(usage).append("\\n");
+            }
+
             // 任务统计
-            List<VideoTask> tasks = videoService.getAllTasks();
-            status.append("任务总数: ").append(tasks.size()).append("\\n");
+            status.append("任务总数: ").append(videoService.countTasks());
+            for (Map.Entry<String, Long> entry : videoService.countTasksByStatus().entrySet()) {
+                status.append(", ").append(entry.getKey()).append(": ").append(entry.getValue());
+            }
+            status.append(", 其中已归档: ").append(videoService.countArchivedTasks()).append("\\n");
+            status.append("任务事件订阅者: ").append(taskEventService.getSubscriberCount()).append("\\n");
 
             return Result.success(status.toString());
         } catch (Exception e) {
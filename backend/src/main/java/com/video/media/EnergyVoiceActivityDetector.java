@@ -0,0 +1,211 @@
+package com.video.media;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于短时能量的语音活动检测（VAD）
+ * 按固定帧长计算 PCM 能量（dBFS），与自适应噪声底比较判定语音帧：
+ * 1. 噪声底遇到更安静的帧立即下调，否则缓慢上升，适应空调、底噪等稳定背景声；
+ * 2. 语音之间的静音短于 minSilence 时视为同一区间（句中停顿）；
+ * 3. 短于 minSpeech 的区间丢弃（咳嗽、翻页声）；
+ * 4. 区间两端各补 padding，避免切掉弱起音和尾音；
+ * 5. 超过 maxInterval 的区间在最后四分之一范围内能量最低的帧处切开，便于按区间并行识别。
+ * <p>
+ * 作为 PcmChunkHandler 按块喂入数据，处理过程中不分配内存（区间列表除外），读完后调用 finish() 取结果。
+ * 非线程安全，每次检测使用新实例。
+ */
+public class EnergyVoiceActivityDetector implements PcmChunkHandler {
+
+    /** 16 位满幅的平方，用于换算 dBFS */
+    private static final double FULL_SCALE_SQUARED = 32768.0 * 32768.0;
+
+    /** 数字静音的能量下限 */
+    private static final double MIN_DB = -96;
+
+    /** 噪声底的上升速度（每帧向当前能量靠近的比例） */
+    private static final double NOISE_FLOOR_RISE = 0.002;
+
+    private final int frameSamples;
+    private final double thresholdDb;
+    private final double marginDb;
+    private final int minSpeechFrames;
+    private final int minSilenceFrames;
+    private final long paddingSamples;
+    private final int maxIntervalFrames;
+
+    /** 当前区间内各帧的能量，用于超长区间寻找切分点 */
+    private final float[] intervalEnergy;
+
+    // 帧累加状态
+    private double frameSumSquares;
+    private int frameFill;
+    private long frameIndex;
+
+    private double noiseFloorDb = Double.NaN;
+
+    // 区间状态：-1 表示当前不在语音区间内
+    private long intervalStartFrame = -1;
+    private long lastSpeechFrame = -1;
+
+    private final List<SpeechInterval> intervals = new ArrayList<>();
+
+    /**
+     * @param frameMs            帧长（毫秒）
+     * @param thresholdDb        绝对能量门限（dBFS），低于此值一律视为静音
+     * @param marginDb           语音需高出噪声底的幅度（dB）
+     * @param minSpeechMs        最短语音区间（毫秒）
+     * @param minSilenceMs       结束一个区间所需的最短静音（毫秒）
+     * @param paddingMs          区间两端补充的时长（毫秒）
+     * @param maxIntervalSeconds 单个区间的最长时长（秒）
+     */
+    public EnergyVoiceActivityDetector(int frameMs, double thresholdDb, double marginDb, int minSpeechMs,
+            int minSilenceMs, int paddingMs, double maxIntervalSeconds) {
+        this.frameSamples = Math.max(1, PcmFormat.SAMPLE_RATE * frameMs / 1000);
+        this.thresholdDb = thresholdDb;
+        this.marginDb = marginDb;
+        this.minSpeechFrames = Math.max(1, minSpeechMs / Math.max(1, frameMs));
+        this.minSilenceFrames = Math.max(1, minSilenceMs / Math.max(1, frameMs));
+        this.paddingSamples = (long) PcmFormat.SAMPLE_RATE * paddingMs / 1000;
+        this.maxIntervalFrames = Math.max(minSpeechFrames + 1,
+                (int) (maxIntervalSeconds * PcmFormat.SAMPLE_RATE / frameSamples));
+        this.intervalEnergy = new float[maxIntervalFrames];
+    }
+
+    @Override
+    public void onChunk(ByteBuffer chunk, long sampleOffset) {
+        ByteBuffer samples = chunk.order() == ByteOrder.LITTLE_ENDIAN ? chunk
+                : chunk.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int position = samples.position();
+        int limit = samples.limit() - 1;
+        for (int i = position; i < limit; i += PcmFormat.BYTES_PER_SAMPLE) {
+            int sample = samples.getShort(i);
+            frameSumSquares += (double) sample * sample;
+            if (++frameFill == frameSamples) {
+                processFrame();
+            }
+        }
+    }
+
+    /**
+     * 结束检测，返回按时间排序且互不重叠的语音区间
+     *
+     * @param totalSamples 音频总样本数，用于限制末尾区间的补充范围
+     */
+    public List<SpeechInterval> finish(long totalSamples) {
+        if (frameFill > 0) {
+            processFrame();
+        }
+        if (intervalStartFrame >= 0) {
+            closeInterval(lastSpeechFrame + 1);
+        }
+        return mergeAndPad(totalSamples);
+    }
+
+    private void processFrame() {
+        double meanSquare = frameSumSquares / frameFill;
+        double db = meanSquare <= 0 ? MIN_DB : Math.max(MIN_DB, 10 * Math.log10(meanSquare / FULL_SCALE_SQUARED));
+        frameSumSquares = 0;
+        frameFill = 0;
+
+        if (Double.isNaN(noiseFloorDb) || db < noiseFloorDb) {
+            noiseFloorDb = db;
+        } else {
+            noiseFloorDb += (db - noiseFloorDb) * NOISE_FLOOR_RISE;
+        }
+        boolean speech = db > thresholdDb && db > noiseFloorDb + marginDb;
+
+        long frame = frameIndex++;
+        if (intervalStartFrame >= 0) {
+            intervalEnergy[(int) (frame - intervalStartFrame)] = (float) db;
+        }
+
+        if (speech) {
+            if (intervalStartFrame < 0) {
+                intervalStartFrame = frame;
+                intervalEnergy[0] = (float) db;
+            }
+            lastSpeechFrame = frame;
+        } else if (intervalStartFrame >= 0 && frame - lastSpeechFrame >= minSilenceFrames) {
+            closeInterval(lastSpeechFrame + 1);
+            return;
+        }
+
+        if (intervalStartFrame >= 0 && frame - intervalStartFrame + 1 >= maxIntervalFrames) {
+            splitLongInterval(frame);
+        }
+    }
+
+    /**
+     * 区间达到最长时长：在最后四分之一范围内能量最低的帧处切开，剩余部分作为新区间继续
+     */
+    private void splitLongInterval(long currentFrame) {
+        int length = (int) (currentFrame - intervalStartFrame + 1);
+        int from = length - Math.max(1, length / 4);
+        int cut = from;
+        for (int i = from + 1; i < length; i++) {
+            if (intervalEnergy[i] < intervalEnergy[cut]) {
+                cut = i;
+            }
+        }
+        long cutFrame = intervalStartFrame + cut;
+        addInterval(intervalStartFrame, cutFrame + 1);
+
+        int remaining = length - cut - 1;
+        if (remaining <= 0) {
+            intervalStartFrame = -1;
+            return;
+        }
+        System.arraycopy(intervalEnergy, cut + 1, intervalEnergy, 0, remaining);
+        intervalStartFrame = cutFrame + 1;
+        if (lastSpeechFrame < intervalStartFrame) {
+            lastSpeechFrame = intervalStartFrame;
+        }
+    }
+
+    private void closeInterval(long endFrame) {
+        if (endFrame - intervalStartFrame >= minSpeechFrames) {
+            addInterval(intervalStartFrame, endFrame);
+        }
+        intervalStartFrame = -1;
+    }
+
+    private void addInterval(long startFrame, long endFrame) {
+        intervals.add(new SpeechInterval(startFrame * frameSamples, endFrame * frameSamples));
+    }
+
+    /**
+     * 两端补充 padding 后合并重叠的区间；超长切分产生的相邻区间保持切分点不变
+     */
+    private List<SpeechInterval> mergeAndPad(long totalSamples) {
+        if (intervals.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long limit = totalSamples > 0 ? totalSamples : Long.MAX_VALUE;
+        List<SpeechInterval> result = new ArrayList<>(intervals.size());
+        long start = -1;
+        long end = -1;
+        long previousRawEnd = -1;
+        for (SpeechInterval interval : intervals) {
+            boolean split = interval.getStartSample() == previousRawEnd;
+            long paddedStart = split ? interval.getStartSample()
+                    : Math.max(0, interval.getStartSample() - paddingSamples);
+            long paddedEnd = Math.min(limit, interval.getEndSample() + paddingSamples);
+            if (start >= 0 && !split && paddedStart <= end) {
+                end = Math.max(end, paddedEnd);
+            } else {
+                if (start >= 0) {
+                    result.add(new SpeechInterval(start, split ? previousRawEnd : end));
+                }
+                start = paddedStart;
+                end = paddedEnd;
+            }
+            previousRawEnd = interval.getEndSample();
+        }
+        result.add(new SpeechInterval(start, Math.min(limit, end)));
+        return result;
+    }
+}
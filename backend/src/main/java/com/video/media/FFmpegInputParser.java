@@ -0,0 +1,123 @@
+package com.video.media;
+
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ffmpeg 错误输出中 "Input #0" 段的解析器
+ * 作为行监听器挂在受监管进程上，边运行边解析，不需要额外的 ffprobe 调用。
+ * 例如：
+ * <pre>
+ * Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'lecture.mp4':
+ *   Duration: 00:12:34.56, start: 0.000000, bitrate: 1205 kb/s
+ *   Stream #0:0[0x1](und): Video: h264 (High) (avc1 / 0x31637661), yuv420p, 1280x720, ...
+ *   Stream #0:1[0x2](und): Audio: aac (LC) (mp4a / 0x6134706D), 44100 Hz, stereo, fltp, 128 kb/s
+ * </pre>
+ */
+public class FFmpegInputParser implements Consumer<String> {
+
+    private static final Pattern INPUT_LINE = Pattern.compile("^Input #0, (.+), from '.*':\\s*$");
+    private static final Pattern DURATION_LINE = Pattern.compile(
+            "^\\s*Duration: (?:(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)|N/A)(?:.*bitrate: (\\d+) kb/s)?");
+    private static final Pattern STREAM_LINE = Pattern.compile(
+            "^\\s*Stream #0:(\\d+)\\S*: (\\w+): ([\\w-]+)(.*)$");
+    private static final Pattern SAMPLE_RATE = Pattern.compile("(\\d+) Hz");
+    private static final Pattern CHANNEL_COUNT = Pattern.compile("(\\d+) channels");
+    private static final Pattern RESOLUTION = Pattern.compile("\\b(\\d{2,5})x(\\d{2,5})\\b");
+
+    private final MediaInfo mediaInfo = new MediaInfo();
+    private volatile boolean inputSeen;
+    private volatile boolean finished;
+
+    @Override
+    public void accept(String line) {
+        if (finished) {
+            return;
+        }
+        if (!inputSeen) {
+            Matcher matcher = INPUT_LINE.matcher(line);
+            if (matcher.find()) {
+                mediaInfo.setFormatName(matcher.group(1));
+                inputSeen = true;
+            }
+            return;
+        }
+        // 输入段之后是输出段或流映射，不再解析
+        if (line.startsWith("Output #") || line.startsWith("Stream mapping:")) {
+            finished = true;
+            return;
+        }
+
+        Matcher duration = DURATION_LINE.matcher(line);
+        if (duration.find()) {
+            if (duration.group(1) != null) {
+                mediaInfo.setDuration(Integer.parseInt(duration.group(1)) * 3600
+                        + Integer.parseInt(duration.group(2)) * 60
+                        + Double.parseDouble(duration.group(3)));
+            }
+            if (duration.group(4) != null) {
+                mediaInfo.setBitRate(Long.parseLong(duration.group(4)) * 1000);
+            }
+            return;
+        }
+
+        Matcher stream = STREAM_LINE.matcher(line);
+        if (stream.find()) {
+            mediaInfo.addStream(parseStream(Integer.parseInt(stream.group(1)), stream.group(2),
+                    stream.group(3), stream.group(4)));
+        }
+    }
+
+    /**
+     * 是否解析到了输入段（ffmpeg 无法打开文件时不会输出）
+     */
+    public boolean isInputSeen() {
+        return inputSeen;
+    }
+
+    public MediaInfo getMediaInfo() {
+        return mediaInfo;
+    }
+
+    private MediaInfo.StreamInfo parseStream(int index, String type, String codec, String details) {
+        MediaInfo.StreamInfo info = new MediaInfo.StreamInfo(index, type, codec);
+        if (MediaInfo.StreamInfo.TYPE_AUDIO.equals(type)) {
+            Matcher rate = SAMPLE_RATE.matcher(details);
+            if (rate.find()) {
+                info.setSampleRate(Integer.parseInt(rate.group(1)));
+            }
+            info.setChannels(parseChannels(details));
+        } else if (MediaInfo.StreamInfo.TYPE_VIDEO.equals(type)) {
+            Matcher resolution = RESOLUTION.matcher(details);
+            if (resolution.find()) {
+                info.setWidth(Integer.parseInt(resolution.group(1)));
+                info.setHeight(Integer.parseInt(resolution.group(2)));
+            }
+        }
+        return info;
+    }
+
+    /**
+     * 解析声道布局，例如 mono、stereo、5.1(side)、"3 channels"
+     */
+    private int parseChannels(String details) {
+        Matcher count = CHANNEL_COUNT.matcher(details);
+        if (count.find()) {
+            return Integer.parseInt(count.group(1));
+        }
+        if (details.contains(" mono")) {
+            return 1;
+        }
+        if (details.contains(" stereo")) {
+            return 2;
+        }
+        if (details.contains(" 5.1")) {
+            return 6;
+        }
+        if (details.contains(" 7.1")) {
+            return 8;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,445 @@
+package com.video.media;
+
+import net.bramp.ffmpeg.ProcessFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * FFmpeg 进程监管器
+ * 所有 ffmpeg/ffprobe 调用都经过这里：
+ * 1. 全局并发配额，防止少数异常上传把机器压垮；
+ * 2. 按当前运行的任务数分配 -threads，避免 CPU 超卖；
+ * 3. 看门狗按媒体时长计算超时并杀掉卡死的进程；
+ * 4. 每个进程只保留有限行数的错误输出；
+ * 5. 解析 -progress 输出，实时回调进度并按任务类型统计吞吐（实时倍率、输出字节速率）。
+ */
+@Component
+public class FFmpegProcessSupervisor {
+
+    private static final Logger log = LoggerFactory.getLogger(FFmpegProcessSupervisor.class);
+
+    /** run() 收集标准输出的上限 */
+    private static final int MAX_COLLECTED_OUTPUT = 256 * 1024;
+
+    /** 分段等任务名称末尾的序号，统计时归为同一类 */
+    private static final Pattern NAME_INDEX_SUFFIX = Pattern.compile("-\\d+$");
+
+    /**
+     * 让 ffmpeg 把机器可读的进度写到错误输出（与日志同一管道），由监管器解析，不进入错误输出缓冲区
+     */
+    public static final String[] PROGRESS_ARGS = {"-nostats", "-progress", "pipe:2"};
+
+    @Value("${ffmpeg.supervisor.max-concurrent:0}")
+    private int maxConcurrent;
+
+    @Value("${ffmpeg.supervisor.total-threads:0}")
+    private int totalThreads;
+
+    @Value("${ffmpeg.supervisor.base-timeout:60000}")
+    private long baseTimeoutMs;
+
+    @Value("${ffmpeg.supervisor.timeout-per-media-second:2000}")
+    private long timeoutPerMediaSecondMs;
+
+    @Value("${ffmpeg.supervisor.unknown-duration-timeout:1800000}")
+    private long unknownDurationTimeoutMs;
+
+    @Value("${ffmpeg.supervisor.probe-timeout:60000}")
+    private long probeTimeoutMs;
+
+    @Value("${ffmpeg.supervisor.acquire-timeout:600000}")
+    private long acquireTimeoutMs;
+
+    @Value("${ffmpeg.supervisor.stderr-lines:200}")
+    private int stderrLines;
+
+    private final Map<Long, SupervisedProcess> running = new ConcurrentHashMap<>();
+    private final Map<String, FFmpegThroughputStats> throughputStats = new ConcurrentSkipListMap<>();
+    private final AtomicLong idGenerator = new AtomicLong(1);
+
+    private Semaphore permits;
+    private ScheduledExecutorService watchdog;
+    private ExecutorService outputPumps;
+
+    @PostConstruct
+    public void init() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        if (maxConcurrent <= 0) {
+            maxConcurrent = cpus;
+        }
+        if (totalThreads <= 0) {
+            totalThreads = cpus;
+        }
+        permits = new Semaphore(maxConcurrent, true);
+        watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("FFmpegWatchdog-"));
+        watchdog.scheduleWithFixedDelay(this::checkProcesses, 1, 1, TimeUnit.SECONDS);
+        outputPumps = Executors.newCachedThreadPool(daemonThreads("FFmpegOutput-"));
+        log.info("FFmpeg 进程监管器初始化: 最大并发={}, 线程预算={}", maxConcurrent, totalThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        for (SupervisedProcess process : running.values()) {
+            process.destroy();
+        }
+        outputPumps.shutdownNow();
+    }
+
+    /**
+     * 启动受监管进程，标准输出由调用方读取
+     *
+     * @param name           任务名称（用于日志）
+     * @param timeoutMs      超时时间，超时后进程被强制结束
+     * @param commandFactory 根据分配到的线程数构建命令行
+     */
+    public SupervisedProcess start(String name, long timeoutMs, IntFunction<List<String>> commandFactory)
+            throws IOException {
+        return start(name, timeoutMs, commandFactory, null);
+    }
+
+    /**
+     * 启动受监管进程，并将错误输出的每一行实时交给监听器（例如解析 ffmpeg 的输入信息）
+     *
+     * @param errorLineListener 错误输出行监听器，可为 null
+     */
+    public SupervisedProcess start(String name, long timeoutMs, IntFunction<List<String>> commandFactory,
+            Consumer<String> errorLineListener) throws IOException {
+        return start(name, timeoutMs, 0, commandFactory, errorLineListener, null);
+    }
+
+    /**
+     * 启动受监管进程并跟踪进度，命令行需包含 {@link #PROGRESS_ARGS}
+     *
+     * @param mediaDurationSeconds 媒体时长（秒），用于计算完成比例；未知时传 0，
+     *                             运行中得知后可通过 {@link SupervisedProcess#setMediaDuration(double)} 更新
+     * @param progressListener     进度监听器，可为 null（仍会统计吞吐）
+     */
+    public SupervisedProcess start(String name, long timeoutMs, double mediaDurationSeconds,
+            IntFunction<List<String>> commandFactory, Consumer<String> errorLineListener,
+            FFmpegProgressListener progressListener) throws IOException {
+        acquire(name);
+        try {
+            int threads = allocateThreads();
+            List<String> command = commandFactory.apply(threads);
+            Process process = new ProcessBuilder(command).start();
+
+            long id = idGenerator.getAndIncrement();
+            OutputRingBuffer errorBuffer = new OutputRingBuffer(stderrLines);
+            SupervisedProcess supervised = new SupervisedProcess(id, name, process, threads, timeoutMs,
+                    errorBuffer, this::onReleased);
+            supervised.setMediaDuration(mediaDurationSeconds);
+            FFmpegProgressParser progressParser = new FFmpegProgressParser(System.currentTimeMillis(),
+                    supervised::getMediaDuration, progressListener);
+            supervised.setProgressParser(progressParser);
+            running.put(id, supervised);
+            pumpLines(process.getErrorStream(), errorBuffer, errorLineListener, progressParser);
+
+            log.debug("启动 FFmpeg 进程 #{} [{}] 线程={} 超时={}ms: {}", id, name, threads, timeoutMs,
+                    String.join(" ", command));
+            return supervised;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 运行受监管进程直到结束，收集有限长度的标准输出和错误输出
+     */
+    public ProcessResult run(String name, long timeoutMs, IntFunction<List<String>> commandFactory)
+            throws IOException {
+        return run(name, timeoutMs, commandFactory, null);
+    }
+
+    /**
+     * 运行受监管进程直到结束，错误输出的每一行同时交给监听器
+     */
+    public ProcessResult run(String name, long timeoutMs, IntFunction<List<String>> commandFactory,
+            Consumer<String> errorLineListener) throws IOException {
+        return run(name, timeoutMs, 0, commandFactory, errorLineListener, null);
+    }
+
+    /**
+     * 运行受监管进程直到结束并跟踪进度，命令行需包含 {@link #PROGRESS_ARGS}
+     */
+    public ProcessResult run(String name, long timeoutMs, double mediaDurationSeconds,
+            IntFunction<List<String>> commandFactory, Consumer<String> errorLineListener,
+            FFmpegProgressListener progressListener) throws IOException {
+        SupervisedProcess process = start(name, timeoutMs, mediaDurationSeconds, commandFactory,
+                errorLineListener, progressListener);
+        try {
+            String output = readBounded(process.getInputStream());
+            int exitCode = process.waitFor();
+            process.awaitErrorOutput();
+            return new ProcessResult(exitCode, output, process.getErrorOutput(), process.isTimedOut(),
+                    process.getElapsedMs());
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 FFmpeg 进程结束时被中断: " + name, e);
+        }
+    }
+
+    /**
+     * 供 net.bramp.ffmpeg 的 FFmpeg/FFprobe 使用的进程启动函数。
+     * 输出由库自行读取，进程退出后由看门狗归还配额。
+     */
+    public ProcessFunction processFunction(String name, long timeoutMs) {
+        return args -> {
+            acquire(name);
+            try {
+                ProcessBuilder builder = new ProcessBuilder(args);
+                builder.redirectErrorStream(true);
+                Process process = builder.start();
+
+                long id = idGenerator.getAndIncrement();
+                running.put(id, new SupervisedProcess(id, name, process, 1, timeoutMs, null,
+                        this::onReleased));
+                return process;
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * 按媒体时长计算进程超时时间
+     *
+     * @param mediaDurationSeconds 媒体时长（秒），未知时传 0
+     */
+    public long timeoutFor(double mediaDurationSeconds) {
+        if (mediaDurationSeconds <= 0) {
+            return unknownDurationTimeoutMs;
+        }
+        return baseTimeoutMs + (long) (mediaDurationSeconds * timeoutPerMediaSecondMs);
+    }
+
+    /**
+     * 探测类命令（ffprobe）的超时时间
+     */
+    public long getProbeTimeoutMs() {
+        return probeTimeoutMs;
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getTotalThreads() {
+        return totalThreads;
+    }
+
+    /**
+     * 按任务类型（名称去掉末尾序号）的累计吞吐统计
+     */
+    public Map<String, FFmpegThroughputStats> getThroughputStats() {
+        return Collections.unmodifiableMap(throughputStats);
+    }
+
+    /**
+     * 获取监管器状态信息
+     */
+    public String getStatus() {
+        StringBuilder status = new StringBuilder();
+        status.append("FFmpeg 进程监管:\n");
+        status.append("- 运行中进程: ").append(running.size()).append("/").append(maxConcurrent).append("\n");
+        status.append("- 等待配额: ").append(permits.getQueueLength()).append("\n");
+        status.append("- 线程预算: ").append(totalThreads).append("\n");
+        for (SupervisedProcess process : running.values()) {
+            status.append("  #").append(process.getId()).append(" ").append(process.getName())
+                    .append(" 线程=").append(process.getThreads())
+                    .append(" 已运行=").append(process.getElapsedMs() / 1000).append("s");
+            FFmpegProgress progress = process.getLastProgress();
+            if (progress != null) {
+                status.append(String.format(" 进度=%.1fs 速度=%.1fx 实时倍率=%.1fx 输出=%.1f KB/s",
+                        progress.getOutTimeSeconds(), progress.getSpeed(), progress.getRealtimeFactor(),
+                        progress.getBytesPerSecond() / 1024));
+            }
+            status.append("\n");
+        }
+        if (!throughputStats.isEmpty()) {
+            status.append("- 吞吐统计:\n");
+            for (FFmpegThroughputStats stats : throughputStats.values()) {
+                status.append("  ").append(stats).append("\n");
+            }
+        }
+        return status.toString();
+    }
+
+    private void acquire(String name) throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("FFmpeg 并发配额已满，等待超时: " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 FFmpeg 并发配额时被中断: " + name, e);
+        }
+    }
+
+    /**
+     * 按当前运行任务数平分线程预算（包含即将启动的任务）
+     */
+    private int allocateThreads() {
+        return Math.max(1, totalThreads / (running.size() + 1));
+    }
+
+    private void onReleased(SupervisedProcess process) {
+        if (running.remove(process.getId()) != null) {
+            permits.release();
+            recordThroughput(process);
+        }
+    }
+
+    /**
+     * 记录进程的吞吐统计，只统计输出了进度信息的进程
+     */
+    private void recordThroughput(SupervisedProcess process) {
+        if (!process.isProgressTracked()) {
+            return;
+        }
+        boolean success;
+        try {
+            success = !process.isTimedOut() && !process.isAlive() && process.exitValue() == 0;
+        } catch (IllegalThreadStateException e) {
+            success = false;
+        }
+        String kind = NAME_INDEX_SUFFIX.matcher(process.getName()).replaceFirst("");
+        throughputStats.computeIfAbsent(kind, FFmpegThroughputStats::new)
+                .record(process.getLastProgress(), process.getElapsedMs(), success);
+    }
+
+    /**
+     * 看门狗：回收已退出的进程，杀掉超时的进程
+     */
+    private void checkProcesses() {
+        try {
+            long now = System.currentTimeMillis();
+            for (SupervisedProcess process : running.values()) {
+                if (!process.isAlive()) {
+                    process.release();
+                } else if (now > process.getDeadline()) {
+                    log.error("FFmpeg 进程 #{} [{}] 运行 {}ms 超时，强制结束", process.getId(), process.getName(),
+                            process.getElapsedMs());
+                    process.kill();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("FFmpeg 看门狗检查异常: {}", e.getMessage());
+        }
+    }
+
+    private void pumpLines(InputStream stream, OutputRingBuffer buffer, Consumer<String> listener,
+            FFmpegProgressParser progressParser) {
+        outputPumps.execute(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (FFmpegProgressParser.isProgressLine(line)) {
+                        try {
+                            progressParser.accept(line);
+                        } catch (RuntimeException e) {
+                            log.debug("FFmpeg 进度监听器异常: {}", e.getMessage());
+                        }
+                        continue;
+                    }
+                    buffer.append(line);
+                    if (listener != null) {
+                        try {
+                            listener.accept(line);
+                        } catch (RuntimeException e) {
+                            log.debug("FFmpeg 输出监听器异常: {}", e.getMessage());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // 进程被杀时管道关闭，忽略
+            } finally {
+                buffer.close();
+            }
+        });
+    }
+
+    private String readBounded(InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try (InputStream in = stream) {
+            while ((read = in.read(buffer)) != -1) {
+                // 超出上限的部分继续读取但丢弃，避免进程因管道写满而阻塞
+                int room = MAX_COLLECTED_OUTPUT - output.size();
+                if (room > 0) {
+                    output.write(buffer, 0, Math.min(read, room));
+                }
+            }
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 构建命令行的便捷方法
+     */
+    public static List<String> command(String executable, String... args) {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(executable);
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return command;
+    }
+
+    /**
+     * 构建带进度输出参数（{@link #PROGRESS_ARGS}）的命令行
+     */
+    public static List<String> commandWithProgress(String executable, String... args) {
+        List<String> command = new ArrayList<>(args.length + PROGRESS_ARGS.length + 1);
+        command.add(executable);
+        Collections.addAll(command, PROGRESS_ARGS);
+        Collections.addAll(command, args);
+        return command;
+    }
+}
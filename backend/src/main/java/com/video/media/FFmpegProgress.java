@@ -0,0 +1,94 @@
+package com.video.media;
+
+/**
+ * ffmpeg -progress 输出的一次进度快照及由此计算的吞吐指标
+ */
+public class FFmpegProgress {
+
+    private final double outTimeSeconds;
+    private final double durationSeconds;
+    private final double speed;
+    private final double fps;
+    private final long totalSize;
+    private final long elapsedMs;
+    private final boolean finished;
+
+    public FFmpegProgress(double outTimeSeconds, double durationSeconds, double speed, double fps,
+            long totalSize, long elapsedMs, boolean finished) {
+        this.outTimeSeconds = outTimeSeconds;
+        this.durationSeconds = durationSeconds;
+        this.speed = speed;
+        this.fps = fps;
+        this.totalSize = totalSize;
+        this.elapsedMs = elapsedMs;
+        this.finished = finished;
+    }
+
+    /**
+     * 完成比例（0~1），总时长未知时返回 -1
+     */
+    public double getFraction() {
+        if (finished) {
+            return 1.0;
+        }
+        if (durationSeconds <= 0) {
+            return -1;
+        }
+        return Math.max(0, Math.min(1.0, outTimeSeconds / durationSeconds));
+    }
+
+    /**
+     * 实时倍率：已处理的媒体时长 / 实际耗时
+     */
+    public double getRealtimeFactor() {
+        return elapsedMs <= 0 ? 0 : outTimeSeconds * 1000.0 / elapsedMs;
+    }
+
+    /**
+     * 输出吞吐（字节/秒）
+     */
+    public double getBytesPerSecond() {
+        return elapsedMs <= 0 ? 0 : totalSize * 1000.0 / elapsedMs;
+    }
+
+    // Getters
+    public double getOutTimeSeconds() {
+        return outTimeSeconds;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * ffmpeg 自报的处理速度倍率（例如 12.5x），未知时为 0
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * 已输出的字节数
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f/%.1fs, %.1fx, %.0f fps, %d bytes", outTimeSeconds, durationSeconds,
+                speed, fps, totalSize);
+    }
+}
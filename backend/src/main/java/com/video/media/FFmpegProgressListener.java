@@ -0,0 +1,11 @@
+package com.video.media;
+
+/**
+ * ffmpeg 进度回调
+ * 在读取进程输出的后台线程中调用，实现应尽快返回
+ */
+@FunctionalInterface
+public interface FFmpegProgressListener {
+
+    void onProgress(FFmpegProgress progress);
+}
@@ -0,0 +1,114 @@
+package com.video.media;
+
+import java.util.function.DoubleSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * ffmpeg -progress 输出解析器
+ * 输出为若干 key=value 行组成的块，每块以 progress=continue 或 progress=end 结束，例如：
+ * <pre>
+ * out_time_us=12500000
+ * total_size=400078
+ * fps=0.00
+ * speed=25.3x
+ * progress=continue
+ * </pre>
+ */
+class FFmpegProgressParser {
+
+    /** 进度行格式，用于和普通日志行区分 */
+    static final Pattern PROGRESS_LINE = Pattern.compile("^[a-z0-9_]+=.*$");
+
+    private final long startTime;
+    private final DoubleSupplier durationSupplier;
+    private final FFmpegProgressListener listener;
+
+    private double outTimeSeconds;
+    private double speed;
+    private double fps;
+    private long totalSize;
+    private volatile FFmpegProgress lastProgress;
+
+    /**
+     * @param startTime        进程启动时间
+     * @param durationSupplier 媒体总时长（秒），运行中才得知时长的场景可动态返回
+     * @param listener         进度回调，可为 null
+     */
+    FFmpegProgressParser(long startTime, DoubleSupplier durationSupplier, FFmpegProgressListener listener) {
+        this.startTime = startTime;
+        this.durationSupplier = durationSupplier;
+        this.listener = listener;
+    }
+
+    static boolean isProgressLine(String line) {
+        return PROGRESS_LINE.matcher(line).matches();
+    }
+
+    void accept(String line) {
+        int eq = line.indexOf('=');
+        String key = line.substring(0, eq);
+        String value = line.substring(eq + 1).trim();
+        switch (key) {
+            case "out_time_us":
+            case "out_time_ms": // 历史原因，ffmpeg 的 out_time_ms 实际单位也是微秒
+                long micros = parseLong(value);
+                if (micros >= 0) {
+                    outTimeSeconds = micros / 1_000_000.0;
+                }
+                break;
+            // 暂时无法计算时输出 N/A，保留上一次的值
+            case "speed":
+                double parsedSpeed = parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value);
+                if (parsedSpeed >= 0) {
+                    speed = parsedSpeed;
+                }
+                break;
+            case "fps":
+                double parsedFps = parseDouble(value);
+                if (parsedFps >= 0) {
+                    fps = parsedFps;
+                }
+                break;
+            case "total_size":
+                long size = parseLong(value);
+                if (size >= 0) {
+                    totalSize = size;
+                }
+                break;
+            case "progress":
+                FFmpegProgress progress = new FFmpegProgress(outTimeSeconds,
+                        durationSupplier == null ? 0 : durationSupplier.getAsDouble(), speed, fps, totalSize,
+                        System.currentTimeMillis() - startTime, "end".equals(value));
+                lastProgress = progress;
+                if (listener != null) {
+                    listener.onProgress(progress);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 最近一次完整的进度快照，尚未输出进度时为 null
+     */
+    FFmpegProgress getLastProgress() {
+        return lastProgress;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1; // N/A
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return -1; // N/A
+        }
+    }
+}
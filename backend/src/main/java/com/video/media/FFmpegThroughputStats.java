@@ -0,0 +1,79 @@
+package com.video.media;
+
+/**
+ * 某一类 FFmpeg 任务的累计吞吐统计
+ * 用于观察实时倍率的变化（机器变慢、编码参数不合适）以及调整工作线程数。
+ */
+public class FFmpegThroughputStats {
+
+    /** 指数滑动平均的权重，越大越偏向最近的任务 */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String kind;
+    private long jobs;
+    private long failures;
+    private double mediaSeconds;
+    private long wallMs;
+    private long outputBytes;
+    private double recentRealtimeFactor;
+
+    FFmpegThroughputStats(String kind) {
+        this.kind = kind;
+    }
+
+    synchronized void record(FFmpegProgress progress, long elapsedMs, boolean success) {
+        jobs++;
+        if (!success) {
+            failures++;
+        }
+        if (progress == null || elapsedMs <= 0) {
+            return;
+        }
+        mediaSeconds += progress.getOutTimeSeconds();
+        wallMs += elapsedMs;
+        outputBytes += progress.getTotalSize();
+        double factor = progress.getOutTimeSeconds() * 1000.0 / elapsedMs;
+        recentRealtimeFactor = recentRealtimeFactor == 0 ? factor
+                : EWMA_ALPHA * factor + (1 - EWMA_ALPHA) * recentRealtimeFactor;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public synchronized long getJobs() {
+        return jobs;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * 累计实时倍率：处理的媒体总时长 / 总耗时
+     */
+    public synchronized double getRealtimeFactor() {
+        return wallMs <= 0 ? 0 : mediaSeconds * 1000.0 / wallMs;
+    }
+
+    /**
+     * 最近任务的实时倍率（指数滑动平均），未有数据时为 0
+     */
+    public synchronized double getRecentRealtimeFactor() {
+        return recentRealtimeFactor;
+    }
+
+    /**
+     * 累计输出吞吐（字节/秒）
+     */
+    public synchronized double getBytesPerSecond() {
+        return wallMs <= 0 ? 0 : outputBytes * 1000.0 / wallMs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: 任务=%d 失败=%d 媒体时长=%.0fs 实时倍率=%.1fx (最近 %.1fx) 输出=%.1f KB/s",
+                kind, jobs, failures, mediaSeconds, getRealtimeFactor(), recentRealtimeFactor,
+                getBytesPerSecond() / 1024);
+    }
+}
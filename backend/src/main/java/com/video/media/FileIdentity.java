@@ -0,0 +1,75 @@
+package com.video.media;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * 文件身份标识：路径 + 大小 + 修改时间 + inode（fileKey）
+ * 任意一项变化都视为不同的文件内容，用于缓存失效判断
+ */
+public final class FileIdentity {
+
+    private final Path path;
+    private final long size;
+    private final FileTime lastModified;
+    private final Object fileKey;
+
+    private FileIdentity(Path path, long size, FileTime lastModified, Object fileKey) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+    }
+
+    /**
+     * 读取文件当前的身份标识
+     *
+     * @param path 已规范化的绝对路径
+     */
+    public static FileIdentity of(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        // Windows 上 fileKey 为 null，此时仅依赖大小和修改时间
+        return new FileIdentity(path, attrs.size(), attrs.lastModifiedTime(), attrs.fileKey());
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public FileTime getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileIdentity)) {
+            return false;
+        }
+        FileIdentity that = (FileIdentity) o;
+        return size == that.size
+                && path.equals(that.path)
+                && lastModified.equals(that.lastModified)
+                && Objects.equals(fileKey, that.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, size, lastModified, fileKey);
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + size + " bytes, " + lastModified + ")";
+    }
+}
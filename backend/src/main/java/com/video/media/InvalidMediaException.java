@@ -0,0 +1,13 @@
+package com.video.media;
+
+import java.io.IOException;
+
+/**
+ * 上传数据在结构上不可能是有效的媒体文件，消息即面向用户的错误说明
+ */
+public class InvalidMediaException extends IOException {
+
+    public InvalidMediaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,265 @@
+package com.video.media;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 上传过程中检查 ISO-BMFF（MP4/MOV）顶层 box 结构，数据到达时即可判定明显无效的文件
+ * 只读取各顶层 box 的头部（8 或 16 字节），按 size 跳到下一个 box：
+ * <ul>
+ *     <li>box 类型不是可打印字符、size 非法：数据损坏</li>
+ *     <li>box 超出声明的文件大小：上传不完整</li>
+ *     <li>moov 之前的某个 box 一直延伸到文件结尾（常见于 mdat）：moov 不可能出现在其后，缺少 moov</li>
+ * </ul>
+ * 看到 moov 后不再检查。首个 box 不像 ISO-BMFF（扩展名是 MP4 系列时类型不在常见首个 box 之列或 size 非法，
+ * 其他扩展名时不是 ftyp）时视为其他容器格式，不做判断，交给 ffprobe：扩展名为 .mp4 的 TS、WebM 文件也能正常处理。
+ * <p>
+ * 既可以顺序喂入数据（{@link #update}），也可以在分片乱序到达时按 {@link #getNextHeaderOffset()}
+ * 读取下一个头部后调用 {@link #acceptHeader}。非线程安全。
+ */
+public class IsoBmffStructureValidator {
+
+    public static final String MISSING_MOOV = "MP4文件损坏：缺少moov原子（文件元数据），可能是上传不完整或文件本身损坏";
+    public static final String INVALID_DATA = "视频文件数据损坏：文件内容无效，请重新上传";
+    public static final String TRUNCATED = "视频文件上传不完整：请重新上传完整的文件";
+
+    /** 头部最多读取的字节数（32 位 size + 类型 + 64 位 largesize） */
+    public static final int MAX_HEADER_SIZE = 16;
+
+    private static final Set<String> ISO_BMFF_EXTENSIONS = new HashSet<>(
+            Arrays.asList("mp4", "m4v", "mov", "m4a", "3gp", "3g2"));
+
+    /** 合法文件中可以作为第一个顶层 box 出现的类型（QuickTime 老文件可能没有 ftyp） */
+    private static final Set<String> FIRST_BOX_TYPES = new HashSet<>(
+            Arrays.asList("ftyp", "moov", "mdat", "free", "skip", "wide", "pnot", "uuid"));
+
+    private final boolean expectIsoBmff;
+    private final long expectedSize;
+
+    private boolean active = true;
+    private boolean seenMoov;
+    private int boxCount;
+    private long nextOffset;
+
+    // 顺序模式下的状态
+    private long position;
+    private final byte[] header = new byte[MAX_HEADER_SIZE];
+    private int headerFill;
+
+    /**
+     * @param fileName     原始文件名，用于按扩展名判断是否应为 ISO-BMFF
+     * @param expectedSize 声明的文件总大小，未知时传 -1（此时截断只能在结尾判断）
+     */
+    public IsoBmffStructureValidator(String fileName, long expectedSize) {
+        this.expectIsoBmff = ISO_BMFF_EXTENSIONS.contains(extensionOf(fileName));
+        this.expectedSize = expectedSize;
+    }
+
+    /**
+     * 是否还需要读取下一个 box 头部
+     */
+    public boolean needsHeader() {
+        return active && !seenMoov && (expectedSize < 0 || nextOffset < expectedSize);
+    }
+
+    /**
+     * 下一个顶层 box 头部在文件中的偏移
+     */
+    public long getNextHeaderOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * 下一个头部应读取的字节数（文件结尾前可能不足 16 字节）
+     */
+    public int getHeaderLength() {
+        return expectedSize < 0 ? MAX_HEADER_SIZE : (int) Math.min(MAX_HEADER_SIZE, expectedSize - nextOffset);
+    }
+
+    /**
+     * 顺序喂入文件数据
+     */
+    public void update(byte[] data, int offset, int length) throws InvalidMediaException {
+        long end = position + length;
+        while (needsHeader() && nextOffset < end) {
+            int wanted = getHeaderLength();
+            long from = nextOffset + headerFill;
+            int count = (int) Math.min(wanted - headerFill, end - from);
+            System.arraycopy(data, offset + (int) (from - position), header, headerFill, count);
+            headerFill += count;
+            if (headerFill < wanted) {
+                break;
+            }
+            acceptBufferedHeader();
+        }
+        position = end;
+    }
+
+    /**
+     * 处理位于 {@link #getNextHeaderOffset()} 的头部数据
+     *
+     * @param length 实际可用的字节数，通常为 {@link #getHeaderLength()}
+     */
+    public void acceptHeader(long offset, byte[] data, int length) throws InvalidMediaException {
+        if (offset != nextOffset) {
+            throw new IllegalArgumentException("头部偏移不符: " + offset + "，应为 " + nextOffset);
+        }
+        if (length < 8) {
+            throw new InvalidMediaException(TRUNCATED);
+        }
+        long size32 = readUInt32(data, 0);
+        String type = new String(data, 4, 4, StandardCharsets.ISO_8859_1);
+
+        if (boxCount == 0 && !looksLikeFirstBox(type, size32)) {
+            // 扩展名与实际容器不符（如 .mp4 的 TS、WebM），不在这里判断
+            active = false;
+            return;
+        }
+        if (!isPrintable(data, 4)) {
+            throw new InvalidMediaException(INVALID_DATA);
+        }
+
+        long boxSize;
+        if (size32 == 1) {
+            if (length < MAX_HEADER_SIZE) {
+                throw new InvalidMediaException(TRUNCATED);
+            }
+            boxSize = readInt64(data, 8);
+            if (boxSize < MAX_HEADER_SIZE) {
+                throw new InvalidMediaException(INVALID_DATA);
+            }
+        } else if (size32 == 0) {
+            boxSize = -1; // 延伸到文件结尾
+        } else if (size32 < 8) {
+            throw new InvalidMediaException(INVALID_DATA);
+        } else {
+            boxSize = size32;
+        }
+        boxCount++;
+
+        if ("moov".equals(type)) {
+            seenMoov = true;
+            return;
+        }
+        if (boxSize < 0) {
+            throw new InvalidMediaException(MISSING_MOOV);
+        }
+        long end = offset + boxSize;
+        if (expectedSize >= 0) {
+            if (end > expectedSize) {
+                throw new InvalidMediaException(TRUNCATED);
+            }
+            if (expectedSize - end < 8) {
+                // 剩余空间连一个 box 头都放不下，moov 不可能在后面
+                throw new InvalidMediaException(MISSING_MOOV);
+            }
+        }
+        nextOffset = end;
+    }
+
+    /**
+     * 数据全部到达后做最终判断
+     *
+     * @param totalSize 实际文件大小
+     */
+    public void finish(long totalSize) throws InvalidMediaException {
+        while (headerFill > 0 && needsHeader()) {
+            acceptBufferedHeader();
+        }
+        if (!active || seenMoov) {
+            return;
+        }
+        if (nextOffset > totalSize) {
+            throw new InvalidMediaException(TRUNCATED);
+        }
+        throw new InvalidMediaException(boxCount == 0 ? INVALID_DATA : MISSING_MOOV);
+    }
+
+    /**
+     * 处理已收集的头部；小 box（如 8 字节的 free）之后的头部可能已经在缓冲中，移到缓冲开头继续收集
+     */
+    private void acceptBufferedHeader() throws InvalidMediaException {
+        long offset = nextOffset;
+        int filled = headerFill;
+        headerFill = 0;
+        acceptHeader(offset, header, filled);
+        long consumed = nextOffset - offset;
+        if (needsHeader() && consumed < filled) {
+            headerFill = filled - (int) consumed;
+            System.arraycopy(header, (int) consumed, header, 0, headerFill);
+        }
+    }
+
+    /**
+     * 包装输入流：读取时顺序校验，读到结尾时做最终判断，无效时由 read 抛出 {@link InvalidMediaException}
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            private boolean finished;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int read = read(one, 0, 1);
+                return read < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    update(b, off, read);
+                } else if (read < 0 && !finished) {
+                    finished = true;
+                    finish(position);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                throw new IOException("不支持跳过");
+            }
+        };
+    }
+
+    /**
+     * 首个 box 是否像 ISO-BMFF：类型可识别，size 为 0、1（largesize）或不小于 8
+     */
+    private boolean looksLikeFirstBox(String type, long size32) {
+        boolean knownType = expectIsoBmff ? FIRST_BOX_TYPES.contains(type) : "ftyp".equals(type);
+        return knownType && (size32 <= 1 || size32 >= 8);
+    }
+
+    private static boolean isPrintable(byte[] data, int offset) {
+        for (int i = offset; i < offset + 4; i++) {
+            if (data[i] < 0x20 || data[i] > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readUInt32(byte[] data, int offset) {
+        return ((data[offset] & 0xFFL) << 24) | ((data[offset + 1] & 0xFFL) << 16)
+                | ((data[offset + 2] & 0xFFL) << 8) | (data[offset + 3] & 0xFFL);
+    }
+
+    private static long readInt64(byte[] data, int offset) {
+        return (readUInt32(data, offset) << 32) | readUInt32(data, offset + 4);
+    }
+
+    private static String extensionOf(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,188 @@
+package com.video.media;
+
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 媒体文件的容器和流信息，来自 ffmpeg 自身输出（"Input #0 ..." 段）或 ffprobe 探测结果
+ */
+public class MediaInfo {
+
+    private String formatName;
+    private double duration;
+    private long bitRate;
+    private final List<StreamInfo> streams = new ArrayList<>();
+
+    /**
+     * 由 ffprobe 探测结果构建（已有缓存的探测结果时无需再解析 ffmpeg 输出）
+     */
+    public static MediaInfo fromProbeResult(FFmpegProbeResult probeResult) {
+        MediaInfo info = new MediaInfo();
+        info.setFormatName(probeResult.getFormat().format_name);
+        info.setDuration(probeResult.getFormat().duration);
+        info.setBitRate(probeResult.getFormat().bit_rate);
+        for (FFmpegStream stream : probeResult.getStreams()) {
+            String type;
+            if (stream.codec_type == FFmpegStream.CodecType.VIDEO) {
+                type = StreamInfo.TYPE_VIDEO;
+            } else if (stream.codec_type == FFmpegStream.CodecType.AUDIO) {
+                type = StreamInfo.TYPE_AUDIO;
+            } else if (stream.codec_type == FFmpegStream.CodecType.SUBTITLE) {
+                type = StreamInfo.TYPE_SUBTITLE;
+            } else {
+                type = String.valueOf(stream.codec_type);
+            }
+            StreamInfo streamInfo = new StreamInfo(stream.index, type, stream.codec_name);
+            streamInfo.setSampleRate(stream.sample_rate);
+            streamInfo.setChannels(stream.channels);
+            streamInfo.setWidth(stream.width);
+            streamInfo.setHeight(stream.height);
+            info.addStream(streamInfo);
+        }
+        return info;
+    }
+
+    public boolean hasVideoStream() {
+        return findStream(StreamInfo.TYPE_VIDEO) != null;
+    }
+
+    public boolean hasAudioStream() {
+        return findStream(StreamInfo.TYPE_AUDIO) != null;
+    }
+
+    /**
+     * 查找指定类型的第一个流
+     */
+    public StreamInfo findStream(String type) {
+        for (StreamInfo stream : streams) {
+            if (type.equals(stream.getType())) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    void addStream(StreamInfo stream) {
+        streams.add(stream);
+    }
+
+    // Getters and Setters
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public void setFormatName(String formatName) {
+        this.formatName = formatName;
+    }
+
+    /**
+     * 时长（秒），ffmpeg 报告 N/A 时为 0
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * 总码率（bit/s），未知时为 0
+     */
+    public long getBitRate() {
+        return bitRate;
+    }
+
+    public void setBitRate(long bitRate) {
+        this.bitRate = bitRate;
+    }
+
+    public List<StreamInfo> getStreams() {
+        return Collections.unmodifiableList(streams);
+    }
+
+    /**
+     * 单个流的信息
+     */
+    public static class StreamInfo {
+
+        public static final String TYPE_VIDEO = "Video";
+        public static final String TYPE_AUDIO = "Audio";
+        public static final String TYPE_SUBTITLE = "Subtitle";
+
+        private final int index;
+        private final String type;
+        private final String codec;
+        private int sampleRate;
+        private int channels;
+        private int width;
+        private int height;
+
+        public StreamInfo(int index, String type, String codec) {
+            this.index = index;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        // Getters and Setters
+        public int getIndex() {
+            return index;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getCodec() {
+            return codec;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public void setChannels(int channels) {
+            this.channels = channels;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public void setWidth(int width) {
+            this.width = width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public void setHeight(int height) {
+            this.height = height;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("#").append(index).append(" ").append(type).append(": ").append(codec);
+            if (TYPE_AUDIO.equals(type)) {
+                sb.append(", ").append(sampleRate).append(" Hz, ").append(channels).append(" ch");
+            } else if (TYPE_VIDEO.equals(type)) {
+                sb.append(", ").append(width).append("x").append(height);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.video.media;
+
+import com.video.config.FFmpegConfig;
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * FFprobe 结果缓存
+ * 以文件身份（路径 + 大小 + 修改时间 + inode）为键缓存完整的 FFmpegProbeResult。
+ * 同一文件的并发探测合并为一次 ffprobe 调用；文件变化后自动失效；按 LRU 限制条目数。
+ * 返回的结果对象在调用方之间共享，只能读取，不能修改。
+ */
+@Component
+public class MediaProbeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaProbeCache.class);
+
+    private final FFmpegConfig ffmpegConfig;
+    private final FFmpegProcessSupervisor processSupervisor;
+    private final int maxEntries;
+    private final Map<Path, CacheEntry> entries;
+
+    private volatile FFprobe ffprobe;
+
+    public MediaProbeCache(FFmpegConfig ffmpegConfig, FFmpegProcessSupervisor processSupervisor,
+            @Value("${ffmpeg.probe-cache.max-entries:256}") int maxEntries) {
+        this.ffmpegConfig = ffmpegConfig;
+        this.processSupervisor = processSupervisor;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Path, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
+                return size() > MediaProbeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 探测媒体文件，命中缓存时不启动 ffprobe 进程
+     *
+     * @param mediaPath 媒体文件路径
+     * @return 探测结果（共享只读）
+     */
+    public FFmpegProbeResult probe(String mediaPath) throws IOException {
+        Path key = Paths.get(mediaPath).toAbsolutePath().normalize();
+
+        // 文件不存在时直接交给 ffprobe，保留其原始错误信息供上层分析
+        if (!Files.exists(key)) {
+            invalidate(mediaPath);
+            return getFFprobe().probe(mediaPath);
+        }
+
+        FileIdentity identity = FileIdentity.of(key);
+        CompletableFuture<FFmpegProbeResult> future;
+        boolean owner = false;
+
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && entry.identity.equals(identity)) {
+                future = entry.future;
+            } else {
+                if (entry != null) {
+                    log.debug("文件已变化，探测缓存失效: {}", key);
+                }
+                future = new CompletableFuture<>();
+                entries.put(key, new CacheEntry(identity, future));
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                future.complete(getFFprobe().probe(key.toString()));
+                log.debug("FFprobe 探测完成并缓存: {}", identity);
+            } catch (Throwable t) {
+                // 失败结果不缓存，下次调用重新探测
+                future.completeExceptionally(t);
+                synchronized (entries) {
+                    CacheEntry current = entries.get(key);
+                    if (current != null && current.future == future) {
+                        entries.remove(key);
+                    }
+                }
+            }
+        }
+
+        return await(future);
+    }
+
+    /**
+     * 只查缓存：文件未变化且已有成功的探测结果时返回，否则返回 null，不启动 ffprobe
+     */
+    public FFmpegProbeResult getIfPresent(String mediaPath) {
+        Path key = Paths.get(mediaPath).toAbsolutePath().normalize();
+        CompletableFuture<FFmpegProbeResult> future;
+        try {
+            FileIdentity identity = FileIdentity.of(key);
+            synchronized (entries) {
+                CacheEntry entry = entries.get(key);
+                if (entry == null || !entry.identity.equals(identity)) {
+                    return null;
+                }
+                future = entry.future;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * 使指定文件的缓存失效（例如文件被删除或覆盖写入时）
+     */
+    public void invalidate(String mediaPath) {
+        Path key = Paths.get(mediaPath).toAbsolutePath().normalize();
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * 当前缓存条目数
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private FFmpegProbeResult await(CompletableFuture<FFmpegProbeResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 FFprobe 探测结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private FFprobe getFFprobe() throws IOException {
+        if (ffprobe == null) {
+            synchronized (this) {
+                if (ffprobe == null) {
+                    String ffprobePath = ffmpegConfig.getFFprobePath();
+                    if (ffprobePath == null) {
+                        throw new RuntimeException("FFmpeg 配置未初始化，请检查 FFmpeg 安装");
+                    }
+                    ffprobe = new FFprobe(ffprobePath,
+                            processSupervisor.processFunction("ffprobe", processSupervisor.getProbeTimeoutMs()));
+                }
+            }
+        }
+        return ffprobe;
+    }
+
+    /**
+     * 缓存条目：文件身份 + 探测结果（进行中或已完成）
+     */
+    private static final class CacheEntry {
+        private final FileIdentity identity;
+        private final CompletableFuture<FFmpegProbeResult> future;
+
+        private CacheEntry(FileIdentity identity, CompletableFuture<FFmpegProbeResult> future) {
+            this.identity = identity;
+            this.future = future;
+        }
+    }
+}
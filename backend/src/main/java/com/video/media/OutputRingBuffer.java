@@ -0,0 +1,71 @@
+package com.video.media;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 有界的输出行环形缓冲区
+ * 只保留进程最近输出的若干行，避免错误输出无限增长占用内存
+ */
+class OutputRingBuffer {
+
+    /** 单行最大长度，超出部分截断 */
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    private final int capacity;
+    private final Deque<String> lines;
+    private long droppedLines;
+    private boolean closed;
+
+    OutputRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.lines = new ArrayDeque<>(this.capacity);
+    }
+
+    synchronized void append(String line) {
+        if (line.length() > MAX_LINE_LENGTH) {
+            line = line.substring(0, MAX_LINE_LENGTH) + "...";
+        }
+        if (lines.size() == capacity) {
+            lines.removeFirst();
+            droppedLines++;
+        }
+        lines.addLast(line);
+    }
+
+    /**
+     * 输出流已读完
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * 等待输出流读完（进程退出后错误输出可能还有少量未读取）
+     */
+    synchronized void awaitClosed(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            wait(remaining);
+        }
+    }
+
+    /**
+     * 返回缓冲区内容，若有行被丢弃则在开头注明
+     */
+    synchronized String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        if (droppedLines > 0) {
+            sb.append("... (省略前 ").append(droppedLines).append(" 行)\n");
+        }
+        for (String line : lines) {
+            sb.append(line).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.video.media;
+
+import java.nio.ShortBuffer;
+
+/**
+ * 16 位 PCM 样本分析
+ * 直接在 ShortBuffer 视图（例如 WavFile 的映射内存）上按绝对下标读取，
+ * 分析过程中不复制数据、不分配对象。
+ */
+public final class PcmAnalyzer {
+
+    /** 16 位满幅 */
+    public static final int FULL_SCALE = 32768;
+
+    /** 达到该幅度的样本视为削波 */
+    public static final int CLIP_LEVEL = 32767;
+
+    /** 连续削波样本数达到该值才计为一次削波（单个满幅样本可能是正常峰值） */
+    public static final int MIN_CLIP_RUN = 3;
+
+    private PcmAnalyzer() {
+    }
+
+    /**
+     * 分窗统计回调
+     */
+    @FunctionalInterface
+    public interface WindowConsumer {
+
+        /**
+         * @param window 窗口序号
+         * @param rms    均方根幅度（0~1，相对满幅）
+         * @param peak   峰值绝对幅度
+         */
+        void accept(int window, double rms, int peak);
+    }
+
+    /**
+     * 按固定窗口长度计算 RMS 和峰值，最后不足一窗的部分也回调一次
+     *
+     * @param samples       样本视图，从 position 读到 limit，不改变其位置
+     * @param windowSamples 每窗样本数
+     * @return 窗口数
+     */
+    public static int analyzeWindows(ShortBuffer samples, int windowSamples, WindowConsumer consumer) {
+        int window = 0;
+        int limit = samples.limit();
+        for (int start = samples.position(); start < limit; start += windowSamples) {
+            int end = Math.min(limit, start + windowSamples);
+            double sumSquares = 0;
+            int peak = 0;
+            for (int i = start; i < end; i++) {
+                int sample = samples.get(i);
+                sumSquares += (double) sample * sample;
+                int abs = sample < 0 ? -sample : sample;
+                if (abs > peak) {
+                    peak = abs;
+                }
+            }
+            consumer.accept(window++, Math.sqrt(sumSquares / (end - start)) / FULL_SCALE, peak);
+        }
+        return window;
+    }
+
+    /**
+     * 整段统计：RMS、峰值和削波检测，单次遍历
+     */
+    public static Summary summarize(ShortBuffer samples) {
+        double sumSquares = 0;
+        int peak = 0;
+        long clippedSamples = 0;
+        long clipEvents = 0;
+        int run = 0;
+        int limit = samples.limit();
+        for (int i = samples.position(); i < limit; i++) {
+            int sample = samples.get(i);
+            sumSquares += (double) sample * sample;
+            int abs = sample < 0 ? -sample : sample;
+            if (abs > peak) {
+                peak = abs;
+            }
+            if (abs >= CLIP_LEVEL) {
+                clippedSamples++;
+                if (++run == MIN_CLIP_RUN) {
+                    clipEvents++;
+                }
+            } else {
+                run = 0;
+            }
+        }
+        long count = limit - samples.position();
+        double rms = count == 0 ? 0 : Math.sqrt(sumSquares / count) / FULL_SCALE;
+        return new Summary(count, rms, peak, clippedSamples, clipEvents);
+    }
+
+    /**
+     * 幅度（0~1）换算为 dBFS，静音返回负无穷
+     */
+    public static double toDecibels(double amplitude) {
+        return amplitude <= 0 ? Double.NEGATIVE_INFINITY : 20 * Math.log10(amplitude);
+    }
+
+    /**
+     * 整段统计结果
+     */
+    public static class Summary {
+
+        private final long sampleCount;
+        private final double rms;
+        private final int peak;
+        private final long clippedSamples;
+        private final long clipEvents;
+
+        Summary(long sampleCount, double rms, int peak, long clippedSamples, long clipEvents) {
+            this.sampleCount = sampleCount;
+            this.rms = rms;
+            this.peak = peak;
+            this.clippedSamples = clippedSamples;
+            this.clipEvents = clipEvents;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * 均方根幅度（0~1，相对满幅）
+         */
+        public double getRms() {
+            return rms;
+        }
+
+        public double getRmsDb() {
+            return toDecibels(rms);
+        }
+
+        /**
+         * 峰值绝对幅度
+         */
+        public int getPeak() {
+            return peak;
+        }
+
+        public double getPeakDb() {
+            return toDecibels((double) peak / FULL_SCALE);
+        }
+
+        /**
+         * 达到满幅的样本数
+         */
+        public long getClippedSamples() {
+            return clippedSamples;
+        }
+
+        /**
+         * 连续削波（至少 MIN_CLIP_RUN 个满幅样本）的次数
+         */
+        public long getClipEvents() {
+            return clipEvents;
+        }
+
+        public boolean isClipping() {
+            return clipEvents > 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("RMS %.1f dBFS, 峰值 %.1f dBFS, 削波 %d 次", getRmsDb(), getPeakDb(), clipEvents);
+        }
+    }
+}
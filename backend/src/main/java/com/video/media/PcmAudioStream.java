@@ -0,0 +1,107 @@
+package com.video.media;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * ffmpeg 标准输出上的原始 PCM 流（格式见 PcmFormat）
+ * 音频边解码边读取，不写临时文件。读到结尾后关闭会检查 ffmpeg 退出码；
+ * 提前关闭则视为调用方主动放弃，直接结束 ffmpeg 进程。
+ */
+public class PcmAudioStream implements Closeable {
+
+    private final SupervisedProcess process;
+    private final double duration;
+    private final InputStream inputStream;
+    private final ReadableByteChannel channel;
+    private volatile boolean endOfStream;
+    private long bytesRead;
+    private boolean closed;
+
+    public PcmAudioStream(SupervisedProcess process, double duration) {
+        this.process = process;
+        this.duration = duration;
+        this.inputStream = new FilterInputStream(process.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b < 0) {
+                    endOfStream = true;
+                } else {
+                    bytesRead++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n < 0) {
+                    endOfStream = true;
+                } else {
+                    bytesRead += n;
+                }
+                return n;
+            }
+        };
+        this.channel = Channels.newChannel(inputStream);
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public ReadableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * 源媒体时长（秒，来自探测结果，未知时为 0）
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * 已读取的样本数
+     */
+    public long getSamplesRead() {
+        return bytesRead / PcmFormat.BYTES_PER_SAMPLE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (!endOfStream) {
+            // 调用方提前结束，不需要剩余音频
+            process.destroy();
+            return;
+        }
+
+        try {
+            int exitCode = process.waitFor();
+            process.awaitErrorOutput();
+            if (process.isTimedOut()) {
+                throw new IOException("FFmpeg 音频流执行超时被终止");
+            }
+            if (exitCode != 0) {
+                throw new IOException("FFmpeg 音频流异常退出 (退出码: " + exitCode + "): "
+                        + process.getErrorOutput());
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("等待 FFmpeg 音频流结束时被中断", e);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.video.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * PCM 分块回调
+ * 每次回调收到的缓冲区按样本对齐（小端序），回调返回后缓冲区会被复用，不能保留引用
+ */
+@FunctionalInterface
+public interface PcmChunkHandler {
+
+    /**
+     * @param chunk        本块 PCM 数据（只读，position 到 limit 之间有效）
+     * @param sampleOffset 本块第一个样本在整段音频中的序号
+     */
+    void onChunk(ByteBuffer chunk, long sampleOffset) throws IOException;
+}
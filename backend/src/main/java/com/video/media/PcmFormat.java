@@ -0,0 +1,33 @@
+package com.video.media;
+
+/**
+ * 内部统一使用的 PCM 音频格式：16kHz、单声道、16 位有符号小端（s16le）
+ * 与 Whisper 等语音识别服务的推荐输入一致
+ */
+public final class PcmFormat {
+
+    public static final int SAMPLE_RATE = 16000;
+    public static final int CHANNELS = 1;
+    public static final int BYTES_PER_SAMPLE = 2;
+
+    /** ffmpeg 原始 PCM 输出格式名 */
+    public static final String FFMPEG_FORMAT = "s16le";
+    public static final String FFMPEG_CODEC = "pcm_s16le";
+
+    private PcmFormat() {
+    }
+
+    /**
+     * 样本数换算为秒
+     */
+    public static double samplesToSeconds(long samples) {
+        return (double) samples / SAMPLE_RATE;
+    }
+
+    /**
+     * 秒换算为样本数
+     */
+    public static long secondsToSamples(double seconds) {
+        return Math.round(seconds * SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,52 @@
+package com.video.media;
+
+/**
+ * 受监管进程的执行结果
+ */
+public class ProcessResult {
+
+    private final int exitCode;
+    private final String output;
+    private final String errorOutput;
+    private final boolean timedOut;
+    private final long elapsedMs;
+
+    public ProcessResult(int exitCode, String output, String errorOutput, boolean timedOut, long elapsedMs) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.errorOutput = errorOutput;
+        this.timedOut = timedOut;
+        this.elapsedMs = elapsedMs;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0 && !timedOut;
+    }
+
+    // Getters
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * 标准输出（有长度上限）
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * 错误输出的最后若干行
+     */
+    public String getErrorOutput() {
+        return errorOutput;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+}
@@ -0,0 +1,50 @@
+package com.video.media;
+
+/**
+ * 汇总并行分段任务的进度：已处理时长和输出字节相加，速度为各进程速度之和
+ */
+class SegmentProgressAggregator {
+
+    private final FFmpegProgress[] segments;
+    private final double durationSeconds;
+    private final long startTime;
+    private final FFmpegProgressListener listener;
+
+    SegmentProgressAggregator(int segmentCount, double durationSeconds, long startTime,
+            FFmpegProgressListener listener) {
+        this.segments = new FFmpegProgress[segmentCount];
+        this.durationSeconds = durationSeconds;
+        this.startTime = startTime;
+        this.listener = listener;
+    }
+
+    void update(int index, FFmpegProgress progress) {
+        if (listener == null) {
+            return;
+        }
+        FFmpegProgress total;
+        synchronized (this) {
+            segments[index] = progress;
+            double outTime = 0;
+            double speed = 0;
+            long size = 0;
+            boolean finished = true;
+            for (FFmpegProgress segment : segments) {
+                if (segment == null) {
+                    finished = false;
+                    continue;
+                }
+                outTime += segment.getOutTimeSeconds();
+                size += segment.getTotalSize();
+                if (segment.isFinished()) {
+                    continue;
+                }
+                finished = false;
+                speed += segment.getSpeed();
+            }
+            total = new FFmpegProgress(outTime, durationSeconds, speed, 0, size,
+                    System.currentTimeMillis() - startTime, finished);
+        }
+        listener.onProgress(total);
+    }
+}
@@ -0,0 +1,256 @@
+package com.video.media;
+
+import com.video.config.FFmpegConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 分段并行音频提取
+ * 长视频按时间范围切成 N 段，每段由独立的 ffmpeg 进程解码为 PCM，
+ * 按样本偏移直接写入同一个 WAV 文件的对应位置。
+ * <p>
+ * 保证的是样本对齐：第 i 段总是从 startSample(i) 开始写、写满到下一段的起点（多解码的部分截掉，
+ * 解码不足的部分补静音），因此总长度和每段在时间轴上的位置与单进程提取一致，字幕时间戳不会漂移。
+ * 但拼接结果与单进程提取并不逐样本相同：每段的重采样器在 -ss 之后重新开始，没有前一段的滤波状态，
+ * 接缝处的少量样本可能有细微差别；中间分段补齐的静音（通常只有几毫秒）也不在原始音频里。
+ * <p>
+ * 分段只解码音频（-vn）：输入端 -ss 会先跳到前一个关键帧再精确解码到目标时间点
+ * （ffmpeg 默认开启 accurate_seek），因此分段边界可以落在任意样本上，不依赖视频关键帧位置。
+ */
+@Component
+public class SegmentedAudioExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedAudioExtractor.class);
+
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+
+    private final FFmpegConfig ffmpegConfig;
+    private final FFmpegProcessSupervisor processSupervisor;
+    private final ThreadPoolTaskExecutor segmentExecutor;
+
+    @Value("${audio.extraction.parallel-threshold:600}")
+    private double parallelThresholdSeconds;
+
+    @Value("${audio.extraction.parallelism:4}")
+    private int parallelism;
+
+    @Value("${audio.extraction.min-segment-duration:60}")
+    private double minSegmentSeconds;
+
+    public SegmentedAudioExtractor(FFmpegConfig ffmpegConfig, FFmpegProcessSupervisor processSupervisor,
+            @Qualifier("mediaSegmentExecutor") ThreadPoolTaskExecutor segmentExecutor) {
+        this.ffmpegConfig = ffmpegConfig;
+        this.processSupervisor = processSupervisor;
+        this.segmentExecutor = segmentExecutor;
+    }
+
+    /**
+     * 按探测到的时长判断是否应使用分段并行提取
+     */
+    public boolean shouldUseParallel(double durationSeconds) {
+        return parallelism > 1 && durationSeconds >= parallelThresholdSeconds;
+    }
+
+    /**
+     * 分段并行提取音频到 WAV 文件
+     *
+     * @param videoPath       视频文件路径
+     * @param durationSeconds 探测得到的视频时长
+     * @param outputPath      输出 WAV 文件路径
+     * @return 写入的样本总数
+     */
+    public long extract(String videoPath, double durationSeconds, Path outputPath) throws IOException {
+        return extract(videoPath, durationSeconds, outputPath, null);
+    }
+
+    /**
+     * 分段并行提取音频到 WAV 文件，各分段的进度汇总后回调
+     *
+     * @param progressListener 汇总进度监听器，可为 null
+     */
+    public long extract(String videoPath, double durationSeconds, Path outputPath,
+            FFmpegProgressListener progressListener) throws IOException {
+        long totalSamples = PcmFormat.secondsToSamples(durationSeconds);
+        int segmentCount = (int) Math.max(1, Math.min(parallelism,
+                Math.ceil(durationSeconds / Math.max(1, minSegmentSeconds))));
+        long startTime = System.currentTimeMillis();
+        log.info("开始分段并行提取音频: {} (时长: {}秒, 分段数: {})", videoPath, durationSeconds, segmentCount);
+
+        try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            List<Future<Long>> futures = new ArrayList<>(segmentCount);
+            List<SupervisedProcess> processes = new CopyOnWriteArrayList<>();
+            SegmentProgressAggregator progress = new SegmentProgressAggregator(segmentCount, durationSeconds, startTime,
+                    progressListener);
+            for (int i = 0; i < segmentCount; i++) {
+                long startSample = totalSamples * i / segmentCount;
+                // 最后一段不限长度，读到文件结尾，避免探测时长与实际音频长度的误差丢失尾部
+                long endSample = i == segmentCount - 1 ? -1 : totalSamples * (i + 1) / segmentCount;
+                int index = i;
+                double segmentSeconds = PcmFormat.samplesToSeconds(
+                        (endSample < 0 ? totalSamples : endSample) - startSample);
+                futures.add(segmentExecutor.submit(() -> extractSegment(videoPath, index, startSample, endSample,
+                        segmentSeconds, channel, processes, progress)));
+            }
+
+            long dataBytes = 0;
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    long written = futures.get(i).get();
+                    if (i == futures.size() - 1) {
+                        long lastStart = totalSamples * i / segmentCount;
+                        dataBytes = (lastStart * PcmFormat.BYTES_PER_SAMPLE) + written;
+                    }
+                }
+            } catch (ExecutionException e) {
+                cancelAll(futures, processes);
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause
+                        : new IOException(cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                cancelAll(futures, processes);
+                Thread.currentThread().interrupt();
+                throw new IOException("分段音频提取被中断", e);
+            }
+
+            WavHeader.write(channel, dataBytes);
+            channel.truncate(WavHeader.SIZE + dataBytes);
+
+            long samples = dataBytes / PcmFormat.BYTES_PER_SAMPLE;
+            log.info("分段并行提取完成: {} (样本数: {}, 耗时 {}ms)", outputPath, samples,
+                    System.currentTimeMillis() - startTime);
+            return samples;
+        }
+    }
+
+    /**
+     * 提取一段音频并写入输出文件的对应位置
+     *
+     * @param endSample      结束样本（不含），-1 表示读到结尾
+     * @param segmentSeconds 本段预计时长，用于计算超时
+     * @return 本段写入的字节数
+     */
+    private long extractSegment(String videoPath, int index, long startSample, long endSample,
+            double segmentSeconds, FileChannel channel, List<SupervisedProcess> processes,
+            SegmentProgressAggregator progress) throws IOException {
+        List<String> args = new ArrayList<>();
+        double startSeconds = PcmFormat.samplesToSeconds(startSample);
+        long maxBytes = endSample < 0 ? Long.MAX_VALUE : (endSample - startSample) * PcmFormat.BYTES_PER_SAMPLE;
+
+        SupervisedProcess process = processSupervisor.start("extract-segment-" + index,
+                processSupervisor.timeoutFor(segmentSeconds), segmentSeconds,
+                threads -> {
+                    args.add(ffmpegConfig.getFFmpegPath());
+                    args.add("-hide_banner");
+                    args.add("-nostdin");
+                    Collections.addAll(args, FFmpegProcessSupervisor.PROGRESS_ARGS);
+                    args.add("-threads");
+                    args.add(String.valueOf(threads));
+                    if (startSample > 0) {
+                        args.add("-ss");
+                        args.add(formatSeconds(startSeconds));
+                    }
+                    args.add("-i");
+                    args.add(videoPath);
+                    if (endSample >= 0) {
+                        // 多解码少许，超出部分在写入时截掉，保证分段之间没有空隙
+                        args.add("-t");
+                        args.add(formatSeconds(PcmFormat.samplesToSeconds(endSample - startSample) + 0.1));
+                    }
+                    args.add("-vn");
+                    args.add("-f");
+                    args.add(PcmFormat.FFMPEG_FORMAT);
+                    args.add("-acodec");
+                    args.add(PcmFormat.FFMPEG_CODEC);
+                    args.add("-ac");
+                    args.add(String.valueOf(PcmFormat.CHANNELS));
+                    args.add("-ar");
+                    args.add(String.valueOf(PcmFormat.SAMPLE_RATE));
+                    args.add("pipe:1");
+                    return args;
+                },
+                null, segmentProgress -> progress.update(index, segmentProgress));
+        processes.add(process);
+
+        long basePosition = WavHeader.SIZE + startSample * PcmFormat.BYTES_PER_SAMPLE;
+        long written = 0;
+        try (InputStream in = process.getInputStream()) {
+            byte[] array = new byte[READ_BUFFER_BYTES];
+            int read;
+            while ((read = in.read(array)) != -1) {
+                // 超出本段范围的数据继续读取但丢弃，让 ffmpeg 正常结束
+                int usable = (int) Math.min(read, maxBytes - written);
+                if (usable > 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(array, 0, usable);
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, basePosition + written);
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            // 等错误输出读完，保证最后的进度回调在本段返回前送达
+            process.awaitErrorOutput();
+            if (process.isTimedOut() || exitCode != 0) {
+                throw new IOException("分段 " + index + " 提取失败"
+                        + (process.isTimedOut() ? "（超时）" : " (退出码: " + exitCode + ")")
+                        + ": " + process.getErrorOutput());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分段 " + index + " 提取被中断", e);
+        } finally {
+            process.destroy();
+        }
+
+        // 中间分段解码不足时补静音，保证后续分段的样本位置不变
+        if (endSample >= 0 && written < maxBytes) {
+            log.debug("分段 {} 实际样本不足，补齐 {} 字节静音", index, maxBytes - written);
+            ByteBuffer silence = ByteBuffer.allocate((int) Math.min(maxBytes - written, READ_BUFFER_BYTES));
+            while (written < maxBytes) {
+                silence.clear();
+                silence.limit((int) Math.min(silence.capacity(), maxBytes - written));
+                written += channel.write(silence, basePosition + written);
+            }
+        }
+
+        log.debug("分段 {} 完成: 起始样本={}, 字节数={}, 耗时 {}ms", index, startSample, written,
+                process.getElapsedMs());
+        return written;
+    }
+
+    /**
+     * 某一段失败时结束其余分段：阻塞在管道读取上的线程无法被中断，需要直接结束 ffmpeg 进程
+     */
+    private void cancelAll(List<Future<Long>> futures, List<SupervisedProcess> processes) {
+        for (Future<Long> future : futures) {
+            future.cancel(true);
+        }
+        for (SupervisedProcess process : processes) {
+            process.destroy();
+        }
+    }
+
+    private static String formatSeconds(double seconds) {
+        return String.format(Locale.ROOT, "%.6f", seconds);
+    }
+}
@@ -0,0 +1,428 @@
+package com.video.media;
+
+import com.video.config.FFmpegCapabilities;
+import com.video.config.FFmpegCapabilityRegistry;
+import com.video.config.FFmpegConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * 字幕烧录编码器
+ * 用 subtitles 滤镜把 SRT 渲染进画面。长视频在关键帧处切成若干段，各段视频由独立的 ffmpeg 进程并行编码，
+ * 最后用 concat 分离器拼接视频段（不重新编码），并从原文件复制音频。
+ * <p>
+ * 分段从关键帧开始解码，段内时间戳从 0 开始；滤镜链先用 setpts 把时间戳平移回原始时间轴再叠加字幕，
+ * 之后再归零，保证字幕与原视频时间一致。
+ */
+@Component
+public class SegmentedVideoEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedVideoEncoder.class);
+
+    /** libx264/libx265 支持的编码预设 */
+    public static final List<String> PRESETS = Collections.unmodifiableList(Arrays.asList(
+            "ultrafast", "superfast", "veryfast", "faster", "fast", "medium", "slow", "slower", "veryslow"));
+
+    /** 可以直接复制到 MP4 中的音频编码 */
+    private static final Set<String> MP4_AUDIO_CODECS = new HashSet<>(Arrays.asList(
+            "aac", "mp3", "ac3", "eac3", "alac", "opus", "flac"));
+
+    private final FFmpegConfig ffmpegConfig;
+    private final FFmpegProcessSupervisor processSupervisor;
+    private final FFmpegCapabilityRegistry capabilityRegistry;
+    private final ThreadPoolTaskExecutor segmentExecutor;
+
+    @Value("${video.render.crf:23}")
+    private int crf;
+
+    @Value("${video.render.parallel-threshold:120}")
+    private double parallelThresholdSeconds;
+
+    @Value("${video.render.parallelism:4}")
+    private int parallelism;
+
+    @Value("${video.render.min-segment-duration:30}")
+    private double minSegmentSeconds;
+
+    public SegmentedVideoEncoder(FFmpegConfig ffmpegConfig, FFmpegProcessSupervisor processSupervisor,
+            FFmpegCapabilityRegistry capabilityRegistry,
+            @Qualifier("mediaSegmentExecutor") ThreadPoolTaskExecutor segmentExecutor) {
+        this.ffmpegConfig = ffmpegConfig;
+        this.processSupervisor = processSupervisor;
+        this.capabilityRegistry = capabilityRegistry;
+        this.segmentExecutor = segmentExecutor;
+    }
+
+    /**
+     * 将字幕烧录进视频，输出 H.264 MP4
+     *
+     * @param videoPath        原视频路径
+     * @param mediaInfo        原视频的流信息
+     * @param subtitlePath     SRT 字幕路径
+     * @param outputPath       输出文件路径
+     * @param preset           编码预设（见 PRESETS）
+     * @param workDir          分段临时目录，结束后删除
+     * @param progressListener 进度监听器，可为 null
+     */
+    public void burnSubtitles(String videoPath, MediaInfo mediaInfo, String subtitlePath, Path outputPath,
+            String preset, Path workDir, FFmpegProgressListener progressListener) throws IOException {
+        FFmpegCapabilities capabilities = capabilityRegistry.getCapabilities();
+        if (!capabilities.hasFilter("subtitles")) {
+            throw new IOException("当前 FFmpeg 不支持 subtitles 滤镜（需要编译 libass）");
+        }
+        if (!PRESETS.contains(preset)) {
+            throw new IllegalArgumentException("不支持的编码预设: " + preset + "，可选: " + PRESETS);
+        }
+        String encoder = selectVideoEncoder(capabilities);
+        double duration = mediaInfo.getDuration();
+        long startTime = System.currentTimeMillis();
+
+        List<Double> boundaries = parallelism > 1 && duration >= parallelThresholdSeconds
+                ? planSegments(videoPath, duration) : Collections.singletonList(0.0);
+        log.info("开始烧录字幕: {} (时长: {}秒, 编码器: {}, 预设: {}, 分段数: {})", videoPath, duration, encoder,
+                preset, boundaries.size());
+
+        if (boundaries.size() == 1) {
+            encodeWhole(videoPath, mediaInfo, subtitlePath, outputPath, encoder, preset, progressListener);
+        } else {
+            Files.createDirectories(workDir);
+            try {
+                List<Path> segments = encodeSegments(videoPath, duration, subtitlePath, boundaries, encoder,
+                        preset, workDir, progressListener);
+                concat(videoPath, mediaInfo, segments, outputPath, workDir);
+            } finally {
+                deleteRecursively(workDir);
+            }
+        }
+        log.info("字幕烧录完成: {} (耗时 {}ms)", outputPath, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 短视频：一个进程完成烧录和音频处理
+     */
+    private void encodeWhole(String videoPath, MediaInfo mediaInfo, String subtitlePath, Path outputPath,
+            String encoder, String preset, FFmpegProgressListener progressListener) throws IOException {
+        double duration = mediaInfo.getDuration();
+        ProcessResult result = processSupervisor.run("burn-subtitles", encodeTimeout(duration), duration,
+                threads -> {
+                    List<String> args = FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                            "-hide_banner", "-nostdin",
+                            "-threads", String.valueOf(threads),
+                            "-i", videoPath,
+                            "-map", "0:v:0", "-map", "0:a:0?",
+                            "-vf", "subtitles=" + escapeFilterPath(subtitlePath));
+                    addVideoEncoderArgs(args, encoder, preset);
+                    addAudioArgs(args, mediaInfo);
+                    Collections.addAll(args, "-movflags", "+faststart", "-y", outputPath.toString());
+                    return args;
+                },
+                null, progressListener);
+        checkResult(result, "字幕烧录");
+    }
+
+    /**
+     * 按关键帧规划分段起点：目标起点均匀分布，取离目标最近的关键帧
+     *
+     * @return 各段起始时间（秒），第一段从 0 开始
+     */
+    private List<Double> planSegments(String videoPath, double duration) throws IOException {
+        int segmentCount = (int) Math.max(1, Math.min(parallelism,
+                Math.floor(duration / Math.max(1, minSegmentSeconds))));
+        if (segmentCount <= 1) {
+            return Collections.singletonList(0.0);
+        }
+
+        List<Double> keyframes = probeKeyframes(videoPath, duration);
+        List<Double> boundaries = new ArrayList<>(segmentCount);
+        boundaries.add(0.0);
+        for (int i = 1; i < segmentCount; i++) {
+            double target = duration * i / segmentCount;
+            double best = -1;
+            for (double keyframe : keyframes) {
+                if (best < 0 || Math.abs(keyframe - target) < Math.abs(best - target)) {
+                    best = keyframe;
+                }
+            }
+            // 关键帧过稀时相邻目标可能落到同一关键帧上，跳过重复和过短的分段
+            double previous = boundaries.get(boundaries.size() - 1);
+            if (best > previous + 1 && best < duration - 1) {
+                boundaries.add(best);
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * 读取视频流关键帧时间，只解复用数据包不解码
+     * 每个数据包一行输出，长视频可达数 MB，边读边过滤，只保留关键帧
+     */
+    private List<Double> probeKeyframes(String videoPath, double duration) throws IOException {
+        SupervisedProcess process = processSupervisor.start("keyframe-probe", processSupervisor.timeoutFor(duration),
+                threads -> FFmpegProcessSupervisor.command(ffmpegConfig.getFFprobePath(),
+                        "-v", "error",
+                        "-select_streams", "v:0",
+                        "-show_entries", "packet=pts_time,flags",
+                        "-of", "csv=p=0",
+                        videoPath));
+        List<Double> keyframes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma <= 0 || line.indexOf('K', comma) < 0) {
+                    continue;
+                }
+                try {
+                    keyframes.add(Double.parseDouble(line.substring(0, comma)));
+                } catch (NumberFormatException e) {
+                    // pts_time 为 N/A 的数据包
+                }
+            }
+            int exitCode = process.waitFor();
+            process.awaitErrorOutput();
+            if (process.isTimedOut() || exitCode != 0) {
+                throw new IOException("读取关键帧失败: " + process.getErrorOutput());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("读取关键帧被中断", e);
+        } finally {
+            process.destroy();
+        }
+        Collections.sort(keyframes);
+        log.debug("关键帧数: {}", keyframes.size());
+        return keyframes;
+    }
+
+    /**
+     * 并行编码各视频段（不含音频）
+     */
+    private List<Path> encodeSegments(String videoPath, double duration, String subtitlePath,
+            List<Double> boundaries, String encoder, String preset, Path workDir,
+            FFmpegProgressListener progressListener) throws IOException {
+        int segmentCount = boundaries.size();
+        // 线程预算在分段之间平分，避免先启动的分段占满所有核
+        int threadsPerSegment = Math.max(1, processSupervisor.getTotalThreads() / segmentCount);
+        SegmentProgressAggregator progress = new SegmentProgressAggregator(segmentCount, duration,
+                System.currentTimeMillis(), progressListener);
+        List<SupervisedProcess> processes = new CopyOnWriteArrayList<>();
+        List<Future<Path>> futures = new ArrayList<>(segmentCount);
+
+        for (int i = 0; i < segmentCount; i++) {
+            int index = i;
+            double start = boundaries.get(i);
+            double end = i == segmentCount - 1 ? -1 : boundaries.get(i + 1);
+            Path segmentPath = workDir.resolve(String.format("segment_%03d.mp4", i));
+            futures.add(segmentExecutor.submit(() -> {
+                encodeSegment(videoPath, index, start, end, duration, subtitlePath, encoder, preset,
+                        threadsPerSegment, segmentPath, processes, progress);
+                return segmentPath;
+            }));
+        }
+
+        List<Path> segments = new ArrayList<>(segmentCount);
+        try {
+            for (Future<Path> future : futures) {
+                segments.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures, processes);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            cancelAll(futures, processes);
+            Thread.currentThread().interrupt();
+            throw new IOException("分段编码被中断", e);
+        }
+        return segments;
+    }
+
+    /**
+     * @param end 结束时间（秒），-1 表示编码到结尾
+     */
+    private void encodeSegment(String videoPath, int index, double start, double end, double duration,
+            String subtitlePath, String encoder, String preset, int maxThreads, Path segmentPath,
+            List<SupervisedProcess> processes, SegmentProgressAggregator progress) throws IOException {
+        double length = (end < 0 ? duration : end) - start;
+        String filter = String.format(Locale.ROOT, "setpts=PTS+%.6f/TB,subtitles=%s,setpts=PTS-STARTPTS",
+                start, escapeFilterPath(subtitlePath));
+
+        SupervisedProcess process = processSupervisor.start("burn-segment-" + index, encodeTimeout(length), length,
+                threads -> {
+                    List<String> args = FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                            "-hide_banner", "-nostdin",
+                            "-threads", String.valueOf(Math.min(threads, maxThreads)));
+                    if (start > 0) {
+                        Collections.addAll(args, "-ss", formatSeconds(start));
+                    }
+                    Collections.addAll(args, "-i", videoPath);
+                    if (end >= 0) {
+                        Collections.addAll(args, "-t", formatSeconds(end - start));
+                    }
+                    Collections.addAll(args, "-map", "0:v:0", "-an", "-vf", filter);
+                    addVideoEncoderArgs(args, encoder, preset);
+                    Collections.addAll(args, "-y", segmentPath.toString());
+                    return args;
+                },
+                null, segmentProgress -> progress.update(index, segmentProgress));
+        processes.add(process);
+
+        try {
+            int exitCode = process.waitFor();
+            process.awaitErrorOutput();
+            if (process.isTimedOut() || exitCode != 0) {
+                throw new IOException("分段 " + index + " 编码失败"
+                        + (process.isTimedOut() ? "（超时）" : " (退出码: " + exitCode + ")")
+                        + ": " + process.getErrorOutput());
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("分段 " + index + " 编码被中断", e);
+        }
+        log.debug("分段 {} 编码完成: {}~{}秒, 耗时 {}ms", index, start, end < 0 ? duration : end,
+                process.getElapsedMs());
+    }
+
+    /**
+     * 拼接视频段（流复制），并从原文件取音频
+     */
+    private void concat(String videoPath, MediaInfo mediaInfo, List<Path> segments, Path outputPath, Path workDir)
+            throws IOException {
+        Path listFile = workDir.resolve("segments.txt");
+        List<String> lines = new ArrayList<>(segments.size());
+        for (Path segment : segments) {
+            lines.add("file '" + segment.toAbsolutePath().toString().replace("'", "'\\''") + "'");
+        }
+        Files.write(listFile, lines, StandardCharsets.UTF_8);
+
+        double duration = mediaInfo.getDuration();
+        ProcessResult result = processSupervisor.run("concat-segments", processSupervisor.timeoutFor(duration),
+                duration,
+                threads -> {
+                    List<String> args = FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                            "-hide_banner", "-nostdin",
+                            "-f", "concat", "-safe", "0", "-i", listFile.toString(),
+                            "-i", videoPath,
+                            "-map", "0:v:0", "-map", "1:a:0?",
+                            "-c:v", "copy");
+                    addAudioArgs(args, mediaInfo);
+                    Collections.addAll(args, "-movflags", "+faststart", "-y", outputPath.toString());
+                    return args;
+                },
+                null, null);
+        checkResult(result, "分段拼接");
+    }
+
+    /**
+     * 优先使用 libx264，没有时依次退回 libopenh264、mpeg4
+     */
+    private String selectVideoEncoder(FFmpegCapabilities capabilities) throws IOException {
+        for (String encoder : new String[] {"libx264", "libopenh264", "mpeg4"}) {
+            if (capabilities.hasEncoder(encoder)) {
+                return encoder;
+            }
+        }
+        throw new IOException("当前 FFmpeg 没有可用的视频编码器（libx264/libopenh264/mpeg4）");
+    }
+
+    private void addVideoEncoderArgs(List<String> args, String encoder, String preset) {
+        Collections.addAll(args, "-c:v", encoder, "-pix_fmt", "yuv420p");
+        if ("libx264".equals(encoder)) {
+            Collections.addAll(args, "-preset", preset, "-crf", String.valueOf(crf));
+        } else {
+            Collections.addAll(args, "-q:v", "4");
+        }
+    }
+
+    /**
+     * 音频能直接放进 MP4 时复制，否则转为 AAC
+     */
+    private void addAudioArgs(List<String> args, MediaInfo mediaInfo) {
+        MediaInfo.StreamInfo audio = mediaInfo.findStream(MediaInfo.StreamInfo.TYPE_AUDIO);
+        if (audio != null && audio.getCodec() != null && MP4_AUDIO_CODECS.contains(audio.getCodec())) {
+            Collections.addAll(args, "-c:a", "copy");
+        } else {
+            Collections.addAll(args, "-c:a", "aac", "-b:a", "128k");
+        }
+    }
+
+    /**
+     * 编码比解码慢得多，超时按媒体时长的 3 倍计算
+     */
+    private long encodeTimeout(double mediaSeconds) {
+        return processSupervisor.timeoutFor(mediaSeconds * 3);
+    }
+
+    private void checkResult(ProcessResult result, String stage) throws IOException {
+        if (!result.isSuccess()) {
+            String reason = result.isTimedOut() ? "执行超时被终止" : "退出码 " + result.getExitCode();
+            log.error("{}失败: {}\nFFmpeg输出:\n{}", stage, reason, result.getErrorOutput());
+            throw new IOException(stage + "失败: " + reason);
+        }
+    }
+
+    private void cancelAll(List<? extends Future<?>> futures, List<SupervisedProcess> processes) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+        for (SupervisedProcess process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * 滤镜参数中的文件路径转义：统一使用 / 分隔并转义冒号（Windows 盘符 C: 也需要），
+     * 整体加单引号，路径中的单引号先结束引号再转义
+     */
+    static String escapeFilterPath(String path) {
+        String escaped = path.replace('\\', '/')
+                .replace(":", "\\:")
+                .replace("'", "'\\''");
+        return "'" + escaped + "'";
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Collections.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除临时文件失败: {}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理分段目录失败: {} - {}", dir, e.getMessage());
+        }
+    }
+
+    private static String formatSeconds(double seconds) {
+        return String.format(Locale.ROOT, "%.6f", seconds);
+    }
+}
@@ -0,0 +1,58 @@
+package com.video.media;
+
+/**
+ * 一段语音区间，以原始音频时间轴上的样本位置表示（格式见 PcmFormat）
+ * 后续阶段按区间识别时，用起始时间把识别结果的时间戳换算回原始时间轴。
+ */
+public class SpeechInterval {
+
+    private final long startSample;
+    private final long endSample;
+
+    /**
+     * @param startSample 起始样本（含）
+     * @param endSample   结束样本（不含）
+     */
+    public SpeechInterval(long startSample, long endSample) {
+        this.startSample = startSample;
+        this.endSample = endSample;
+    }
+
+    public long getStartSample() {
+        return startSample;
+    }
+
+    public long getEndSample() {
+        return endSample;
+    }
+
+    public long getSampleCount() {
+        return endSample - startSample;
+    }
+
+    /**
+     * 起始时间（秒）
+     */
+    public double getStart() {
+        return PcmFormat.samplesToSeconds(startSample);
+    }
+
+    /**
+     * 结束时间（秒）
+     */
+    public double getEnd() {
+        return PcmFormat.samplesToSeconds(endSample);
+    }
+
+    /**
+     * 时长（秒）
+     */
+    public double getDuration() {
+        return PcmFormat.samplesToSeconds(endSample - startSample);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%.2fs - %.2fs]", getStart(), getEnd());
+    }
+}
@@ -0,0 +1,135 @@
+package com.video.media;
+
+import com.video.config.FFmpegConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 软字幕封装
+ * 原视频的音视频流直接复制（-c copy），字幕作为文本轨道加入，只有文件 I/O，不需要编码。
+ */
+@Component
+public class SubtitleMuxer {
+
+    private static final Logger log = LoggerFactory.getLogger(SubtitleMuxer.class);
+
+    /** 支持 mov_text 字幕轨道的容器扩展名 */
+    private static final Set<String> MOV_TEXT_CONTAINERS = new HashSet<>(Arrays.asList("mp4", "m4v", "mov"));
+
+    private final FFmpegConfig ffmpegConfig;
+    private final FFmpegProcessSupervisor processSupervisor;
+
+    public SubtitleMuxer(FFmpegConfig ffmpegConfig, FFmpegProcessSupervisor processSupervisor) {
+        this.ffmpegConfig = ffmpegConfig;
+        this.processSupervisor = processSupervisor;
+    }
+
+    /**
+     * 按原视频容器决定输出扩展名：MP4/MOV 保持原容器，其他容器（AVI、FLV、WMV 等不支持文本字幕）输出 MKV
+     */
+    public String outputExtension(String videoPath) {
+        String extension = extensionOf(videoPath);
+        return MOV_TEXT_CONTAINERS.contains(extension) ? extension : "mkv";
+    }
+
+    /**
+     * 封装字幕轨道
+     *
+     * @param videoPath        原视频路径
+     * @param duration         原视频时长（秒），用于超时和进度
+     * @param tracks           字幕轨道，第一条设为默认轨道
+     * @param outputPath       输出路径，扩展名应来自 outputExtension()
+     * @param progressListener 进度监听器，可为 null
+     */
+    public void mux(String videoPath, double duration, List<Track> tracks, Path outputPath,
+            FFmpegProgressListener progressListener) throws IOException {
+        String subtitleCodec = MOV_TEXT_CONTAINERS.contains(extensionOf(outputPath.toString())) ? "mov_text" : "srt";
+        long startTime = System.currentTimeMillis();
+
+        ProcessResult result = processSupervisor.run("mux-subtitles", processSupervisor.timeoutFor(duration),
+                duration,
+                threads -> {
+                    List<String> args = FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                            "-hide_banner", "-nostdin",
+                            "-i", videoPath);
+                    for (Track track : tracks) {
+                        Collections.addAll(args, "-f", "srt", "-i", track.getPath());
+                    }
+                    Collections.addAll(args, "-map", "0:v", "-map", "0:a?");
+                    for (int i = 0; i < tracks.size(); i++) {
+                        Collections.addAll(args, "-map", (i + 1) + ":0");
+                    }
+                    Collections.addAll(args, "-c", "copy", "-c:s", subtitleCodec);
+                    for (int i = 0; i < tracks.size(); i++) {
+                        Track track = tracks.get(i);
+                        Collections.addAll(args, "-metadata:s:s:" + i, "language=" + track.getLanguage());
+                        if (track.getTitle() != null) {
+                            Collections.addAll(args, "-metadata:s:s:" + i, "title=" + track.getTitle());
+                        }
+                        Collections.addAll(args, "-disposition:s:" + i, i == 0 ? "default" : "0");
+                    }
+                    if ("mov_text".equals(subtitleCodec)) {
+                        Collections.addAll(args, "-movflags", "+faststart");
+                    }
+                    Collections.addAll(args, "-y", outputPath.toString());
+                    return args;
+                },
+                null, progressListener);
+
+        if (!result.isSuccess()) {
+            String reason = result.isTimedOut() ? "执行超时被终止" : "退出码 " + result.getExitCode();
+            log.error("字幕封装失败: {}, {}\nFFmpeg输出:\n{}", videoPath, reason, result.getErrorOutput());
+            throw new IOException("字幕封装失败: " + reason);
+        }
+        log.info("字幕封装完成: {} (轨道数: {}, 字幕编码: {}, 耗时 {}ms)", outputPath, tracks.size(), subtitleCodec,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private static String extensionOf(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 一条字幕轨道
+     */
+    public static class Track {
+
+        private final String path;
+        private final String language;
+        private final String title;
+
+        /**
+         * @param path     SRT 文件路径
+         * @param language ISO 639-2 语言代码，例如 zho、vie
+         * @param title    轨道标题，可为 null
+         */
+        public Track(String path, String language, String title) {
+            this.path = path;
+            this.language = language;
+            this.title = title;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+}
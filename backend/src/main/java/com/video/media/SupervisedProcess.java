@@ -0,0 +1,178 @@
+package com.video.media;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 受监管的 FFmpeg/FFprobe 进程
+ * 标准输出交给调用方读取，错误输出由后台线程写入有界缓冲区；
+ * 进程结束、超时被杀或调用方主动结束时归还并发配额。
+ */
+public class SupervisedProcess {
+
+    /** 进程退出后等待错误输出读完的最长时间 */
+    private static final long ERROR_OUTPUT_DRAIN_TIMEOUT_MS = 5000;
+
+    private final long id;
+    private final String name;
+    private final Process process;
+    private final int threads;
+    private final long startTime;
+    private volatile long deadline;
+    private final OutputRingBuffer errorBuffer;
+    private final Consumer<SupervisedProcess> releaseCallback;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private volatile boolean timedOut;
+    private volatile double mediaDuration;
+    private volatile FFmpegProgressParser progressParser;
+
+    SupervisedProcess(long id, String name, Process process, int threads, long timeoutMs,
+            OutputRingBuffer errorBuffer, Consumer<SupervisedProcess> releaseCallback) {
+        this.id = id;
+        this.name = name;
+        this.process = process;
+        this.threads = threads;
+        this.startTime = System.currentTimeMillis();
+        this.deadline = startTime + timeoutMs;
+        this.errorBuffer = errorBuffer;
+        this.releaseCallback = releaseCallback;
+    }
+
+    /**
+     * 进程标准输出
+     */
+    public InputStream getInputStream() {
+        return process.getInputStream();
+    }
+
+    /**
+     * 等待进程结束并归还配额
+     *
+     * @return 退出码
+     */
+    public int waitFor() throws InterruptedException {
+        try {
+            return process.waitFor();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 在限定时间内等待进程结束
+     *
+     * @return 进程是否已结束
+     */
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean exited = process.waitFor(timeout, unit);
+        if (exited) {
+            release();
+        }
+        return exited;
+    }
+
+    /**
+     * 强制结束进程并归还配额
+     */
+    public void destroy() {
+        process.destroyForcibly();
+        release();
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public int exitValue() {
+        return process.exitValue();
+    }
+
+    /**
+     * 错误输出的最后若干行
+     */
+    public String getErrorOutput() {
+        return errorBuffer == null ? "" : errorBuffer.snapshot();
+    }
+
+    /**
+     * 重新设置超时时间（从进程启动时算起），例如运行中才得知媒体时长时
+     */
+    public void updateTimeout(long timeoutMs) {
+        this.deadline = startTime + timeoutMs;
+    }
+
+    /**
+     * 等待错误输出读取完毕，保证 getErrorOutput() 和输出监听器拿到完整内容
+     */
+    public void awaitErrorOutput() throws InterruptedException {
+        if (errorBuffer != null) {
+            errorBuffer.awaitClosed(ERROR_OUTPUT_DRAIN_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * 设置媒体时长（秒），用于计算进度比例，例如运行中解析到输入时长时
+     */
+    public void setMediaDuration(double mediaDuration) {
+        this.mediaDuration = mediaDuration;
+    }
+
+    public double getMediaDuration() {
+        return mediaDuration;
+    }
+
+    /**
+     * 最近一次 -progress 进度快照，未输出进度时为 null
+     */
+    public FFmpegProgress getLastProgress() {
+        return progressParser == null ? null : progressParser.getLastProgress();
+    }
+
+    boolean isProgressTracked() {
+        return getLastProgress() != null;
+    }
+
+    void setProgressParser(FFmpegProgressParser progressParser) {
+        this.progressParser = progressParser;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * 看门狗超时处理：杀掉进程
+     */
+    void kill() {
+        timedOut = true;
+        destroy();
+    }
+
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            releaseCallback.accept(this);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.video.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的 WAV 文件读取器（纯 Java，不启动 ffprobe）
+ * 解析 RIFF 结构中的 fmt 和 data 块，样本数据通过 FileChannel.map 映射，
+ * samples() 等方法返回的是映射内存上的视图，不复制数据。
+ * <p>
+ * 只支持 16 位 PCM，用于读取本服务自己生成的音频；任意用户媒体仍应通过 ffprobe 探测。
+ * 映射在对象被回收后才释放，不需要显式关闭。
+ */
+public final class WavFile {
+
+    private static final int RIFF = 0x46464952; // "RIFF"
+    private static final int WAVE = 0x45564157; // "WAVE"
+    private static final int FMT = 0x20746d66;  // "fmt "
+    private static final int DATA = 0x61746164; // "data"
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final Path path;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final long dataOffset;
+    private final MappedByteBuffer data;
+
+    private WavFile(Path path, int sampleRate, int channels, int bitsPerSample, long dataOffset,
+            MappedByteBuffer data) {
+        this.path = path;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.dataOffset = dataOffset;
+        this.data = data;
+    }
+
+    /**
+     * 打开并映射 WAV 文件
+     *
+     * @throws IOException 文件不是 16 位 PCM WAV 或结构损坏
+     */
+    public static WavFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != RIFF || header.getInt(8) != WAVE) {
+                throw new IOException("不是有效的 WAV 文件: " + path);
+            }
+
+            int formatTag = -1;
+            int channels = 0;
+            int sampleRate = 0;
+            int bitsPerSample = 0;
+            long position = 12;
+            ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            while (position + 8 <= fileSize) {
+                chunk.clear().limit(8);
+                readFully(channel, chunk, position);
+                int id = chunk.getInt(0);
+                long size = chunk.getInt(4) & 0xFFFFFFFFL;
+
+                if (id == FMT) {
+                    if (size < 16) {
+                        throw new IOException("WAV fmt 块长度异常: " + size);
+                    }
+                    chunk.clear().limit(16);
+                    readFully(channel, chunk, position + 8);
+                    formatTag = chunk.getShort(0) & 0xFFFF;
+                    channels = chunk.getShort(2) & 0xFFFF;
+                    sampleRate = chunk.getInt(4);
+                    bitsPerSample = chunk.getShort(14) & 0xFFFF;
+                    if (channels <= 0 || sampleRate <= 0) {
+                        throw new IOException("WAV fmt 块参数异常 (声道数: " + channels + ", 采样率: " + sampleRate
+                                + "): " + path);
+                    }
+                } else if (id == DATA) {
+                    if (formatTag < 0) {
+                        throw new IOException("WAV 文件缺少 fmt 块: " + path);
+                    }
+                    if (formatTag != FORMAT_PCM && formatTag != FORMAT_EXTENSIBLE || bitsPerSample != 16) {
+                        throw new IOException("不支持的 WAV 格式 (格式: " + formatTag + ", 位深: " + bitsPerSample
+                                + ")，仅支持 16 位 PCM");
+                    }
+                    long dataOffset = position + 8;
+                    // 写到管道等不可回写的输出时，ffmpeg 会留下 0 或 0xFFFFFFFF 的长度，以实际文件大小为准
+                    long available = fileSize - dataOffset;
+                    long dataSize = size == 0 || size > available ? available : size;
+                    int frameBytes = channels * 2;
+                    dataSize -= dataSize % frameBytes;
+                    if (dataSize > Integer.MAX_VALUE) {
+                        throw new IOException("WAV 数据过大，无法映射: " + dataSize + " 字节");
+                    }
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataSize);
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    return new WavFile(path, sampleRate, channels, bitsPerSample, dataOffset, mapped);
+                }
+                position += 8 + size + (size & 1);
+            }
+            throw new IOException("WAV 文件中未找到音频数据: " + path);
+        }
+    }
+
+    /**
+     * 全部样本数据的只读字节视图（小端，交错存放各声道）
+     */
+    public ByteBuffer data() {
+        return data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 全部样本的只读视图（交错存放各声道）
+     */
+    public ShortBuffer samples() {
+        return data().asShortBuffer();
+    }
+
+    /**
+     * 指定范围的样本视图
+     *
+     * @param startFrame 起始帧（每帧包含所有声道各一个样本）
+     * @param frameCount 帧数，超出结尾的部分被截掉
+     */
+    public ShortBuffer samples(long startFrame, long frameCount) {
+        long frames = getFrameCount();
+        long start = Math.max(0, Math.min(startFrame, frames));
+        long end = Math.max(start, Math.min(frames, start + Math.max(0, frameCount)));
+        ShortBuffer all = samples();
+        all.position((int) (start * channels));
+        all.limit((int) (end * channels));
+        return all.slice();
+    }
+
+    /**
+     * 帧数（单声道时即样本数）
+     */
+    public long getFrameCount() {
+        return data.capacity() / (channels * 2L);
+    }
+
+    /**
+     * 时长（秒）
+     */
+    public double getDuration() {
+        return sampleRate <= 0 ? 0 : (double) getFrameCount() / sampleRate;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * 样本数据在文件中的起始位置
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * 样本数据字节数
+     */
+    public long getDataSize() {
+        return data.capacity();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                throw new IOException("WAV 文件头不完整");
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.video.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 标准 44 字节 RIFF/WAVE 文件头（PCM 格式见 PcmFormat）
+ */
+public final class WavHeader {
+
+    public static final int SIZE = 44;
+
+    private WavHeader() {
+    }
+
+    /**
+     * 在文件开头写入 WAV 头
+     *
+     * @param channel   目标文件
+     * @param dataBytes PCM 数据字节数
+     */
+    public static void write(FileChannel channel, long dataBytes) throws IOException {
+        int byteRate = PcmFormat.SAMPLE_RATE * PcmFormat.CHANNELS * PcmFormat.BYTES_PER_SAMPLE;
+        ByteBuffer header = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) (36 + dataBytes));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) PcmFormat.CHANNELS);
+        header.putInt(PcmFormat.SAMPLE_RATE);
+        header.putInt(byteRate);
+        header.putShort((short) (PcmFormat.CHANNELS * PcmFormat.BYTES_PER_SAMPLE));
+        header.putShort((short) (PcmFormat.BYTES_PER_SAMPLE * 8));
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) dataBytes);
+        header.flip();
+
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+}
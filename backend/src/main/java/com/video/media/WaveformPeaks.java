@@ -0,0 +1,252 @@
+package com.video.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 多分辨率波形峰值（min/max 金字塔）
+ * 第 0 层每 BASE_SAMPLES_PER_PEAK 个样本取一对 min/max，之后每层由上一层两两合并，
+ * 直到峰值数不超过 MIN_PEAKS_PER_LEVEL。PCM 只遍历一次。
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * 头部    "WVPK" 版本(int) 采样率(int) 总样本数(long) 层数(int)
+ * 层目录  每层：每峰样本数(int) 峰值数(int) 数据偏移(long)
+ * 数据    每层连续存放 int16 (min, max) 对
+ * </pre>
+ */
+public final class WaveformPeaks {
+
+    /** 第 0 层每个峰值覆盖的样本数（16kHz 下每秒 62.5 个峰值） */
+    public static final int BASE_SAMPLES_PER_PEAK = 256;
+
+    /** 层的峰值数降到该值以下后不再生成更粗的层 */
+    private static final int MIN_PEAKS_PER_LEVEL = 512;
+
+    private static final int MAX_LEVELS = 16;
+
+    private static final int MAGIC = 0x4B505657; // "WVPK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int LEVEL_ENTRY_SIZE = 16;
+
+    /** 每个峰值占用的字节数（min、max 各一个 int16） */
+    public static final int BYTES_PER_PEAK = 4;
+
+    private final int sampleRate;
+    private final long totalSamples;
+    private final int[] samplesPerPeak;
+    private final int[] peakCounts;
+    private final long[] offsets;
+    private final MappedByteBuffer data;
+
+    private WaveformPeaks(int sampleRate, long totalSamples, int[] samplesPerPeak, int[] peakCounts, long[] offsets,
+            MappedByteBuffer data) {
+        this.sampleRate = sampleRate;
+        this.totalSamples = totalSamples;
+        this.samplesPerPeak = samplesPerPeak;
+        this.peakCounts = peakCounts;
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    /**
+     * 从单声道 WAV 计算峰值金字塔并写入文件（先写临时文件再原子替换，读取方不会看到半成品）
+     */
+    public static void generate(WavFile wav, Path output) throws IOException {
+        if (wav.getChannels() != 1) {
+            throw new IOException("波形计算需要单声道音频，实际声道数: " + wav.getChannels());
+        }
+        ShortBuffer samples = wav.samples();
+        long total = samples.remaining();
+
+        // 第 0 层：单次遍历 PCM
+        int baseCount = (int) ((total + BASE_SAMPLES_PER_PEAK - 1) / BASE_SAMPLES_PER_PEAK);
+        short[][] levels = new short[MAX_LEVELS][];
+        short[] base = new short[baseCount * 2];
+        int limit = samples.limit();
+        for (int peak = 0, start = samples.position(); start < limit; peak++, start += BASE_SAMPLES_PER_PEAK) {
+            int end = Math.min(limit, start + BASE_SAMPLES_PER_PEAK);
+            short min = Short.MAX_VALUE;
+            short max = Short.MIN_VALUE;
+            for (int i = start; i < end; i++) {
+                short sample = samples.get(i);
+                if (sample < min) {
+                    min = sample;
+                }
+                if (sample > max) {
+                    max = sample;
+                }
+            }
+            base[peak * 2] = min;
+            base[peak * 2 + 1] = max;
+        }
+        levels[0] = base;
+
+        // 更粗的层由上一层两两合并
+        int levelCount = 1;
+        while (levelCount < MAX_LEVELS && levels[levelCount - 1].length / 2 > MIN_PEAKS_PER_LEVEL) {
+            short[] previous = levels[levelCount - 1];
+            int previousCount = previous.length / 2;
+            int count = (previousCount + 1) / 2;
+            short[] level = new short[count * 2];
+            for (int i = 0; i < count; i++) {
+                int a = i * 2;
+                int b = Math.min(a + 1, previousCount - 1);
+                level[i * 2] = (short) Math.min(previous[a * 2], previous[b * 2]);
+                level[i * 2 + 1] = (short) Math.max(previous[a * 2 + 1], previous[b * 2 + 1]);
+            }
+            levels[levelCount++] = level;
+        }
+
+        write(output, wav.getSampleRate(), total, levels, levelCount);
+    }
+
+    private static void write(Path output, int sampleRate, long totalSamples, short[][] levels, int levelCount)
+            throws IOException {
+        int headerBytes = HEADER_SIZE + levelCount * LEVEL_ENTRY_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putLong(totalSamples).putInt(levelCount);
+        long offset = headerBytes;
+        for (int level = 0; level < levelCount; level++) {
+            header.putInt(BASE_SAMPLES_PER_PEAK << level);
+            header.putInt(levels[level].length / 2);
+            header.putLong(offset);
+            offset += (long) levels[level].length * 2;
+        }
+        header.flip();
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int level = 0; level < levelCount; level++) {
+                for (short value : levels[level]) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    buffer.putShort(value);
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 映射已生成的峰值文件
+     */
+    public static WaveformPeaks open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("不是有效的波形峰值文件: " + path);
+            }
+            if (data.getInt(4) != VERSION) {
+                throw new IOException("不支持的波形峰值文件版本: " + data.getInt(4));
+            }
+            int sampleRate = data.getInt(8);
+            long totalSamples = data.getLong(12);
+            int levelCount = data.getInt(20);
+            if (sampleRate <= 0 || levelCount <= 0 || levelCount > MAX_LEVELS
+                    || HEADER_SIZE + (long) levelCount * LEVEL_ENTRY_SIZE > data.capacity()) {
+                throw new IOException("波形峰值文件头损坏: " + path);
+            }
+            int[] samplesPerPeak = new int[levelCount];
+            int[] peakCounts = new int[levelCount];
+            long[] offsets = new long[levelCount];
+            for (int level = 0; level < levelCount; level++) {
+                int entry = HEADER_SIZE + level * LEVEL_ENTRY_SIZE;
+                samplesPerPeak[level] = data.getInt(entry);
+                peakCounts[level] = data.getInt(entry + 4);
+                offsets[level] = data.getLong(entry + 8);
+                if (samplesPerPeak[level] <= 0 || peakCounts[level] < 0 || offsets[level] < HEADER_SIZE
+                        || offsets[level] + (long) peakCounts[level] * BYTES_PER_PEAK > data.capacity()) {
+                    throw new IOException("波形峰值文件数据不完整: " + path);
+                }
+            }
+            return new WaveformPeaks(sampleRate, totalSamples, samplesPerPeak, peakCounts, offsets, data);
+        }
+    }
+
+    /**
+     * 取某一层中时间范围内的峰值，返回映射内存上的只读视图（int16 min/max 对，小端）
+     *
+     * @param level 层号，0 为最细
+     * @param start 起始时间（秒）
+     * @param end   结束时间（秒），小于 0 表示到结尾
+     */
+    public ByteBuffer slice(int level, double start, double end) {
+        int first = peakIndexAt(level, start);
+        int last = end < 0 ? peakCounts[level] : Math.max(first, peakIndexAt(level, end) + 1);
+        last = Math.min(last, peakCounts[level]);
+        ByteBuffer view = data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        view.position((int) (offsets[level] + (long) first * BYTES_PER_PEAK));
+        view.limit((int) (offsets[level] + (long) last * BYTES_PER_PEAK));
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 时间点所在的峰值序号
+     */
+    public int peakIndexAt(int level, double seconds) {
+        long sample = (long) (Math.max(0, seconds) * sampleRate);
+        return (int) Math.min(peakCounts[level], sample / samplesPerPeak[level]);
+    }
+
+    /**
+     * 选择峰值密度不低于目标（每秒峰值数）的最粗一层，用于按前端缩放比例挑选
+     */
+    public int levelForPeaksPerSecond(double peaksPerSecond) {
+        int chosen = 0;
+        for (int level = 0; level < samplesPerPeak.length; level++) {
+            if ((double) sampleRate / samplesPerPeak[level] >= peaksPerSecond) {
+                chosen = level;
+            }
+        }
+        return chosen;
+    }
+
+    public int getLevelCount() {
+        return samplesPerPeak.length;
+    }
+
+    public int getSamplesPerPeak(int level) {
+        return samplesPerPeak[level];
+    }
+
+    public int getPeakCount(int level) {
+        return peakCounts[level];
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public double getDuration() {
+        return sampleRate <= 0 ? 0 : (double) totalSamples / sampleRate;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.video.model;
+
+import java.util.List;
+
+/**
+ * 任务列表分页结果（按创建时间倒序）
+ */
+public class TaskPage<T> {
+
+    private List<T> items;
+    private String nextCursor; // 下一页的游标，没有更多任务时为空
+    private Long total; // 符合过滤条件的任务总数
+    private Long version; // 返回时已发布的最大快照版本，之后用 sinceVersion 增量查询
+
+    public TaskPage() {
+    }
+
+    public TaskPage(List<T> items, String nextCursor, Long total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
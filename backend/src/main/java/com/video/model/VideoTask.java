@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 
 /**
  * 视频任务实体
+ * 服务中保存和对外返回的是任务快照：每次修改都复制一份新快照并整体替换，已发布的快照不再修改。
  */
 public class VideoTask {
     
@@ -12,14 +13,44 @@ public class VideoTask {
     private String filePath;
     private String originalName;
     private Long fileSize;
+    private String contentHash; // 文件内容的 SHA-256
+    private Long sourceTaskId; // 内容相同、复用其处理结果的任务
     private String status; // UPLOADING, PROCESSING, COMPLETED, FAILED
     private Integer progress;
     private String currentStep;
     private String subtitlePath;
     private String outputPath;
+    private String encoderPreset; // 烧录字幕时的编码预设，为空时使用配置的默认值
     private String errorMessage;
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
+    private Long version; // 快照版本号，每次修改递增，所有任务共用一个序列
+    
+    public VideoTask() {
+    }
+    
+    /**
+     * 复制一份快照，用于在其基础上修改
+     */
+    public VideoTask(VideoTask other) {
+        this.id = other.id;
+        this.fileName = other.fileName;
+        this.filePath = other.filePath;
+        this.originalName = other.originalName;
+        this.fileSize = other.fileSize;
+        this.contentHash = other.contentHash;
+        this.sourceTaskId = other.sourceTaskId;
+        this.status = other.status;
+        this.progress = other.progress;
+        this.currentStep = other.currentStep;
+        this.subtitlePath = other.subtitlePath;
+        this.outputPath = other.outputPath;
+        this.encoderPreset = other.encoderPreset;
+        this.errorMessage = other.errorMessage;
+        this.createTime = other.createTime;
+        this.updateTime = other.updateTime;
+        this.version = other.version;
+    }
     
     // Getters and Setters
     public Long getId() {
@@ -62,6 +93,22 @@ public class VideoTask {
         this.fileSize = fileSize;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public Long getSourceTaskId() {
+        return sourceTaskId;
+    }
+    
+    public void setSourceTaskId(Long sourceTaskId) {
+        this.sourceTaskId = sourceTaskId;
+    }
+    
     public String getStatus() {
         return status;
     }
@@ -102,6 +149,14 @@ public class VideoTask {
         this.outputPath = outputPath;
     }
     
+    public String getEncoderPreset() {
+        return encoderPreset;
+    }
+    
+    public void setEncoderPreset(String encoderPreset) {
+        this.encoderPreset = encoderPreset;
+    }
+    
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -125,4 +180,12 @@ public class VideoTask {
     public void setUpdateTime(LocalDateTime updateTime) {
         this.updateTime = updateTime;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 } 
\ No newline at end of file
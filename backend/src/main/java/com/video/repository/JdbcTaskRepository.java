@@ -0,0 +1,337 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 JDBC 的任务持久化（video_tasks 表）
+ * 任务状态在处理过程中更新很频繁（音频提取进度每 1% 一次），逐条同步写库会拖慢处理线程。
+ * 这里按任务 ID 合并待写入的变更，后台线程定期把它们用批量 UPDATE 写入，更新不到的行再批量 INSERT。
+ * 合并时保存的是任务对象本身，写入时读取其最新字段。
+ * <p>
+ * 整批写入失败时：连接类的暂时性错误把整批放回队列等下次刷新；其他错误逐条重试找出出错的行，
+ * 违反约束的行（数据本身不合法，重试也不会成功）记录日志后丢弃，其余出错的行在同一轮有其他行写入成功
+ * （数据库可用）时计入失败次数，超过 max-attempts 后丢弃，不会让一条坏数据永远占着队列。
+ */
+@Repository
+@ConditionalOnProperty(name = "task.store.type", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcTaskRepository implements TaskRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcTaskRepository.class);
+
+    private static final String COLUMNS = "file_name, file_path, original_name, file_size, content_hash, "
+            + "source_task_id, status, progress, current_step, subtitle_path, output_path, encoder_preset, "
+            + "error_message, create_time, update_time";
+
+    private static final String SELECT_SQL = "SELECT id, " + COLUMNS + " FROM video_tasks";
+
+    private static final String UPDATE_SQL = "UPDATE video_tasks SET file_name = ?, file_path = ?, "
+            + "original_name = ?, file_size = ?, content_hash = ?, source_task_id = ?, status = ?, progress = ?, "
+            + "current_step = ?, subtitle_path = ?, output_path = ?, encoder_preset = ?, error_message = ?, "
+            + "create_time = ?, update_time = ? WHERE id = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO video_tasks (" + COLUMNS + ", id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** 各有界列的列宽（字符数，见 database_schema.sql） */
+    private static final int FILE_NAME_LENGTH = 255;
+    private static final int FILE_PATH_LENGTH = 500;
+    private static final int CONTENT_HASH_LENGTH = 64;
+    private static final int STATUS_LENGTH = 20;
+    private static final int CURRENT_STEP_LENGTH = 100;
+    private static final int ENCODER_PRESET_LENGTH = 20;
+    /** error_message 是 TEXT（65535 字节），utf8mb4 每个字符最多 4 字节 */
+    private static final int ERROR_MESSAGE_LENGTH = 65535 / 4;
+
+    private static final RowMapper<VideoTask> ROW_MAPPER = (rs, rowNum) -> {
+        VideoTask task = new VideoTask();
+        task.setId(rs.getLong("id"));
+        task.setFileName(rs.getString("file_name"));
+        task.setFilePath(emptyToNull(rs.getString("file_path")));
+        task.setOriginalName(rs.getString("original_name"));
+        task.setFileSize(rs.getLong("file_size"));
+        task.setContentHash(rs.getString("content_hash"));
+        long sourceTaskId = rs.getLong("source_task_id");
+        task.setSourceTaskId(rs.wasNull() ? null : sourceTaskId);
+        task.setStatus(rs.getString("status"));
+        task.setProgress(rs.getInt("progress"));
+        task.setCurrentStep(rs.getString("current_step"));
+        task.setSubtitlePath(rs.getString("subtitle_path"));
+        task.setOutputPath(rs.getString("output_path"));
+        task.setEncoderPreset(rs.getString("encoder_preset"));
+        task.setErrorMessage(rs.getString("error_message"));
+        task.setCreateTime(toLocalDateTime(rs.getTimestamp("create_time")));
+        task.setUpdateTime(toLocalDateTime(rs.getTimestamp("update_time")));
+        return task;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** 待写入的任务，按 ID 合并 */
+    private final Map<Long, VideoTask> pending = new ConcurrentHashMap<>();
+
+    /** 任务 ID -> 连续写入失败的次数，只在刷新线程中访问 */
+    private final Map<Long, Integer> failures = new HashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    @Value("${task.store.flush-interval:200}")
+    private long flushIntervalMs;
+
+    @Value("${task.store.batch-size:500}")
+    private int batchSize;
+
+    @Value("${task.store.max-attempts:5}")
+    private int maxAttempts;
+
+    public JdbcTaskRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TaskStoreFlusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("任务持久化已启用: 刷新间隔 {}ms, 批量大小 {}", flushIntervalMs, batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    @Override
+    public List<VideoTask> findAll() {
+        return jdbcTemplate.query(SELECT_SQL + " ORDER BY id", ROW_MAPPER);
+    }
+
+    @Override
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM video_tasks", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    @Override
+    public void save(VideoTask task) {
+        pending.put(task.getId(), task);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<VideoTask> batch = new ArrayList<>();
+        for (Long id : pending.keySet()) {
+            VideoTask task = pending.remove(id);
+            if (task != null) {
+                batch.add(task);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        int written = 0;
+        List<VideoTask> failed = new ArrayList<>();
+        RuntimeException error = null;
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<VideoTask> chunk = batch.subList(from, Math.min(batch.size(), from + batchSize));
+            if (error != null && isTransient(error)) {
+                failed.addAll(chunk);
+                continue;
+            }
+            try {
+                write(chunk);
+                written += chunk.size();
+                succeeded(chunk);
+            } catch (RuntimeException e) {
+                error = e;
+                if (isTransient(e)) {
+                    // 数据库暂时不可用，剩余的批次不再尝试
+                    failed.addAll(chunk);
+                    continue;
+                }
+                // 逐条重试，找出出错的行
+                for (VideoTask task : chunk) {
+                    try {
+                        write(Collections.singletonList(task));
+                        written++;
+                        succeeded(Collections.singletonList(task));
+                    } catch (DataIntegrityViolationException rowError) {
+                        discard(task, rowError);
+                    } catch (RuntimeException rowError) {
+                        failed.add(task);
+                        error = rowError;
+                    }
+                }
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            // 同一轮有其他行写入成功说明数据库可用，失败与这些行本身有关，计入失败次数
+            boolean rowSpecific = written > 0;
+            for (VideoTask task : failed) {
+                int attempts = rowSpecific ? failures.merge(task.getId(), 1, Integer::sum) : 0;
+                if (attempts >= maxAttempts) {
+                    discard(task, error);
+                } else {
+                    // 放回队列，期间有更新的以更新后的为准
+                    pending.putIfAbsent(task.getId(), task);
+                }
+            }
+            throw error;
+        }
+        log.debug("任务批量写入完成: {} 条, 耗时 {}ms", batch.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void succeeded(List<VideoTask> tasks) {
+        if (!failures.isEmpty()) {
+            for (VideoTask task : tasks) {
+                failures.remove(task.getId());
+            }
+        }
+    }
+
+    /**
+     * 丢弃无法写入的变更；期间有新的变更时仍会在下次刷新时写入
+     */
+    private void discard(VideoTask task, RuntimeException e) {
+        failures.remove(task.getId());
+        log.error("任务 {} 无法写入数据库，丢弃本次变更 (状态: {}, 步骤: {}): {}", task.getId(), task.getStatus(),
+                task.getCurrentStep(), e.getMessage());
+    }
+
+    /**
+     * 连接失败、超时等与具体数据无关的错误
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException
+                || e instanceof RecoverableDataAccessException;
+    }
+
+    private void write(List<VideoTask> tasks) {
+        List<Object[]> updates = new ArrayList<>(tasks.size());
+        for (VideoTask task : tasks) {
+            updates.add(toParameters(task));
+        }
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                inserts.add(updates.get(i));
+            } else if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // 驱动改写批量语句时不返回每条的影响行数，无法区分新建和更新，逐条确认
+                if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM video_tasks WHERE id = ?", Integer.class,
+                        tasks.get(i).getId()) == 0) {
+                    inserts.add(updates.get(i));
+                }
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("任务批量写入失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * UPDATE 和 INSERT 共用的参数顺序：各列，最后是 id
+     * 文件名、步骤说明、错误信息这类展示用的文本超长时截断；路径、哈希、状态截断后就不再有意义，超长时拒绝写入
+     */
+    private static Object[] toParameters(VideoTask task) {
+        return new Object[]{
+                abbreviate(nullToEmpty(task.getFileName()), FILE_NAME_LENGTH),
+                checkLength("file_path", nullToEmpty(task.getFilePath()), FILE_PATH_LENGTH),
+                abbreviate(nullToEmpty(task.getOriginalName()), FILE_NAME_LENGTH),
+                task.getFileSize() == null ? 0L : task.getFileSize(),
+                checkLength("content_hash", task.getContentHash(), CONTENT_HASH_LENGTH),
+                task.getSourceTaskId(),
+                checkLength("status", task.getStatus(), STATUS_LENGTH),
+                task.getProgress(),
+                abbreviate(task.getCurrentStep(), CURRENT_STEP_LENGTH),
+                checkLength("subtitle_path", task.getSubtitlePath(), FILE_PATH_LENGTH),
+                checkLength("output_path", task.getOutputPath(), FILE_PATH_LENGTH),
+                checkLength("encoder_preset", task.getEncoderPreset(), ENCODER_PRESET_LENGTH),
+                abbreviate(task.getErrorMessage(), ERROR_MESSAGE_LENGTH),
+                toTimestamp(task.getCreateTime()),
+                toTimestamp(task.getUpdateTime()),
+                task.getId()
+        };
+    }
+
+    private static String abbreviate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        int end = maxLength - 1;
+        if (Character.isHighSurrogate(value.charAt(end - 1))) {
+            // 不拆开代理对
+            end--;
+        }
+        return value.substring(0, end) + "…";
+    }
+
+    private static String checkLength(String column, String value, int maxLength) {
+        if (value != null && value.length() > maxLength) {
+            throw new DataIntegrityViolationException(column + " 超出列宽 " + maxLength + ": " + value.length());
+        }
+        return value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,437 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于本地追加日志的任务持久化，用于没有数据库的单机部署（task.store.type=journal）
+ * <p>
+ * 任务的每次变更以完整记录（带 CRC32 校验，见 {@link TaskRecordCodec}）追加到当前日志段。
+ * 和 JDBC 实现一样按任务合并待写入的变更，后台线程定期把一批记录一次写入并只做一次 fsync（组提交）。
+ * 日志段超过阈值后切换到新段，并在后台把全部任务的最新状态写成快照，快照落盘后删除它覆盖的旧日志段。
+ * <p>
+ * 内存中只保留每个任务最新一条记录的编码，不持有 VideoTask 对象，写快照时原样写出。
+ * <p>
+ * 启动时映射快照和之后的日志段顺序重放，后写入的记录覆盖先写入的。
+ * 日志段末尾不完整或校验失败的记录（写入时崩溃）被忽略，新的写入总是从新的日志段开始。
+ */
+@Repository
+@ConditionalOnProperty(name = "task.store.type", havingValue = "journal")
+public class JournalTaskRepository implements TaskRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalTaskRepository.class);
+
+    private static final int SEGMENT_MAGIC = 0x4C4E4A54; // "TJNL"
+    private static final int SNAPSHOT_MAGIC = 0x504E5354; // "TSNP"
+    private static final int VERSION = 1;
+
+    /** 日志段头：magic(int) 版本(int) 段序号(long) */
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    /** 快照头：magic(int) 版本(int) 覆盖到的段序号(long) 任务数(long) */
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+
+    private static final String SNAPSHOT_FILE = "tasks.snapshot";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+
+    /** 写快照时每攒够这么多字节写一次文件 */
+    private static final int SNAPSHOT_WRITE_CHUNK = 1024 * 1024;
+
+    /** 已写入的任务最新状态（完整记录的编码），用于生成快照 */
+    private final Map<Long, byte[]> tasks = new ConcurrentHashMap<>();
+
+    /** 待写入的任务，按 ID 合并 */
+    private final Map<Long, VideoTask> pending = new ConcurrentHashMap<>();
+
+    private final TaskRecordCodec.RecordBuffer buffer = new TaskRecordCodec.RecordBuffer(64 * 1024);
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean(false);
+
+    private Path directory;
+    private FileChannel segment;
+    private long segmentSeq;
+    private long bytesSinceSnapshot;
+
+    private ScheduledExecutorService flusher;
+    private ExecutorService snapshotWriter;
+
+    @Value("${task.store.journal.path:./journal/}")
+    private String journalPath;
+
+    @Value("${task.store.flush-interval:200}")
+    private long flushIntervalMs;
+
+    @Value("${task.store.journal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${task.store.journal.snapshot-threshold:67108864}")
+    private long snapshotThreshold;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(journalPath);
+        Files.createDirectories(directory);
+        long lastSeq = recover();
+        openSegment(lastSeq + 1);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("TaskJournalFlusher"));
+        snapshotWriter = Executors.newSingleThreadExecutor(daemonThreads("TaskJournalSnapshot"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("任务日志已启用: {}, 刷新间隔 {}ms, fsync {}, 快照阈值 {} 字节",
+                directory.toAbsolutePath(), flushIntervalMs, fsync, snapshotThreshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+    }
+
+    @Override
+    public List<VideoTask> findAll() {
+        List<VideoTask> result = new ArrayList<>(tasks.size());
+        TaskRecordCodec.Reader reader = new TaskRecordCodec.Reader();
+        for (byte[] record : tasks.values()) {
+            VideoTask task = reader.read(record);
+            if (task == null) {
+                log.warn("任务记录无法解析，已跳过: {}", TaskRecordCodec.taskId(record));
+                continue;
+            }
+            result.add(task);
+        }
+        result.sort(Comparator.comparing(VideoTask::getId));
+        return result;
+    }
+
+    @Override
+    public long findMaxId() {
+        long maxId = 0;
+        for (Long id : tasks.keySet()) {
+            maxId = Math.max(maxId, id);
+        }
+        return maxId;
+    }
+
+    @Override
+    public void save(VideoTask task) {
+        pending.put(task.getId(), task);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<VideoTask> batch = new ArrayList<>();
+        for (Long id : pending.keySet()) {
+            VideoTask task = pending.remove(id);
+            if (task != null) {
+                batch.add(task);
+            }
+        }
+
+        buffer.reset();
+        int[] offsets = new int[batch.size() + 1];
+        for (int i = 0; i < batch.size(); i++) {
+            offsets[i] = buffer.size();
+            TaskRecordCodec.append(buffer, batch.get(i));
+        }
+        offsets[batch.size()] = buffer.size();
+        try {
+            append(buffer.asByteBuffer());
+        } catch (IOException e) {
+            // 写入失败的任务放回队列，期间有更新的以更新后的为准
+            for (VideoTask task : batch) {
+                pending.putIfAbsent(task.getId(), task);
+            }
+            throw new RuntimeException("任务日志写入失败: " + e.getMessage(), e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            tasks.put(batch.get(i).getId(), Arrays.copyOfRange(buffer.buffer(), offsets[i], offsets[i + 1]));
+        }
+        bytesSinceSnapshot += buffer.size();
+        if (bytesSinceSnapshot >= snapshotThreshold && snapshotRunning.compareAndSet(false, true)) {
+            startSnapshot();
+        }
+    }
+
+    /**
+     * 一批记录一次写入、一次 fsync；写入失败时截掉写了一半的数据，截不掉就换新的日志段，
+     * 保证之后的记录不会排在损坏的记录后面
+     */
+    private void append(ByteBuffer records) throws IOException {
+        if (segment == null) {
+            openSegment(segmentSeq + 1);
+        }
+        long position = segment.position();
+        try {
+            while (records.hasRemaining()) {
+                segment.write(records);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                segment.truncate(position);
+                segment.position(position);
+            } catch (IOException truncateError) {
+                log.warn("任务日志段截断失败，切换到新日志段: {}", truncateError.getMessage());
+                closeSegment();
+                openSegment(segmentSeq + 1);
+            }
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("任务日志写入失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 切换日志段，并在后台把当前所有任务写成快照
+     * 调用时持有写入锁：此刻 tasks 恰好包含旧日志段（及更早的段）中的全部记录
+     */
+    private void startSnapshot() {
+        long coveredSeq = segmentSeq;
+        try {
+            closeSegment();
+            openSegment(coveredSeq + 1);
+        } catch (IOException e) {
+            snapshotRunning.set(false);
+            throw new RuntimeException("任务日志段切换失败: " + e.getMessage(), e);
+        }
+        bytesSinceSnapshot = 0;
+        List<byte[]> snapshot = new ArrayList<>(tasks.values());
+        snapshotWriter.execute(() -> {
+            try {
+                writeSnapshot(snapshot, coveredSeq);
+            } catch (Exception e) {
+                log.error("任务快照写入失败，保留日志段: {}", e.getMessage());
+            } finally {
+                snapshotRunning.set(false);
+            }
+        });
+    }
+
+    private void writeSnapshot(List<byte[]> snapshot, long coveredSeq) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        TaskRecordCodec.RecordBuffer out = new TaskRecordCodec.RecordBuffer(SNAPSHOT_WRITE_CHUNK + 64 * 1024);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(coveredSeq).putLong(snapshot.size());
+            header.flip();
+            writeFully(channel, header);
+            for (byte[] record : snapshot) {
+                out.write(record, 0, record.length);
+                if (out.size() >= SNAPSHOT_WRITE_CHUNK) {
+                    writeFully(channel, out.asByteBuffer());
+                    out.reset();
+                }
+            }
+            writeFully(channel, out.asByteBuffer());
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        int deleted = 0;
+        for (long seq : listSegments()) {
+            if (seq <= coveredSeq) {
+                Files.deleteIfExists(segmentPath(seq));
+                deleted++;
+            }
+        }
+        log.info("任务快照已写入: {} 个任务, 删除 {} 个旧日志段, 耗时 {}ms",
+                snapshot.size(), deleted, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 加载快照并重放之后的日志段
+     *
+     * @return 已存在的最大日志段序号
+     */
+    private long recover() throws IOException {
+        long startTime = System.currentTimeMillis();
+        long coveredSeq = 0;
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotPath)) {
+            coveredSeq = loadSnapshot(snapshotPath);
+        }
+        long lastSeq = coveredSeq;
+        long records = 0;
+        for (long seq : listSegments()) {
+            lastSeq = Math.max(lastSeq, seq);
+            if (seq > coveredSeq) {
+                records += replaySegment(segmentPath(seq));
+            }
+        }
+        log.info("任务日志恢复完成: {} 个任务, 重放 {} 条日志记录, 耗时 {}ms",
+                tasks.size(), records, System.currentTimeMillis() - startTime);
+        return lastSeq;
+    }
+
+    private long loadSnapshot(Path path) throws IOException {
+        ByteBuffer data = map(path);
+        if (data.remaining() < SNAPSHOT_HEADER_SIZE || data.getInt(0) != SNAPSHOT_MAGIC) {
+            throw new IOException("不是有效的任务快照文件: " + path);
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("不支持的任务快照版本: " + data.getInt(4));
+        }
+        long coveredSeq = data.getLong(8);
+        long count = data.getLong(16);
+        data.position(SNAPSHOT_HEADER_SIZE);
+        long loaded = 0;
+        TaskRecordCodec.Reader reader = new TaskRecordCodec.Reader();
+        byte[] record;
+        while ((record = reader.readRaw(data)) != null) {
+            tasks.put(TaskRecordCodec.taskId(record), record);
+            loaded++;
+        }
+        // 快照是写完后原子替换的，记录数对不上说明文件已损坏，此时旧日志段已删除，不能继续启动
+        if (loaded != count || data.hasRemaining()) {
+            throw new IOException("任务快照已损坏: " + path + ", 应有 " + count + " 条记录, 读取到 " + loaded + " 条");
+        }
+        return coveredSeq;
+    }
+
+    private long replaySegment(Path path) throws IOException {
+        ByteBuffer data = map(path);
+        if (data.remaining() < SEGMENT_HEADER_SIZE || data.getInt(0) != SEGMENT_MAGIC || data.getInt(4) != VERSION) {
+            log.warn("忽略无效的任务日志段: {}", path);
+            return 0;
+        }
+        data.position(SEGMENT_HEADER_SIZE);
+        long records = 0;
+        TaskRecordCodec.Reader reader = new TaskRecordCodec.Reader();
+        byte[] record;
+        while ((record = reader.readRaw(data)) != null) {
+            tasks.put(TaskRecordCodec.taskId(record), record);
+            records++;
+        }
+        if (data.hasRemaining()) {
+            log.warn("任务日志段 {} 在偏移 {} 处记录不完整或校验失败，忽略之后的 {} 字节",
+                    path.getFileName(), data.position(), data.remaining());
+        }
+        return records;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("任务日志文件过大: " + path);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            return data;
+        }
+    }
+
+    private void openSegment(long seq) throws IOException {
+        Path path = segmentPath(seq);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(SEGMENT_MAGIC).putInt(VERSION).putLong(seq);
+        header.flip();
+        writeFully(channel, header);
+        channel.force(true);
+        segment = channel;
+        segmentSeq = seq;
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("关闭任务日志段失败: {}", e.getMessage());
+        }
+        segment = null;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path path : stream) {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    result.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private Path segmentPath(long seq) {
+        return directory.resolve(String.format("journal-%016d.log", seq));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
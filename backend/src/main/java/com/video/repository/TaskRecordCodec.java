@@ -0,0 +1,323 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 任务记录的二进制编码，任务日志和快照共用
+ * <p>
+ * 记录格式（小端）：
+ * <pre>
+ * 长度(int) CRC32(int) 内容
+ * 内容 = 类型(byte) 任务ID(long) 非空标记(int) 数值字段 字符串字段
+ * </pre>
+ * 字符串为 长度(int，-1 表示 null) + UTF-8 字节。每条记录都是任务的完整状态，重放时后写入的覆盖先写入的。
+ */
+final class TaskRecordCodec {
+
+    /** 记录头：长度 + CRC32 */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /** 单条记录内容的上限，超出视为数据损坏 */
+    static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    static final byte TYPE_PUT = 1;
+
+    private static final int HAS_FILE_SIZE = 1;
+    private static final int HAS_SOURCE_TASK_ID = 1 << 1;
+    private static final int HAS_PROGRESS = 1 << 2;
+    private static final int HAS_CREATE_TIME = 1 << 3;
+    private static final int HAS_UPDATE_TIME = 1 << 4;
+
+    private TaskRecordCodec() {
+    }
+
+    /**
+     * 追加一条完整记录（含长度和校验）
+     */
+    static void append(RecordBuffer out, VideoTask task) {
+        int start = out.size();
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(TYPE_PUT);
+        out.writeLong(task.getId());
+        int flags = (task.getFileSize() != null ? HAS_FILE_SIZE : 0)
+                | (task.getSourceTaskId() != null ? HAS_SOURCE_TASK_ID : 0)
+                | (task.getProgress() != null ? HAS_PROGRESS : 0)
+                | (task.getCreateTime() != null ? HAS_CREATE_TIME : 0)
+                | (task.getUpdateTime() != null ? HAS_UPDATE_TIME : 0);
+        out.writeInt(flags);
+        if (task.getFileSize() != null) {
+            out.writeLong(task.getFileSize());
+        }
+        if (task.getSourceTaskId() != null) {
+            out.writeLong(task.getSourceTaskId());
+        }
+        if (task.getProgress() != null) {
+            out.writeInt(task.getProgress());
+        }
+        if (task.getCreateTime() != null) {
+            writeTime(out, task.getCreateTime());
+        }
+        if (task.getUpdateTime() != null) {
+            writeTime(out, task.getUpdateTime());
+        }
+        writeString(out, task.getFileName());
+        writeString(out, task.getFilePath());
+        writeString(out, task.getOriginalName());
+        writeString(out, task.getContentHash());
+        writeString(out, task.getStatus());
+        writeString(out, task.getCurrentStep());
+        writeString(out, task.getSubtitlePath());
+        writeString(out, task.getOutputPath());
+        writeString(out, task.getEncoderPreset());
+        writeString(out, task.getErrorMessage());
+
+        int payloadStart = start + RECORD_HEADER_SIZE;
+        int length = out.size() - payloadStart;
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer(), payloadStart, length);
+        out.putInt(start, length);
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * 完整记录（含长度和校验）中的任务 ID
+     */
+    static long taskId(byte[] record) {
+        return ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN).getLong(RECORD_HEADER_SIZE + 1);
+    }
+
+    private static void writeTime(RecordBuffer out, LocalDateTime time) {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static void writeString(RecordBuffer out, String value) {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 记录读取器，重放时复用校验器和字符串缓冲
+     * 状态、当前步骤这类取值很少的短字符串按内容复用同一个实例，百万级任务重放时能省下大量分配
+     */
+    static final class Reader {
+
+        private static final int CACHE_SIZE = 1024;
+        private static final int MAX_CACHED_LENGTH = 96;
+
+        private final CRC32 crc = new CRC32();
+        private final String[] cachedStrings = new String[CACHE_SIZE];
+        private final byte[][] cachedBytes = new byte[CACHE_SIZE][];
+        private byte[] scratch = new byte[256];
+
+        /**
+         * 从 buffer 当前位置读取一条记录，读取成功时 position 移到记录之后
+         *
+         * @return 记录不完整或校验失败时返回 null，position 不变
+         */
+        VideoTask read(ByteBuffer buffer) {
+            int start = buffer.position();
+            int end = buffer.limit();
+            int length = verify(buffer);
+            if (length < 0) {
+                return null;
+            }
+            int payloadStart = start + RECORD_HEADER_SIZE;
+            buffer.position(payloadStart);
+            try {
+                VideoTask task = decode(buffer);
+                if (buffer.position() == payloadStart + length) {
+                    return task;
+                }
+            } catch (RuntimeException e) {
+                // 校验通过但内容无法解析，按损坏处理
+            }
+            buffer.position(start).limit(end);
+            return null;
+        }
+
+        /**
+         * 解析 {@link #readRaw} 取出的记录
+         *
+         * @return 内容无法解析时返回 null
+         */
+        VideoTask read(byte[] record) {
+            return read(ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        /**
+         * 校验并原样复制出 buffer 当前位置的一条完整记录（含长度和校验），不解析内容；成功时 position 移到记录之后
+         *
+         * @return 记录不完整或校验失败时返回 null，position 不变
+         */
+        byte[] readRaw(ByteBuffer buffer) {
+            int start = buffer.position();
+            int length = verify(buffer);
+            if (length < 1 + Long.BYTES || buffer.get(start + RECORD_HEADER_SIZE) != TYPE_PUT) {
+                buffer.position(start);
+                return null;
+            }
+            byte[] record = new byte[RECORD_HEADER_SIZE + length];
+            buffer.position(start);
+            buffer.get(record);
+            return record;
+        }
+
+        /**
+         * 检查记录长度和 CRC
+         *
+         * @return 内容长度；记录不完整或校验失败时返回 -1。两种情况下 position 和 limit 都保持不变
+         */
+        private int verify(ByteBuffer buffer) {
+            int start = buffer.position();
+            int end = buffer.limit();
+            if (end - start < RECORD_HEADER_SIZE) {
+                return -1;
+            }
+            int length = buffer.getInt(start);
+            int checksum = buffer.getInt(start + 4);
+            int payloadStart = start + RECORD_HEADER_SIZE;
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > end - payloadStart) {
+                return -1;
+            }
+            buffer.position(payloadStart).limit(payloadStart + length);
+            crc.reset();
+            crc.update(buffer);
+            buffer.limit(end).position(start);
+            return (int) crc.getValue() == checksum ? length : -1;
+        }
+
+        private VideoTask decode(ByteBuffer in) {
+            if (in.get() != TYPE_PUT) {
+                throw new IllegalArgumentException("未知的记录类型");
+            }
+            VideoTask task = new VideoTask();
+            task.setId(in.getLong());
+            int flags = in.getInt();
+            if ((flags & HAS_FILE_SIZE) != 0) {
+                task.setFileSize(in.getLong());
+            }
+            if ((flags & HAS_SOURCE_TASK_ID) != 0) {
+                task.setSourceTaskId(in.getLong());
+            }
+            if ((flags & HAS_PROGRESS) != 0) {
+                task.setProgress(in.getInt());
+            }
+            if ((flags & HAS_CREATE_TIME) != 0) {
+                task.setCreateTime(readTime(in));
+            }
+            if ((flags & HAS_UPDATE_TIME) != 0) {
+                task.setUpdateTime(readTime(in));
+            }
+            task.setFileName(readString(in, false));
+            task.setFilePath(readString(in, false));
+            task.setOriginalName(readString(in, false));
+            task.setContentHash(readString(in, false));
+            task.setStatus(readString(in, true));
+            task.setCurrentStep(readString(in, true));
+            task.setSubtitlePath(readString(in, false));
+            task.setOutputPath(readString(in, false));
+            task.setEncoderPreset(readString(in, true));
+            task.setErrorMessage(readString(in, true));
+            return task;
+        }
+
+        private static LocalDateTime readTime(ByteBuffer in) {
+            long seconds = in.getLong();
+            int nanos = in.getInt();
+            return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+
+        private String readString(ByteBuffer in, boolean cacheable) {
+            int length = in.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            if (!cacheable || length > MAX_CACHED_LENGTH) {
+                return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + scratch[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+            byte[] cached = cachedBytes[slot];
+            if (cached != null && cached.length == length && regionEquals(cached, scratch, length)) {
+                return cachedStrings[slot];
+            }
+            String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            cachedBytes[slot] = Arrays.copyOf(scratch, length);
+            cachedStrings[slot] = value;
+            return value;
+        }
+
+        private static boolean regionEquals(byte[] a, byte[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 可复用的小端写缓冲，一次刷新的所有记录先写到这里，再一次性写入文件
+     */
+    static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        void writeByte(int value) {
+            write(value);
+        }
+
+        void writeInt(int value) {
+            write(value);
+            write(value >>> 8);
+            write(value >>> 16);
+            write(value >>> 24);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) value);
+            writeInt((int) (value >>> 32));
+        }
+
+        void putInt(int index, int value) {
+            buf[index] = (byte) value;
+            buf[index + 1] = (byte) (value >>> 8);
+            buf[index + 2] = (byte) (value >>> 16);
+            buf[index + 3] = (byte) (value >>> 24);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+
+import java.util.List;
+
+/**
+ * 任务持久化
+ * 读取全部在内存中完成（启动时 findAll 加载一次），这里只负责把变更写入数据库。
+ */
+public interface TaskRepository {
+
+    /**
+     * 加载全部任务，启动时调用
+     */
+    List<VideoTask> findAll();
+
+    /**
+     * 当前最大的任务 ID，没有任务时返回 0
+     */
+    long findMaxId();
+
+    /**
+     * 保存任务（新建或更新）
+     * 写后批量落库：调用立即返回，同一任务在一个刷新周期内的多次保存合并为一次写入
+     */
+    void save(VideoTask task);
+
+    /**
+     * 立即写入所有待保存的变更
+     */
+    void flush();
+}
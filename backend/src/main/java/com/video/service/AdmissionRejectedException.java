@@ -0,0 +1,32 @@
+package com.video.service;
+
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * 处理请求未被接纳：同一客户端排队过多，或服务已饱和（队列、磁盘空间、预计等待时间）
+ */
+public class AdmissionRejectedException extends TaskRejectedException {
+
+    private final boolean clientLimited;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String msg, boolean clientLimited, long retryAfterSeconds) {
+        super(msg);
+        this.clientLimited = clientLimited;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    /**
+     * true 表示只是该客户端超出限额（其他客户端仍可提交），false 表示服务整体饱和
+     */
+    public boolean isClientLimited() {
+        return clientLimited;
+    }
+
+    /**
+     * 建议的重试等待秒数
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
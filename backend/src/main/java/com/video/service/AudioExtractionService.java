@@ -1,5 +1,10 @@
 package com.video.service;
 
+import com.video.media.FFmpegProgressListener;
+import com.video.media.MediaInfo;
+import com.video.media.PcmAudioStream;
+import com.video.media.PcmChunkHandler;
+
 /**
  * 音频提取服务接口
  */
@@ -13,6 +18,67 @@ public interface AudioExtractionService {
      */
     String extractAudio(String videoPath);
 
+    /**
+     * 从视频文件提取音频，并实时回调 ffmpeg 进度
+     *
+     * @param videoPath        视频文件路径
+     * @param progressListener 进度监听器，可为 null
+     * @return 音频文件路径
+     */
+    String extractAudio(String videoPath, FFmpegProgressListener progressListener);
+
+    /**
+     * 查找之前已提取的音频文件（比视频文件新才算有效），不启动 ffmpeg
+     *
+     * @param videoPath 视频文件路径
+     * @return 音频文件路径，不存在时返回 null
+     */
+    String findExtractedAudio(String videoPath);
+
+    /**
+     * 提取音频的输出路径（不检查文件是否存在），处理期间用它保留音频文件不被磁盘配额淘汰
+     *
+     * @param videoPath 视频文件路径
+     * @return 音频文件路径
+     */
+    String getExtractedAudioPath(String videoPath);
+
+    /**
+     * 单次导入：验证、探测和音频提取在同一次 ffmpeg 运行中完成
+     * 容器和流信息从 ffmpeg 自身输出中解析，输入文件只读取一遍
+     *
+     * @param videoPath 视频文件路径
+     * @return 导入结果（流信息、时长、提取的音频）
+     */
+    IngestResult ingest(String videoPath);
+
+    /**
+     * 单次导入，并实时回调 ffmpeg 进度（时长在运行中解析得到后才有完成比例）
+     *
+     * @param videoPath        视频文件路径
+     * @param progressListener 进度监听器，可为 null
+     * @return 导入结果
+     */
+    IngestResult ingest(String videoPath, FFmpegProgressListener progressListener);
+
+    /**
+     * 以流的方式提取音频，不写临时文件
+     * ffmpeg 将 16kHz 单声道 s16le PCM 输出到标准输出，调用方边解码边读取，用完必须关闭
+     *
+     * @param videoPath 视频文件路径
+     * @return PCM 音频流
+     */
+    PcmAudioStream openAudioStream(String videoPath);
+
+    /**
+     * 以流的方式提取音频并按块回调
+     *
+     * @param videoPath 视频文件路径
+     * @param handler   PCM 分块回调
+     * @return 处理的样本总数
+     */
+    long streamAudio(String videoPath, PcmChunkHandler handler);
+
     /**
      * 获取音频文件信息
      * 
@@ -61,4 +127,45 @@ public interface AudioExtractionService {
             this.channels = channels;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 导入结果类
+     */
+    class IngestResult {
+        private final String audioPath;
+        private final MediaInfo mediaInfo;
+        private final AudioInfo audioInfo;
+
+        public IngestResult(String audioPath, MediaInfo mediaInfo, AudioInfo audioInfo) {
+            this.audioPath = audioPath;
+            this.mediaInfo = mediaInfo;
+            this.audioInfo = audioInfo;
+        }
+
+        // Getters
+        /**
+         * 提取的音频文件路径
+         */
+        public String getAudioPath() {
+            return audioPath;
+        }
+
+        /**
+         * 源视频的容器和流信息
+         */
+        public MediaInfo getMediaInfo() {
+            return mediaInfo;
+        }
+
+        /**
+         * 提取的音频信息
+         */
+        public AudioInfo getAudioInfo() {
+            return audioInfo;
+        }
+
+        public double getDuration() {
+            return mediaInfo.getDuration();
+        }
+    }
+}
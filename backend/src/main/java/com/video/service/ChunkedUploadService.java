@@ -0,0 +1,48 @@
+package com.video.service;
+
+import com.video.model.UploadSession;
+import com.video.model.VideoTask;
+
+import java.io.InputStream;
+
+/**
+ * 分片上传服务
+ * 协议：init 创建会话 → 并行 PUT 各分片（带 SHA-256 校验）→ complete 合并并创建任务。
+ * 断线后通过查询会话得到缺失的分片，只需重传这些分片。
+ */
+public interface ChunkedUploadService {
+
+    /**
+     * 创建上传会话
+     *
+     * @param fileName  原始文件名
+     * @param fileSize  文件总大小（字节）
+     * @param chunkSize 分片大小，为空时使用配置的默认值
+     */
+    UploadSession initUpload(String fileName, long fileSize, Integer chunkSize);
+
+    /**
+     * 查询上传会话状态
+     */
+    UploadSession getUpload(String uploadId);
+
+    /**
+     * 写入一个分片，数据直接写到目标文件中该分片的偏移位置
+     *
+     * @param index    分片序号（从 0 开始）
+     * @param data     分片数据
+     * @param checksum 分片数据的 SHA-256（十六进制）
+     * @return 写入后的会话状态
+     */
+    UploadSession writeChunk(String uploadId, int index, InputStream data, String checksum);
+
+    /**
+     * 所有分片到齐后完成上传：验证视频并创建任务
+     */
+    VideoTask completeUpload(String uploadId);
+
+    /**
+     * 放弃上传，删除已写入的数据
+     */
+    void abortUpload(String uploadId);
+}
@@ -0,0 +1,70 @@
+package com.video.service;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 内容寻址存储
+ * 上传文件按 SHA-256 存放在 objects/{哈希前2位}/{哈希3-4位}/{哈希}.{扩展名}，相同内容只保存一份。
+ * 哈希在写入过程中增量计算，写完后在同一文件系统内改名到位，不产生额外复制。
+ */
+public interface ContentStorageService {
+
+    /**
+     * 把输入流写入存储，边写边计算哈希
+     *
+     * @param in           文件内容
+     * @param originalName 原始文件名（只用于取扩展名）
+     * @return 存储结果；读取输入流抛出的异常作为 RuntimeException 的 cause 抛出，已写入的数据会被删除
+     */
+    StoredFile store(InputStream in, String originalName);
+
+    /**
+     * 把已在上传目录中的文件（例如分片上传合并后的文件）移入存储
+     * 分片乱序到达无法增量计算哈希，这里顺序读取一遍（数据通常仍在页缓存中）
+     *
+     * @param file         待存储文件，存储后原文件不再存在
+     * @param originalName 原始文件名（只用于取扩展名）
+     * @return 存储结果
+     */
+    StoredFile storeFile(Path file, String originalName);
+
+    /**
+     * 存储结果
+     */
+    class StoredFile {
+        private final String hash;
+        private final Path path;
+        private final long size;
+        private final boolean existing;
+
+        public StoredFile(String hash, Path path, long size, boolean existing) {
+            this.hash = hash;
+            this.path = path;
+            this.size = size;
+            this.existing = existing;
+        }
+
+        /**
+         * 内容的 SHA-256（十六进制小写）
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 相同内容之前已存储过，本次写入的数据已丢弃
+         */
+        public boolean isExisting() {
+            return existing;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.video.service;
+
+/**
+ * 处理请求的优先级
+ */
+public enum ProcessingPriority {
+
+    /**
+     * 交互式：用户对已完成或失败的任务重新处理，正在等结果
+     */
+    INTERACTIVE,
+
+    /**
+     * 批量：新上传任务的积压和服务重启后恢复的任务
+     */
+    BULK
+}
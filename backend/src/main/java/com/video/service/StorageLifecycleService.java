@@ -0,0 +1,193 @@
+package com.video.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 上传目录和临时目录的磁盘配额管理
+ * 后台定期统计各目录占用，超出配额或磁盘剩余空间不足时按 LRU 淘汰文件：
+ * 先淘汰可重新生成的中间文件（提取的音频、波形峰值、渲染分段等），开启 evict-task-files 时再淘汰上传目录中
+ * 不再被任何任务引用的源文件。任务字幕（用户可能编辑过）、仍被任务引用的源文件、正在使用的文件（retain 未 release）
+ * 和最近访问过的文件不会被淘汰。
+ */
+public interface StorageLifecycleService {
+
+    /** 上传目录 */
+    String UPLOAD = "upload";
+    /** 临时目录 */
+    String TEMP = "temp";
+
+    /**
+     * 记录一次文件访问，用于 LRU 排序
+     */
+    void touch(String path);
+
+    /**
+     * 标记文件正在使用（可重入，需与 release 成对调用），使用期间不会被淘汰
+     * 也可以传目录（如渲染工作目录），目录下的所有文件都不会被淘汰
+     */
+    void retain(String path);
+
+    /**
+     * 结束使用
+     */
+    void release(String path);
+
+    /**
+     * 注册任务文件的引用方，淘汰上传目录中的文件前询问是否仍被引用
+     */
+    void registerTaskFileOwner(TaskFileOwner owner);
+
+    /**
+     * 准备写入指定大小的新文件：空间不足时先同步淘汰一轮，仍不足返回 false
+     *
+     * @param directory 写入的目录类型：{@link #UPLOAD} 或 {@link #TEMP}
+     * @param bytes     预计写入的字节数
+     */
+    boolean ensureCapacity(String directory, long bytes);
+
+    /**
+     * 按最近一轮统计的占用和实时的磁盘剩余空间判断能否写入，不遍历目录、不在调用线程上淘汰，可以在持锁时调用
+     * 空间不足时在后台安排一轮淘汰，返回 false
+     */
+    boolean hasCapacity(String directory, long bytes);
+
+    /**
+     * 执行一轮统计和淘汰
+     *
+     * @return 本轮淘汰释放的字节数
+     */
+    long sweep();
+
+    /**
+     * 当前占用情况（来自最近一轮统计，磁盘剩余空间为实时值）
+     */
+    List<DirectoryUsage> getUsage();
+
+    /**
+     * 任务文件的引用方
+     */
+    interface TaskFileOwner {
+
+        /**
+         * 仍被任务引用的文件（绝对路径），不会被淘汰
+         */
+        Set<Path> referencedFiles();
+
+        /**
+         * 文件已被淘汰：在检查引用之后、删除之前有新任务引用了它时，由引用方更新这些任务的状态
+         */
+        void fileEvicted(Path path);
+    }
+
+    /**
+     * 单个目录的占用情况
+     */
+    class DirectoryUsage {
+        private String name;
+        private String path;
+        private long usedBytes;
+        private long regenerableBytes;
+        private long quotaBytes;
+        private long fileCount;
+        private long usableDiskBytes;
+        private long evictedBytes;
+        private long evictedFiles;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        /**
+         * 目录内文件总大小
+         */
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public void setUsedBytes(long usedBytes) {
+            this.usedBytes = usedBytes;
+        }
+
+        /**
+         * 其中可重新生成的中间文件大小
+         */
+        public long getRegenerableBytes() {
+            return regenerableBytes;
+        }
+
+        public void setRegenerableBytes(long regenerableBytes) {
+            this.regenerableBytes = regenerableBytes;
+        }
+
+        /**
+         * 配额，0 表示不限
+         */
+        public long getQuotaBytes() {
+            return quotaBytes;
+        }
+
+        public void setQuotaBytes(long quotaBytes) {
+            this.quotaBytes = quotaBytes;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public void setFileCount(long fileCount) {
+            this.fileCount = fileCount;
+        }
+
+        /**
+         * 目录所在磁盘的剩余可用空间
+         */
+        public long getUsableDiskBytes() {
+            return usableDiskBytes;
+        }
+
+        public void setUsableDiskBytes(long usableDiskBytes) {
+            this.usableDiskBytes = usableDiskBytes;
+        }
+
+        /**
+         * 启动以来累计淘汰的字节数
+         */
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        public void setEvictedBytes(long evictedBytes) {
+            this.evictedBytes = evictedBytes;
+        }
+
+        public long getEvictedFiles() {
+            return evictedFiles;
+        }
+
+        public void setEvictedFiles(long evictedFiles) {
+            this.evictedFiles = evictedFiles;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d 个文件, %.1f MB (可重新生成 %.1f MB), 配额 %s, 磁盘剩余 %.1f MB, 累计淘汰 %d 个 %.1f MB",
+                    name, fileCount, usedBytes / 1048576.0, regenerableBytes / 1048576.0,
+                    quotaBytes > 0 ? String.format("%.1f MB", quotaBytes / 1048576.0) : "不限",
+                    usableDiskBytes / 1048576.0, evictedFiles, evictedBytes / 1048576.0);
+        }
+    }
+}
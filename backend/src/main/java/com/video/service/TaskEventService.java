@@ -0,0 +1,30 @@
+package com.video.service;
+
+import com.video.model.VideoTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 任务状态推送（Server-Sent Events）
+ * 任务变化时推送给订阅者，取代前端定时轮询。短时间内的多次变化合并为一次推送，
+ * 每个订阅者每个任务只保留最新状态，慢客户端不会积压事件。
+ */
+public interface TaskEventService {
+
+    /**
+     * 订阅任务变化
+     *
+     * @param taskId  只订阅该任务，为空时订阅全部任务
+     * @param current 订阅单个任务时的当前状态，订阅后立即推送一次
+     */
+    SseEmitter subscribe(Long taskId, VideoTask current);
+
+    /**
+     * 任务状态已变化
+     */
+    void publish(VideoTask task);
+
+    /**
+     * 当前订阅者数量
+     */
+    int getSubscriberCount();
+}
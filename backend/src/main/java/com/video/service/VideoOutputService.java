@@ -0,0 +1,36 @@
+package com.video.service;
+
+import com.video.media.FFmpegProgressListener;
+import com.video.model.VideoTask;
+
+/**
+ * 成品视频输出服务
+ */
+public interface VideoOutputService {
+
+    /** 输出模式：字幕烧录进画面（重新编码） */
+    String MODE_BURN = "burn";
+
+    /** 输出模式：字幕作为独立轨道封装（流复制，不重新编码） */
+    String MODE_SOFT = "soft";
+
+    /**
+     * 将任务的字幕烧录进视频
+     *
+     * @param task             已生成字幕的任务
+     * @param preset           编码预设，为空时使用任务或配置的默认值
+     * @param progressListener 进度监听器，可为 null
+     * @return 输出视频路径
+     */
+    String burnSubtitles(VideoTask task, String preset, FFmpegProgressListener progressListener);
+
+    /**
+     * 将任务的字幕作为文本轨道封装进原视频（-c copy），每种语言一条轨道
+     * MP4/MOV 使用 mov_text，其他容器输出为 MKV 并使用 subrip
+     *
+     * @param task             已生成字幕的任务
+     * @param progressListener 进度监听器，可为 null
+     * @return 输出视频路径
+     */
+    String muxSubtitles(VideoTask task, FFmpegProgressListener progressListener);
+}
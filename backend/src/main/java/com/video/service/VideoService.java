@@ -1,9 +1,12 @@
 package com.video.service;
 
+import com.video.model.TaskPage;
 import com.video.model.VideoTask;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 视频处理服务接口
@@ -16,22 +19,80 @@ public interface VideoService {
     VideoTask uploadVideo(MultipartFile file);
     
     /**
-     * 处理视频（异步）
+     * 登记已写入上传目录的视频文件（例如分片上传完成后），验证并创建任务
+     * @param filePath 上传目录中的文件路径
+     * @param originalName 原始文件名
+     */
+    VideoTask registerUploadedFile(String filePath, String originalName);
+    
+    /**
+     * 处理视频：提交到处理流水线后立即返回，处理队列已满时抛出 TaskRejectedException
+     * 不经准入控制，用于服务重启后恢复中断的任务
      */
     void processVideo(Long taskId);
     
+    /**
+     * 按优先级为客户端处理视频，经过准入控制，未被接纳时抛出 AdmissionRejectedException
+     * @param priority 为空时重新处理已完成或失败的任务按交互式，其余按批量
+     * @param clientId 提交请求的客户端（由服务端根据认证用户或来源地址确定），同一优先级内各客户端轮流处理
+     */
+    void processVideo(Long taskId, ProcessingPriority priority, String clientId);
+    
     /**
      * 获取任务状态
      */
     VideoTask getTask(Long taskId);
     
     /**
-     * 获取所有任务
+     * 获取所有任务（按创建时间倒序）
      */
     List<VideoTask> getAllTasks();
     
+    /**
+     * 按创建时间倒序分页查询任务
+     * @param statuses 只返回这些状态的任务，为空时不过滤
+     * @param cursor 上一页返回的 nextCursor，为空时从最新的任务开始
+     * @param limit 每页数量，0 表示不分页
+     */
+    TaskPage<VideoTask> listTasks(Collection<String> statuses, String cursor, int limit);
+    
+    /**
+     * 增量查询：快照版本大于 sinceVersion 的任务，按版本升序
+     * 返回页的 version 用作下次查询的 sinceVersion
+     * @param limit 最多返回的数量，0 表示不限
+     */
+    TaskPage<VideoTask> listTasksChangedSince(long sinceVersion, int limit);
+    
+    /**
+     * 任务总数
+     */
+    long countTasks();
+    
+    /**
+     * 各状态的任务数
+     */
+    Map<String, Long> countTasksByStatus();
+    
+    /**
+     * 已归档（紧凑存放、读取时还原）的历史任务数，包含在任务总数中
+     */
+    long countArchivedTasks();
+    
+    /**
+     * 处理流水线各阶段的线程、队列深度和等待情况
+     */
+    String getPipelineStatus();
+    
     /**
      * 更新字幕内容
      */
     void updateSubtitle(Long taskId, String subtitleContent);
+    
+    /**
+     * 生成带字幕的成品视频（异步），完成后设置任务的 outputPath
+     * 任务未处理完成或已有渲染在进行时抛出 RuntimeException
+     * @param mode 输出模式：burn 烧录进画面，soft 封装为字幕轨道（见 VideoOutputService）
+     * @param preset 编码预设（仅 burn 模式），为空时使用任务或配置的默认值
+     */
+    void renderVideo(Long taskId, String mode, String preset);
 } 
\ No newline at end of file
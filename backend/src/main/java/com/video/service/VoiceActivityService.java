@@ -0,0 +1,28 @@
+package com.video.service;
+
+import com.video.media.SpeechInterval;
+
+import java.util.List;
+
+/**
+ * 语音活动检测服务
+ * 位于音频提取和语音识别之间，找出音频中的语音区间，跳过幻灯片、停顿等长时间静音
+ */
+public interface VoiceActivityService {
+
+    /**
+     * 检测提取出的 WAV 文件中的语音区间
+     *
+     * @param audioPath 音频文件路径（extractAudio/ingest 生成的 16kHz 单声道 WAV）
+     * @return 按时间排序的语音区间，时间戳基于原始音频时间轴
+     */
+    List<SpeechInterval> detectSpeech(String audioPath);
+
+    /**
+     * 直接从视频以流的方式检测语音区间，不写临时音频文件
+     *
+     * @param videoPath 视频文件路径
+     * @return 按时间排序的语音区间
+     */
+    List<SpeechInterval> detectSpeechInVideo(String videoPath);
+}
@@ -0,0 +1,18 @@
+package com.video.service;
+
+import com.video.media.WaveformPeaks;
+
+/**
+ * 波形峰值服务
+ * 为字幕编辑器预先计算多分辨率波形，前端按缩放级别和时间范围读取，不需要在浏览器中解码音频
+ */
+public interface WaveformService {
+
+    /**
+     * 获取视频的波形峰值，尚未生成时先生成（已提取的音频直接复用，否则先提取音频）
+     *
+     * @param videoPath 视频文件路径
+     * @return 映射的峰值文件
+     */
+    WaveformPeaks getPeaks(String videoPath);
+}
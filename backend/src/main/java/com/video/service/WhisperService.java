@@ -1,5 +1,7 @@
 package com.video.service;
 
+import com.video.media.FFmpegProgressListener;
+
 /**
  * Whisper 语音识别服务
  */
@@ -11,4 +13,12 @@ public interface WhisperService {
      * @return 识别的文本内容
      */
     String transcribe(String audioFilePath);
+
+    /**
+     * 转录视频文件为文本，音频提取阶段的 ffmpeg 进度实时回调
+     * @param videoFilePath 视频文件路径
+     * @param progressListener 音频提取进度监听器，可为 null
+     * @return 识别的文本内容
+     */
+    String transcribe(String videoFilePath, FFmpegProgressListener progressListener);
 } 
\ No newline at end of file
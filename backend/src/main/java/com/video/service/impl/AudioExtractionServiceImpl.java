@@ -1,11 +1,22 @@
 package com.video.service.impl;
 
+import com.video.config.FFmpegCapabilityRegistry;
 import com.video.config.FFmpegConfig;
+import com.video.media.FFmpegInputParser;
+import com.video.media.FFmpegProcessSupervisor;
+import com.video.media.FFmpegProgressListener;
+import com.video.media.MediaInfo;
+import com.video.media.MediaProbeCache;
+import com.video.media.PcmAudioStream;
+import com.video.media.PcmChunkHandler;
+import com.video.media.PcmFormat;
+import com.video.media.ProcessResult;
+import com.video.media.SegmentedAudioExtractor;
+import com.video.media.SupervisedProcess;
+import com.video.media.WavFile;
+import com.video.media.WavHeader;
 import com.video.service.AudioExtractionService;
-import net.bramp.ffmpeg.FFmpeg;
-import net.bramp.ffmpeg.FFmpegExecutor;
-import net.bramp.ffmpeg.FFprobe;
-import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import com.video.service.StorageLifecycleService;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import net.bramp.ffmpeg.probe.FFmpegStream;
 import org.slf4j.Logger;
@@ -15,9 +26,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * 音频提取服务实现
@@ -28,145 +48,357 @@ public class AudioExtractionServiceImpl implements AudioExtractionService {
 
     private static final Logger log = LoggerFactory.getLogger(AudioExtractionServiceImpl.class);
 
+    /** 流式提取时每次回调的数据块大小（约 2 秒音频） */
+    private static final int STREAM_CHUNK_BYTES = 64 * 1024;
+
     @Autowired
     private FFmpegConfig ffmpegConfig;
 
+    @Autowired
+    private FFmpegCapabilityRegistry capabilityRegistry;
+
+    @Autowired
+    private MediaProbeCache probeCache;
+
+    @Autowired
+    private FFmpegProcessSupervisor processSupervisor;
+
+    @Autowired
+    private SegmentedAudioExtractor segmentedExtractor;
+
+    @Autowired
+    private StorageLifecycleService storageLifecycleService;
+
     @Value("${file.temp-path:./temp/}")
     private String tempPath;
 
-    private FFmpeg ffmpeg;
-    private FFprobe ffprobe;
+    /** 按输出路径加锁：同内容的任务不会同时提取同一个音频文件；最后一个持有者释放时移除，映射不随历史文件增长 */
+    private final ConcurrentHashMap<Path, ExtractionLock> extractionLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public String extractAudio(String videoPath) {
+        return extractAudio(videoPath, null);
+    }
+
+    @Override
+    public String extractAudio(String videoPath, FFmpegProgressListener progressListener) {
+        try {
+            log.info("开始从视频提取音频: {}", videoPath);
+
+            checkExtractable(videoPath);
+
+            // 生成音频文件路径
+            Path audioPath = resolveAudioPath(videoPath);
+
+            // 相同内容的任务共用同一个音频文件：同一路径同时只提取一次，后到的请求等待后直接复用
+            ExtractionLock lock = acquireExtractionLock(audioPath);
+            try {
+                synchronized (lock) {
+                    String existing = findExtractedAudio(videoPath);
+                    if (existing != null) {
+                        log.info("复用已提取的音频: {}", existing);
+                        return existing;
+                    }
+                    Path partPath = partPathFor(audioPath);
+                    try {
+                        extractTo(videoPath, partPath, progressListener);
+                        publishAudio(partPath, audioPath);
+                    } finally {
+                        Files.deleteIfExists(partPath);
+                    }
+                }
+            } finally {
+                releaseExtractionLock(audioPath);
+            }
+            return audioPath.toString();
+
+        } catch (Exception e) {
+            log.error("音频提取失败: {}", videoPath, e);
+            throw new RuntimeException("音频提取失败: " + e.getMessage(), e);
+        }
+    }
 
     /**
-     * 初始化FFmpeg和FFprobe
+     * 提取音频到指定文件
      */
-    private void initFFmpeg() throws IOException {
-        if (ffmpeg == null || ffprobe == null) {
-            String ffmpegPath = ffmpegConfig.getFFmpegPath();
-            String ffprobePath = ffmpegConfig.getFFprobePath();
+    private void extractTo(String videoPath, Path audioPath, FFmpegProgressListener progressListener)
+            throws IOException {
+        // 视频时长用于计算超时（validateVideoFile 已探测过，这里命中缓存）
+        double duration = probeCache.probe(videoPath).getFormat().duration;
+
+        // 长视频分段并行提取
+        if (segmentedExtractor.shouldUseParallel(duration)
+                && extractSegmented(videoPath, duration, audioPath, progressListener)) {
+            return;
+        }
 
-            if (ffmpegPath == null || ffprobePath == null) {
-                throw new RuntimeException("FFmpeg 配置未初始化，请检查 FFmpeg 安装");
-            }
+        // 通过进程监管器执行音频提取：单声道、16kHz，适合语音识别
+        ProcessResult result = processSupervisor.run("extract-audio", processSupervisor.timeoutFor(duration),
+                duration,
+                threads -> FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                        "-hide_banner", "-nostdin",
+                        "-threads", String.valueOf(threads),
+                        "-i", videoPath,
+                        "-vn",
+                        "-f", "wav",
+                        "-ac", "1",
+                        "-ar", "16000",
+                        "-y", // 覆盖输出文件
+                        audioPath.toString()),
+                null, progressListener);
+
+        if (!result.isSuccess()) {
+            String reason = result.isTimedOut() ? "执行超时被终止" : "退出码 " + result.getExitCode();
+            log.error("FFmpeg命令执行失败，输入视频: {}, 输出音频: {}, {}\nFFmpeg输出:\n{}",
+                    videoPath, audioPath.toString(), reason, result.getErrorOutput());
+            throw new RuntimeException("FFmpeg执行失败: " + reason + ", "
+                    + analyzeFFprobeError(result.getErrorOutput()));
+        }
 
-            ffmpeg = new FFmpeg(ffmpegPath);
-            ffprobe = new FFprobe(ffprobePath);
-            log.info("FFmpeg初始化成功: {}", ffmpegPath);
+        log.info("音频提取成功: {} (耗时 {}ms)", audioPath.toString(), result.getElapsedMs());
+    }
+
+    @Override
+    public String findExtractedAudio(String videoPath) {
+        try {
+            Path audioPath = resolveAudioPath(videoPath);
+            if (Files.size(audioPath) > WavHeader.SIZE && Files.getLastModifiedTime(audioPath)
+                    .compareTo(Files.getLastModifiedTime(Paths.get(videoPath))) >= 0) {
+                // 记录访问，避免刚找到的音频被磁盘配额淘汰
+                storageLifecycleService.touch(audioPath.toString());
+                return audioPath.toString();
+            }
+        } catch (IOException e) {
+            // 文件不存在
         }
+        return null;
     }
 
     @Override
-    public String extractAudio(String videoPath) {
+    public String getExtractedAudioPath(String videoPath) {
+        return audioPathFor(videoPath).toString();
+    }
+
+    @Override
+    public IngestResult ingest(String videoPath) {
+        return ingest(videoPath, null);
+    }
+
+    @Override
+    public IngestResult ingest(String videoPath, FFmpegProgressListener progressListener) {
         try {
-            log.info("开始从视频提取音频: {}", videoPath);
+            log.info("开始单次导入视频: {}", videoPath);
 
             // 检查 FFmpeg 是否可用
-            if (!ffmpegConfig.isFFmpegAvailable()) {
+            if (!capabilityRegistry.isFFmpegAvailable()) {
                 String errorMsg = "FFmpeg 不可用，请安装 FFmpeg 或检查配置。请查看日志中的安装说明。";
                 log.error(errorMsg);
                 throw new RuntimeException(errorMsg);
             }
 
-            // 验证视频文件
-            if (!validateVideoFile(videoPath)) {
-                String errorMsg = "视频文件验证失败，文件可能损坏或格式不支持: " + videoPath;
-                log.error(errorMsg);
-                throw new RuntimeException(errorMsg);
+            // 基本文件检查（不启动进程）
+            Path file = Paths.get(videoPath);
+            if (!Files.exists(file)) {
+                throw new RuntimeException("视频文件不存在: " + videoPath);
             }
-
-            // 初始化FFmpeg
-            initFFmpeg();
-
-            // 创建临时目录
-            Path tempDir = Paths.get(tempPath);
-            if (!Files.exists(tempDir)) {
-                Files.createDirectories(tempDir);
+            if (Files.size(file) == 0) {
+                throw new RuntimeException("视频文件为空: " + videoPath);
             }
 
-            // 生成音频文件路径
-            String videoFileName = Paths.get(videoPath).getFileName().toString();
-            String audioFileName = videoFileName.replaceAll("\\.[^.]+$", "_extracted.wav");
-            Path audioPath = tempDir.resolve(audioFileName);
-
-            // 构建FFmpeg命令
-            FFmpegBuilder builder = new FFmpegBuilder()
-                    .setInput(videoPath)
-                    .overrideOutputFiles(true)
-                    .addOutput(audioPath.toString())
-                    .setFormat("wav") // 输出WAV格式
-                    .setAudioChannels(1) // 单声道
-                    .setAudioSampleRate(16000) // 16kHz采样率，适合语音识别
-                    .setAudioBitRate(128_000) // 128kbps比特率
-                    .done();
-
-            // 执行音频提取
-            FFmpegExecutor executor = new FFmpegExecutor(ffmpeg, ffprobe);
-
+            Path audioPath = resolveAudioPath(videoPath);
+            // 写入唯一的临时文件，完成后原子地替换到位：同内容的任务并发导入时互不覆盖，读者也不会看到写了一半的文件
+            Path partPath = partPathFor(audioPath);
             try {
-                executor.createJob(builder).run();
-                log.info("音频提取成功: {}", audioPath.toString());
-                return audioPath.toString();
-            } catch (RuntimeException e) {
-                // 增强错误信息，显示FFmpeg的详细输出
-                String errorMsg = "FFmpeg执行失败: " + e.getMessage();
-                log.error("FFmpeg命令执行失败，输入视频: {}, 输出音频: {}, 错误: {}",
-                        videoPath, audioPath.toString(), errorMsg);
+                // 上传验证时已探测过的长视频：直接用缓存的探测结果并分段并行提取
+                FFmpegProbeResult cachedProbe = probeCache.getIfPresent(videoPath);
+                if (cachedProbe != null && segmentedExtractor.shouldUseParallel(cachedProbe.getFormat().duration)) {
+                    MediaInfo mediaInfo = MediaInfo.fromProbeResult(cachedProbe);
+                    if (mediaInfo.hasVideoStream() && mediaInfo.hasAudioStream()
+                            && extractSegmented(videoPath, mediaInfo.getDuration(), partPath, progressListener)) {
+                        publishAudio(partPath, audioPath);
+                        return new IngestResult(audioPath.toString(), mediaInfo,
+                                new AudioInfo(mediaInfo.getDuration(), PcmFormat.SAMPLE_RATE, PcmFormat.CHANNELS));
+                    }
+                }
 
-                // 尝试手动执行FFmpeg命令来获取更详细的错误信息
+                // 运行前不知道时长，先按未知时长设置超时，解析到时长后再收紧
+                FFmpegInputParser parser = new FFmpegInputParser();
+                AtomicReference<SupervisedProcess> processRef = new AtomicReference<>();
+                Consumer<String> listener = line -> {
+                    boolean hadDuration = parser.getMediaInfo().getDuration() > 0;
+                    parser.accept(line);
+                    double duration = parser.getMediaInfo().getDuration();
+                    SupervisedProcess running = processRef.get();
+                    if (!hadDuration && duration > 0 && running != null) {
+                        running.updateTimeout(processSupervisor.timeoutFor(duration));
+                        running.setMediaDuration(duration);
+                    }
+                };
+
+                SupervisedProcess process = processSupervisor.start("ingest", processSupervisor.timeoutFor(0), 0,
+                        threads -> FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                                "-hide_banner", "-nostdin",
+                                "-threads", String.valueOf(threads),
+                                "-i", videoPath,
+                                "-vn",
+                                "-f", "wav",
+                                "-ac", String.valueOf(PcmFormat.CHANNELS),
+                                "-ar", String.valueOf(PcmFormat.SAMPLE_RATE),
+                                "-y",
+                                partPath.toString()),
+                        listener, progressListener);
+                processRef.set(process);
+
+                int exitCode;
                 try {
-                    ProcessBuilder pb = new ProcessBuilder(
-                            ffmpegConfig.getFFmpegPath(),
+                    exitCode = process.waitFor();
+                    process.awaitErrorOutput();
+                } catch (InterruptedException e) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("等待 FFmpeg 导入结束时被中断");
+                }
+                String errorOutput = process.getErrorOutput();
+                MediaInfo mediaInfo = parser.getMediaInfo();
+
+                if (process.isTimedOut()) {
+                    throw new RuntimeException("FFmpeg执行失败: 执行超时被终止");
+                }
+                if (!parser.isInputSeen()) {
+                    // ffmpeg 无法打开输入文件，沿用 ffprobe 的错误分类
+                    log.error("FFmpeg 无法解析视频文件: {}\n{}", videoPath, errorOutput);
+                    throw new RuntimeException("视频文件格式错误: " + analyzeFFprobeError(errorOutput));
+                }
+                if (!mediaInfo.hasVideoStream()) {
+                    throw new RuntimeException("视频文件中未找到视频流: " + videoPath);
+                }
+                if (!mediaInfo.hasAudioStream()) {
+                    throw new RuntimeException("视频文件中未找到音频流: " + videoPath);
+                }
+                if (exitCode != 0) {
+                    log.error("FFmpeg 导入失败 (退出码: {}): {}\n{}", exitCode, videoPath, errorOutput);
+                    throw new RuntimeException("FFmpeg执行失败: " + analyzeFFprobeError(errorOutput));
+                }
+                if (mediaInfo.getDuration() <= 0) {
+                    log.warn("视频文件时长异常: {} (时长: {}秒)", videoPath, mediaInfo.getDuration());
+                }
+
+                log.info("视频导入完成: {} (格式: {}, 时长: {}秒, 流: {}, 耗时 {}ms)", videoPath,
+                        mediaInfo.getFormatName(), mediaInfo.getDuration(), mediaInfo.getStreams(),
+                        process.getElapsedMs());
+                publishAudio(partPath, audioPath);
+                return new IngestResult(audioPath.toString(), mediaInfo,
+                        new AudioInfo(mediaInfo.getDuration(), PcmFormat.SAMPLE_RATE, PcmFormat.CHANNELS));
+            } finally {
+                Files.deleteIfExists(partPath);
+            }
+
+        } catch (Exception e) {
+            log.error("视频导入失败: {}", videoPath, e);
+            throw new RuntimeException("视频导入失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PcmAudioStream openAudioStream(String videoPath) {
+        try {
+            log.info("开始以流方式提取音频: {}", videoPath);
+            checkExtractable(videoPath);
+
+            double duration = probeCache.probe(videoPath).getFormat().duration;
+            SupervisedProcess process = processSupervisor.start("stream-audio",
+                    processSupervisor.timeoutFor(duration), duration,
+                    threads -> FFmpegProcessSupervisor.commandWithProgress(ffmpegConfig.getFFmpegPath(),
+                            "-hide_banner", "-nostdin",
+                            "-threads", String.valueOf(threads),
                             "-i", videoPath,
-                            "-f", "wav",
-                            "-ac", "1",
-                            "-ar", "16000",
-                            "-ab", "128k",
-                            "-y", // 覆盖输出文件
-                            audioPath.toString());
-                    pb.redirectErrorStream(true);
-                    Process process = pb.start();
-
-                    // 读取输出
-                    java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(process.getInputStream()));
-                    StringBuilder output = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
+                            "-vn",
+                            "-f", PcmFormat.FFMPEG_FORMAT,
+                            "-acodec", PcmFormat.FFMPEG_CODEC,
+                            "-ac", String.valueOf(PcmFormat.CHANNELS),
+                            "-ar", String.valueOf(PcmFormat.SAMPLE_RATE),
+                            "pipe:1"),
+                    null, null);
+            return new PcmAudioStream(process, duration);
 
-                    int exitCode = process.waitFor();
-                    log.error("FFmpeg详细输出 (退出码: {}): \n{}", exitCode, output.toString());
+        } catch (Exception e) {
+            log.error("音频流提取失败: {}", videoPath, e);
+            throw new RuntimeException("音频流提取失败: " + e.getMessage(), e);
+        }
+    }
 
-                } catch (Exception debugException) {
-                    log.error("获取FFmpeg详细错误信息失败: {}", debugException.getMessage());
+    @Override
+    public long streamAudio(String videoPath, PcmChunkHandler handler) {
+        try (PcmAudioStream stream = openAudioStream(videoPath)) {
+            ReadableByteChannel channel = stream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(STREAM_CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long sampleOffset = 0;
+
+            while (channel.read(buffer) >= 0) {
+                if (buffer.hasRemaining()) {
+                    continue;
                 }
-
-                throw e;
+                sampleOffset += dispatchChunk(buffer, sampleOffset, handler);
             }
+            // 处理最后不足一块的数据
+            sampleOffset += dispatchChunk(buffer, sampleOffset, handler);
+
+            log.info("音频流处理完成: {} (样本数: {}, 时长: {}秒)", videoPath, sampleOffset,
+                    PcmFormat.samplesToSeconds(sampleOffset));
+            return sampleOffset;
 
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("音频提取失败: {}", videoPath, e);
-            throw new RuntimeException("音频提取失败: " + e.getMessage(), e);
+            log.error("音频流处理失败: {}", videoPath, e);
+            throw new RuntimeException("音频流处理失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 将缓冲区中按样本对齐的部分交给回调，未对齐的尾字节留到下一块
+     *
+     * @return 本次交付的样本数
+     */
+    private long dispatchChunk(ByteBuffer buffer, long sampleOffset, PcmChunkHandler handler) throws IOException {
+        buffer.flip();
+        int alignedBytes = buffer.remaining() - buffer.remaining() % PcmFormat.BYTES_PER_SAMPLE;
+        long samples = alignedBytes / PcmFormat.BYTES_PER_SAMPLE;
+        if (alignedBytes > 0) {
+            ByteBuffer chunk = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            chunk.limit(chunk.position() + alignedBytes);
+            handler.onChunk(chunk.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN), sampleOffset);
+            buffer.position(buffer.position() + alignedBytes);
+        }
+        buffer.compact();
+        return samples;
+    }
+
     @Override
     public AudioInfo getAudioInfo(String audioPath) {
+        // 本服务生成的 WAV 格式已知，直接解析文件头，不启动 ffprobe
+        if (isInternalAudio(audioPath)) {
+            try {
+                WavFile wav = WavFile.open(Paths.get(audioPath));
+                log.info("音频信息: 时长={}秒, 采样率={}Hz, 声道数={}", wav.getDuration(), wav.getSampleRate(),
+                        wav.getChannels());
+                return new AudioInfo(wav.getDuration(), wav.getSampleRate(), wav.getChannels());
+            } catch (IOException e) {
+                log.warn("解析 WAV 文件失败，改用 FFprobe: {} - {}", audioPath, e.getMessage());
+            }
+        }
+
         try {
             // 检查 FFmpeg 是否可用
-            if (!ffmpegConfig.isFFmpegAvailable()) {
+            if (!capabilityRegistry.isFFmpegAvailable()) {
                 String errorMsg = "FFmpeg 不可用，无法获取音频信息";
                 log.error(errorMsg);
                 throw new RuntimeException(errorMsg);
             }
 
-            // 初始化FFprobe
-            initFFmpeg();
-
             try {
-                // 获取音频文件信息
-                FFmpegProbeResult probeResult = ffprobe.probe(audioPath);
+                // 获取音频文件信息（同一文件的重复探测命中缓存）
+                FFmpegProbeResult probeResult = probeCache.probe(audioPath);
 
                 // 查找音频流
                 FFmpegStream audioStream = probeResult.getStreams().stream()
@@ -183,32 +415,22 @@ public class AudioExtractionServiceImpl implements AudioExtractionService {
 
                 return new AudioInfo(duration, sampleRate, channels);
 
-            } catch (RuntimeException e) {
+            } catch (IOException | RuntimeException e) {
                 // 如果 FFprobe 失败，手动执行获取详细错误信息
                 log.warn("FFprobe 库调用失败，尝试手动执行获取详细错误: {}", e.getMessage());
 
                 try {
-                    ProcessBuilder pb = new ProcessBuilder(
-                            ffmpegConfig.getFFprobePath(),
-                            "-v", "error",
-                            "-show_entries", "format=duration",
-                            "-show_entries", "stream=codec_type,sample_rate,channels",
-                            "-of", "csv=p=0",
-                            audioPath);
-                    pb.redirectErrorStream(true);
-                    Process process = pb.start();
-
-                    // 读取输出
-                    java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(process.getInputStream()));
-                    StringBuilder output = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
-
-                    int exitCode = process.waitFor();
-                    String outputStr = output.toString().trim();
+                    ProcessResult result = processSupervisor.run("ffprobe-diagnose",
+                            processSupervisor.getProbeTimeoutMs(),
+                            threads -> FFmpegProcessSupervisor.command(ffmpegConfig.getFFprobePath(),
+                                    "-v", "error",
+                                    "-show_entries", "format=duration",
+                                    "-show_entries", "stream=codec_type,sample_rate,channels",
+                                    "-of", "csv=p=0",
+                                    audioPath));
+
+                    int exitCode = result.isTimedOut() ? -1 : result.getExitCode();
+                    String outputStr = (result.getOutput() + result.getErrorOutput()).trim();
 
                     if (exitCode != 0) {
                         log.error("FFprobe 手动执行失败 (退出码: {}): \n{}", exitCode, outputStr);
@@ -235,11 +457,107 @@ public class AudioExtractionServiceImpl implements AudioExtractionService {
         }
     }
 
+    /**
+     * 是否为本服务在临时目录中生成的 WAV 文件
+     */
+    private boolean isInternalAudio(String audioPath) {
+        Path path = Paths.get(audioPath).toAbsolutePath().normalize();
+        return path.toString().toLowerCase().endsWith(".wav")
+                && path.startsWith(Paths.get(tempPath).toAbsolutePath().normalize());
+    }
+
+    /**
+     * 分段并行提取，失败时返回 false 由调用方退回单进程提取
+     */
+    private boolean extractSegmented(String videoPath, double duration, Path audioPath,
+            FFmpegProgressListener progressListener) {
+        try {
+            segmentedExtractor.extract(videoPath, duration, audioPath, progressListener);
+            return true;
+        } catch (IOException e) {
+            log.warn("分段并行提取失败，改用单进程提取: {} - {}", videoPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 取得输出路径对应的锁并登记持有者；持有者计数只在 compute 内修改，与移除互斥
+     */
+    private ExtractionLock acquireExtractionLock(Path audioPath) {
+        return extractionLocks.compute(audioPath, (path, lock) -> {
+            ExtractionLock result = lock != null ? lock : new ExtractionLock();
+            result.holders++;
+            return result;
+        });
+    }
+
+    /**
+     * 注销持有者，最后一个持有者负责移除映射
+     */
+    private void releaseExtractionLock(Path audioPath) {
+        extractionLocks.computeIfPresent(audioPath, (path, lock) -> --lock.holders == 0 ? null : lock);
+    }
+
+    /**
+     * 提取过程中写入的临时文件：与目标同目录，名称唯一，以 .tmp 结尾（异常退出遗留的文件由存储配额按可再生文件清理）
+     */
+    private static Path partPathFor(Path audioPath) {
+        return audioPath.resolveSibling(audioPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    /**
+     * 把写完的临时文件原子地替换到目标路径，之后目标路径上只会出现完整的音频文件
+     */
+    private static void publishAudio(Path partPath, Path audioPath) throws IOException {
+        try {
+            Files.move(partPath, audioPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partPath, audioPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 生成提取音频的输出路径：临时目录下的 {视频文件名}_extracted.wav
+     */
+    private Path resolveAudioPath(String videoPath) throws IOException {
+        // 创建临时目录
+        Path tempDir = Paths.get(tempPath);
+        if (!Files.exists(tempDir)) {
+            Files.createDirectories(tempDir);
+        }
+        return audioPathFor(videoPath);
+    }
+
+    private Path audioPathFor(String videoPath) {
+        String videoFileName = Paths.get(videoPath).getFileName().toString();
+        String audioFileName = videoFileName.replaceAll("\\.[^.]+$", "_extracted.wav");
+        return Paths.get(tempPath).resolve(audioFileName);
+    }
+
+    /**
+     * 提取前的检查：FFmpeg 可用且视频文件有效
+     */
+    private void checkExtractable(String videoPath) {
+        // 检查 FFmpeg 是否可用
+        if (!capabilityRegistry.isFFmpegAvailable()) {
+            String errorMsg = "FFmpeg 不可用，请安装 FFmpeg 或检查配置。请查看日志中的安装说明。";
+            log.error(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+
+        // 验证视频文件
+        if (!validateVideoFile(videoPath)) {
+            String errorMsg = "视频文件验证失败，文件可能损坏或格式不支持: " + videoPath;
+            log.error(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+    }
+
     /**
      * 检查FFmpeg是否可用
      */
     public boolean isFFmpegAvailable() {
-        return ffmpegConfig.isFFmpegAvailable();
+        return capabilityRegistry.isFFmpegAvailable();
     }
 
     /**
@@ -299,8 +617,7 @@ public class AudioExtractionServiceImpl implements AudioExtractionService {
 
             // 使用FFprobe检查视频文件结构
             try {
-                initFFmpeg();
-                FFmpegProbeResult probeResult = ffprobe.probe(videoPath);
+                FFmpegProbeResult probeResult = probeCache.probe(videoPath);
 
                 // 检查是否有视频流
                 boolean hasVideoStream = probeResult.getStreams().stream()
@@ -330,4 +647,11 @@ public class AudioExtractionServiceImpl implements AudioExtractionService {
             return false;
         }
     }
+
+    /**
+     * 同一输出路径的提取锁，holders 为正在等待或持有该锁的请求数
+     */
+    private static final class ExtractionLock {
+        int holders;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,392 @@
+package com.video.service.impl;
+
+import com.video.media.InvalidMediaException;
+import com.video.media.IsoBmffStructureValidator;
+import com.video.model.UploadSession;
+import com.video.model.VideoTask;
+import com.video.service.ChunkedUploadService;
+import com.video.service.StorageLifecycleService;
+import com.video.service.VideoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片上传服务实现
+ * 每个会话对应上传目录 .incoming 下的一个 .part 文件，各分片按 index * chunkSize 的偏移用 FileChannel 定位写入，
+ * 多个分片可以并行写入同一文件；分片数据边写边计算 SHA-256，校验不通过的分片不计入已收到。
+ * 同一分片同时只允许一个请求写入，重复的并发请求直接拒绝，避免失败的请求覆盖已校验通过的数据。
+ * 容器头部所在的分片到达后立即检查 box 结构，不可能有效的文件提前中止上传。
+ * 全部到齐后落盘，再走与普通上传相同的存储、验证和建任务流程。
+ */
+@Service
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadServiceImpl.class);
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final VideoService videoService;
+    private final StorageLifecycleService storageLifecycleService;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    @Value("${file.upload-path:./uploads/}")
+    private String uploadPath;
+
+    @Value("${file.chunked-upload.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${file.chunked-upload.min-chunk-size:262144}")
+    private int minChunkSize;
+
+    @Value("${file.chunked-upload.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${file.chunked-upload.max-file-size:10737418240}")
+    private long maxFileSize;
+
+    @Value("${file.chunked-upload.session-timeout:86400000}")
+    private long sessionTimeoutMs;
+
+    public ChunkedUploadServiceImpl(VideoService videoService, StorageLifecycleService storageLifecycleService) {
+        this.videoService = videoService;
+        this.storageLifecycleService = storageLifecycleService;
+    }
+
+    @Override
+    public UploadSession initUpload(String fileName, long fileSize, Integer chunkSize) {
+        String safeName = sanitizeFileName(fileName);
+        if (fileSize <= 0) {
+            throw new IllegalArgumentException("文件大小无效: " + fileSize);
+        }
+        if (fileSize > maxFileSize) {
+            throw new IllegalArgumentException("文件过大: " + fileSize + " 字节，上限 " + maxFileSize + " 字节");
+        }
+        int size = chunkSize == null ? defaultChunkSize : chunkSize;
+        if (size < minChunkSize || size > maxChunkSize) {
+            throw new IllegalArgumentException("分片大小需在 " + minChunkSize + " 到 " + maxChunkSize + " 字节之间");
+        }
+
+        if (!storageLifecycleService.ensureCapacity(StorageLifecycleService.UPLOAD, fileSize)) {
+            throw new IllegalArgumentException("存储空间不足，请稍后再试");
+        }
+
+        try {
+            Path incomingDir = Paths.get(uploadPath, ".incoming");
+            Files.createDirectories(incomingDir);
+
+            Upload upload = new Upload();
+            upload.id = UUID.randomUUID().toString().replace("-", "");
+            upload.originalName = safeName;
+            upload.fileSize = fileSize;
+            upload.chunkSize = size;
+            upload.totalChunks = (int) ((fileSize + size - 1) / size);
+            upload.received = new BitSet(upload.totalChunks);
+            upload.writing = new BitSet(upload.totalChunks);
+            upload.validator = new IsoBmffStructureValidator(safeName, fileSize);
+            upload.partPath = incomingDir.resolve(upload.id + ".part");
+            upload.channel = FileChannel.open(upload.partPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            upload.createTime = LocalDateTime.now();
+            upload.touch();
+            uploads.put(upload.id, upload);
+
+            log.info("创建分片上传会话: {} (文件: {}, 大小: {} bytes, 分片: {} x {} bytes)",
+                    upload.id, fileName, fileSize, upload.totalChunks, size);
+            return upload.toSession();
+        } catch (IOException e) {
+            log.error("创建分片上传会话失败", e);
+            throw new RuntimeException("创建分片上传会话失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public UploadSession getUpload(String uploadId) {
+        return requireUpload(uploadId).toSession();
+    }
+
+    @Override
+    public UploadSession writeChunk(String uploadId, int index, InputStream data, String checksum) {
+        Upload upload = requireUpload(uploadId);
+        if (index < 0 || index >= upload.totalChunks) {
+            throw new IllegalArgumentException("分片序号超出范围: " + index + "，共 " + upload.totalChunks + " 片");
+        }
+        if (checksum == null || checksum.trim().isEmpty()) {
+            throw new IllegalArgumentException("缺少分片校验值（SHA-256）");
+        }
+
+        // 重传的分片会覆盖原有数据，校验通过前不算已收到
+        synchronized (upload) {
+            if (upload.writing.get(index)) {
+                throw new IllegalArgumentException("分片 " + index + " 正在写入，请等待当前请求结束后再重传");
+            }
+            upload.writing.set(index);
+            upload.received.clear(index);
+        }
+        try {
+            return writeExclusive(upload, index, data, checksum);
+        } finally {
+            synchronized (upload) {
+                upload.writing.clear(index);
+            }
+        }
+    }
+
+    /**
+     * 写入并校验一个分片，调用方保证同一分片没有其他请求在写
+     */
+    private UploadSession writeExclusive(Upload upload, int index, InputStream data, String checksum) {
+        String uploadId = upload.id;
+        long position = (long) index * upload.chunkSize;
+        long expected = Math.min(upload.chunkSize, upload.fileSize - position);
+        MessageDigest digest = ContentStorageServiceImpl.sha256();
+        long written = 0;
+        try {
+            byte[] array = new byte[COPY_BUFFER_BYTES];
+            int read;
+            while ((read = data.read(array)) != -1) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("分片 " + index + " 数据超出预期长度 " + expected + " 字节");
+                }
+                digest.update(array, 0, read);
+                ByteBuffer buffer = ByteBuffer.wrap(array, 0, read);
+                while (buffer.hasRemaining()) {
+                    written += upload.channel.write(buffer, position + written);
+                }
+                upload.touch();
+            }
+        } catch (IOException e) {
+            // 连接中断等情况：该分片不计入已收到，客户端重传即可覆盖
+            log.warn("分片 {} 写入中断 (会话: {}): {}", index, uploadId, e.getMessage());
+            throw new RuntimeException("分片写入失败: " + e.getMessage());
+        }
+
+        if (written != expected) {
+            throw new IllegalArgumentException("分片 " + index + " 长度不符: 期望 " + expected + " 字节，实际 " + written + " 字节");
+        }
+        String actual = ContentStorageServiceImpl.toHex(digest.digest());
+        if (!actual.equalsIgnoreCase(checksum.trim())) {
+            throw new IllegalArgumentException("分片 " + index + " 校验失败: 期望 " + checksum + "，实际 " + actual);
+        }
+
+        synchronized (upload) {
+            upload.received.set(index);
+            checkStructure(upload);
+        }
+        log.debug("分片 {} 写入完成 (会话: {}, {} bytes)", index, uploadId, written);
+        return upload.toSession();
+    }
+
+    @Override
+    public VideoTask completeUpload(String uploadId) {
+        Upload upload = requireUpload(uploadId);
+        synchronized (upload) {
+            int missing = upload.totalChunks - upload.received.cardinality();
+            if (missing > 0) {
+                throw new IllegalArgumentException("还有 " + missing + " 个分片未上传");
+            }
+            try {
+                upload.validator.finish(upload.fileSize);
+            } catch (InvalidMediaException e) {
+                throw rejectUpload(upload, e);
+            }
+            // 先移出会话表，避免并发的 complete 重复建任务
+            if (!uploads.remove(uploadId, upload)) {
+                throw new IllegalArgumentException("上传会话不存在或已完成: " + uploadId);
+            }
+        }
+
+        try {
+            upload.channel.force(false);
+            upload.channel.close();
+            log.info("分片上传完成: {} ({} bytes)", uploadId, upload.fileSize);
+        } catch (IOException e) {
+            log.error("合并上传文件失败", e);
+            deleteQuietly(upload.partPath);
+            throw new RuntimeException("合并上传文件失败: " + e.getMessage());
+        }
+        return videoService.registerUploadedFile(upload.partPath.toString(), upload.originalName);
+    }
+
+    @Override
+    public void abortUpload(String uploadId) {
+        Upload upload = uploads.remove(uploadId);
+        if (upload == null) {
+            throw new IllegalArgumentException("上传会话不存在: " + uploadId);
+        }
+        discard(upload);
+        log.info("已取消分片上传: {}", uploadId);
+    }
+
+    /**
+     * 定期清理长时间无活动的上传会话及其临时文件
+     */
+    @Scheduled(fixedDelayString = "${file.chunked-upload.sweep-interval:600000}",
+            initialDelayString = "${file.chunked-upload.sweep-interval:600000}")
+    public void expireStaleUploads() {
+        long now = System.currentTimeMillis();
+        for (Upload upload : uploads.values()) {
+            if (now - upload.lastActivity > sessionTimeoutMs && uploads.remove(upload.id, upload)) {
+                log.info("分片上传会话超时，已清理: {} ({})", upload.id, upload.originalName);
+                discard(upload);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 关闭文件句柄，.part 文件保留在磁盘上；会话仅在内存中，重启后无法续传
+        for (Upload upload : uploads.values()) {
+            closeQuietly(upload.channel);
+        }
+    }
+
+    /**
+     * 检查已到达的 box 头部：下一个头部所在的分片都到齐后才能读取，
+     * 因此分片 0 到达时就能发现首部损坏或 mdat 延伸到文件结尾（缺少 moov）的文件，不必等整个文件传完
+     */
+    private void checkStructure(Upload upload) {
+        IsoBmffStructureValidator validator = upload.validator;
+        try {
+            while (validator.needsHeader()) {
+                long offset = validator.getNextHeaderOffset();
+                int length = validator.getHeaderLength();
+                int firstChunk = (int) (offset / upload.chunkSize);
+                int lastChunk = (int) ((offset + length - 1) / upload.chunkSize);
+                if (upload.received.nextClearBit(firstChunk) <= lastChunk) {
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (upload.channel.read(buffer, offset + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                validator.acceptHeader(offset, buffer.array(), buffer.position());
+            }
+        } catch (InvalidMediaException e) {
+            throw rejectUpload(upload, e);
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 上传数据不可能是有效视频：结束会话并删除已写入的数据
+     */
+    private RuntimeException rejectUpload(Upload upload, InvalidMediaException e) {
+        if (uploads.remove(upload.id, upload)) {
+            discard(upload);
+        }
+        log.error("上传数据结构无效，已中止分片上传: {} ({}) - {}", upload.id, upload.originalName, e.getMessage());
+        return new IllegalArgumentException("视频文件验证失败: " + e.getMessage());
+    }
+
+    private Upload requireUpload(String uploadId) {
+        Upload upload = uploadId == null ? null : uploads.get(uploadId);
+        if (upload == null) {
+            throw new IllegalArgumentException("上传会话不存在或已过期: " + uploadId);
+        }
+        return upload;
+    }
+
+    private void discard(Upload upload) {
+        closeQuietly(upload.channel);
+        deleteQuietly(upload.partPath);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭上传文件失败: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除上传临时文件失败: {} - {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 只保留文件名部分，防止客户端传入的名称包含路径
+     */
+    private static String sanitizeFileName(String fileName) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        String name = fileName.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1).trim();
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            throw new IllegalArgumentException("文件名无效: " + fileName);
+        }
+        return name;
+    }
+
+    /**
+     * 内存中的上传会话
+     */
+    private static class Upload {
+        String id;
+        String originalName;
+        long fileSize;
+        int chunkSize;
+        int totalChunks;
+        BitSet received;
+        /** 正在写入的分片 */
+        BitSet writing;
+        IsoBmffStructureValidator validator;
+        Path partPath;
+        FileChannel channel;
+        LocalDateTime createTime;
+        volatile long lastActivity;
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized UploadSession toSession() {
+            UploadSession session = new UploadSession();
+            session.setUploadId(id);
+            session.setFileName(originalName);
+            session.setFileSize(fileSize);
+            session.setChunkSize(chunkSize);
+            session.setTotalChunks(totalChunks);
+            session.setReceivedChunks(received.cardinality());
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < totalChunks; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            session.setMissingChunks(missing);
+            session.setCreateTime(createTime);
+            session.setUpdateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(lastActivity), ZoneId.systemDefault()));
+            return session;
+        }
+    }
+}
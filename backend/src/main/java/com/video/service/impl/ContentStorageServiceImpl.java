@@ -0,0 +1,162 @@
+package com.video.service.impl;
+
+import com.video.service.ContentStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * 内容寻址存储实现
+ * 临时文件写在上传目录的 .incoming 下，与 objects 同处一个文件系统，改名即可到位
+ */
+@Service
+public class ContentStorageServiceImpl implements ContentStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentStorageServiceImpl.class);
+
+    private static final int COPY_BUFFER_BYTES = 256 * 1024;
+
+    @Value("${file.upload-path:./uploads/}")
+    private String uploadPath;
+
+    @Override
+    public StoredFile store(InputStream in, String originalName) {
+        Path temp = null;
+        try {
+            Path incomingDir = Paths.get(uploadPath, ".incoming");
+            Files.createDirectories(incomingDir);
+            temp = incomingDir.resolve(UUID.randomUUID() + ".tmp");
+
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW)) {
+                byte[] buffer = new byte[COPY_BUFFER_BYTES];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            return moveIntoPlace(temp, toHex(digest.digest()), originalName, size);
+        } catch (IOException e) {
+            log.error("文件存储失败", e);
+            throw new RuntimeException("文件存储失败: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    @Override
+    public StoredFile storeFile(Path file, String originalName) {
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+                int read;
+                while ((read = channel.read(buffer)) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                    size += read;
+                }
+            }
+            return moveIntoPlace(file, toHex(digest.digest()), originalName, size);
+        } catch (IOException e) {
+            log.error("文件存储失败", e);
+            throw new RuntimeException("文件存储失败: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * 把写好的文件改名到内容地址；相同内容已存在时保留已有文件
+     */
+    private StoredFile moveIntoPlace(Path source, String hash, String originalName, long size) throws IOException {
+        Path target = objectPath(hash, originalName);
+        if (Files.exists(target)) {
+            log.info("内容已存在，复用已有文件: {} ({} bytes)", target, size);
+            return new StoredFile(hash, target, size, true);
+        }
+
+        Files.createDirectories(target.getParent());
+        try {
+            // 并发上传同一内容时两边都可能走到这里，内容相同，后到者替换或失败都不影响结果
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            return new StoredFile(hash, target, size, true);
+        }
+        if (!Files.exists(target)) {
+            throw new IOException("文件保存失败，文件不存在: " + target.toAbsolutePath());
+        }
+        log.info("文件已存储: {} ({} bytes)", target, size);
+        return new StoredFile(hash, target, size, false);
+    }
+
+    private Path objectPath(String hash, String originalName) {
+        String extension = extensionOf(originalName);
+        return Paths.get(uploadPath, "objects", hash.substring(0, 2), hash.substring(2, 4),
+                extension.isEmpty() ? hash : hash + "." + extension);
+    }
+
+    /**
+     * 取小写扩展名，保留扩展名是为了后续按扩展名选择封装格式；不合规的扩展名丢弃
+     */
+    private static String extensionOf(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return "";
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension.matches("[a-z0-9]{1,10}") ? extension : "";
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {} - {}", path, e.getMessage());
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
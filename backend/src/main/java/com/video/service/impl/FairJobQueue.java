@@ -0,0 +1,433 @@
+package com.video.service.impl;
+
+import com.video.service.ProcessingPriority;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 处理流水线入口阶段的有界队列：按优先级和客户端公平出队
+ * <ul>
+ * <li>交互式任务优先，但两类都有任务时每连续取 interactiveWeight 个交互式任务后取一个批量任务，批量积压不会饿死</li>
+ * <li>同一优先级内按客户端轮转，每个客户端每轮取一个，一个客户端提交大量任务不会挡住其他客户端</li>
+ * </ul>
+ * 不是 {@link Job} 的任务按批量任务处理，客户端为空字符串。
+ */
+public final class FairJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * 带优先级、客户端和预计耗时的任务
+     */
+    public static final class Job implements Runnable {
+        private final ProcessingPriority priority;
+        private final String clientId;
+        private final long estimatedMs;
+        private final Runnable body;
+
+        public Job(ProcessingPriority priority, String clientId, long estimatedMs, Runnable body) {
+            this.priority = priority;
+            this.clientId = clientId == null ? "" : clientId;
+            this.estimatedMs = Math.max(0, estimatedMs);
+            this.body = body;
+        }
+
+        public ProcessingPriority getPriority() {
+            return priority;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public long getEstimatedMs() {
+            return estimatedMs;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    /**
+     * 一个优先级的任务：每个客户端一个队列，rotation 记录轮转顺序
+     */
+    private static final class ClassQueue {
+        final Map<String, ArrayDeque<Job>> byClient = new HashMap<>();
+        final ArrayDeque<String> rotation = new ArrayDeque<>();
+        int size;
+        long estimatedMs;
+
+        void add(Job job) {
+            ArrayDeque<Job> jobs = byClient.get(job.clientId);
+            if (jobs == null) {
+                jobs = new ArrayDeque<>();
+                byClient.put(job.clientId, jobs);
+                rotation.addLast(job.clientId);
+            }
+            jobs.addLast(job);
+            size++;
+            estimatedMs += job.estimatedMs;
+        }
+
+        Job peek() {
+            return size == 0 ? null : byClient.get(rotation.peekFirst()).peekFirst();
+        }
+
+        Job poll() {
+            if (size == 0) {
+                return null;
+            }
+            String clientId = rotation.pollFirst();
+            ArrayDeque<Job> jobs = byClient.get(clientId);
+            Job job = jobs.pollFirst();
+            if (jobs.isEmpty()) {
+                byClient.remove(clientId);
+            } else {
+                rotation.addLast(clientId);
+            }
+            removed(job);
+            return job;
+        }
+
+        boolean remove(Object o) {
+            for (Map.Entry<String, ArrayDeque<Job>> entry : byClient.entrySet()) {
+                ArrayDeque<Job> jobs = entry.getValue();
+                for (Iterator<Job> it = jobs.iterator(); it.hasNext(); ) {
+                    Job job = it.next();
+                    if (job == o) {
+                        it.remove();
+                        if (jobs.isEmpty()) {
+                            byClient.remove(entry.getKey());
+                            rotation.remove(entry.getKey());
+                        }
+                        removed(job);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void removed(Job job) {
+            size--;
+            estimatedMs -= job.estimatedMs;
+        }
+    }
+
+    private final int capacity;
+    private final int interactiveWeight;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ClassQueue interactive = new ClassQueue();
+    private final ClassQueue bulk = new ClassQueue();
+    private int count;
+    /** 批量任务在等待时已连续取出的交互式任务数 */
+    private int interactiveStreak;
+
+    public FairJobQueue(int capacity, int interactiveWeight) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("队列容量必须大于 0");
+        }
+        this.capacity = capacity;
+        this.interactiveWeight = Math.max(1, interactiveWeight);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 指定优先级的排队任务数
+     */
+    public int size(ProcessingPriority priority) {
+        lock.lock();
+        try {
+            return classOf(priority).size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定优先级排队任务的预计耗时之和
+     */
+    public long estimatedMs(ProcessingPriority priority) {
+        lock.lock();
+        try {
+            return classOf(priority).estimatedMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定客户端在各优先级中排队的任务数
+     */
+    public int sizeOf(String clientId) {
+        lock.lock();
+        try {
+            return clientSize(interactive, clientId) + clientSize(bulk, clientId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 各优先级的排队任务数
+     */
+    public Map<ProcessingPriority, Integer> sizes() {
+        lock.lock();
+        try {
+            Map<ProcessingPriority, Integer> sizes = new EnumMap<>(ProcessingPriority.class);
+            sizes.put(ProcessingPriority.INTERACTIVE, interactive.size);
+            sizes.put(ProcessingPriority.BULK, bulk.size);
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        Job job = asJob(runnable);
+        lock.lock();
+        try {
+            if (count >= capacity) {
+                return false;
+            }
+            enqueue(job);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) throws InterruptedException {
+        Job job = asJob(runnable);
+        lock.lockInterruptibly();
+        try {
+            while (count >= capacity) {
+                notFull.await();
+            }
+            enqueue(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException {
+        Job job = asJob(runnable);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(job);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : next().peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            if (interactive.remove(o) || bulk.remove(o)) {
+                count--;
+                notFull.signal();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && count > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前任务的快照（不按出队顺序），不支持通过迭代器移除
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> snapshot = new ArrayList<>(count);
+            for (ClassQueue queue : new ClassQueue[]{interactive, bulk}) {
+                for (ArrayDeque<Job> jobs : queue.byClient.values()) {
+                    snapshot.addAll(jobs);
+                }
+            }
+            Iterator<Runnable> it = snapshot.iterator();
+            return new Iterator<Runnable>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Runnable next() {
+                    return it.next();
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Job job) {
+        classOf(job.priority).add(job);
+        count++;
+        notEmpty.signal();
+    }
+
+    private Job dequeue() {
+        ClassQueue queue = next();
+        if (queue == interactive) {
+            interactiveStreak = bulk.size == 0 ? 0 : interactiveStreak + 1;
+        } else {
+            interactiveStreak = 0;
+        }
+        Job job = queue.poll();
+        count--;
+        notFull.signal();
+        return job;
+    }
+
+    /**
+     * 下一个出队的优先级，调用方保证队列不为空
+     */
+    private ClassQueue next() {
+        if (interactive.size > 0 && (bulk.size == 0 || interactiveStreak < interactiveWeight)) {
+            return interactive;
+        }
+        return bulk;
+    }
+
+    private ClassQueue classOf(ProcessingPriority priority) {
+        return priority == ProcessingPriority.INTERACTIVE ? interactive : bulk;
+    }
+
+    private static int clientSize(ClassQueue queue, String clientId) {
+        ArrayDeque<Job> jobs = queue.byClient.get(clientId == null ? "" : clientId);
+        return jobs == null ? 0 : jobs.size();
+    }
+
+    private static Job asJob(Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        return runnable instanceof Job ? (Job) runnable : new Job(ProcessingPriority.BULK, "", 0, runnable);
+    }
+}
@@ -0,0 +1,62 @@
+package com.video.service.impl;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 处理流水线的一个阶段：固定大小的线程池加有界队列（见 AsyncConfig.stageExecutor）
+ * 新任务从入口阶段进入时队列满则立即拒绝；阶段之间交接时上游线程等待下游队列腾出位置，
+ * 这样积压停留在最慢的阶段之前，不会在内存中无限堆积，也不会占用其他阶段的线程。
+ */
+final class PipelineStage {
+
+    private final String name;
+    private final ThreadPoolTaskExecutor executor;
+    /** 上游线程因队列已满而等待的累计时间，用来判断瓶颈在哪个阶段 */
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    PipelineStage(String name, ThreadPoolTaskExecutor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * 提交新任务，队列已满时抛出 TaskRejectedException
+     */
+    void submit(Runnable job) {
+        executor.execute(job);
+    }
+
+    /**
+     * 上游阶段交接任务，队列已满时等待
+     */
+    void handOff(Runnable job) throws InterruptedException {
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        if (pool.isShutdown()) {
+            throw new TaskRejectedException(name + "阶段已关闭");
+        }
+        BlockingQueue<Runnable> queue = pool.getQueue();
+        if (queue.offer(job)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            queue.put(job);
+        } finally {
+            blockedNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String toString() {
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        BlockingQueue<Runnable> queue = pool.getQueue();
+        return String.format("%s: 线程 %d/%d 忙, 排队 %d/%d, 已完成 %d, 上游因队列满累计等待 %ds", name,
+                pool.getActiveCount(), pool.getMaximumPoolSize(), queue.size(), queue.size() + queue.remainingCapacity(),
+                pool.getCompletedTaskCount(), blockedNanos.get() / 1_000_000_000L);
+    }
+}
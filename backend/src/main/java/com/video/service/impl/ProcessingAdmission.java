@@ -0,0 +1,133 @@
+package com.video.service.impl;
+
+import com.video.service.AdmissionRejectedException;
+import com.video.service.ProcessingPriority;
+import com.video.service.StorageLifecycleService;
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * 处理请求的准入控制：只接纳能在合理时间内完成的任务，其余立即拒绝并给出建议的重试时间
+ * <ol>
+ * <li>同一客户端排队的任务数超过限额：客户端受限（429）</li>
+ * <li>入口队列已满，或批量任务占满了为交互式任务预留之外的位置：服务饱和（503）</li>
+ * <li>按最近一轮统计，临时目录放不下提取的音频：服务饱和（503），由后台淘汰释放空间</li>
+ * <li>排在前面的任务加上本任务的预计耗时超过最长等待时间：服务饱和（503）</li>
+ * </ol>
+ * 任务的预计耗时按源文件大小和最近处理速度（每 MB 的媒体阶段耗时，指数加权平均）估算。
+ */
+final class ProcessingAdmission {
+
+    private static final long MB = 1024 * 1024;
+    /** 提取的 16kHz 单声道 WAV 约为源视频大小的四分之一（按 1Mbps 码率估算，码率越高比例越小） */
+    private static final int TEMP_BYTES_DIVISOR = 4;
+    /** 新测得的处理速度所占权重 */
+    private static final double RATE_WEIGHT = 0.2;
+
+    private final PipelineStage stage;
+    private final FairJobQueue queue;
+    private final int workers;
+    private final int interactiveWeight;
+    private final StorageLifecycleService storageLifecycleService;
+    private final int maxQueuedPerClient;
+    private final int interactiveReserve;
+    private final long maxWaitMs;
+    private final long diskRetryAfterMs;
+    private volatile double msPerMb;
+
+    ProcessingAdmission(PipelineStage stage, FairJobQueue queue, int workers, int interactiveWeight,
+            StorageLifecycleService storageLifecycleService, int maxQueuedPerClient, int interactiveReserve,
+            long maxWaitMs, long diskRetryAfterMs, long initialMsPerMb) {
+        this.stage = stage;
+        this.queue = queue;
+        this.workers = Math.max(1, workers);
+        this.interactiveWeight = Math.max(1, interactiveWeight);
+        this.storageLifecycleService = storageLifecycleService;
+        this.maxQueuedPerClient = maxQueuedPerClient;
+        this.interactiveReserve = Math.min(Math.max(0, interactiveReserve), queue.getCapacity() - 1);
+        this.maxWaitMs = maxWaitMs;
+        this.diskRetryAfterMs = diskRetryAfterMs;
+        this.msPerMb = Math.max(1, initialMsPerMb);
+    }
+
+    /**
+     * 检查后提交到入口阶段，未被接纳时抛出 AdmissionRejectedException
+     * 检查和提交一起加锁，并发的请求不会同时通过同一个剩余位置
+     */
+    synchronized void submit(ProcessingPriority priority, String clientId, long fileSize, Runnable body) {
+        long estimatedMs = estimateMs(fileSize);
+        int queued = queue.size();
+        long averageMs = queued == 0 ? estimatedMs
+                : (queue.estimatedMs(ProcessingPriority.INTERACTIVE) + queue.estimatedMs(ProcessingPriority.BULK)) / queued;
+
+        if (maxQueuedPerClient > 0 && queue.sizeOf(clientId) >= maxQueuedPerClient) {
+            throw new AdmissionRejectedException("已有 " + maxQueuedPerClient + " 个任务在排队，请等待完成后再提交",
+                    true, seconds(averageMs * maxQueuedPerClient / workers));
+        }
+        int limit = priority == ProcessingPriority.INTERACTIVE ? queue.getCapacity()
+                : queue.getCapacity() - interactiveReserve;
+        if (queued >= limit) {
+            throw new AdmissionRejectedException("处理队列已满，请稍后重试", false, seconds(averageMs / workers));
+        }
+        // 只看最近一轮统计的结果，不在请求线程上遍历目录或淘汰文件（持有准入锁）
+        if (!storageLifecycleService.hasCapacity(StorageLifecycleService.TEMP, fileSize / TEMP_BYTES_DIVISOR)) {
+            throw new AdmissionRejectedException("临时目录空间不足，请稍后重试", false, seconds(diskRetryAfterMs));
+        }
+        long waitMs = estimatedWaitMs(priority) + estimatedMs;
+        if (maxWaitMs > 0 && waitMs > maxWaitMs) {
+            throw new AdmissionRejectedException("预计需要等待 " + seconds(waitMs) + " 秒才能完成，超过上限 "
+                    + seconds(maxWaitMs) + " 秒，请稍后重试", false, seconds(waitMs - maxWaitMs));
+        }
+        try {
+            stage.submit(new FairJobQueue.Job(priority, clientId, estimatedMs, body));
+        } catch (TaskRejectedException e) {
+            throw new AdmissionRejectedException("处理队列已满，请稍后重试", false, seconds(averageMs / workers));
+        }
+    }
+
+    /**
+     * 不经准入检查提交（服务重启后恢复的任务），入口队列已满时抛出 TaskRejectedException
+     */
+    void submitRecovered(long fileSize, Runnable body) {
+        stage.submit(new FairJobQueue.Job(ProcessingPriority.BULK, "", estimateMs(fileSize), body));
+    }
+
+    /**
+     * 记录一次媒体阶段的实际耗时，更新处理速度
+     * 多个媒体线程会同时完成任务，读改写需要加锁，否则会丢失样本；estimateMs 只读 volatile 字段，不加锁
+     */
+    synchronized void recordMediaWork(long fileSize, long elapsedMs) {
+        double sample = elapsedMs / Math.max(1.0, (double) fileSize / MB);
+        msPerMb = msPerMb * (1 - RATE_WEIGHT) + sample * RATE_WEIGHT;
+    }
+
+    long estimateMs(long fileSize) {
+        return (long) (msPerMb * Math.max(1.0, (double) fileSize / MB));
+    }
+
+    /**
+     * 新任务在入口队列中的预计等待时间：
+     * 交互式任务排在已有的交互式任务之后，有批量积压时每 interactiveWeight 个之间还会穿插一个批量任务；
+     * 批量任务排在全部任务之后。正在处理的任务剩余时间未计入。
+     */
+    private long estimatedWaitMs(ProcessingPriority priority) {
+        long interactiveMs = queue.estimatedMs(ProcessingPriority.INTERACTIVE);
+        long bulkMs = queue.estimatedMs(ProcessingPriority.BULK);
+        if (priority == ProcessingPriority.INTERACTIVE) {
+            int bulkQueued = queue.size(ProcessingPriority.BULK);
+            int interleaved = Math.min(bulkQueued, queue.size(ProcessingPriority.INTERACTIVE) / interactiveWeight + 1);
+            long interleavedMs = bulkQueued == 0 ? 0 : bulkMs / bulkQueued * interleaved;
+            return (interactiveMs + interleavedMs) / workers;
+        }
+        return (interactiveMs + bulkMs) / workers;
+    }
+
+    String getStatus() {
+        return String.format("准入控制: 排队 交互式 %d / 批量 %d (预留交互式位置 %d), 预计处理速度 %.1fs/MB, 最长等待 %ds",
+                queue.size(ProcessingPriority.INTERACTIVE), queue.size(ProcessingPriority.BULK), interactiveReserve,
+                msPerMb / 1000, seconds(maxWaitMs));
+    }
+
+    private static long seconds(long ms) {
+        return (ms + 999) / 1000;
+    }
+}
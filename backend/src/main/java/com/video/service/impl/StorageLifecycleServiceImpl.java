@@ -0,0 +1,416 @@
+package com.video.service.impl;
+
+import com.video.service.StorageLifecycleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 磁盘配额管理实现
+ * 统计时遍历目录（文件数量不大，每隔几分钟遍历一次的开销可以忽略），访问时间取 touch 记录与修改时间的较大者，
+ * 因此服务重启后也能按修改时间近似排序。ffmpeg 二进制目录和正在上传的 .incoming 目录不参与统计和淘汰。
+ */
+@Service
+public class StorageLifecycleServiceImpl implements StorageLifecycleService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageLifecycleServiceImpl.class);
+
+    /** 淘汰优先级：可重新生成的中间文件 */
+    private static final int TIER_REGENERABLE = 0;
+    /** 淘汰优先级：无法归类的文件 */
+    private static final int TIER_OTHER = 1;
+    /** 淘汰优先级：上传目录中的源文件，仅在开启 evict-task-files 时淘汰，且跳过仍被任务引用的 */
+    private static final int TIER_TASK = 2;
+    /** 任务字幕（用户可能编辑过），从不淘汰 */
+    private static final int TIER_PROTECTED = 3;
+
+    @Value("${file.upload-path:./uploads/}")
+    private String uploadPath;
+
+    @Value("${file.temp-path:./temp/}")
+    private String tempPath;
+
+    @Value("${file.lifecycle.upload-quota:0}")
+    private long uploadQuota;
+
+    @Value("${file.lifecycle.temp-quota:0}")
+    private long tempQuota;
+
+    @Value("${file.lifecycle.min-free-space:1073741824}")
+    private long minFreeSpace;
+
+    @Value("${file.lifecycle.min-idle:600000}")
+    private long minIdleMs;
+
+    @Value("${file.lifecycle.evict-task-files:false}")
+    private boolean evictTaskFiles;
+
+    private volatile TaskFileOwner taskFileOwner;
+
+    /** 后台淘汰线程，hasCapacity 发现空间不足时在这里执行一轮 */
+    private ExecutorService backgroundSweeper;
+    private final AtomicBoolean sweepRequested = new AtomicBoolean();
+
+    private final Map<String, Directory> directories = new LinkedHashMap<>();
+    private final ConcurrentHashMap<Path, Long> lastAccess = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, AtomicInteger> retained = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        directories.put(UPLOAD, new Directory(UPLOAD, normalize(uploadPath), uploadQuota));
+        directories.put(TEMP, new Directory(TEMP, normalize(tempPath), tempQuota));
+        backgroundSweeper = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StorageSweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backgroundSweeper.shutdownNow();
+    }
+
+    @Override
+    public void touch(String path) {
+        if (path != null) {
+            lastAccess.put(normalize(path), System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void retain(String path) {
+        if (path != null) {
+            Path key = normalize(path);
+            retained.computeIfAbsent(key, p -> new AtomicInteger()).incrementAndGet();
+            lastAccess.put(key, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void release(String path) {
+        if (path == null) {
+            return;
+        }
+        Path key = normalize(path);
+        lastAccess.put(key, System.currentTimeMillis());
+        retained.computeIfPresent(key, (p, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    @Override
+    public void registerTaskFileOwner(TaskFileOwner owner) {
+        this.taskFileOwner = owner;
+    }
+
+    @Override
+    public boolean ensureCapacity(String directory, long bytes) {
+        Directory dir = directories.get(directory);
+        if (dir == null) {
+            throw new IllegalArgumentException("未知的目录类型: " + directory);
+        }
+        if (hasCapacity(dir, bytes)) {
+            return true;
+        }
+        log.info("{} 目录空间不足（需要 {} bytes），立即执行一轮淘汰", dir.name, bytes);
+        sweep();
+        return hasCapacity(dir, bytes);
+    }
+
+    @Override
+    public boolean hasCapacity(String directory, long bytes) {
+        Directory dir = directories.get(directory);
+        if (dir == null) {
+            throw new IllegalArgumentException("未知的目录类型: " + directory);
+        }
+        if (hasCapacity(dir, bytes)) {
+            return true;
+        }
+        if (sweepRequested.compareAndSet(false, true)) {
+            log.info("{} 目录空间不足（需要 {} bytes），安排后台淘汰", dir.name, bytes);
+            try {
+                backgroundSweeper.execute(() -> {
+                    try {
+                        sweep();
+                    } finally {
+                        sweepRequested.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                sweepRequested.set(false);
+            }
+        }
+        return false;
+    }
+
+    private boolean hasCapacity(Directory dir, long bytes) {
+        if (dir.quota > 0 && dir.usedBytes + bytes > dir.quota) {
+            return false;
+        }
+        return usableSpace(dir.root) - bytes >= minFreeSpace;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${file.lifecycle.sweep-interval:300000}", initialDelay = 0)
+    public synchronized long sweep() {
+        long freed = 0;
+        for (Directory dir : directories.values()) {
+            try {
+                freed += sweep(dir);
+            } catch (IOException e) {
+                log.warn("{} 目录统计失败: {}", dir.name, e.getMessage());
+            }
+        }
+        return freed;
+    }
+
+    private long sweep(Directory dir) throws IOException {
+        if (!Files.isDirectory(dir.root)) {
+            dir.update(0, 0, 0);
+            return 0;
+        }
+
+        List<Entry> entries = scan(dir);
+        long used = 0;
+        long regenerable = 0;
+        for (Entry entry : entries) {
+            used += entry.size;
+            if (entry.tier == TIER_REGENERABLE) {
+                regenerable += entry.size;
+            }
+        }
+
+        long toFree = Math.max(dir.quota > 0 ? used - dir.quota : 0, minFreeSpace - usableSpace(dir.root));
+        long freed = 0;
+        long freedRegenerable = 0;
+        int files = 0;
+        if (toFree > 0) {
+            long now = System.currentTimeMillis();
+            TaskFileOwner owner = taskFileOwner;
+            Set<Path> referenced = null;
+            entries.sort(Comparator.comparingInt((Entry entry) -> entry.tier)
+                    .thenComparingLong(entry -> entry.lastAccess));
+            for (Entry entry : entries) {
+                if (freed >= toFree) {
+                    break;
+                }
+                if (entry.tier == TIER_PROTECTED || (entry.tier == TIER_TASK && (!evictTaskFiles || owner == null))) {
+                    break;
+                }
+                if (isRetained(dir, entry.path) || now - entry.lastAccess < minIdleMs) {
+                    continue;
+                }
+                if (entry.tier == TIER_TASK) {
+                    // 引用集合只在真正要淘汰源文件时才取一次
+                    if (referenced == null) {
+                        referenced = owner.referencedFiles();
+                    }
+                    if (referenced.contains(entry.path)) {
+                        continue;
+                    }
+                }
+                try {
+                    if (Files.deleteIfExists(entry.path)) {
+                        freed += entry.size;
+                        if (entry.tier == TIER_REGENERABLE) {
+                            freedRegenerable += entry.size;
+                        }
+                        files++;
+                        lastAccess.remove(entry.path);
+                        log.info("淘汰文件: {} ({} bytes, 最后访问于 {} 秒前)", entry.path, entry.size,
+                                (now - entry.lastAccess) / 1000);
+                        if (entry.tier == TIER_TASK) {
+                            owner.fileEvicted(entry.path);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("淘汰文件失败: {} - {}", entry.path, e.getMessage());
+                }
+            }
+            if (freed < toFree) {
+                log.warn("{} 目录仍需释放 {} bytes，剩余文件均在使用中、刚被访问或不可淘汰", dir.name, toFree - freed);
+            }
+            dir.evictedBytes.addAndGet(freed);
+            dir.evictedFiles.addAndGet(files);
+        }
+
+        dir.update(used - freed, regenerable - freedRegenerable, entries.size() - files);
+        return freed;
+    }
+
+    /**
+     * 遍历目录，按文件名归类并取访问时间
+     */
+    private List<Entry> scan(Directory dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(dir.root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                String name = path.getFileName() == null ? "" : path.getFileName().toString();
+                if (!path.equals(dir.root) && isExcludedDirectory(dir, path, name)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    Path key = path.toAbsolutePath().normalize();
+                    long accessed = Math.max(attrs.lastModifiedTime().toMillis(), lastAccess.getOrDefault(key, 0L));
+                    entries.add(new Entry(key, attrs.size(), classify(dir, key), accessed));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                // 文件在遍历过程中被删除等情况，忽略
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * 文件本身或它所在的某一级目录（到配额目录为止）被 retain
+     */
+    private boolean isRetained(Directory dir, Path path) {
+        for (Path current = path; current != null && current.startsWith(dir.root); current = current.getParent()) {
+            if (retained.containsKey(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcludedDirectory(Directory dir, Path path, String name) {
+        Path parent = path.getParent();
+        boolean topLevel = parent != null && parent.equals(dir.root);
+        // 临时目录下的 ffmpeg 二进制文件；上传目录下正在写入的上传
+        return topLevel && ((TEMP.equals(dir.name) && "ffmpeg".equals(name))
+                || (UPLOAD.equals(dir.name) && ".incoming".equals(name)));
+    }
+
+    private int classify(Directory dir, Path path) {
+        if (UPLOAD.equals(dir.name)) {
+            return TIER_TASK;
+        }
+        String name = path.getFileName().toString();
+        Path relative = dir.root.relativize(path);
+        if (name.endsWith("_extracted.wav") || name.endsWith("_waveform.peaks") || name.endsWith(".tmp")
+                || name.matches("\\d+_subtitle_[^.]+\\.srt")
+                || (relative.getNameCount() > 1 && relative.getName(0).toString().startsWith("render_"))) {
+            return TIER_REGENERABLE;
+        }
+        if (name.matches("\\d+_subtitle\\.srt")) {
+            return TIER_PROTECTED;
+        }
+        return TIER_OTHER;
+    }
+
+    @Override
+    public List<DirectoryUsage> getUsage() {
+        List<DirectoryUsage> result = new ArrayList<>();
+        for (Directory dir : directories.values()) {
+            DirectoryUsage usage = new DirectoryUsage();
+            usage.setName(dir.name);
+            usage.setPath(dir.root.toString());
+            usage.setUsedBytes(dir.usedBytes);
+            usage.setRegenerableBytes(dir.regenerableBytes);
+            usage.setQuotaBytes(dir.quota);
+            usage.setFileCount(dir.fileCount);
+            usage.setUsableDiskBytes(usableSpace(dir.root));
+            usage.setEvictedBytes(dir.evictedBytes.get());
+            usage.setEvictedFiles(dir.evictedFiles.get());
+            result.add(usage);
+        }
+        return result;
+    }
+
+    /**
+     * 目录所在磁盘的可用空间；目录尚未创建时取最近的已存在上级目录
+     */
+    private static long usableSpace(Path path) {
+        Path existing = path;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Files.getFileStore(existing).getUsableSpace();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static Path normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 受管理的目录及最近一轮统计结果
+     */
+    private static class Directory {
+        final String name;
+        final Path root;
+        final long quota;
+        final AtomicLong evictedBytes = new AtomicLong();
+        final AtomicLong evictedFiles = new AtomicLong();
+        volatile long usedBytes;
+        volatile long regenerableBytes;
+        volatile long fileCount;
+
+        Directory(String name, Path root, long quota) {
+            this.name = name;
+            this.root = root;
+            this.quota = quota;
+        }
+
+        void update(long usedBytes, long regenerableBytes, long fileCount) {
+            this.usedBytes = usedBytes;
+            this.regenerableBytes = regenerableBytes;
+            this.fileCount = fileCount;
+        }
+    }
+
+    private static class Entry {
+        final Path path;
+        final long size;
+        final int tier;
+        final long lastAccess;
+
+        Entry(Path path, long size, int tier, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.tier = tier;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package com.video.service.impl;
+
+import com.video.model.VideoTask;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 已结束的历史任务的紧凑存储，按列存放在基本类型数组里，读取时再还原成 VideoTask
+ * <p>
+ * 每个任务占一个槽位，各字段一列：
+ * <ul>
+ * <li>ID、版本、文件大小、来源任务、创建和更新时间（毫秒时间戳）存为 long，null 用 Long.MIN_VALUE 表示</li>
+ * <li>状态存为状态表里的序号（byte）；内容哈希是 SHA-256 十六进制时压成 32 字节</li>
+ * <li>字符串存为 int 引用：非负数是字符串表里的序号，小于 -1 是字节堆里的偏移，-1 表示 null</li>
+ * </ul>
+ * 路径和步骤说明里出现的任务 ID、内容哈希和错误信息先替换成占位符，这样 "temp/12_subtitle.srt" 和
+ * "temp/13_subtitle.srt" 是同一个模板，放进字符串表共用一份；原始文件名、错误信息这类各不相同的字符串以
+ * UTF-8 存进字节堆。
+ * <p>
+ * 时间只保留到毫秒。所有方法都同步执行，归档的任务读取频率低，不值得为它做无锁读取。
+ */
+final class TaskArchive {
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final int NULL_REF = -1;
+    /** 内容哈希已压缩存放在 hashes 列 */
+    private static final int PACKED_HASH = Integer.MIN_VALUE;
+    private static final int HASH_BYTES = 32;
+
+    /** 模板占位符：任务 ID、内容哈希、错误信息 */
+    private static final char ID_PLACEHOLDER = '\u0001';
+    private static final char HASH_PLACEHOLDER = '\u0002';
+    private static final char ERROR_PLACEHOLDER = '\u0003';
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** 任务 ID -> 槽位 + 1，0 表示未归档。任务 ID 由自增序列分配，比较稠密，直接按 ID 下标存放 */
+    private int[] slotById = new int[INITIAL_CAPACITY];
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private long[] fileSizes = new long[INITIAL_CAPACITY];
+    private long[] sourceTaskIds = new long[INITIAL_CAPACITY];
+    private long[] createTimes = new long[INITIAL_CAPACITY];
+    private long[] updateTimes = new long[INITIAL_CAPACITY];
+    private int[] progresses = new int[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private byte[] hashes = new byte[INITIAL_CAPACITY * HASH_BYTES];
+    private int[] contentHashes = new int[INITIAL_CAPACITY];
+    private int[] fileNames = new int[INITIAL_CAPACITY];
+    private int[] filePaths = new int[INITIAL_CAPACITY];
+    private int[] originalNames = new int[INITIAL_CAPACITY];
+    private int[] currentSteps = new int[INITIAL_CAPACITY];
+    private int[] subtitlePaths = new int[INITIAL_CAPACITY];
+    private int[] outputPaths = new int[INITIAL_CAPACITY];
+    private int[] encoderPresets = new int[INITIAL_CAPACITY];
+    private int[] errorMessages = new int[INITIAL_CAPACITY];
+
+    /** 已用过的最大槽位 + 1 */
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    private final List<String> statusTable = new ArrayList<>();
+    private final List<String> stringTable = new ArrayList<>();
+    private final Map<String, Integer> stringCodes = new HashMap<>();
+
+    private byte[] heap = new byte[64 * 1024];
+    private int heapSize;
+    /** 字节堆中已不再被引用的字节数，超过一半时整理 */
+    private int heapGarbage;
+
+    /**
+     * 归档任务，已归档过的覆盖旧数据
+     *
+     * @return 任务 ID 超出可直接寻址的范围时返回 false，任务应留在内存中
+     */
+    synchronized boolean add(VideoTask task) {
+        long id = task.getId();
+        if (id <= 0 || id >= Integer.MAX_VALUE - 8) {
+            return false;
+        }
+        remove(id);
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        ensureSlotCapacity(slot + 1);
+        ensureIdCapacity((int) id + 1);
+
+        String idText = String.valueOf(id);
+        String hash = task.getContentHash();
+        String error = task.getErrorMessage();
+        ids[slot] = id;
+        versions[slot] = toLong(task.getVersion());
+        fileSizes[slot] = toLong(task.getFileSize());
+        sourceTaskIds[slot] = toLong(task.getSourceTaskId());
+        createTimes[slot] = toMillis(task.getCreateTime());
+        updateTimes[slot] = toMillis(task.getUpdateTime());
+        progresses[slot] = task.getProgress() == null ? Integer.MIN_VALUE : task.getProgress();
+        statuses[slot] = statusCode(task.getStatus());
+        contentHashes[slot] = packHash(slot, hash) ? PACKED_HASH : encode(hash, false, null, null, null);
+        fileNames[slot] = encode(task.getFileName(), false, idText, hash, null);
+        filePaths[slot] = encode(task.getFilePath(), false, idText, hash, null);
+        originalNames[slot] = encode(task.getOriginalName(), false, null, null, null);
+        currentSteps[slot] = encode(task.getCurrentStep(), true, idText, hash, error);
+        subtitlePaths[slot] = encode(task.getSubtitlePath(), false, idText, hash, null);
+        outputPaths[slot] = encode(task.getOutputPath(), false, idText, hash, null);
+        encoderPresets[slot] = encode(task.getEncoderPreset(), true, null, null, null);
+        errorMessages[slot] = encode(error, false, null, null, null);
+        slotById[(int) id] = slot + 1;
+        return true;
+    }
+
+    /**
+     * 还原归档的任务，每次返回新对象
+     *
+     * @return 未归档时返回 null
+     */
+    synchronized VideoTask get(long id) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            return null;
+        }
+        String idText = String.valueOf(id);
+        String hash = contentHash(slot);
+        String error = decode(errorMessages[slot], null, null, null);
+
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        task.setVersion(toBoxed(versions[slot]));
+        task.setFileSize(toBoxed(fileSizes[slot]));
+        task.setSourceTaskId(toBoxed(sourceTaskIds[slot]));
+        task.setCreateTime(toTime(createTimes[slot]));
+        task.setUpdateTime(toTime(updateTimes[slot]));
+        task.setProgress(progresses[slot] == Integer.MIN_VALUE ? null : progresses[slot]);
+        task.setStatus(statuses[slot] < 0 ? null : statusTable.get(statuses[slot]));
+        task.setContentHash(hash);
+        task.setFileName(decode(fileNames[slot], idText, hash, null));
+        task.setFilePath(decode(filePaths[slot], idText, hash, null));
+        task.setOriginalName(decode(originalNames[slot], null, null, null));
+        task.setCurrentStep(decode(currentSteps[slot], idText, hash, error));
+        task.setSubtitlePath(decode(subtitlePaths[slot], idText, hash, null));
+        task.setOutputPath(decode(outputPaths[slot], idText, hash, null));
+        task.setEncoderPreset(decode(encoderPresets[slot], null, null, null));
+        task.setErrorMessage(error);
+        return task;
+    }
+
+    synchronized boolean contains(long id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * 移出归档（任务重新变为活跃时）
+     */
+    synchronized boolean remove(long id) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        slotById[(int) id] = 0;
+        ids[slot] = 0;
+        for (int[] column : stringColumns()) {
+            heapGarbage += heapLength(heap, column[slot]);
+            column[slot] = NULL_REF;
+        }
+        heapGarbage += heapLength(heap, contentHashes[slot]);
+        contentHashes[slot] = NULL_REF;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        if (heapGarbage > heapSize / 2 && heapGarbage > 1024 * 1024) {
+            compactHeap();
+        }
+        return true;
+    }
+
+    /**
+     * 是否有归档任务使用该视频文件（上传失败的除外）
+     */
+    synchronized boolean referencesFile(String filePath) {
+        int uploadFailed = statusTable.indexOf("UPLOAD_FAILED");
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] == 0 || (uploadFailed >= 0 && statuses[slot] == uploadFailed)) {
+                continue;
+            }
+            if (filePath.equals(decode(filePaths[slot], String.valueOf(ids[slot]), contentHash(slot), null))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 依次访问归档任务的 ID 和视频文件路径（上传失败的除外）
+     */
+    synchronized void forEachFile(BiConsumer<Long, String> action) {
+        int uploadFailed = statusTable.indexOf("UPLOAD_FAILED");
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] == 0 || (uploadFailed >= 0 && statuses[slot] == uploadFailed)) {
+                continue;
+            }
+            String filePath = decode(filePaths[slot], String.valueOf(ids[slot]), contentHash(slot), null);
+            if (filePath != null) {
+                action.accept(ids[slot], filePath);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return slotCount - freeCount;
+    }
+
+    /**
+     * 列数组、字节堆和字符串表大致占用的堆内存（字节）
+     */
+    synchronized long memoryUsage() {
+        long columns = (long) ids.length * (6 * 8 + 10 * 4 + 1 + HASH_BYTES);
+        long strings = 0;
+        for (String value : stringTable) {
+            strings += 64 + value.length() * 2L;
+        }
+        return columns + slotById.length * 4L + heap.length + strings;
+    }
+
+    private int slotOf(long id) {
+        if (id <= 0 || id >= slotById.length) {
+            return -1;
+        }
+        return slotById[(int) id] - 1;
+    }
+
+    private int[][] stringColumns() {
+        return new int[][]{fileNames, filePaths, originalNames, currentSteps, subtitlePaths, outputPaths,
+                encoderPresets, errorMessages};
+    }
+
+    private byte statusCode(String status) {
+        if (status == null) {
+            return -1;
+        }
+        int code = statusTable.indexOf(status);
+        if (code < 0) {
+            if (statusTable.size() >= Byte.MAX_VALUE) {
+                throw new IllegalStateException("任务状态种类过多: " + statusTable.size());
+            }
+            statusTable.add(status);
+            code = statusTable.size() - 1;
+        }
+        return (byte) code;
+    }
+
+    // ---------------------------------------------------------------- 字符串
+
+    /**
+     * 编码字符串：能套用模板的（含任务 ID、哈希或错误信息）和 pooled 字段放进字符串表，其余放进字节堆
+     */
+    private int encode(String value, boolean pooled, String idText, String hash, String error) {
+        if (value == null) {
+            return NULL_REF;
+        }
+        if (hasPlaceholder(value)) {
+            // 本身含占位符字符的原样存放，避免解码时被替换
+            return -2 - appendHeap(value);
+        }
+        String template = substitute(value, error, ERROR_PLACEHOLDER, false);
+        template = substitute(template, hash, HASH_PLACEHOLDER, false);
+        template = substitute(template, idText, ID_PLACEHOLDER, true);
+        Integer code = stringCodes.get(template);
+        if (code != null) {
+            return code;
+        }
+        if (pooled || !template.equals(value)) {
+            stringTable.add(template);
+            stringCodes.put(template, stringTable.size() - 1);
+            return stringTable.size() - 1;
+        }
+        return -2 - appendHeap(value);
+    }
+
+    private String decode(int ref, String idText, String hash, String error) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        if (ref >= 0) {
+            String template = stringTable.get(ref);
+            if (!hasPlaceholder(template)) {
+                return template;
+            }
+            StringBuilder value = new StringBuilder(template.length() + 64);
+            for (int i = 0; i < template.length(); i++) {
+                char c = template.charAt(i);
+                if (c == ID_PLACEHOLDER) {
+                    value.append(idText);
+                } else if (c == HASH_PLACEHOLDER) {
+                    value.append(hash);
+                } else if (c == ERROR_PLACEHOLDER) {
+                    value.append(error);
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+        int offset = -2 - ref;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = heap[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return new String(heap, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把 value 中的 token 换成占位符；数字 token 只替换前后都不是数字的完整出现，避免 ID 1 匹配到 "2024"
+     * 换出来的模板解码时原样换回，即使误匹配也不影响还原结果，只是模板不能共用
+     */
+    private static String substitute(String value, String token, char placeholder, boolean number) {
+        if (token == null || token.isEmpty() || hasPlaceholder(token)) {
+            return value;
+        }
+        int index = value.indexOf(token);
+        if (index < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        int from = 0;
+        while (index >= 0) {
+            int end = index + token.length();
+            if (number && ((index > 0 && Character.isDigit(value.charAt(index - 1)))
+                    || (end < value.length() && Character.isDigit(value.charAt(end))))) {
+                index = value.indexOf(token, index + 1);
+                continue;
+            }
+            result.append(value, from, index).append(placeholder);
+            from = end;
+            index = value.indexOf(token, end);
+        }
+        return from == 0 ? value : result.append(value, from, value.length()).toString();
+    }
+
+    private static boolean hasPlaceholder(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ID_PLACEHOLDER || c == HASH_PLACEHOLDER || c == ERROR_PLACEHOLDER) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int appendHeap(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureHeapCapacity(heapSize + 5 + bytes.length);
+        int offset = heapSize;
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            heap[heapSize++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        heap[heapSize++] = (byte) length;
+        System.arraycopy(bytes, 0, heap, heapSize, bytes.length);
+        heapSize += bytes.length;
+        return offset;
+    }
+
+    /**
+     * 引用在字节堆中占用的字节数，不在堆里的返回 0
+     */
+    private static int heapLength(byte[] data, int ref) {
+        if (ref >= NULL_REF || ref == PACKED_HASH) {
+            return 0;
+        }
+        int offset = -2 - ref;
+        int start = offset;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return offset - start + length;
+    }
+
+    /**
+     * 丢弃字节堆里不再被引用的字符串
+     */
+    private void compactHeap() {
+        byte[] old = heap;
+        heap = new byte[Math.max(64 * 1024, heapSize - heapGarbage + 1024)];
+        heapSize = 0;
+        heapGarbage = 0;
+        int[][] columns = stringColumns();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] == 0) {
+                continue;
+            }
+            for (int[] column : columns) {
+                column[slot] = moveHeap(old, column[slot]);
+            }
+            if (contentHashes[slot] != PACKED_HASH) {
+                contentHashes[slot] = moveHeap(old, contentHashes[slot]);
+            }
+        }
+    }
+
+    private int moveHeap(byte[] old, int ref) {
+        if (ref >= NULL_REF) {
+            return ref;
+        }
+        int length = heapLength(old, ref);
+        ensureHeapCapacity(heapSize + length);
+        System.arraycopy(old, -2 - ref, heap, heapSize, length);
+        heapSize += length;
+        return -2 - (heapSize - length);
+    }
+
+    // ---------------------------------------------------------------- 数值
+
+    /**
+     * SHA-256 十六进制（小写）压成 32 字节存放
+     */
+    private boolean packHash(int slot, String hash) {
+        if (hash == null || hash.length() != HASH_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        int base = slot * HASH_BYTES;
+        for (int i = 0; i < HASH_BYTES; i++) {
+            hashes[base + i] = (byte) Integer.parseInt(hash.substring(i * 2, i * 2 + 2), 16);
+        }
+        return true;
+    }
+
+    private String contentHash(int slot) {
+        return contentHashes[slot] == PACKED_HASH ? unpackHash(slot) : decode(contentHashes[slot], null, null, null);
+    }
+
+    private String unpackHash(int slot) {
+        char[] hex = new char[HASH_BYTES * 2];
+        int base = slot * HASH_BYTES;
+        for (int i = 0; i < HASH_BYTES; i++) {
+            int b = hashes[base + i] & 0xFF;
+            hex[i * 2] = Character.forDigit(b >>> 4, 16);
+            hex[i * 2 + 1] = Character.forDigit(b & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static long toLong(Long value) {
+        return value == null ? NULL_LONG : value;
+    }
+
+    private static Long toBoxed(long value) {
+        return value == NULL_LONG ? null : value;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? NULL_LONG : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        if (millis == NULL_LONG) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    // ---------------------------------------------------------------- 扩容
+
+    private void ensureIdCapacity(int capacity) {
+        if (capacity > slotById.length) {
+            slotById = Arrays.copyOf(slotById, grow(slotById.length, capacity));
+        }
+    }
+
+    private void ensureSlotCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int size = grow(ids.length, capacity);
+        ids = Arrays.copyOf(ids, size);
+        versions = Arrays.copyOf(versions, size);
+        fileSizes = Arrays.copyOf(fileSizes, size);
+        sourceTaskIds = Arrays.copyOf(sourceTaskIds, size);
+        createTimes = Arrays.copyOf(createTimes, size);
+        updateTimes = Arrays.copyOf(updateTimes, size);
+        progresses = Arrays.copyOf(progresses, size);
+        statuses = Arrays.copyOf(statuses, size);
+        hashes = Arrays.copyOf(hashes, size * HASH_BYTES);
+        contentHashes = Arrays.copyOf(contentHashes, size);
+        fileNames = Arrays.copyOf(fileNames, size);
+        filePaths = Arrays.copyOf(filePaths, size);
+        originalNames = Arrays.copyOf(originalNames, size);
+        currentSteps = Arrays.copyOf(currentSteps, size);
+        subtitlePaths = Arrays.copyOf(subtitlePaths, size);
+        outputPaths = Arrays.copyOf(outputPaths, size);
+        encoderPresets = Arrays.copyOf(encoderPresets, size);
+        errorMessages = Arrays.copyOf(errorMessages, size);
+    }
+
+    private void ensureHeapCapacity(int capacity) {
+        if (capacity > heap.length) {
+            heap = Arrays.copyOf(heap, grow(heap.length, capacity));
+        }
+    }
+
+    private static int grow(int current, int required) {
+        long size = Math.max((long) current + (current >> 1), required);
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
+}
@@ -0,0 +1,278 @@
+package com.video.service.impl;
+
+import com.video.model.VideoTask;
+import com.video.service.TaskEventService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务状态推送
+ * 每个订阅者有一张按任务 ID 合并的待推送表：发布只是覆盖表中的条目，并在订阅者空闲时安排一次延迟发送。
+ * 合并窗口结束后由发送线程取出表中所有任务推送，序列化的是发送时的最新状态。
+ * 同一订阅者同时最多一个发送在进行，客户端读得慢时发送线程阻塞在它身上，期间的变化继续合并，不会排队。
+ * 发送线程池和它的队列都有上限；待推送的任务数超过 max-pending，或一次发送超过 send-timeout 仍未完成的订阅者
+ * 会被关闭，不会无限占用内存和发送线程，浏览器的 EventSource 随后会自动重连。
+ * <p>
+ * SseEmitter 的 complete() 和 send() 使用同一个锁，关闭只在调度线程和发布线程上移除订阅者，
+ * complete() 总是由持有 sending 的发送线程调用：阻塞在慢客户端上的发送要等写入失败或完成后才会结束连接，
+ * 但不会拖住调度线程和持有发布锁的 updateTask。
+ */
+@Service
+public class TaskEventServiceImpl implements TaskEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskEventServiceImpl.class);
+
+    private static final String EVENT_NAME = "task";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService senders;
+
+    @Value("${task.events.coalesce-window:250}")
+    private long coalesceWindowMs;
+
+    @Value("${task.events.timeout:1800000}")
+    private long timeoutMs;
+
+    @Value("${task.events.heartbeat-interval:15000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${task.events.sender-threads:8}")
+    private int senderThreads;
+
+    @Value("${task.events.sender-queue:1000}")
+    private int senderQueueCapacity;
+
+    @Value("${task.events.max-pending:1000}")
+    private int maxPending;
+
+    @Value("${task.events.send-timeout:30000}")
+    private long sendTimeoutMs;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("TaskEventScheduler-"));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(senderQueueCapacity), daemonThreads("TaskEventSender-"));
+        pool.allowCoreThreadTimeOut(true);
+        senders = pool;
+        scheduler.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatIntervalMs, heartbeatIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    @Override
+    public SseEmitter subscribe(Long taskId, VideoTask current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, taskId);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("任务事件订阅: {}, 当前订阅者 {}", taskId == null ? "全部任务" : taskId, subscribers.size());
+        if (current != null) {
+            subscriber.pending.put(current.getId(), current);
+            schedule(subscriber, 0);
+        }
+        return emitter;
+    }
+
+    @Override
+    public void publish(VideoTask task) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.taskId == null || subscriber.taskId.equals(task.getId())) {
+                subscriber.pending.put(task.getId(), task);
+                if (subscriber.pending.size() > maxPending) {
+                    close(subscriber, "待推送的任务超过 " + maxPending + " 个");
+                    continue;
+                }
+                schedule(subscriber, coalesceWindowMs);
+            }
+        }
+    }
+
+    @Override
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void schedule(Subscriber subscriber, long delayMs) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            scheduler.schedule(() -> dispatch(subscriber, () -> drain(subscriber)), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 交给发送线程执行；发送队列已满时过一个合并窗口再试，期间的变化继续合并
+     * 调用方已把 sending 置为 true
+     */
+    private void dispatch(Subscriber subscriber, Runnable send) {
+        try {
+            senders.execute(send);
+        } catch (RejectedExecutionException e) {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(() -> dispatch(subscriber, send), Math.max(coalesceWindowMs, 100),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        send(subscriber, () -> {
+            List<VideoTask> batch = new ArrayList<>();
+            for (Long id : subscriber.pending.keySet()) {
+                VideoTask task = subscriber.pending.remove(id);
+                if (task != null) {
+                    batch.add(task);
+                }
+            }
+            for (VideoTask task : batch) {
+                subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(task, MediaType.APPLICATION_JSON));
+            }
+        });
+    }
+
+    /**
+     * 在发送线程上执行一次发送，调用方已把 sending 置为 true
+     * 订阅者已被关闭时改为结束连接；发送期间被关闭的，发送结束后再结束连接
+     */
+    private void send(Subscriber subscriber, SendAction action) {
+        if (!subscribers.contains(subscriber)) {
+            // sending 保持为 true，之后不会再安排发送
+            subscriber.emitter.complete();
+            return;
+        }
+        subscriber.sendStartedAt = System.currentTimeMillis();
+        try {
+            action.send();
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            drop(subscriber, e);
+            return;
+        } finally {
+            subscriber.sendStartedAt = 0;
+            subscriber.sending.set(false);
+        }
+        if (!subscribers.contains(subscriber)) {
+            completeClosed(subscriber);
+        } else if (!subscriber.pending.isEmpty()) {
+            // 发送期间又有变化
+            schedule(subscriber, coalesceWindowMs);
+        }
+    }
+
+    /**
+     * 定期发送注释行，及时发现已断开的连接，也防止中间代理因空闲关闭连接
+     */
+    private void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt > 0 && now - startedAt > sendTimeoutMs) {
+                // 客户端长时间不读，发送线程一直阻塞在它身上
+                close(subscriber, "发送超过 " + sendTimeoutMs + "ms 未完成");
+                continue;
+            }
+            if (subscriber.sending.compareAndSet(false, true)) {
+                dispatch(subscriber, () -> send(subscriber,
+                        () -> subscriber.emitter.send(SseEmitter.event().comment("heartbeat"))));
+            }
+        }
+    }
+
+    /**
+     * 发送失败：在发送线程上调用，可能已被 close 移除，仍由这里结束连接
+     */
+    private void drop(Subscriber subscriber, Exception e) {
+        if (subscribers.remove(subscriber)) {
+            log.debug("任务事件订阅者已断开: {}", e.getMessage());
+        }
+        subscriber.emitter.completeWithError(e);
+    }
+
+    /**
+     * 服务端主动关闭跟不上的订阅者，结束连接后客户端会重连并重新获取状态
+     * 在调度线程或发布线程上调用，只移除订阅者，不调用可能阻塞的 complete()
+     */
+    private void close(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber)) {
+            log.warn("关闭跟不上推送的任务事件订阅者: {}", reason);
+            subscriber.pending.clear();
+            completeClosed(subscriber);
+        }
+    }
+
+    /**
+     * 结束已移除的订阅者：没有发送在进行时交给发送线程 complete()；正在发送时由那次发送结束后处理
+     * （发送线程先释放 sending 再检查订阅者是否还在，与这里先移除再抢 sending 的顺序相反，两边至少一边会看到对方）
+     */
+    private void completeClosed(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            dispatch(subscriber, () -> send(subscriber, () -> { }));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface SendAction {
+        void send() throws IOException;
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Long taskId;
+        /** 待推送的任务，按 ID 合并，只保留最新状态 */
+        private final Map<Long, VideoTask> pending = new ConcurrentHashMap<>();
+        /** 已安排或正在发送 */
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        /** 当前发送的开始时间，没有在发送时为 0 */
+        private volatile long sendStartedAt;
+
+        private Subscriber(SseEmitter emitter, Long taskId) {
+            this.emitter = emitter;
+            this.taskId = taskId;
+        }
+    }
+}
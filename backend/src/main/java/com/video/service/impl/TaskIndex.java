@@ -0,0 +1,298 @@
+package com.video.service.impl;
+
+import com.video.model.TaskPage;
+import com.video.model.VideoTask;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 任务的二级索引：按创建时间排序的跳表、每个状态各自的有序集合和计数，以及按快照版本排序的跳表
+ * 列表查询从索引中按游标取一页，不再每次对全部任务排序；计数直接读取计数器；
+ * 增量同步按版本号取出之后变化过的任务。
+ * <p>
+ * 索引里只存不可变的排序键（创建时间、ID），取出时再按 ID 查最新快照，替换快照不需要改动有序集合。
+ * 状态变化时把键从旧状态的集合移到新状态的集合。更新由调用方串行执行，读取不加锁。
+ */
+final class TaskIndex {
+
+    /** 创建时间倒序，同一时刻按 ID 倒序 */
+    private static final Comparator<Key> NEWEST_FIRST = Comparator
+            .comparingLong((Key key) -> key.epochSecond)
+            .thenComparingInt(key -> key.nano)
+            .thenComparingLong(key -> key.id)
+            .reversed();
+
+    private final Function<Long, VideoTask> lookup;
+
+    private final NavigableSet<Key> byCreateTime = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Key>> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+    /** 快照版本 -> 任务 ID，每个任务只保留最新版本 */
+    private final ConcurrentSkipListMap<Long, Long> byVersion = new ConcurrentSkipListMap<>();
+    /** 任务当前在索引中的位置 */
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param lookup 按 ID 取任务的最新快照
+     */
+    TaskIndex(Function<Long, VideoTask> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * 任务发布了新快照：新任务加入索引，已有任务调整状态集合和版本
+     */
+    synchronized void update(VideoTask task) {
+        Entry previous = entries.get(task.getId());
+        Key key = previous == null ? Key.of(task.getCreateTime(), task.getId()) : previous.key;
+        String status = task.getStatus();
+        entries.put(task.getId(), new Entry(key, status, task.getVersion()));
+
+        if (previous == null) {
+            byCreateTime.add(key);
+        } else {
+            byVersion.remove(previous.version);
+        }
+        byVersion.put(task.getVersion(), task.getId());
+
+        if (previous == null || !status.equals(previous.status)) {
+            if (previous != null) {
+                byStatus.get(previous.status).remove(key);
+                statusCounts.get(previous.status).decrementAndGet();
+            }
+            byStatus.computeIfAbsent(status, s -> new ConcurrentSkipListSet<>(NEWEST_FIRST)).add(key);
+            statusCounts.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * 全部任务，最新的在前
+     */
+    List<VideoTask> all() {
+        List<VideoTask> tasks = new ArrayList<>(entries.size());
+        for (Key key : byCreateTime) {
+            VideoTask task = lookup.apply(key.id);
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    long count() {
+        return entries.size();
+    }
+
+    /**
+     * 各状态的任务数（只包含出现过的状态）
+     */
+    Map<String, Long> countByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.get()));
+        return counts;
+    }
+
+    /**
+     * 按游标取一页
+     *
+     * @param statuses 只返回这些状态的任务，为空时不过滤
+     * @param cursor   上一页返回的游标，为空时从最新的任务开始
+     * @param limit    每页数量，0 表示取到末尾
+     */
+    TaskPage<VideoTask> page(Collection<String> statuses, String cursor, int limit) {
+        Key after = cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor);
+        boolean filtered = statuses != null && !statuses.isEmpty();
+
+        Iterator<Key> iterator;
+        long total;
+        if (!filtered) {
+            iterator = tail(byCreateTime, after).iterator();
+            total = count();
+        } else {
+            List<Iterator<Key>> sources = new ArrayList<>();
+            total = 0;
+            for (String status : new HashSet<>(statuses)) {
+                NavigableSet<Key> set = byStatus.get(status);
+                if (set != null) {
+                    sources.add(tail(set, after).iterator());
+                    total += statusCounts.get(status).get();
+                }
+            }
+            iterator = sources.size() == 1 ? sources.get(0) : new MergingIterator(sources);
+        }
+
+        // 多取一个用来判断是否还有下一页
+        List<VideoTask> items = new ArrayList<>();
+        List<Key> keys = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        while (iterator.hasNext() && (limit <= 0 || items.size() <= limit)) {
+            Key key = iterator.next();
+            VideoTask task = lookup.apply(key.id);
+            // 遍历期间状态变化的任务可能在两个集合里各出现一次，或已不符合过滤条件
+            if (task == null || (filtered && !statuses.contains(task.getStatus())) || !seen.add(key.id)) {
+                continue;
+            }
+            items.add(task);
+            keys.add(key);
+        }
+        String nextCursor = null;
+        if (limit > 0 && items.size() > limit) {
+            items.remove(limit);
+            nextCursor = encodeCursor(keys.get(limit - 1));
+        }
+        return new TaskPage<>(items, nextCursor, total);
+    }
+
+    /**
+     * 快照版本大于 sinceVersion 且不超过 upToVersion 的任务，按版本升序
+     * 返回页的 version 为下次增量查询应传的版本：未截断时为 upToVersion，截断时为本页最后一个任务的索引版本
+     *
+     * @param limit 最多返回的数量，0 表示不限
+     */
+    TaskPage<VideoTask> changedSince(long sinceVersion, long upToVersion, int limit) {
+        List<VideoTask> tasks = new ArrayList<>();
+        long version = Math.max(sinceVersion, upToVersion);
+        if (sinceVersion < upToVersion) {
+            for (Map.Entry<Long, Long> entry : byVersion.subMap(sinceVersion, false, upToVersion, true).entrySet()) {
+                VideoTask task = lookup.apply(entry.getValue());
+                if (task == null) {
+                    continue;
+                }
+                tasks.add(task);
+                if (limit > 0 && tasks.size() >= limit) {
+                    version = entry.getKey();
+                    break;
+                }
+            }
+        }
+        TaskPage<VideoTask> page = new TaskPage<>(tasks, null, (long) tasks.size());
+        page.setVersion(version);
+        return page;
+    }
+
+    private static NavigableSet<Key> tail(NavigableSet<Key> set, Key after) {
+        return after == null ? set : set.tailSet(after, false);
+    }
+
+    /**
+     * 游标为上一页最后一个任务的排序键：创建时间（UTC 秒和纳秒）和 ID
+     */
+    private static String encodeCursor(Key key) {
+        return key.epochSecond + "_" + key.nano + "_" + key.id;
+    }
+
+    private static Key decodeCursor(String cursor) {
+        String[] parts = cursor.split("_");
+        try {
+            if (parts.length != 3) {
+                throw new NumberFormatException(cursor);
+            }
+            long epochSecond = Long.parseLong(parts[0]);
+            int nano = Integer.parseInt(parts[1]);
+            if (nano < 0 || nano > 999_999_999) {
+                throw new NumberFormatException(cursor);
+            }
+            return new Key(epochSecond, nano, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+    }
+
+    /**
+     * 排序键，任务创建后不变。存基本类型而不是 LocalDateTime，任务归档后索引里不再挂着时间对象
+     */
+    private static final class Key {
+
+        private final long epochSecond;
+        private final int nano;
+        private final long id;
+
+        private Key(long epochSecond, int nano, long id) {
+            this.epochSecond = epochSecond;
+            this.nano = nano;
+            this.id = id;
+        }
+
+        static Key of(LocalDateTime createTime, long id) {
+            return new Key(createTime.toEpochSecond(ZoneOffset.UTC), createTime.getNano(), id);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+        private final String status;
+        private final Long version;
+
+        private Entry(Key key, String status, Long version) {
+            this.key = key;
+            this.status = status;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 合并多个同序的迭代器（按状态过滤多个状态时）
+     */
+    private static final class MergingIterator implements Iterator<Key> {
+
+        private final List<Iterator<Key>> sources;
+        private final Key[] heads;
+
+        MergingIterator(List<Iterator<Key>> sources) {
+            this.sources = sources;
+            this.heads = new Key[sources.size()];
+            for (int i = 0; i < heads.length; i++) {
+                advance(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (Key head : heads) {
+                if (head != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Key next() {
+            int best = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && (best < 0 || NEWEST_FIRST.compare(heads[i], heads[best]) < 0)) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                throw new NoSuchElementException();
+            }
+            Key key = heads[best];
+            advance(best);
+            return key;
+        }
+
+        private void advance(int i) {
+            Iterator<Key> source = sources.get(i);
+            heads[i] = source.hasNext() ? source.next() : null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.video.service.impl;
+
+import com.video.media.FFmpegProgressListener;
+import com.video.media.MediaInfo;
+import com.video.media.MediaProbeCache;
+import com.video.media.SegmentedVideoEncoder;
+import com.video.media.SubtitleMuxer;
+import com.video.model.VideoTask;
+import com.video.service.StorageLifecycleService;
+import com.video.service.VideoOutputService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 成品视频输出服务实现
+ */
+@Service
+public class VideoOutputServiceImpl implements VideoOutputService {
+
+    private static final Logger log = LoggerFactory.getLogger(VideoOutputServiceImpl.class);
+
+    @Autowired
+    private MediaProbeCache probeCache;
+
+    @Autowired
+    private SegmentedVideoEncoder videoEncoder;
+
+    @Autowired
+    private SubtitleMuxer subtitleMuxer;
+
+    @Autowired
+    private StorageLifecycleService storageLifecycleService;
+
+    @Value("${file.output-path:./output/}")
+    private String outputPath;
+
+    @Value("${file.temp-path:./temp/}")
+    private String tempPath;
+
+    @Value("${video.render.preset:veryfast}")
+    private String defaultPreset;
+
+    /** 双语字幕每条的各行依次对应的语言（ISO 639-2） */
+    @Value("${video.mux.languages:zho,vie}")
+    private String[] trackLanguages;
+
+    @Value("${video.mux.titles:中文,Tiếng Việt}")
+    private String[] trackTitles;
+
+    @Override
+    public String burnSubtitles(VideoTask task, String preset, FFmpegProgressListener progressListener) {
+        try {
+            checkSubtitle(task);
+            String effectivePreset = resolvePreset(task, preset);
+
+            MediaInfo mediaInfo = MediaInfo.fromProbeResult(probeCache.probe(task.getFilePath()));
+            if (!mediaInfo.hasVideoStream()) {
+                throw new RuntimeException("视频文件中未找到视频流: " + task.getFilePath());
+            }
+
+            Path output = resolveOutputPath(task, "_burned.mp4");
+            // 渲染分段属于可再生文件，渲染期间整个工作目录不参与磁盘配额淘汰
+            Path workDir = Paths.get(tempPath).resolve("render_" + task.getId());
+            storageLifecycleService.retain(workDir.toString());
+            try {
+                videoEncoder.burnSubtitles(task.getFilePath(), mediaInfo, task.getSubtitlePath(), output,
+                        effectivePreset, workDir, progressListener);
+            } finally {
+                storageLifecycleService.release(workDir.toString());
+            }
+            return output.toString();
+
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("字幕烧录失败: {}", task.getId(), e);
+            throw new RuntimeException("字幕烧录失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String muxSubtitles(VideoTask task, FFmpegProgressListener progressListener) {
+        try {
+            checkSubtitle(task);
+            double duration = probeCache.probe(task.getFilePath()).getFormat().duration;
+
+            List<SubtitleMuxer.Track> tracks = splitLanguageTracks(task);
+            if (tracks.isEmpty()) {
+                throw new RuntimeException("字幕内容为空: " + task.getSubtitlePath());
+            }
+
+            Path output = resolveOutputPath(task, "_subtitled." + subtitleMuxer.outputExtension(task.getFilePath()));
+            // 各语言的字幕文件属于可再生文件，封装期间不参与磁盘配额淘汰
+            for (SubtitleMuxer.Track track : tracks) {
+                storageLifecycleService.retain(track.getPath());
+            }
+            try {
+                subtitleMuxer.mux(task.getFilePath(), duration, tracks, output, progressListener);
+            } finally {
+                for (SubtitleMuxer.Track track : tracks) {
+                    storageLifecycleService.release(track.getPath());
+                }
+            }
+            return output.toString();
+
+        } catch (Exception e) {
+            log.error("字幕封装失败: {}", task.getId(), e);
+            throw new RuntimeException("字幕封装失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将双语 SRT 拆成每种语言一个文件：每条字幕的第 N 行文本属于第 N 种语言（与 generateSubtitle 的输出一致），
+     * 没有任何内容的语言不生成轨道
+     */
+    private List<SubtitleMuxer.Track> splitLanguageTracks(VideoTask task) throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get(task.getSubtitlePath())), StandardCharsets.UTF_8);
+        if (content.startsWith("\uFEFF")) {
+            content = content.substring(1);
+        }
+        String[] cues = content.trim().split("\\r?\\n\\s*\\r?\\n");
+
+        List<SubtitleMuxer.Track> tracks = new ArrayList<>();
+        for (int language = 0; language < trackLanguages.length; language++) {
+            StringBuilder srt = new StringBuilder();
+            int index = 0;
+            for (String cue : cues) {
+                String[] lines = cue.split("\\r?\\n");
+                int timing = 0;
+                while (timing < lines.length && !lines[timing].contains("-->")) {
+                    timing++;
+                }
+                int textLine = timing + 1 + language;
+                if (textLine >= lines.length || lines[textLine].trim().isEmpty()) {
+                    continue;
+                }
+                srt.append(++index).append("\n")
+                        .append(lines[timing].trim()).append("\n")
+                        .append(lines[textLine].trim()).append("\n\n");
+            }
+            if (index == 0) {
+                continue;
+            }
+            String languageCode = trackLanguages[language].trim();
+            Path trackPath = Paths.get(tempPath).resolve(task.getId() + "_subtitle_" + languageCode + ".srt");
+            Files.write(trackPath, srt.toString().getBytes(StandardCharsets.UTF_8));
+            String title = language < trackTitles.length ? trackTitles[language].trim() : null;
+            tracks.add(new SubtitleMuxer.Track(trackPath.toString(), languageCode, title));
+        }
+        return tracks;
+    }
+
+    /**
+     * 预设优先级：本次请求 > 任务设置 > 配置默认值
+     */
+    private String resolvePreset(VideoTask task, String preset) {
+        if (preset != null && !preset.isEmpty()) {
+            return preset;
+        }
+        if (task.getEncoderPreset() != null && !task.getEncoderPreset().isEmpty()) {
+            return task.getEncoderPreset();
+        }
+        return defaultPreset;
+    }
+
+    private void checkSubtitle(VideoTask task) {
+        if (task.getSubtitlePath() == null || !Files.exists(Paths.get(task.getSubtitlePath()))) {
+            throw new RuntimeException("任务尚未生成字幕: " + task.getId());
+        }
+    }
+
+    /**
+     * 输出目录下的 {任务ID}{后缀}
+     */
+    private Path resolveOutputPath(VideoTask task, String suffix) throws IOException {
+        Path outputDir = Paths.get(outputPath);
+        if (!Files.exists(outputDir)) {
+            Files.createDirectories(outputDir);
+        }
+        return outputDir.resolve(task.getId() + suffix);
+    }
+}
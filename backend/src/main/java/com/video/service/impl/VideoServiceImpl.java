@@ -1,50 +1,255 @@
 package com.video.service.impl;
 
 // import com.video.mapper.VideoTaskMapper;
+import com.video.media.FFmpegProgressListener;
+import com.video.media.InvalidMediaException;
+import com.video.media.IsoBmffStructureValidator;
+import com.video.model.TaskPage;
 import com.video.model.VideoTask;
+import com.video.repository.TaskRepository;
 import com.video.service.AudioExtractionService;
+import com.video.service.ContentStorageService;
+import com.video.service.ProcessingPriority;
+import com.video.service.StorageLifecycleService;
+import com.video.service.TaskEventService;
+import com.video.service.VideoOutputService;
 import com.video.service.VideoService;
+import com.video.service.WaveformService;
 import com.video.service.WhisperService;
 import com.video.service.TranslationService;
 import com.video.service.impl.AudioExtractionServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 视频处理服务实现
  */
 @Service
-public class VideoServiceImpl implements VideoService {
+public class VideoServiceImpl implements VideoService, ApplicationListener<ApplicationReadyEvent> {
 
     private static final Logger log = LoggerFactory.getLogger(VideoServiceImpl.class);
 
+    /** 音频提取在整体进度中占的区间（语音识别阶段 20~50 的前半部分） */
+    private static final int EXTRACTION_PROGRESS_START = 20;
+    private static final int EXTRACTION_PROGRESS_END = 45;
+
     private final WhisperService whisperService;
     private final TranslationService translationService;
     private final AudioExtractionService audioExtractionService;
-    // 使用内存存储替代数据库
+    private final VideoOutputService videoOutputService;
+    private final WaveformService waveformService;
+    private final ContentStorageService contentStorageService;
+    private final StorageLifecycleService storageLifecycleService;
+    private final TaskRepository taskRepository;
+    private final TaskEventService taskEventService;
+    // 处理流水线：媒体 -> 文本 -> 输出，见 processVideo
+    private final PipelineStage mediaStage;
+    private final PipelineStage textStage;
+    private final PipelineStage outputStage;
+    private final FairJobQueue mediaQueue;
+    private final Executor renderExecutor;
+    // 正在生成成品视频的任务，同一任务同时只能有一个渲染（输出路径相同）
+    private final Set<Long> renderingTasks = ConcurrentHashMap.newKeySet();
+    private final int mediaThreads;
+    private ProcessingAdmission admission;
+    // 任务 ID -> 最新快照。读取直接取快照、不加锁；修改在 publishLock 内复制出新快照整体替换（见 updateTask）。
+    // 变更通过 TaskRepository 写后批量落库，启动时从数据库加载
     private final ConcurrentHashMap<Long, VideoTask> taskStorage = new ConcurrentHashMap<>();
+    // 结束较久的任务从 taskStorage 移到这里紧凑存放，读取时还原（见 findTask）
+    private final TaskArchive taskArchive = new TaskArchive();
     private final AtomicLong idGenerator = new AtomicLong(1);
+    // 按创建时间、状态和快照版本的二级索引，列表、计数和增量查询不再遍历排序全部任务
+    private final TaskIndex taskIndex = new TaskIndex(this::findTask);
+    private final Object publishLock = new Object();
+    // 快照版本号不落库，从启动时刻（微秒）开始递增，重启后的版本总大于重启前的，增量同步的客户端会收到一次全量
+    private long lastVersion = System.currentTimeMillis() * 1000;
+    // 已发布的最大版本，不超过它的快照都已可见
+    private volatile long publishedVersion = lastVersion;
+    // 内容哈希 -> 最近完成处理的任务，用于重复上传时复用结果
+    private final ConcurrentHashMap<String, Long> completedTaskByHash = new ConcurrentHashMap<>();
+    // 重启前处理到一半的任务，应用启动完成后重新排队
+    private final List<Long> interruptedTaskIds = new ArrayList<>();
+    private ScheduledExecutorService archiver;
+
+    @Value("${task.retention.archive-after:3600000}")
+    private long archiveAfterMs;
+
+    @Value("${task.retention.sweep-interval:60000}")
+    private long archiveSweepIntervalMs;
+
+    @Value("${task.pipeline.media.interactive-weight:4}")
+    private int interactiveWeight;
+
+    @Value("${task.admission.max-queued-per-client:10}")
+    private int maxQueuedPerClient;
+
+    @Value("${task.admission.interactive-reserve:20}")
+    private int interactiveReserve;
+
+    @Value("${task.admission.max-wait:1800000}")
+    private long maxWaitMs;
+
+    @Value("${task.admission.disk-retry-after:60000}")
+    private long diskRetryAfterMs;
+
+    @Value("${task.admission.initial-ms-per-mb:2000}")
+    private long initialMsPerMb;
 
     public VideoServiceImpl(WhisperService whisperService, TranslationService translationService,
-            AudioExtractionService audioExtractionService) {
+            AudioExtractionService audioExtractionService, VideoOutputService videoOutputService,
+            WaveformService waveformService, ContentStorageService contentStorageService,
+            StorageLifecycleService storageLifecycleService, TaskRepository taskRepository,
+            TaskEventService taskEventService,
+            @Qualifier("mediaStageExecutor") ThreadPoolTaskExecutor mediaStageExecutor,
+            @Qualifier("textStageExecutor") ThreadPoolTaskExecutor textStageExecutor,
+            @Qualifier("outputStageExecutor") ThreadPoolTaskExecutor outputStageExecutor,
+            @Qualifier("videoProcessExecutor") Executor renderExecutor) {
         this.whisperService = whisperService;
         this.translationService = translationService;
         this.audioExtractionService = audioExtractionService;
+        this.videoOutputService = videoOutputService;
+        this.waveformService = waveformService;
+        this.contentStorageService = contentStorageService;
+        this.storageLifecycleService = storageLifecycleService;
+        this.taskRepository = taskRepository;
+        this.taskEventService = taskEventService;
+        this.mediaStage = new PipelineStage("媒体处理", mediaStageExecutor);
+        this.mediaQueue = (FairJobQueue) mediaStageExecutor.getThreadPoolExecutor().getQueue();
+        this.mediaThreads = mediaStageExecutor.getCorePoolSize();
+        this.renderExecutor = renderExecutor;
+        this.textStage = new PipelineStage("翻译分词", textStageExecutor);
+        this.outputStage = new PipelineStage("字幕输出", outputStageExecutor);
+    }
+
+    /**
+     * 恢复持久化的任务：ID 从已有最大值之后继续分配，重启前未处理完的任务等启动完成后重新处理，
+     * 已结束较久的任务直接放进归档
+     */
+    @PostConstruct
+    public void loadTasks() {
+        List<VideoTask> tasks = taskRepository.findAll();
+        LocalDateTime archiveBefore = archiveCutoff();
+        synchronized (publishLock) {
+            for (VideoTask task : tasks) {
+                task.setVersion(++lastVersion);
+                if (!isArchivable(task, archiveBefore) || !taskArchive.add(task)) {
+                    taskStorage.put(task.getId(), task);
+                }
+                taskIndex.update(task);
+                if ("COMPLETED".equals(task.getStatus()) && task.getContentHash() != null) {
+                    completedTaskByHash.merge(task.getContentHash(), task.getId(), Math::max);
+                }
+                if ("PROCESSING".equals(task.getStatus())) {
+                    interruptedTaskIds.add(task.getId());
+                }
+            }
+            publishedVersion = lastVersion;
+        }
+        for (Long taskId : interruptedTaskIds) {
+            updateTaskStatus(taskId, "PROCESSING", 0, "服务重启，等待重新处理");
+        }
+        idGenerator.set(taskRepository.findMaxId() + 1);
+        log.info("已加载任务: {} 个, 其中 {} 个处理中断, {} 个已归档", tasks.size(), interruptedTaskIds.size(),
+                taskArchive.size());
+
+        if (archiveAfterMs > 0) {
+            archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TaskArchiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            archiver.scheduleWithFixedDelay(this::archiveFinishedTasks, archiveSweepIntervalMs,
+                    archiveSweepIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PostConstruct
+    public void initAdmission() {
+        admission = new ProcessingAdmission(mediaStage, mediaQueue, mediaThreads, interactiveWeight,
+                storageLifecycleService, maxQueuedPerClient, interactiveReserve, maxWaitMs, diskRetryAfterMs,
+                initialMsPerMb);
+    }
+
+    /**
+     * 上传目录的淘汰不动仍被任务引用的源文件
+     */
+    @PostConstruct
+    public void registerTaskFiles() {
+        storageLifecycleService.registerTaskFileOwner(new StorageLifecycleService.TaskFileOwner() {
+            @Override
+            public Set<Path> referencedFiles() {
+                Set<Path> files = new HashSet<>();
+                forEachTaskFile((taskId, filePath) -> files.add(normalizePath(filePath)));
+                return files;
+            }
+
+            @Override
+            public void fileEvicted(Path path) {
+                markSourceEvicted(path);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    /**
+     * 应用启动完成后把中断的任务重新提交到处理流水线，队列已满的标记为失败
+     */
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        for (Long taskId : interruptedTaskIds) {
+            try {
+                processVideo(taskId);
+                log.info("中断的任务已重新排队: {}", taskId);
+            } catch (TaskRejectedException e) {
+                updateTask(taskId, task -> {
+                    task.setErrorMessage("服务重启后处理队列已满，请重新提交处理");
+                    task.setStatus("FAILED");
+                    task.setProgress(0);
+                    task.setCurrentStep("处理失败: 服务重启后处理队列已满");
+                });
+            }
+        }
+        interruptedTaskIds.clear();
     }
 
     @Value("${file.upload-path:./uploads/}")
@@ -76,85 +281,192 @@ public class VideoServiceImpl implements VideoService {
                 throw new IOException("上传目录不可写: " + uploadDir.toAbsolutePath());
             }
 
-            // 生成文件名
-            String fileName = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            Path filePath = uploadDir.resolve(fileName);
-            log.info("目标文件路径: {}", filePath.toAbsolutePath());
-
-            // 保存文件
-            file.transferTo(filePath.toFile());
-            log.info("文件保存成功: {}", filePath.toAbsolutePath());
+            if (!storageLifecycleService.ensureCapacity(StorageLifecycleService.UPLOAD, file.getSize())) {
+                throw new IOException("存储空间不足，请稍后再试");
+            }
 
-            // 验证文件是否保存成功
-            if (!Files.exists(filePath)) {
-                throw new IOException("文件保存失败，文件不存在: " + filePath.toAbsolutePath());
+            // 边写边计算 SHA-256，按内容地址存放，相同内容只保存一份；
+            // 同时检查容器结构，无效的文件不会进入存储。multipart 请求体此时已由 Spring 完整接收，
+            // 这里只省去后续的复制和探测，在传输过程中中止需要走分片上传
+            IsoBmffStructureValidator validator = new IsoBmffStructureValidator(file.getOriginalFilename(),
+                    file.getSize());
+            ContentStorageService.StoredFile stored;
+            try (InputStream in = validator.wrap(file.getInputStream())) {
+                stored = contentStorageService.store(in, file.getOriginalFilename());
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof InvalidMediaException) {
+                    throw rejectUpload(file.getOriginalFilename(), file.getSize(), e.getCause().getMessage());
+                }
+                throw e;
             }
+            log.info("文件保存成功: {} (SHA-256: {})", stored.getPath().toAbsolutePath(), stored.getHash());
 
-            // 立即验证视频文件的完整性和格式
-            log.info("开始验证上传的视频文件: {}", filePath.toAbsolutePath());
-            String validationError = validateVideoFile(filePath.toString());
+            return createTask(stored, file.getOriginalFilename());
 
-            // 创建任务
-            VideoTask task = new VideoTask();
-            task.setId(idGenerator.getAndIncrement());
-            task.setFileName(fileName);
-            task.setFilePath(filePath.toString());
-            task.setOriginalName(file.getOriginalFilename());
-            task.setFileSize(file.getSize());
-            task.setCreateTime(LocalDateTime.now());
-            task.setUpdateTime(LocalDateTime.now());
+        } catch (IOException e) {
+            log.error("文件上传失败", e);
+            throw new RuntimeException("文件上传失败: " + e.getMessage());
+        }
+    }
 
-            if (validationError != null) {
-                // 验证失败
-                task.setStatus("UPLOAD_FAILED");
-                task.setProgress(0);
-                task.setCurrentStep("视频文件验证失败");
-                task.setErrorMessage(validationError);
-                log.error("视频文件验证失败: {} - {}", filePath, validationError);
+    @Override
+    public VideoTask registerUploadedFile(String filePath, String originalName) {
+        ContentStorageService.StoredFile stored = contentStorageService.storeFile(Paths.get(filePath), originalName);
+        log.info("文件登记成功: {} (SHA-256: {})", stored.getPath().toAbsolutePath(), stored.getHash());
+        return createTask(stored, originalName);
+    }
+
+    /**
+     * 验证已保存的视频文件并创建任务，验证失败时删除文件并抛出异常
+     * 内容与某个已完成的任务相同时直接复用其处理结果，不再验证和处理
+     */
+    private VideoTask createTask(ContentStorageService.StoredFile stored, String originalName) {
+        Path filePath = stored.getPath();
+        String fileName = filePath.getFileName().toString();
+        storageLifecycleService.touch(filePath.toString());
 
-                // 删除无效的文件
+        // 创建任务
+        VideoTask task = new VideoTask();
+        task.setId(idGenerator.getAndIncrement());
+        task.setFileName(fileName);
+        task.setFilePath(filePath.toString());
+        task.setOriginalName(originalName);
+        task.setFileSize(stored.getSize());
+        task.setContentHash(stored.getHash());
+        task.setCreateTime(LocalDateTime.now());
+        task.setUpdateTime(LocalDateTime.now());
+
+        VideoTask source = findCompletedTask(stored.getHash());
+        Consumer<VideoTask> link = source == null ? null : linkResults(task, source);
+        if (link != null) {
+            link.accept(task);
+            saveNewTask(task);
+            log.info("视频文件上传成功: {}, 任务ID: {}（复用任务 {} 的结果）", fileName, task.getId(), source.getId());
+            return task;
+        }
+
+        // 立即验证视频文件的完整性和格式
+        log.info("开始验证上传的视频文件: {}", filePath.toAbsolutePath());
+        String validationError = validateVideoFile(filePath.toString());
+
+        if (validationError != null) {
+            // 验证失败
+            markUploadFailed(task, validationError);
+            log.error("视频文件验证失败: {} - {}", filePath, validationError);
+
+            // 删除无效的文件（内容寻址存储中的文件可能被其他任务共用）
+            if (isFileReferenced(task.getFilePath())) {
+                log.warn("无效文件仍被其他任务引用，保留: {}", filePath);
+            } else {
                 try {
                     Files.deleteIfExists(filePath);
                     log.info("已删除无效的视频文件: {}", filePath);
                 } catch (IOException e) {
                     log.warn("删除无效文件失败: {}", e.getMessage());
                 }
-
-                // 保存失败的任务记录
-                taskStorage.put(task.getId(), task);
-                throw new RuntimeException("视频文件验证失败: " + validationError);
-            } else {
-                // 验证成功
-                task.setStatus("UPLOADED");
-                task.setProgress(0);
-                task.setCurrentStep("文件上传并验证完成");
-                log.info("视频文件上传并验证成功: {}", filePath);
             }
 
-            // 保存到内存
-            taskStorage.put(task.getId(), task);
+            throw new RuntimeException("视频文件验证失败: " + validationError);
+        } else {
+            // 验证成功
+            task.setStatus("UPLOADED");
+            task.setProgress(0);
+            task.setCurrentStep("文件上传并验证完成");
+            log.info("视频文件上传并验证成功: {}", filePath);
+        }
 
-            log.info("视频文件上传成功: {}, 任务ID: {}", fileName, task.getId());
-            return task;
+        saveNewTask(task);
 
-        } catch (IOException e) {
-            log.error("文件上传失败", e);
-            throw new RuntimeException("文件上传失败: " + e.getMessage());
-        }
+        log.info("视频文件上传成功: {}, 任务ID: {}", fileName, task.getId());
+        return task;
     }
 
+    /**
+     * 任务进入处理流水线，各阶段有独立的线程池和有界队列：
+     * <ol>
+     * <li>媒体处理：验证视频、提取音频、语音识别，CPU 密集，线程数等于核数</li>
+     * <li>翻译分词：调用 OpenAI，主要在等待网络，线程数远多于核数</li>
+     * <li>字幕输出：生成并写入字幕文件</li>
+     * </ol>
+     * 等待翻译的任务不再占着媒体处理的线程；下游队列满时上游线程等待，积压停在瓶颈阶段之前。
+     * 入口队列按优先级和客户端公平出队，提交前经过准入控制（见 ProcessingAdmission），
+     * 未被接纳时任务恢复到提交前的状态。
+     * 服务关闭时还在流水线中的任务保持处理中状态，重启后重新处理。
+     */
     @Override
-    @Async
     public void processVideo(Long taskId) {
-        VideoTask task = taskStorage.get(taskId);
+        VideoTask task = findTask(taskId);
+        if (task == null) {
+            throw new RuntimeException("任务不存在");
+        }
+        long fileSize = task.getFileSize() == null ? 0 : task.getFileSize();
+        try {
+            enqueue(task, () -> admission.submitRecovered(fileSize, () -> runMediaStage(taskId, fileSize)));
+        } catch (TaskRejectedException e) {
+            throw new TaskRejectedException("处理队列已满，请稍后重试", e);
+        }
+    }
+
+    @Override
+    public void processVideo(Long taskId, ProcessingPriority priority, String clientId) {
+        VideoTask task = findTask(taskId);
         if (task == null) {
-            log.error("任务不存在: {}", taskId);
+            throw new RuntimeException("任务不存在");
+        }
+        if ("PROCESSING".equals(task.getStatus())) {
+            throw new RuntimeException("任务正在处理中");
+        }
+        if (renderingTasks.contains(taskId)) {
+            throw new RuntimeException("成品视频生成中，请完成后再重新处理");
+        }
+        ProcessingPriority effective = priority != null ? priority
+                : "COMPLETED".equals(task.getStatus()) || "FAILED".equals(task.getStatus())
+                        ? ProcessingPriority.INTERACTIVE : ProcessingPriority.BULK;
+        long fileSize = task.getFileSize() == null ? 0 : task.getFileSize();
+        enqueue(task, () -> admission.submit(effective, clientId, fileSize, () -> runMediaStage(taskId, fileSize)));
+        log.info("任务 {} 已进入处理队列, 优先级: {}, 客户端: {}", taskId, effective, clientId);
+    }
+
+    /**
+     * 标记为排队等待处理后提交，被拒绝时恢复到提交前的状态
+     */
+    private void enqueue(VideoTask task, Runnable submit) {
+        updateTaskStatus(task.getId(), "PROCESSING", 5, "排队等待处理");
+        try {
+            submit.run();
+        } catch (TaskRejectedException e) {
+            updateTask(task.getId(), restored -> {
+                restored.setStatus(task.getStatus());
+                restored.setProgress(task.getProgress());
+                restored.setCurrentStep(task.getCurrentStep());
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * 媒体阶段：复用相同内容的结果，或验证视频并语音识别，完成后交给文本阶段
+     * 实际耗时用来更新准入控制的处理速度估算
+     */
+    private void runMediaStage(Long taskId, long fileSize) {
+        VideoTask task = findTask(taskId);
+
+        // 上传后才完成处理的相同内容任务，同样直接复用
+        VideoTask source = findCompletedTask(task.getContentHash());
+        Consumer<VideoTask> link = source == null || source.getId().equals(taskId) ? null : linkResults(task, source);
+        if (link != null) {
+            updateTask(taskId, link);
             return;
         }
 
+        // 处理期间源文件和提取的音频不参与磁盘配额淘汰，之后的阶段不再读取这两个文件
+        String audioPath = audioExtractionService.getExtractedAudioPath(task.getFilePath());
+        storageLifecycleService.retain(task.getFilePath());
+        storageLifecycleService.retain(audioPath);
         try {
+            long start = System.currentTimeMillis();
             // 更新状态为处理中
-            updateTaskStatus(task, "PROCESSING", 10, "开始处理视频");
+            updateTaskStatus(taskId, "PROCESSING", 10, "开始处理视频");
 
             // 再次验证视频文件（防止文件在上传后被损坏）
             String validationError = validateVideoFile(task.getFilePath());
@@ -163,38 +475,86 @@ public class VideoServiceImpl implements VideoService {
             }
 
             // 步骤1: 语音识别
-            updateTaskStatus(task, "PROCESSING", 20, "语音识别中");
-            String chineseText = whisperService.transcribe(task.getFilePath());
+            updateTaskStatus(taskId, "PROCESSING", 20, "语音识别中");
+            String chineseText = whisperService.transcribe(task.getFilePath(), extractionProgressListener(taskId));
+            prepareWaveform(task);
+            admission.recordMediaWork(fileSize, System.currentTimeMillis() - start);
 
+            textStage.handOff(() -> runTextStage(task, chineseText));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("服务关闭，任务 {} 将在重启后重新处理", taskId);
+        } catch (Exception e) {
+            failProcessing(taskId, e);
+        } finally {
+            storageLifecycleService.release(task.getFilePath());
+            storageLifecycleService.release(audioPath);
+        }
+    }
+
+    /**
+     * 文本阶段：翻译和词组拆分，完成后交给输出阶段
+     */
+    private void runTextStage(VideoTask task, String chineseText) {
+        Long taskId = task.getId();
+        try {
             // 步骤2: 翻译处理
-            updateTaskStatus(task, "PROCESSING", 50, "翻译处理中");
+            updateTaskStatus(taskId, "PROCESSING", 50, "翻译处理中");
             String vietnameseText = translationService.translate(chineseText, "zh", "vi");
 
             // 步骤3: 词组拆分
-            updateTaskStatus(task, "PROCESSING", 70, "词组拆分中");
+            updateTaskStatus(taskId, "PROCESSING", 70, "词组拆分中");
             String segmentedText = translationService.segmentText(chineseText);
 
+            outputStage.handOff(() -> runOutputStage(task, chineseText, vietnameseText, segmentedText));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("服务关闭，任务 {} 将在重启后重新处理", taskId);
+        } catch (Exception e) {
+            failProcessing(taskId, e);
+        }
+    }
+
+    /**
+     * 输出阶段：生成并保存字幕，任务完成
+     */
+    private void runOutputStage(VideoTask task, String chineseText, String vietnameseText, String segmentedText) {
+        Long taskId = task.getId();
+        try {
             // 步骤4: 生成字幕
-            updateTaskStatus(task, "PROCESSING", 90, "生成字幕中");
+            updateTaskStatus(taskId, "PROCESSING", 90, "生成字幕中");
             String subtitleContent = generateSubtitle(chineseText, vietnameseText, segmentedText);
 
             // 保存字幕文件
             String subtitlePath = saveSubtitle(taskId, subtitleContent);
-            task.setSubtitlePath(subtitlePath);
 
             // 完成处理
-            updateTaskStatus(task, "COMPLETED", 100, "处理完成");
-
+            updateTask(taskId, completed -> {
+                completed.setSubtitlePath(subtitlePath);
+                completed.setStatus("COMPLETED");
+                completed.setProgress(100);
+                completed.setCurrentStep("处理完成");
+            });
+            if (task.getContentHash() != null) {
+                completedTaskByHash.put(task.getContentHash(), taskId);
+            }
         } catch (Exception e) {
-            log.error("视频处理失败", e);
-            updateTaskStatus(task, "FAILED", task.getProgress(), "处理失败: " + e.getMessage());
-            task.setErrorMessage(e.getMessage());
+            failProcessing(taskId, e);
         }
     }
 
+    private void failProcessing(Long taskId, Exception e) {
+        log.error("视频处理失败", e);
+        updateTask(taskId, failed -> {
+            failed.setErrorMessage(e.getMessage());
+            failed.setStatus("FAILED");
+            failed.setCurrentStep("处理失败: " + e.getMessage());
+        });
+    }
+
     @Override
     public VideoTask getTask(Long taskId) {
-        VideoTask task = taskStorage.get(taskId);
+        VideoTask task = findTask(taskId);
         if (task == null) {
             throw new RuntimeException("任务不存在");
         }
@@ -203,22 +563,53 @@ public class VideoServiceImpl implements VideoService {
 
     @Override
     public List<VideoTask> getAllTasks() {
-        return taskStorage.values().stream()
-                .sorted((t1, t2) -> t2.getCreateTime().compareTo(t1.getCreateTime()))
-                .collect(Collectors.toList());
+        return taskIndex.all();
+    }
+
+    @Override
+    public TaskPage<VideoTask> listTasks(Collection<String> statuses, String cursor, int limit) {
+        // 先取版本：之后发生的变化一定在该版本之后，客户端增量查询不会漏掉
+        long version = publishedVersion;
+        TaskPage<VideoTask> page = taskIndex.page(statuses, cursor, limit);
+        page.setVersion(version);
+        return page;
+    }
+
+    @Override
+    public TaskPage<VideoTask> listTasksChangedSince(long sinceVersion, int limit) {
+        return taskIndex.changedSince(sinceVersion, publishedVersion, limit);
+    }
+
+    @Override
+    public long countTasks() {
+        return taskIndex.count();
+    }
+
+    @Override
+    public Map<String, Long> countTasksByStatus() {
+        return taskIndex.countByStatus();
+    }
+
+    @Override
+    public long countArchivedTasks() {
+        return taskArchive.size();
+    }
+
+    @Override
+    public String getPipelineStatus() {
+        return "处理流水线:\n- " + mediaStage + "\n- " + textStage + "\n- " + outputStage + "\n- "
+                + admission.getStatus() + "\n";
     }
 
     @Override
     public void updateSubtitle(Long taskId, String subtitleContent) {
-        VideoTask task = taskStorage.get(taskId);
-        if (task == null) {
+        if (findTask(taskId) == null) {
             throw new RuntimeException("任务不存在");
         }
 
         try {
             String subtitlePath = saveSubtitle(taskId, subtitleContent);
-            task.setSubtitlePath(subtitlePath);
-            task.setUpdateTime(LocalDateTime.now());
+            updateTask(taskId, task -> task.setSubtitlePath(subtitlePath));
 
             log.info("字幕更新成功: {}", taskId);
         } catch (Exception e) {
@@ -227,13 +618,355 @@ public class VideoServiceImpl implements VideoService {
         }
     }
 
-    private void updateTaskStatus(VideoTask task, String status, Integer progress, String currentStep) {
-        task.setStatus(status);
-        task.setProgress(progress);
-        task.setCurrentStep(currentStep);
+    /**
+     * 只有处理完成的任务可以生成成品视频，同一任务同时只允许一个渲染；
+     * 检查通过后提交到渲染线程池并立即返回
+     */
+    @Override
+    public void renderVideo(Long taskId, String mode, String preset) {
+        VideoTask task = findTask(taskId);
+        if (task == null) {
+            throw new RuntimeException("任务不存在");
+        }
+        if (!"COMPLETED".equals(task.getStatus())) {
+            throw new RuntimeException("任务尚未处理完成，无法生成成品视频");
+        }
+        if (!renderingTasks.add(taskId)) {
+            throw new RuntimeException("成品视频正在生成中，请等待完成");
+        }
+        try {
+            renderExecutor.execute(() -> {
+                try {
+                    runRender(taskId, mode, preset);
+                } finally {
+                    renderingTasks.remove(taskId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            renderingTasks.remove(taskId);
+            throw new RuntimeException("渲染队列已满，请稍后重试", e);
+        }
+    }
+
+    private void runRender(Long taskId, String mode, String preset) {
+        VideoTask task = findTask(taskId);
+        boolean soft = VideoOutputService.MODE_SOFT.equals(mode);
+        if (preset != null && !preset.isEmpty()) {
+            task = updateTask(taskId, t -> t.setEncoderPreset(preset));
+        }
+        String subtitlePath = task.getSubtitlePath();
+        storageLifecycleService.retain(task.getFilePath());
+        storageLifecycleService.retain(subtitlePath);
+        try {
+            String outputPath;
+            if (soft) {
+                updateTaskStep(taskId, "封装字幕轨道中");
+                outputPath = videoOutputService.muxSubtitles(task, null);
+            } else {
+                updateTaskStep(taskId, "渲染字幕视频中");
+                outputPath = videoOutputService.burnSubtitles(task, preset, renderProgressListener(taskId));
+            }
+            updateTask(taskId, t -> {
+                t.setOutputPath(outputPath);
+                t.setCurrentStep(soft ? "字幕轨道封装完成" : "字幕视频渲染完成");
+            });
+        } catch (Exception e) {
+            log.error("成品视频生成失败: {}", taskId, e);
+            updateTask(taskId, t -> {
+                t.setErrorMessage(e.getMessage());
+                t.setCurrentStep("成品视频生成失败: " + e.getMessage());
+            });
+        } finally {
+            storageLifecycleService.release(task.getFilePath());
+            storageLifecycleService.release(subtitlePath);
+        }
+    }
+
+    private void updateTaskStatus(Long taskId, String status, Integer progress, String currentStep) {
+        updateTask(taskId, task -> {
+            task.setStatus(status);
+            task.setProgress(progress);
+            task.setCurrentStep(currentStep);
+        });
+        log.info("任务状态更新: {} - {} - {}", taskId, progress, currentStep);
+    }
+
+    /**
+     * 只更新当前步骤，状态和进度不变
+     */
+    private void updateTaskStep(Long taskId, String currentStep) {
+        updateTask(taskId, task -> task.setCurrentStep(currentStep));
+        log.info("任务步骤更新: {} - {}", taskId, currentStep);
+    }
+
+    /**
+     * 修改任务：复制最新快照、应用修改后作为新快照发布
+     * 在 publishLock 内执行，同一任务的并发修改依次生效，不会互相覆盖；读取方看到的总是完整的快照
+     *
+     * @return 新快照
+     */
+    private VideoTask updateTask(Long taskId, Consumer<VideoTask> change) {
+        synchronized (publishLock) {
+            VideoTask current = findTask(taskId);
+            if (current == null) {
+                throw new RuntimeException("任务不存在");
+            }
+            VideoTask next = new VideoTask(current);
+            change.accept(next);
+            next.setUpdateTime(LocalDateTime.now());
+            publish(next);
+            return next;
+        }
+    }
+
+    /**
+     * 发布新建的任务，调用方之后不得再修改该对象
+     */
+    private void saveNewTask(VideoTask task) {
+        synchronized (publishLock) {
+            publish(task);
+        }
+    }
+
+    /**
+     * 分配版本号并替换快照，更新索引，排入批量落库并推送给订阅者
+     * 调用方持有 publishLock，版本号按发布顺序递增，落库和推送也按同样的顺序
+     */
+    private void publish(VideoTask snapshot) {
+        snapshot.setVersion(++lastVersion);
+        taskStorage.put(snapshot.getId(), snapshot);
+        // 归档的任务有了新变化就回到内存中，先放入 taskStorage 再移出归档，读取方不会两边都找不到
+        taskArchive.remove(snapshot.getId());
+        taskIndex.update(snapshot);
+        publishedVersion = lastVersion;
+        taskRepository.save(snapshot);
+        taskEventService.publish(snapshot);
+    }
+
+    /**
+     * 按 ID 取任务的最新快照，先查内存再查归档
+     * 归档和回到内存都是先放入新位置再移出旧位置，归档中也没有时再查一次内存，避免恰好在任务回到内存时漏掉
+     */
+    private VideoTask findTask(Long taskId) {
+        VideoTask task = taskStorage.get(taskId);
+        if (task == null) {
+            task = taskArchive.get(taskId);
+            if (task == null) {
+                task = taskStorage.get(taskId);
+            }
+        }
+        return task;
+    }
+
+    /**
+     * 把结束超过 archive-after 的任务从内存移到归档
+     */
+    private void archiveFinishedTasks() {
+        try {
+            LocalDateTime archiveBefore = archiveCutoff();
+            int archived = 0;
+            for (VideoTask task : taskStorage.values()) {
+                if (!isArchivable(task, archiveBefore)) {
+                    continue;
+                }
+                synchronized (publishLock) {
+                    // 期间有新快照的留到下一轮再判断；先放入归档再从内存移除，读取方不会两边都找不到
+                    if (taskStorage.get(task.getId()) == task && taskArchive.add(task)) {
+                        taskStorage.remove(task.getId());
+                        archived++;
+                    }
+                }
+            }
+            if (archived > 0) {
+                log.info("已归档任务: {} 个, 归档总数 {}, 约占用 {} KB", archived, taskArchive.size(),
+                        taskArchive.memoryUsage() / 1024);
+            }
+        } catch (RuntimeException e) {
+            log.error("任务归档失败", e);
+        }
+    }
+
+    private LocalDateTime archiveCutoff() {
+        return LocalDateTime.now().minusNanos(archiveAfterMs * 1_000_000);
+    }
+
+    /**
+     * 已结束（完成、处理失败或上传失败）且最近一次变化早于 archiveBefore 的任务
+     */
+    private boolean isArchivable(VideoTask task, LocalDateTime archiveBefore) {
+        if (archiveAfterMs <= 0 || task.getUpdateTime() == null || !task.getUpdateTime().isBefore(archiveBefore)) {
+            return false;
+        }
+        String status = task.getStatus();
+        return "COMPLETED".equals(status) || "FAILED".equals(status) || "UPLOAD_FAILED".equals(status);
+    }
+
+    /**
+     * 上传数据在写入过程中被判定无效：文件未保存，只记录失败的任务
+     */
+    private RuntimeException rejectUpload(String originalName, long fileSize, String validationError) {
+        VideoTask task = new VideoTask();
+        task.setId(idGenerator.getAndIncrement());
+        task.setFileName(originalName);
+        task.setOriginalName(originalName);
+        task.setFileSize(fileSize);
+        task.setCreateTime(LocalDateTime.now());
         task.setUpdateTime(LocalDateTime.now());
-        taskStorage.put(task.getId(), task);
-        log.info("任务状态更新: {} - {} - {}", task.getId(), progress, currentStep);
+        markUploadFailed(task, validationError);
+        log.error("上传数据结构无效，已中止写入: {} - {}", originalName, validationError);
+        return new RuntimeException("视频文件验证失败: " + validationError);
+    }
+
+    /**
+     * 标记上传验证失败并保存失败的任务记录
+     */
+    private void markUploadFailed(VideoTask task, String validationError) {
+        task.setStatus("UPLOAD_FAILED");
+        task.setProgress(0);
+        task.setCurrentStep("视频文件验证失败");
+        task.setErrorMessage(validationError);
+        saveNewTask(task);
+    }
+
+    /**
+     * 按内容哈希查找已完成的任务，其视频和字幕文件都必须还在
+     */
+    private VideoTask findCompletedTask(String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        Long taskId = completedTaskByHash.get(contentHash);
+        VideoTask task = taskId == null ? null : findTask(taskId);
+        if (task == null || !"COMPLETED".equals(task.getStatus()) || task.getSubtitlePath() == null
+                || !Files.exists(Paths.get(task.getSubtitlePath())) || !Files.exists(Paths.get(task.getFilePath()))) {
+            return null;
+        }
+        return task;
+    }
+
+    /**
+     * 复用内容相同任务的处理结果：视频文件本身已是同一份，提取的音频和波形按视频文件名缓存，自然共用；
+     * 字幕复制一份，之后各自编辑互不影响
+     *
+     * @return 字幕复制成功后返回把任务标记为已完成的修改，失败返回 null，任务照常处理
+     */
+    private Consumer<VideoTask> linkResults(VideoTask task, VideoTask source) {
+        Path subtitlePath = Paths.get(tempPath).resolve(task.getId() + "_subtitle.srt");
+        try {
+            Files.copy(Paths.get(source.getSubtitlePath()), subtitlePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("复用任务 {} 的字幕失败，将重新处理: {}", source.getId(), e.getMessage());
+            return null;
+        }
+        log.info("任务 {} 复用任务 {} 的处理结果", task.getId(), source.getId());
+        return linked -> {
+            linked.setSubtitlePath(subtitlePath.toString());
+            linked.setSourceTaskId(source.getId());
+            linked.setStatus("COMPLETED");
+            linked.setProgress(100);
+            linked.setCurrentStep("内容与任务 " + source.getId() + " 相同，已复用处理结果");
+        };
+    }
+
+    /**
+     * 依次访问内存中和归档的任务的 ID 和视频文件路径（上传失败的除外）
+     */
+    private void forEachTaskFile(BiConsumer<Long, String> action) {
+        for (VideoTask task : taskStorage.values()) {
+            if (task.getFilePath() != null && !"UPLOAD_FAILED".equals(task.getStatus())) {
+                action.accept(task.getId(), task.getFilePath());
+            }
+        }
+        taskArchive.forEachFile(action);
+    }
+
+    /**
+     * 源文件被磁盘配额淘汰后，把仍引用它的任务标记为失败（检查引用和删除之间新建的任务）
+     */
+    private void markSourceEvicted(Path path) {
+        Set<Long> taskIds = new HashSet<>();
+        forEachTaskFile((taskId, filePath) -> {
+            if (normalizePath(filePath).equals(path)) {
+                taskIds.add(taskId);
+            }
+        });
+        for (Long taskId : taskIds) {
+            log.warn("任务 {} 的源视频文件已被淘汰: {}", taskId, path);
+            updateTask(taskId, task -> {
+                task.setStatus("FAILED");
+                task.setProgress(0);
+                task.setErrorMessage("源视频文件已被清理以释放磁盘空间，请重新上传");
+                task.setCurrentStep("处理失败: 源视频文件已被清理");
+            });
+        }
+    }
+
+    private static Path normalizePath(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 是否有其他任务使用同一个视频文件
+     */
+    private boolean isFileReferenced(String filePath) {
+        for (VideoTask other : taskStorage.values()) {
+            if (filePath.equals(other.getFilePath()) && !"UPLOAD_FAILED".equals(other.getStatus())) {
+                return true;
+            }
+        }
+        return taskArchive.referencesFile(filePath);
+    }
+
+    /**
+     * 趁提取出的音频还在，为字幕编辑器预先生成波形峰值；失败不影响主流程
+     */
+    private void prepareWaveform(VideoTask task) {
+        try {
+            waveformService.getPeaks(task.getFilePath());
+        } catch (Exception e) {
+            log.warn("波形峰值生成失败: {} - {}", task.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 音频提取阶段的细粒度进度：把 ffmpeg 的完成比例映射到 20~45，只在整数进度变化时更新任务
+     */
+    private FFmpegProgressListener extractionProgressListener(Long taskId) {
+        AtomicInteger lastProgress = new AtomicInteger(EXTRACTION_PROGRESS_START);
+        return progress -> {
+            double fraction = progress.getFraction();
+            if (fraction < 0) {
+                return;
+            }
+            int value = EXTRACTION_PROGRESS_START
+                    + (int) (fraction * (EXTRACTION_PROGRESS_END - EXTRACTION_PROGRESS_START));
+            int previous = lastProgress.get();
+            // 任务已进入后续阶段时忽略迟到的回调
+            if (value > previous && value > findTask(taskId).getProgress()
+                    && lastProgress.compareAndSet(previous, value)) {
+                updateTaskStatus(taskId, "PROCESSING", value, String.format("语音识别中 - 音频提取 %d%% (%.1fx 实时)",
+                        (int) (fraction * 100), progress.getRealtimeFactor()));
+            }
+        };
+    }
+
+    /**
+     * 渲染进度只体现在当前步骤中（任务本身已完成），百分比变化时更新
+     */
+    private FFmpegProgressListener renderProgressListener(Long taskId) {
+        AtomicInteger lastPercent = new AtomicInteger(-1);
+        return progress -> {
+            double fraction = progress.getFraction();
+            if (fraction < 0) {
+                return;
+            }
+            int percent = (int) (fraction * 100);
+            int previous = lastPercent.get();
+            if (percent > previous && lastPercent.compareAndSet(previous, percent)) {
+                updateTaskStep(taskId,
+                        String.format("渲染字幕视频中 %d%% (%.1fx 实时)", percent, progress.getRealtimeFactor()));
+            }
+        };
     }
 
     private String generateSubtitle(String chineseText, String vietnameseText, String segmentedText) {
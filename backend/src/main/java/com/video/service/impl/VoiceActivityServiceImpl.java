@@ -0,0 +1,99 @@
+package com.video.service.impl;
+
+import com.video.media.EnergyVoiceActivityDetector;
+import com.video.media.PcmFormat;
+import com.video.media.SpeechInterval;
+import com.video.media.WavFile;
+import com.video.service.AudioExtractionService;
+import com.video.service.VoiceActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 语音活动检测服务实现
+ * 在 Java 中直接对 PCM 做短时能量分析，不需要额外的 ffmpeg 进程
+ */
+@Service
+public class VoiceActivityServiceImpl implements VoiceActivityService {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceActivityServiceImpl.class);
+
+    @Autowired
+    private AudioExtractionService audioExtractionService;
+
+    @Value("${audio.vad.frame-ms:30}")
+    private int frameMs;
+
+    @Value("${audio.vad.threshold-db:-50}")
+    private double thresholdDb;
+
+    @Value("${audio.vad.margin-db:12}")
+    private double marginDb;
+
+    @Value("${audio.vad.min-speech-ms:250}")
+    private int minSpeechMs;
+
+    @Value("${audio.vad.min-silence-ms:500}")
+    private int minSilenceMs;
+
+    @Value("${audio.vad.padding-ms:150}")
+    private int paddingMs;
+
+    @Value("${audio.vad.max-interval-seconds:30}")
+    private double maxIntervalSeconds;
+
+    @Override
+    public List<SpeechInterval> detectSpeech(String audioPath) {
+        long startTime = System.currentTimeMillis();
+        try {
+            WavFile wav = WavFile.open(Paths.get(audioPath));
+            if (wav.getSampleRate() != PcmFormat.SAMPLE_RATE || wav.getChannels() != PcmFormat.CHANNELS) {
+                throw new IOException("音频格式不符 (采样率: " + wav.getSampleRate() + "Hz, 声道数: "
+                        + wav.getChannels() + ")，需要 16kHz 单声道");
+            }
+
+            // 映射内存整体作为一块交给检测器，不复制数据
+            EnergyVoiceActivityDetector detector = newDetector();
+            detector.onChunk(wav.data(), 0);
+            long samples = wav.getFrameCount();
+
+            List<SpeechInterval> intervals = detector.finish(samples);
+            logResult(audioPath, intervals, samples, startTime);
+            return intervals;
+
+        } catch (IOException e) {
+            log.error("语音活动检测失败: {}", audioPath, e);
+            throw new RuntimeException("语音活动检测失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<SpeechInterval> detectSpeechInVideo(String videoPath) {
+        long startTime = System.currentTimeMillis();
+        EnergyVoiceActivityDetector detector = newDetector();
+        long samples = audioExtractionService.streamAudio(videoPath, detector);
+        List<SpeechInterval> intervals = detector.finish(samples);
+        logResult(videoPath, intervals, samples, startTime);
+        return intervals;
+    }
+
+    private EnergyVoiceActivityDetector newDetector() {
+        return new EnergyVoiceActivityDetector(frameMs, thresholdDb, marginDb, minSpeechMs, minSilenceMs,
+                paddingMs, maxIntervalSeconds);
+    }
+
+    private void logResult(String path, List<SpeechInterval> intervals, long samples, long startTime) {
+        double total = PcmFormat.samplesToSeconds(samples);
+        double speech = intervals.stream().mapToDouble(SpeechInterval::getDuration).sum();
+        log.info("语音活动检测完成: {} (语音区间: {}, 语音时长: {}/{}秒, 耗时 {}ms)", path, intervals.size(),
+                String.format("%.1f", speech), String.format("%.1f", total), System.currentTimeMillis() - startTime);
+        log.debug("语音区间: {}", intervals);
+    }
+}
@@ -0,0 +1,126 @@
+package com.video.service.impl;
+
+import com.video.media.WaveformPeaks;
+import com.video.media.WavFile;
+import com.video.service.AudioExtractionService;
+import com.video.service.StorageLifecycleService;
+import com.video.service.WaveformService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 波形峰值服务实现
+ * 峰值文件保存在临时目录的 {视频文件名}_waveform.peaks，最近打开的映射按修改时间缓存复用
+ */
+@Service
+public class WaveformServiceImpl implements WaveformService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaveformServiceImpl.class);
+
+    @Autowired
+    private AudioExtractionService audioExtractionService;
+
+    @Autowired
+    private StorageLifecycleService storageLifecycleService;
+
+    @Value("${file.temp-path:./temp/}")
+    private String tempPath;
+
+    /** 缓存的已映射峰值文件数上限 */
+    private static final int MAX_OPEN_PEAKS = 64;
+
+    private final ConcurrentHashMap<Path, Object> generationLocks = new ConcurrentHashMap<>();
+
+    /** 最近使用的已映射峰值文件，文件被重新生成（修改时间变化）后重新映射 */
+    private final Map<Path, OpenPeaks> openPeaks = Collections.synchronizedMap(
+            new LinkedHashMap<Path, OpenPeaks>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, OpenPeaks> eldest) {
+                    return size() > MAX_OPEN_PEAKS;
+                }
+            });
+
+    private static final class OpenPeaks {
+        final WaveformPeaks peaks;
+        final FileTime modified;
+
+        OpenPeaks(WaveformPeaks peaks, FileTime modified) {
+            this.peaks = peaks;
+            this.modified = modified;
+        }
+    }
+
+    @Override
+    public WaveformPeaks getPeaks(String videoPath) {
+        try {
+            Path peaksPath = resolvePeaksPath(videoPath);
+            storageLifecycleService.touch(peaksPath.toString());
+            if (isUpToDate(peaksPath, videoPath)) {
+                return open(peaksPath);
+            }
+
+            // 同一视频并发请求时只生成一次
+            synchronized (generationLocks.computeIfAbsent(peaksPath, path -> new Object())) {
+                if (!isUpToDate(peaksPath, videoPath)) {
+                    generate(videoPath, peaksPath);
+                }
+            }
+            return open(peaksPath);
+
+        } catch (IOException e) {
+            log.error("获取波形失败: {}", videoPath, e);
+            throw new RuntimeException("获取波形失败: " + e.getMessage(), e);
+        }
+    }
+
+    private WaveformPeaks open(Path peaksPath) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(peaksPath);
+        OpenPeaks cached = openPeaks.get(peaksPath);
+        if (cached != null && cached.modified.equals(modified)) {
+            return cached.peaks;
+        }
+        WaveformPeaks peaks = WaveformPeaks.open(peaksPath);
+        openPeaks.put(peaksPath, new OpenPeaks(peaks, modified));
+        return peaks;
+    }
+
+    private void generate(String videoPath, Path peaksPath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String audioPath = audioExtractionService.findExtractedAudio(videoPath);
+        if (audioPath == null) {
+            audioPath = audioExtractionService.extractAudio(videoPath);
+        }
+
+        WavFile wav = WavFile.open(Paths.get(audioPath));
+        WaveformPeaks.generate(wav, peaksPath);
+        log.info("波形峰值生成完成: {} (时长: {}秒, 耗时 {}ms)", peaksPath, wav.getDuration(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private boolean isUpToDate(Path peaksPath, String videoPath) throws IOException {
+        return Files.exists(peaksPath) && Files.getLastModifiedTime(peaksPath)
+                .compareTo(Files.getLastModifiedTime(Paths.get(videoPath))) >= 0;
+    }
+
+    private Path resolvePeaksPath(String videoPath) throws IOException {
+        Path tempDir = Paths.get(tempPath);
+        if (!Files.exists(tempDir)) {
+            Files.createDirectories(tempDir);
+        }
+        String videoFileName = Paths.get(videoPath).getFileName().toString();
+        return tempDir.resolve(videoFileName.replaceAll("\\.[^.]+$", "") + "_waveform.peaks");
+    }
+}
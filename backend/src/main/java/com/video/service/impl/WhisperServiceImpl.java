@@ -1,6 +1,9 @@
 package com.video.service.impl;
 
+import com.video.media.FFmpegProgressListener;
+import com.video.media.SpeechInterval;
 import com.video.service.AudioExtractionService;
+import com.video.service.VoiceActivityService;
 import com.video.service.WhisperService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +11,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Whisper 语音识别服务实现
  * 当前使用模拟实现，后续可集成真实的OpenAI Whisper API
@@ -29,22 +34,33 @@ public class WhisperServiceImpl implements WhisperService {
     @Autowired
     private AudioExtractionService audioExtractionService;
 
+    @Autowired
+    private VoiceActivityService voiceActivityService;
+
     @Override
     public String transcribe(String videoFilePath) {
+        return transcribe(videoFilePath, null);
+    }
+
+    @Override
+    public String transcribe(String videoFilePath, FFmpegProgressListener progressListener) {
         try {
             log.info("开始语音识别处理: {}", videoFilePath);
 
-            // 步骤1: 从视频提取音频
+            // 步骤1-2: 单次导入，同一次 ffmpeg 运行完成验证、探测和音频提取
             log.info("步骤1: 从视频提取音频");
-            String audioFilePath = audioExtractionService.extractAudio(videoFilePath);
-
-            // 步骤2: 获取音频信息
-            AudioExtractionService.AudioInfo audioInfo = audioExtractionService.getAudioInfo(audioFilePath);
+            AudioExtractionService.IngestResult ingestResult = audioExtractionService.ingest(videoFilePath,
+                    progressListener);
+            AudioExtractionService.AudioInfo audioInfo = ingestResult.getAudioInfo();
             log.info("音频信息: 时长={:.2f}秒, 采样率={}Hz", audioInfo.getDuration(), audioInfo.getSampleRate());
 
-            // 步骤3: 模拟语音识别（实际项目中替换为真实API）
-            log.info("步骤3: 执行语音识别（当前为模拟实现）");
-            String transcription = performMockTranscription(audioInfo);
+            // 步骤3: 语音活动检测，只有语音区间需要送去识别
+            log.info("步骤3: 语音活动检测");
+            double speechDuration = detectSpeechDuration(ingestResult.getAudioPath(), audioInfo.getDuration());
+
+            // 步骤4: 模拟语音识别（实际项目中替换为真实API，按语音区间并行识别并加上区间起始时间偏移）
+            log.info("步骤4: 执行语音识别（当前为模拟实现）");
+            String transcription = performMockTranscription(speechDuration);
 
             log.info("语音识别完成，文本长度: {}", transcription.length());
             return transcription;
@@ -58,12 +74,24 @@ public class WhisperServiceImpl implements WhisperService {
         }
     }
 
+    /**
+     * 检测语音区间并返回语音总时长，检测失败时按整段音频处理
+     */
+    private double detectSpeechDuration(String audioPath, double audioDuration) {
+        try {
+            List<SpeechInterval> intervals = voiceActivityService.detectSpeech(audioPath);
+            return intervals.stream().mapToDouble(SpeechInterval::getDuration).sum();
+        } catch (Exception e) {
+            log.warn("语音活动检测失败，按整段音频识别: {}", e.getMessage());
+            return audioDuration;
+        }
+    }
+
     /**
      * 模拟语音识别处理
-     * 根据音频时长生成不同长度的文本
+     * 根据语音时长生成不同长度的文本
      */
-    private String performMockTranscription(AudioExtractionService.AudioInfo audioInfo) {
-        double duration = audioInfo.getDuration();
+    private String performMockTranscription(double duration) {
 
         if (duration < 30) {
             return "你好，欢迎学习越南语。今天我们来学习基础词汇。";
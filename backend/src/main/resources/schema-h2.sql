@@ -0,0 +1,53 @@
+-- 内嵌 H2（MySQL 兼容模式）使用的表结构，与 database_schema.sql 保持一致
+-- 启动时执行，语句均可重复执行
+
+CREATE TABLE IF NOT EXISTS video_tasks (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    file_name VARCHAR(255) NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    original_name VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    content_hash VARCHAR(64),
+    source_task_id BIGINT,
+    status VARCHAR(20) NOT NULL DEFAULT 'UPLOADED',
+    progress INT DEFAULT 0,
+    current_step VARCHAR(100),
+    subtitle_path VARCHAR(500),
+    output_path VARCHAR(500),
+    encoder_preset VARCHAR(20),
+    error_message TEXT,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_status ON video_tasks (status);
+CREATE INDEX IF NOT EXISTS idx_create_time ON video_tasks (create_time);
+CREATE INDEX IF NOT EXISTS idx_content_hash ON video_tasks (content_hash);
+
+CREATE TABLE IF NOT EXISTS subtitle_contents (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    task_id BIGINT NOT NULL,
+    sequence_number INT NOT NULL,
+    start_time VARCHAR(20) NOT NULL,
+    end_time VARCHAR(20) NOT NULL,
+    chinese_text TEXT,
+    vietnamese_text TEXT,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (task_id) REFERENCES video_tasks(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_task_sequence ON subtitle_contents (task_id, sequence_number);
+
+CREATE TABLE IF NOT EXISTS process_logs (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    task_id BIGINT NOT NULL,
+    step_name VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    message TEXT,
+    duration_ms BIGINT,
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (task_id) REFERENCES video_tasks(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_task_step ON process_logs (task_id, step_name);
@@ -0,0 +1,187 @@
+package com.video.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 文件下载响应：单个 Range 返回 206，多个 Range 和过期的 If-Range 返回整个文件，超出文件的范围返回 416
+ */
+class RangeFileResponderTest {
+
+    private static final int LENGTH = 100;
+    private static final Instant MODIFIED = Instant.parse("2024-05-01T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private byte[] content;
+    private String etag;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        content = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            content[i] = (byte) i;
+        }
+        file = directory.resolve("clip.mp4");
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+        etag = "\"" + Long.toHexString(LENGTH) + "-" + Long.toHexString(MODIFIED.toEpochMilli()) + "\"";
+    }
+
+    @Test
+    void wholeFileWithoutRange() throws IOException {
+        MockHttpServletResponse response = send(get());
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(LENGTH, response.getContentLengthLong());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRangesReturnPartialContent() throws IOException {
+        assertPartial("bytes=10-19", 10, 19);
+        // 后缀范围：最后 5 个字节
+        assertPartial("bytes=-5", 95, 99);
+        // 开放结尾
+        assertPartial("bytes=90-", 90, 99);
+        // 结尾超出文件时截到文件末尾
+        assertPartial("bytes=95-500", 95, 99);
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws IOException {
+        for (String range : Arrays.asList("bytes=100-", "bytes=200-300")) {
+            MockHttpServletRequest request = get();
+            request.addHeader(HttpHeaders.RANGE, range);
+            MockHttpServletResponse response = send(request);
+
+            assertEquals(416, response.getStatus(), range);
+            assertEquals("bytes */" + LENGTH, response.getHeader(HttpHeaders.CONTENT_RANGE));
+            assertEquals(0, response.getContentAsByteArray().length);
+        }
+    }
+
+    @Test
+    void multipleOrMalformedRangesReturnWholeFile() throws IOException {
+        for (String range : Arrays.asList("bytes=0-1,5-6", "bytes=0-1, -3", "items=0-5", "bytes=abc")) {
+            MockHttpServletRequest request = get();
+            request.addHeader(HttpHeaders.RANGE, range);
+            MockHttpServletResponse response = send(request);
+
+            assertEquals(200, response.getStatus(), range);
+            assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+            assertArrayEquals(content, response.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    void ifRangeAppliesRangeOnlyToUnchangedFile() throws IOException {
+        assertEquals(206, sendWithIfRange(etag).getStatus());
+        assertEquals(206, sendWithIfRange(httpDate(MODIFIED)).getStatus());
+        assertEquals(206, sendWithIfRange(httpDate(MODIFIED.plusSeconds(60))).getStatus());
+
+        // 文件已变化：忽略 Range 返回整个文件
+        for (String stale : Arrays.asList("\"64-0\"", "W/" + etag, httpDate(MODIFIED.minusSeconds(60)), "not a date")) {
+            MockHttpServletResponse response = sendWithIfRange(stale);
+            assertEquals(200, response.getStatus(), stale);
+            assertArrayEquals(content, response.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    void conditionalRequests() throws IOException {
+        MockHttpServletRequest notModified = get();
+        notModified.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        assertEquals(304, send(notModified).getStatus());
+
+        MockHttpServletRequest sinceModified = get();
+        sinceModified.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate(MODIFIED));
+        assertEquals(304, send(sinceModified).getStatus());
+
+        MockHttpServletRequest wrongMatch = get();
+        wrongMatch.addHeader(HttpHeaders.IF_MATCH, "\"other\"");
+        assertEquals(412, send(wrongMatch).getStatus());
+
+        MockHttpServletRequest anyMatch = get();
+        anyMatch.addHeader(HttpHeaders.IF_MATCH, "*");
+        anyMatch.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        assertEquals(206, send(anyMatch).getStatus());
+    }
+
+    @Test
+    void headAndSendfileWriteNoBody() throws IOException {
+        MockHttpServletRequest head = new MockHttpServletRequest("HEAD", "/video");
+        head.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+        MockHttpServletResponse headResponse = send(head);
+        assertEquals(206, headResponse.getStatus());
+        assertEquals(10, headResponse.getContentLengthLong());
+        assertEquals(0, headResponse.getContentAsByteArray().length);
+
+        // 大于 sendfile 阈值的范围交给容器发送
+        byte[] large = new byte[64 * 1024];
+        Files.write(file, large);
+        MockHttpServletRequest request = get();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=1024-");
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) large.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    private void assertPartial(String range, int start, int end) throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, range);
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus(), range);
+        assertEquals("bytes " + start + "-" + end + "/" + LENGTH, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(end - start + 1, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, start, end + 1), response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse sendWithIfRange(String ifRange) throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        return send(request);
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RangeFileResponder.send(file, MediaType.valueOf("video/mp4"), null, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/video");
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+}
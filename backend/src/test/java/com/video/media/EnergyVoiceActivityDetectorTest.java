@@ -0,0 +1,141 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 能量 VAD：合成 PCM（10ms 一帧，160 个样本），按帧数断言区间边界
+ */
+class EnergyVoiceActivityDetectorTest {
+
+    private static final int FRAME = 160;
+    private static final int SPEECH = 10000;
+    private static final int QUIET_SPEECH = 3000;
+
+    @Test
+    void shortBurstsAreDropped() {
+        EnergyVoiceActivityDetector vad = detector(0, 30);
+        Pcm pcm = new Pcm().silence(50).speech(5).silence(50).speech(30).silence(50);
+
+        assertEquals(Arrays.asList(frames(105, 135)), run(vad, pcm));
+    }
+
+    @Test
+    void shortPausesAreMerged() {
+        EnergyVoiceActivityDetector vad = detector(0, 30);
+        // 10 帧停顿短于 minSilence（20 帧），25 帧停顿结束区间
+        Pcm pcm = new Pcm().silence(50).speech(30).silence(10).speech(30).silence(25).speech(30).silence(50);
+
+        assertEquals(Arrays.asList(frames(50, 120), frames(145, 175)), run(vad, pcm));
+    }
+
+    @Test
+    void longIntervalIsSplitAtQuietestFrame() {
+        // 最长 100 帧：第 100 帧时在最后四分之一（75..99）中能量最低的第 85 帧处切开
+        EnergyVoiceActivityDetector vad = detector(50, 1.0);
+        Pcm pcm = new Pcm().silence(50).speech(85).tone(1, QUIET_SPEECH).speech(64).silence(50);
+
+        List<String> intervals = run(vad, pcm);
+
+        // 切分点两侧不补 padding，外侧各补 5 帧
+        assertEquals(Arrays.asList(samples(50 * FRAME - 800, 136 * FRAME), samples(136 * FRAME, 200 * FRAME + 800)),
+                intervals);
+    }
+
+    @Test
+    void paddingMergesNeighboursAndIsClampedAtBothEnds() {
+        // padding 20 帧：开头补到 0，相隔 30 帧的两个区间补齐后重叠而合并，结尾补到总长度为止
+        EnergyVoiceActivityDetector vad = detector(200, 30);
+        Pcm pcm = new Pcm().silence(5).speech(20).silence(30).speech(20).silence(100).speech(20).samples(80, SPEECH);
+
+        List<String> intervals = run(vad, pcm);
+
+        assertEquals(Arrays.asList(samples(0, 95 * FRAME), samples(155 * FRAME, pcm.totalSamples())), intervals);
+    }
+
+    @Test
+    void silenceHasNoIntervals() {
+        EnergyVoiceActivityDetector vad = detector(200, 30);
+        assertEquals(new ArrayList<String>(), run(vad, new Pcm().silence(300)));
+    }
+
+    /**
+     * minSpeech 100ms（10 帧），minSilence 200ms（20 帧）
+     */
+    private static EnergyVoiceActivityDetector detector(int paddingMs, double maxIntervalSeconds) {
+        return new EnergyVoiceActivityDetector(10, -50, 10, 100, 200, paddingMs, maxIntervalSeconds);
+    }
+
+    private static List<String> run(EnergyVoiceActivityDetector vad, Pcm pcm) {
+        byte[] data = pcm.bytes();
+        // 分块大小不与帧长对齐
+        int chunk = 998;
+        for (int offset = 0; offset < data.length; offset += chunk) {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, Math.min(chunk, data.length - offset)).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            vad.onChunk(buffer, offset / 2);
+        }
+        List<String> result = new ArrayList<>();
+        for (SpeechInterval interval : vad.finish(pcm.totalSamples())) {
+            result.add(samples(interval.getStartSample(), interval.getEndSample()));
+        }
+        return result;
+    }
+
+    private static String frames(long startFrame, long endFrame) {
+        return samples(startFrame * FRAME, endFrame * FRAME);
+    }
+
+    private static String samples(long start, long end) {
+        return "[" + start + ", " + end + ")";
+    }
+
+    /**
+     * 按帧拼接的恒定幅度方波
+     */
+    private static final class Pcm {
+        private final List<int[]> parts = new ArrayList<>();
+
+        Pcm silence(int frames) {
+            return samples(frames * FRAME, 0);
+        }
+
+        Pcm speech(int frames) {
+            return samples(frames * FRAME, SPEECH);
+        }
+
+        Pcm tone(int frames, int amplitude) {
+            return samples(frames * FRAME, amplitude);
+        }
+
+        Pcm samples(int count, int amplitude) {
+            parts.add(new int[]{count, amplitude});
+            return this;
+        }
+
+        long totalSamples() {
+            long total = 0;
+            for (int[] part : parts) {
+                total += part[0];
+            }
+            return total;
+        }
+
+        byte[] bytes() {
+            ByteBuffer buffer = ByteBuffer.allocate((int) totalSamples() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            for (int[] part : parts) {
+                for (int i = 0; i < part[0]; i++) {
+                    buffer.putShort((short) (i % 2 == 0 ? part[1] : -part[1]));
+                }
+            }
+            return buffer.array();
+        }
+    }
+}
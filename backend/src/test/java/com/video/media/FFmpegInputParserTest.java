@@ -0,0 +1,116 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * "Input #0" 段解析：使用 ffmpeg 实际输出的横幅
+ */
+class FFmpegInputParserTest {
+
+    @Test
+    void mp4Banner() {
+        FFmpegInputParser parser = parse(
+                "ffmpeg version 6.0 Copyright (c) 2000-2023 the FFmpeg developers",
+                "  built with gcc 12.2.0 (GCC)",
+                "Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'lecture.mp4':",
+                "  Metadata:",
+                "    major_brand     : isom",
+                "    encoder         : Lavf60.3.100",
+                "  Duration: 00:12:34.56, start: 0.000000, bitrate: 1205 kb/s",
+                "  Stream #0:0[0x1](und): Video: h264 (High) (avc1 / 0x31637661), yuv420p(tv, bt709, progressive), "
+                        + "1280x720 [SAR 1:1 DAR 16:9], 1072 kb/s, 25 fps, 25 tbr, 12800 tbn (default)",
+                "    Metadata:",
+                "      handler_name    : VideoHandler",
+                "  Stream #0:1[0x2](und): Audio: aac (LC) (mp4a / 0x6134706D), 44100 Hz, stereo, fltp, 128 kb/s (default)",
+                "  Stream #0:2[0x3](eng): Data: none (tmcd / 0x64636D74), 0 kb/s",
+                "Stream mapping:",
+                "  Stream #0:1 -> #0:0 (aac (native) -> pcm_s16le (native))",
+                "Output #0, wav, to 'out.wav':",
+                "  Stream #0:0: Audio: pcm_s16le, 16000 Hz, mono, s16, 256 kb/s");
+
+        MediaInfo info = parser.getMediaInfo();
+        assertTrue(parser.isInputSeen());
+        assertEquals("mov,mp4,m4a,3gp,3g2,mj2", info.getFormatName());
+        assertEquals(12 * 60 + 34.56, info.getDuration(), 1e-9);
+        assertEquals(1205000, info.getBitRate());
+        // 映射和输出段的流不计入
+        assertEquals(3, info.getStreams().size());
+
+        MediaInfo.StreamInfo video = info.findStream(MediaInfo.StreamInfo.TYPE_VIDEO);
+        assertEquals(0, video.getIndex());
+        assertEquals("h264", video.getCodec());
+        // 编码标签 0x31637661 不会被当成分辨率
+        assertEquals(1280, video.getWidth());
+        assertEquals(720, video.getHeight());
+
+        MediaInfo.StreamInfo audio = info.findStream(MediaInfo.StreamInfo.TYPE_AUDIO);
+        assertEquals(1, audio.getIndex());
+        assertEquals("aac", audio.getCodec());
+        assertEquals(44100, audio.getSampleRate());
+        assertEquals(2, audio.getChannels());
+        assertEquals("Data", info.getStreams().get(2).getType());
+    }
+
+    @Test
+    void durationNotAvailable() {
+        FFmpegInputParser parser = parse(
+                "Input #0, mpegts, from 'live.ts':",
+                "  Duration: N/A, start: 1.400000, bitrate: N/A",
+                "  Program 1",
+                "  Stream #0:0[0x100]: Video: h264 (Main) ([27][0][0][0] / 0x001B), yuv420p(progressive), "
+                        + "1920x1080, 29.97 fps, 29.97 tbr, 90k tbn",
+                "  Stream #0:1[0x101](und): Audio: ac3 ([129][0][0][0] / 0x0081), 48000 Hz, 5.1(side), fltp, 448 kb/s");
+
+        MediaInfo info = parser.getMediaInfo();
+        assertEquals("mpegts", info.getFormatName());
+        assertEquals(0, info.getDuration(), 0);
+        assertEquals(0, info.getBitRate());
+        MediaInfo.StreamInfo video = info.findStream(MediaInfo.StreamInfo.TYPE_VIDEO);
+        assertEquals(1920, video.getWidth());
+        assertEquals(1080, video.getHeight());
+        MediaInfo.StreamInfo audio = info.findStream(MediaInfo.StreamInfo.TYPE_AUDIO);
+        assertEquals(48000, audio.getSampleRate());
+        assertEquals(6, audio.getChannels());
+    }
+
+    @Test
+    void channelLayouts() {
+        List<String> layouts = Arrays.asList("mono", "stereo", "3 channels", "5.1(side)", "5.1", "7.1", "quad");
+        int[] expected = {1, 2, 3, 6, 6, 8, 0};
+        for (int i = 0; i < layouts.size(); i++) {
+            FFmpegInputParser parser = parse(
+                    "Input #0, matroska,webm, from 'clip.mkv':",
+                    "  Duration: 00:00:05.00, start: 0.000000, bitrate: 320 kb/s",
+                    "  Stream #0:0(eng): Audio: opus, 48000 Hz, " + layouts.get(i) + ", fltp (default)");
+            assertEquals(expected[i], parser.getMediaInfo().findStream(MediaInfo.StreamInfo.TYPE_AUDIO).getChannels(),
+                    layouts.get(i));
+        }
+    }
+
+    @Test
+    void unreadableInputIsNotSeen() {
+        FFmpegInputParser parser = parse(
+                "ffmpeg version 6.0 Copyright (c) 2000-2023 the FFmpeg developers",
+                "[mov,mp4,m4a,3gp,3g2,mj2 @ 0x55d0c8a0] moov atom not found",
+                "broken.mp4: Invalid data found when processing input");
+
+        assertFalse(parser.isInputSeen());
+        assertTrue(parser.getMediaInfo().getStreams().isEmpty());
+        assertFalse(parser.getMediaInfo().hasAudioStream());
+    }
+
+    private static FFmpegInputParser parse(String... lines) {
+        FFmpegInputParser parser = new FFmpegInputParser();
+        for (String line : lines) {
+            parser.accept(line);
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,60 @@
+package com.video.media;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 进程监管器：卡住的进程按超时结束，配额归还；run() 返回时错误输出已完整读取
+ */
+class FFmpegProcessSupervisorTest {
+
+    private FFmpegProcessSupervisor supervisor;
+
+    @BeforeEach
+    void setUp() {
+        supervisor = new FFmpegProcessSupervisor();
+        ReflectionTestUtils.setField(supervisor, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(supervisor, "totalThreads", 2);
+        ReflectionTestUtils.setField(supervisor, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(supervisor, "stderrLines", 200);
+        supervisor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        supervisor.shutdown();
+    }
+
+    @Test
+    void hungProcessIsKilledAtDeadline() throws IOException {
+        // 进程既不退出也不关闭输出，调用方读取标准输出时不能一直阻塞
+        ProcessResult result = supervisor.run("hang", 1500, threads -> Arrays.asList("sleep", "30"));
+
+        assertTrue(result.isTimedOut());
+        assertTrue(result.getElapsedMs() < 10_000, "elapsed " + result.getElapsedMs());
+        assertEquals(0, supervisor.getRunningCount());
+    }
+
+    @Test
+    void runReturnsCompleteErrorOutput() throws IOException {
+        AtomicInteger lines = new AtomicInteger();
+        ProcessResult result = supervisor.run("stderr", 10_000, threads -> Arrays.asList("sh", "-c",
+                "i=0; while [ $i -lt 100 ]; do echo \"err $i\" >&2; i=$((i+1)); done; echo out"),
+                line -> lines.incrementAndGet());
+
+        assertEquals(0, result.getExitCode());
+        assertEquals("out", result.getOutput().trim());
+        // 进程退出时错误输出可能还没读完，run() 要等读取线程结束
+        assertEquals(100, lines.get());
+        assertTrue(result.getErrorOutput().contains("err 99"));
+    }
+}
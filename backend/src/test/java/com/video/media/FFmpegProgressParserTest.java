@@ -0,0 +1,85 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * -progress 输出和普通日志、错误行混在同一个错误输出管道中
+ */
+class FFmpegProgressParserTest {
+
+    @Test
+    void separatesProgressBlocksFromLogLines() {
+        List<FFmpegProgress> updates = new ArrayList<>();
+        FFmpegProgressParser parser = new FFmpegProgressParser(System.currentTimeMillis(), () -> 50.0, updates::add);
+        List<String> logLines = new ArrayList<>();
+
+        List<String> stderr = Arrays.asList(
+                "Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'in.mp4':",
+                "  Duration: 00:00:50.00, start: 0.000000, bitrate: 1205 kb/s",
+                "    encoder         : Lavf58.29.100",
+                "out_time_us=12500000",
+                "total_size=400078",
+                "fps=0.00",
+                "speed=25.3x",
+                "progress=continue",
+                "[aac @ 0x55d0c8] Error decoding: invalid data found when processing input",
+                "Error while decoding stream #0:1: Invalid data found when processing input",
+                "out_time_ms=25000000",
+                "total_size=N/A",
+                "speed=N/A",
+                "progress=continue",
+                "out_time_us=50000000",
+                "speed= 30.1x",
+                "progress=end");
+        for (String line : stderr) {
+            if (FFmpegProgressParser.isProgressLine(line)) {
+                parser.accept(line);
+            } else {
+                logLines.add(line);
+            }
+        }
+
+        assertEquals(5, logLines.size());
+        assertTrue(logLines.get(4).startsWith("Error while decoding"));
+        assertEquals(3, updates.size());
+
+        FFmpegProgress first = updates.get(0);
+        assertEquals(12.5, first.getOutTimeSeconds(), 1e-9);
+        assertEquals(0.25, first.getFraction(), 1e-9);
+        assertEquals(25.3, first.getSpeed(), 1e-9);
+        assertEquals(400078, first.getTotalSize());
+        assertFalse(first.isFinished());
+
+        // out_time_ms 实际单位也是微秒；N/A 不覆盖已知的大小和速度
+        FFmpegProgress second = updates.get(1);
+        assertEquals(0.5, second.getFraction(), 1e-9);
+        assertEquals(400078, second.getTotalSize());
+        assertEquals(25.3, second.getSpeed(), 1e-9);
+
+        FFmpegProgress last = updates.get(2);
+        assertTrue(last.isFinished());
+        assertEquals(1.0, last.getFraction(), 1e-9);
+        assertEquals(30.1, last.getSpeed(), 1e-9);
+        assertEquals(last, parser.getLastProgress());
+    }
+
+    @Test
+    void unknownDurationReportsNoFraction() {
+        FFmpegProgressParser parser = new FFmpegProgressParser(System.currentTimeMillis(), () -> 0, null);
+        assertNull(parser.getLastProgress());
+        parser.accept("out_time_us=N/A");
+        parser.accept("progress=continue");
+
+        assertEquals(-1, parser.getLastProgress().getFraction(), 1e-9);
+        assertEquals(0, parser.getLastProgress().getOutTimeSeconds(), 1e-9);
+    }
+}
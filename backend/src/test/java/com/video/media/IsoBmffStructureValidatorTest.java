@@ -0,0 +1,190 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 顶层 box 检查：顺序喂入和按头部偏移读取的结论一致，扩展名与容器不符时交给 ffprobe
+ */
+class IsoBmffStructureValidatorTest {
+
+    @Test
+    void validLayoutsPassInBothModes() throws IOException {
+        byte[] moovFirst = concat(box("ftyp", 24), box("moov", 40), box("mdat", 100));
+        byte[] moovLast = concat(box("ftyp", 24), box("free", 8), box("mdat", 100), box("moov", 40));
+        byte[] largeMdat = concat(box("ftyp", 24), largeBox("mdat", 64), box("moov", 40));
+
+        for (byte[] file : Arrays.asList(moovFirst, moovLast, largeMdat)) {
+            feedSequentially("clip.mp4", file, file.length, 3);
+            feedSequentially("clip.mp4", file, -1, 7);
+            readHeaders("clip.mp4", file);
+        }
+        // 看到 moov 后不再读取头部
+        IsoBmffStructureValidator validator = new IsoBmffStructureValidator("clip.mp4", moovFirst.length);
+        validator.update(moovFirst, 0, 24 + IsoBmffStructureValidator.MAX_HEADER_SIZE);
+        assertFalse(validator.needsHeader());
+    }
+
+    @Test
+    void missingMoovIsRejected() {
+        // mdat 延伸到文件结尾（size 0）
+        byte[] openEnded = concat(box("ftyp", 24), box("mdat", 0), new byte[50]);
+        assertRejected(IsoBmffStructureValidator.MISSING_MOOV, "clip.mp4", openEnded);
+        // mdat 恰好结束在文件结尾
+        byte[] noRoom = concat(box("ftyp", 24), box("mdat", 100));
+        assertRejected(IsoBmffStructureValidator.MISSING_MOOV, "clip.mp4", noRoom);
+        // 声明大小未知时只能在结尾判断
+        assertEquals(IsoBmffStructureValidator.MISSING_MOOV, assertThrows(InvalidMediaException.class,
+                () -> feedSequentially("clip.mp4", noRoom, -1, 16)).getMessage());
+    }
+
+    @Test
+    void truncatedAndOversizedBoxesAreRejected() {
+        // mdat 声明 1000 字节，文件只有其中 108 字节
+        byte[] oversized = Arrays.copyOf(concat(box("ftyp", 24), box("mdat", 1000)), 24 + 108);
+        assertRejected(IsoBmffStructureValidator.TRUNCATED, "clip.mp4", oversized);
+        assertEquals(IsoBmffStructureValidator.TRUNCATED, assertThrows(InvalidMediaException.class,
+                () -> feedSequentially("clip.mp4", oversized, -1, 5)).getMessage());
+
+        // largesize 头部被截断
+        byte[] cutLarge = Arrays.copyOf(concat(box("ftyp", 24), largeBox("mdat", 64)), 24 + 12);
+        assertRejected(IsoBmffStructureValidator.TRUNCATED, "clip.mp4", cutLarge);
+    }
+
+    @Test
+    void corruptBoxesAfterFtypAreInvalid() {
+        byte[] tinySize = concat(box("ftyp", 24), box("mdat", 4), new byte[40]);
+        assertRejected(IsoBmffStructureValidator.INVALID_DATA, "clip.mp4", tinySize);
+
+        byte[] tinyLarge = concat(box("ftyp", 24), largeBox("mdat", 8), new byte[40]);
+        assertRejected(IsoBmffStructureValidator.INVALID_DATA, "clip.mp4", tinyLarge);
+
+        byte[] binaryType = concat(box("ftyp", 24), box("mdat", 16), new byte[40]);
+        binaryType[24 + 4] = 0x01;
+        assertRejected(IsoBmffStructureValidator.INVALID_DATA, "clip.mp4", binaryType);
+    }
+
+    @Test
+    void otherContainersAreLeftToFfprobe() throws IOException {
+        // 扩展名为 .mp4 的 MPEG-TS（0x47 同步字节，188 字节一包）和 WebM（EBML 头）
+        byte[] ts = new byte[188 * 4];
+        for (int i = 0; i < ts.length; i += 188) {
+            ts[i] = 0x47;
+            ts[i + 1] = 0x40;
+            ts[i + 3] = 0x10;
+        }
+        byte[] webm = concat(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x9F, 0x42, (byte) 0x86, (byte) 0x81},
+                new byte[100]);
+        for (byte[] file : Arrays.asList(ts, webm)) {
+            feedSequentially("clip.mp4", file, file.length, 11);
+            readHeaders("clip.mp4", file);
+        }
+        // 其他扩展名只有以 ftyp 开头时才检查
+        byte[] mdatOnly = concat(box("mdat", 0), new byte[50]);
+        feedSequentially("clip.mkv", mdatOnly, mdatOnly.length, 9);
+        byte[] ftypNoMoov = concat(box("ftyp", 24), box("mdat", 100));
+        assertRejected(IsoBmffStructureValidator.MISSING_MOOV, "clip.mkv", ftypNoMoov);
+    }
+
+    @Test
+    void wrappedStreamFailsOnRead() throws IOException {
+        byte[] noMoov = concat(box("ftyp", 24), box("mdat", 100));
+        IsoBmffStructureValidator validator = new IsoBmffStructureValidator("clip.mp4", noMoov.length);
+        InputStream in = validator.wrap(new ByteArrayInputStream(noMoov));
+        byte[] buffer = new byte[16];
+        InvalidMediaException e = assertThrows(InvalidMediaException.class, () -> {
+            while (in.read(buffer, 0, buffer.length) >= 0) {
+                // 读到结尾
+            }
+        });
+        assertEquals(IsoBmffStructureValidator.MISSING_MOOV, e.getMessage());
+
+        byte[] valid = concat(box("ftyp", 24), box("moov", 40));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (InputStream ok = new IsoBmffStructureValidator("clip.mp4", valid.length)
+                .wrap(new ByteArrayInputStream(valid))) {
+            int b;
+            while ((b = ok.read()) >= 0) {
+                copy.write(b);
+            }
+        }
+        assertTrue(Arrays.equals(valid, copy.toByteArray()));
+    }
+
+    @Test
+    void headerAtWrongOffsetIsAnError() {
+        IsoBmffStructureValidator validator = new IsoBmffStructureValidator("clip.mp4", 200);
+        assertThrows(IllegalArgumentException.class, () -> validator.acceptHeader(8, box("ftyp", 24), 16));
+    }
+
+    /**
+     * 两种模式都应以同样的消息拒绝
+     */
+    private static void assertRejected(String message, String fileName, byte[] file) {
+        assertEquals(message, assertThrows(InvalidMediaException.class,
+                () -> feedSequentially(fileName, file, file.length, 5)).getMessage());
+        assertEquals(message, assertThrows(InvalidMediaException.class,
+                () -> readHeaders(fileName, file)).getMessage());
+    }
+
+    private static void feedSequentially(String fileName, byte[] file, long declaredSize, int sliceSize)
+            throws InvalidMediaException {
+        IsoBmffStructureValidator validator = new IsoBmffStructureValidator(fileName, declaredSize);
+        for (int offset = 0; offset < file.length; offset += sliceSize) {
+            validator.update(file, offset, Math.min(sliceSize, file.length - offset));
+        }
+        validator.finish(file.length);
+    }
+
+    /**
+     * 分片上传的方式：只读取 getNextHeaderOffset 处的头部
+     */
+    private static void readHeaders(String fileName, byte[] file) throws InvalidMediaException {
+        IsoBmffStructureValidator validator = new IsoBmffStructureValidator(fileName, file.length);
+        while (validator.needsHeader()) {
+            long offset = validator.getNextHeaderOffset();
+            int length = validator.getHeaderLength();
+            byte[] header = Arrays.copyOfRange(file, (int) offset, (int) offset + length);
+            validator.acceptHeader(offset, header, length);
+        }
+        validator.finish(file.length);
+    }
+
+    /**
+     * 32 位 size 的 box，size 为 0 时只写头部；内容为零
+     */
+    private static byte[] box(String type, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size == 0 ? 8 : Math.max(size, 8));
+        buffer.putInt(size).put(type.getBytes(StandardCharsets.ISO_8859_1));
+        return buffer.array();
+    }
+
+    /**
+     * 64 位 largesize 的 box；size 小于头部长度时只写头部
+     */
+    private static byte[] largeBox(String type, long size) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(size, IsoBmffStructureValidator.MAX_HEADER_SIZE));
+        buffer.putInt(1).put(type.getBytes(StandardCharsets.ISO_8859_1)).putLong(size);
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
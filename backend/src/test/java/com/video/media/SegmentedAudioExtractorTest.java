@@ -0,0 +1,105 @@
+package com.video.media;
+
+import com.video.config.FFmpegConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分段提取：每段写在自己的样本偏移上，多解码的部分截掉，中间分段不足时补静音，最后一段读到结尾
+ */
+class SegmentedAudioExtractorTest {
+
+    /**
+     * 代替 ffmpeg 的脚本：按 -ss 的整数秒输出标记值（第 1 段为 1，第 2 段为 2……），
+     * 有 -t 时输出 -t 秒，没有时输出 1.05 秒（实际音频比探测时长略长）；第 2 段只输出 0.5 秒
+     */
+    private static final String FAKE_FFMPEG = "#!/bin/sh\n"
+            + "exec awk -v args=\"$*\" 'BEGIN {\n"
+            + "  n = split(args, a, \" \"); ss = 0; t = 1.05\n"
+            + "  for (i = 1; i < n; i++) { if (a[i] == \"-ss\") ss = a[i + 1]; if (a[i] == \"-t\") t = a[i + 1] }\n"
+            + "  marker = int(ss) + 1\n"
+            + "  if (marker == 2) t = 0.5\n"
+            + "  samples = int(t * 16000 + 0.5)\n"
+            + "  for (i = 0; i < samples; i++) printf \"%c%c\", marker, marker\n"
+            + "}'\n";
+
+    @TempDir
+    Path directory;
+
+    private FFmpegProcessSupervisor supervisor;
+    private ThreadPoolTaskExecutor executor;
+    private SegmentedAudioExtractor extractor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path script = directory.resolve("ffmpeg");
+        Files.write(script, FAKE_FFMPEG.getBytes(StandardCharsets.US_ASCII));
+        script.toFile().setExecutable(true);
+        FFmpegConfig ffmpegConfig = new FFmpegConfig();
+        ReflectionTestUtils.setField(ffmpegConfig, "ffmpegPath", script.toString());
+
+        supervisor = new FFmpegProcessSupervisor();
+        ReflectionTestUtils.setField(supervisor, "maxConcurrent", 3);
+        ReflectionTestUtils.setField(supervisor, "totalThreads", 3);
+        ReflectionTestUtils.setField(supervisor, "baseTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(supervisor, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(supervisor, "stderrLines", 200);
+        supervisor.init();
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(3);
+        executor.initialize();
+
+        extractor = new SegmentedAudioExtractor(ffmpegConfig, supervisor, executor);
+        ReflectionTestUtils.setField(extractor, "parallelism", 3);
+        ReflectionTestUtils.setField(extractor, "minSegmentSeconds", 1.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        supervisor.shutdown();
+    }
+
+    @Test
+    void segmentsAreWrittenAtSampleOffsets() throws IOException {
+        Path output = directory.resolve("audio.wav");
+
+        // 3 秒分为 3 段，起始样本 0 / 16000 / 32000
+        long samples = extractor.extract("clip.mp4", 3.0, output);
+
+        int lastSamples = 16800;
+        assertEquals(32000 + lastSamples, samples);
+        byte[] wav = Files.readAllBytes(output);
+        assertEquals(WavHeader.SIZE + samples * PcmFormat.BYTES_PER_SAMPLE, wav.length);
+        ByteBuffer header = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(samples * PcmFormat.BYTES_PER_SAMPLE, header.getInt(40));
+
+        // 第 1 段多解码的 0.1 秒被截掉，没有覆盖第 2 段
+        assertSamples(wav, 0, 16000, 1);
+        // 第 2 段只解码出 0.5 秒，其余补静音，第 3 段位置不变
+        assertSamples(wav, 16000, 24000, 2);
+        assertSamples(wav, 24000, 32000, 0);
+        // 最后一段读到结尾，长度以实际输出为准
+        assertSamples(wav, 32000, 32000 + lastSamples, 3);
+    }
+
+    private static void assertSamples(byte[] wav, int fromSample, int toSample, int marker) {
+        for (int i = WavHeader.SIZE + fromSample * 2; i < WavHeader.SIZE + toSample * 2; i++) {
+            assertEquals(marker, wav[i], "byte " + i);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WAV 解析：管道输出留下的长度按文件大小修正，fmt 块中声道数或采样率为 0 的文件被拒绝
+ */
+class WavFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsPcmData() throws IOException {
+        WavFile wav = WavFile.open(write(wav(2, 16000, 8, 8)));
+
+        assertEquals(2, wav.getChannels());
+        assertEquals(16000, wav.getSampleRate());
+        assertEquals(2, wav.getFrameCount());
+        assertEquals(1, wav.samples(1, 5).get(0));
+    }
+
+    @Test
+    void unknownDataSizeUsesFileSize() throws IOException {
+        // ffmpeg 写管道时 data 长度为 0xFFFFFFFF；不足一帧的尾部被截掉
+        WavFile wav = WavFile.open(write(wav(2, 16000, -1, 10)));
+
+        assertEquals(8, wav.getDataSize());
+        assertEquals(2, wav.getFrameCount());
+    }
+
+    @Test
+    void zeroChannelsOrSampleRateIsRejected() throws IOException {
+        Path noChannels = write(wav(0, 16000, 8, 8));
+        IOException e = assertThrows(IOException.class, () -> WavFile.open(noChannels));
+        assertTrue(e.getMessage().contains("声道数: 0"), e.getMessage());
+
+        Path noSampleRate = write(wav(1, 0, 8, 8));
+        e = assertThrows(IOException.class, () -> WavFile.open(noSampleRate));
+        assertTrue(e.getMessage().contains("采样率: 0"), e.getMessage());
+    }
+
+    private Path write(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(directory, "audio", ".wav"), content);
+    }
+
+    /**
+     * 16 位 PCM，第 n 个样本的值为 n / channels（即帧号）
+     */
+    private static byte[] wav(int channels, int sampleRate, int declaredDataSize, int dataBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + dataBytes).putInt(0x45564157);
+        buffer.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) channels).putInt(sampleRate)
+                .putInt(sampleRate * Math.max(1, channels) * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(declaredDataSize);
+        for (int i = 0; i < dataBytes / 2; i++) {
+            buffer.putShort((short) (i / Math.max(1, channels)));
+        }
+        return buffer.array();
+    }
+}
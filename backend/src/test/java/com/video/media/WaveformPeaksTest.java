@@ -0,0 +1,138 @@
+package com.video.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 波形峰值金字塔：每层的 min/max 与直接扫描 PCM 的结果一致，按时间和密度取层
+ */
+class WaveformPeaksTest {
+
+    /** 第 0 层 1101 个峰值，第 1 层 551 个，第 2 层 276 个后停止 */
+    private static final int SAMPLES = WaveformPeaks.BASE_SAMPLES_PER_PEAK * 1100 + 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyLevelMatchesDirectScan() throws IOException {
+        short[] pcm = samples();
+        WaveformPeaks peaks = generate(pcm);
+
+        assertEquals(PcmFormat.SAMPLE_RATE, peaks.getSampleRate());
+        assertEquals(SAMPLES, peaks.getTotalSamples());
+        assertEquals(3, peaks.getLevelCount());
+        int[] expectedCounts = {1101, 551, 276};
+        for (int level = 0; level < peaks.getLevelCount(); level++) {
+            int samplesPerPeak = WaveformPeaks.BASE_SAMPLES_PER_PEAK << level;
+            assertEquals(samplesPerPeak, peaks.getSamplesPerPeak(level));
+            assertEquals(expectedCounts[level], peaks.getPeakCount(level));
+
+            ByteBuffer slice = peaks.slice(level, 0, -1);
+            assertEquals(expectedCounts[level] * WaveformPeaks.BYTES_PER_PEAK, slice.remaining());
+            for (int peak = 0; peak < expectedCounts[level]; peak++) {
+                short min = Short.MAX_VALUE;
+                short max = Short.MIN_VALUE;
+                for (int i = peak * samplesPerPeak; i < Math.min(pcm.length, (peak + 1) * samplesPerPeak); i++) {
+                    min = (short) Math.min(min, pcm[i]);
+                    max = (short) Math.max(max, pcm[i]);
+                }
+                assertEquals(min, slice.getShort(), "level " + level + " peak " + peak + " min");
+                assertEquals(max, slice.getShort(), "level " + level + " peak " + peak + " max");
+            }
+        }
+    }
+
+    @Test
+    void slicesByTimeAndPicksLevelByDensity() throws IOException {
+        WaveformPeaks peaks = generate(samples());
+
+        // 16kHz 下第 0 层每秒 62.5 个峰值，第 1 层 31.25，第 2 层 15.625
+        assertEquals(0, peaks.levelForPeaksPerSecond(100));
+        assertEquals(0, peaks.levelForPeaksPerSecond(62.5));
+        assertEquals(1, peaks.levelForPeaksPerSecond(20));
+        assertEquals(2, peaks.levelForPeaksPerSecond(1));
+
+        // 第 2 秒到第 4 秒：第 0 层第 125 到 250 个峰值（含结束时间所在的峰值）
+        ByteBuffer slice = peaks.slice(0, 2, 4);
+        assertEquals(125, peaks.peakIndexAt(0, 2));
+        assertEquals((250 - 125 + 1) * WaveformPeaks.BYTES_PER_PEAK, slice.remaining());
+        assertEquals(peaks.slice(0, 0, -1).getShort(125 * WaveformPeaks.BYTES_PER_PEAK), slice.getShort(0));
+
+        // 超出时长的范围返回空，不越界
+        assertEquals(0, peaks.slice(2, 1000, 2000).remaining());
+        assertEquals(peaks.getPeakCount(1), peaks.peakIndexAt(1, 1000));
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignFiles() throws IOException {
+        Path file = directory.resolve("audio.peaks");
+        WaveformPeaks.generate(wav(samples()), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path truncated = directory.resolve("truncated.peaks");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> WaveformPeaks.open(truncated));
+
+        Path foreign = directory.resolve("foreign.peaks");
+        Files.write(foreign, new byte[64]);
+        assertThrows(IOException.class, () -> WaveformPeaks.open(foreign));
+
+        // 层目录中每峰样本数为 0 会导致按时间取峰值时除零
+        ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        corrupt.putInt(24, 0);
+        Path zeroed = directory.resolve("zeroed.peaks");
+        Files.write(zeroed, corrupt.array());
+        assertThrows(IOException.class, () -> WaveformPeaks.open(zeroed));
+    }
+
+    private WaveformPeaks generate(short[] pcm) throws IOException {
+        Path file = directory.resolve("audio.peaks");
+        WaveformPeaks.generate(wav(pcm), file);
+        return WaveformPeaks.open(file);
+    }
+
+    private WavFile wav(short[] pcm) throws IOException {
+        Path path = directory.resolve("audio.wav");
+        ByteBuffer data = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : pcm) {
+            data.putShort(sample);
+        }
+        data.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            WavHeader.write(channel, data.remaining());
+            channel.position(WavHeader.SIZE);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        return WavFile.open(path);
+    }
+
+    /**
+     * 幅度随位置变化的锯齿波，并在个别位置放置尖峰，便于发现合并时丢失极值
+     */
+    private static short[] samples() {
+        short[] pcm = new short[SAMPLES];
+        for (int i = 0; i < pcm.length; i++) {
+            int amplitude = 1000 + (i / 4096) * 50;
+            pcm[i] = (short) ((i % 200 - 100) * amplitude / 100);
+        }
+        pcm[777] = Short.MAX_VALUE;
+        pcm[SAMPLES - 1] = Short.MIN_VALUE;
+        return pcm;
+    }
+}
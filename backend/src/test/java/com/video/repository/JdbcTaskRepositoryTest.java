@@ -0,0 +1,196 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 任务持久化：内嵌 H2（MySQL 兼容模式）
+ */
+class JdbcTaskRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcTaskRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new JdbcTaskRepository(jdbcTemplate);
+        // 测试中手动 flush，后台刷新间隔设得足够长
+        ReflectionTestUtils.setField(repository, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(repository, "batchSize", 2);
+        ReflectionTestUtils.setField(repository, "maxAttempts", 5);
+        repository.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.shutdown();
+    }
+
+    @Test
+    void savesAreWrittenOnlyOnFlush() {
+        repository.save(task(1L));
+        assertEquals(0, repository.findAll().size());
+
+        repository.flush();
+        assertEquals(1, repository.findAll().size());
+        assertEquals(1L, repository.findMaxId());
+    }
+
+    @Test
+    void repeatedSavesAreCoalescedIntoLatestState() {
+        VideoTask task = task(1L);
+        repository.save(task);
+        task.setStatus("PROCESSING");
+        task.setProgress(45);
+        repository.save(task);
+        repository.flush();
+
+        task.setStatus("COMPLETED");
+        task.setProgress(100);
+        task.setSourceTaskId(7L);
+        repository.save(task);
+        repository.flush();
+
+        List<VideoTask> tasks = repository.findAll();
+        assertEquals(1, tasks.size());
+        assertEquals("COMPLETED", tasks.get(0).getStatus());
+        assertEquals(100, tasks.get(0).getProgress());
+        assertEquals(7L, tasks.get(0).getSourceTaskId());
+    }
+
+    @Test
+    void mixedInsertsAndUpdatesAcrossBatches() {
+        for (long id = 1; id <= 3; id++) {
+            repository.save(task(id));
+        }
+        repository.flush();
+
+        VideoTask updated = task(2L);
+        updated.setStatus("FAILED");
+        repository.save(updated);
+        for (long id = 4; id <= 5; id++) {
+            repository.save(task(id));
+        }
+        repository.flush();
+
+        List<VideoTask> tasks = repository.findAll();
+        assertEquals(5, tasks.size());
+        assertEquals("FAILED", tasks.get(1).getStatus());
+        assertEquals(5L, repository.findMaxId());
+    }
+
+    @Test
+    void columnsRoundTrip() {
+        VideoTask task = task(1L);
+        task.setFilePath(null);
+        task.setCurrentStep(repeat('步', 150));
+        repository.save(task);
+        repository.flush();
+
+        VideoTask loaded = repository.findAll().get(0);
+        assertNull(loaded.getFilePath());
+        assertNull(loaded.getSourceTaskId());
+        assertEquals(100, loaded.getCurrentStep().length());
+        assertEquals(task.getContentHash(), loaded.getContentHash());
+        assertEquals(task.getCreateTime(), loaded.getCreateTime());
+    }
+
+    @Test
+    void failedFlushKeepsChangesPending() {
+        repository.save(task(1L));
+        jdbcTemplate.execute("ALTER TABLE video_tasks RENAME TO video_tasks_moved");
+        try {
+            repository.flush();
+        } catch (RuntimeException expected) {
+            // 下次刷新时重试
+        }
+        jdbcTemplate.execute("ALTER TABLE video_tasks_moved RENAME TO video_tasks");
+
+        repository.flush();
+        assertEquals(1L, repository.findMaxId());
+    }
+
+    @Test
+    void longTextIsTruncatedToColumnWidth() {
+        VideoTask task = task(1L);
+        task.setOriginalName(repeat('名', 300) + ".mp4");
+        task.setFileName(repeat('f', 300));
+        task.setErrorMessage(repeat('错', 20000));
+        repository.save(task);
+        repository.flush();
+
+        VideoTask loaded = repository.findAll().get(0);
+        assertEquals(255, loaded.getOriginalName().length());
+        assertTrue(loaded.getOriginalName().endsWith("…"));
+        assertEquals(255, loaded.getFileName().length());
+        assertEquals(65535 / 4, loaded.getErrorMessage().length());
+    }
+
+    @Test
+    void invalidRowsAreDroppedWithoutBlockingTheBatch() {
+        for (long id = 1; id <= 4; id++) {
+            repository.save(task(id));
+        }
+        VideoTask noStatus = task(2L);
+        noStatus.setStatus(null);
+        repository.save(noStatus);
+        VideoTask longPath = task(3L);
+        longPath.setFilePath("/uploads/" + repeat('p', 600));
+        repository.save(longPath);
+
+        // 出错的行被丢弃，同批的其他行照常写入，不再重试
+        repository.flush();
+        List<VideoTask> tasks = repository.findAll();
+        assertEquals(2, tasks.size());
+        assertEquals(1L, tasks.get(0).getId());
+        assertEquals(4L, tasks.get(1).getId());
+
+        // 之后的合法变更仍会写入
+        repository.save(task(2L));
+        repository.flush();
+        assertEquals(3, repository.findAll().size());
+    }
+
+    private static VideoTask task(Long id) {
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        task.setFileName("video" + id + ".mp4");
+        task.setFilePath("/uploads/video" + id + ".mp4");
+        task.setOriginalName("video.mp4");
+        task.setFileSize(1024L);
+        task.setContentHash(repeat('a', 64));
+        task.setStatus("UPLOADED");
+        task.setProgress(0);
+        task.setCurrentStep("文件上传并验证完成");
+        task.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0, 0));
+        task.setUpdateTime(LocalDateTime.of(2024, 1, 1, 12, 0, 0));
+        return task;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
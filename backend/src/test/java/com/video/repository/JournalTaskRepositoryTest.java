@@ -0,0 +1,167 @@
+package com.video.repository;
+
+import com.video.model.VideoTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地任务日志：重放、截断容错、快照压缩
+ */
+class JournalTaskRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private JournalTaskRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.shutdown();
+        }
+    }
+
+    @Test
+    void tasksSurviveRestart() throws IOException {
+        repository = open(64 * 1024 * 1024);
+        VideoTask task = task(1L);
+        repository.save(task);
+        repository.save(task(2L));
+        repository.flush();
+        task.setStatus("COMPLETED");
+        task.setProgress(100);
+        task.setSourceTaskId(2L);
+        task.setErrorMessage(null);
+        repository.save(task);
+        repository.flush();
+
+        List<VideoTask> tasks = reopen(64 * 1024 * 1024).findAll();
+        assertEquals(2, tasks.size());
+        VideoTask loaded = tasks.get(0);
+        assertEquals("COMPLETED", loaded.getStatus());
+        assertEquals(100, loaded.getProgress());
+        assertEquals(2L, loaded.getSourceTaskId());
+        assertEquals(task.getCreateTime(), loaded.getCreateTime());
+        assertEquals(task.getCurrentStep(), loaded.getCurrentStep());
+        assertNull(loaded.getErrorMessage());
+        assertEquals(2L, repository.findMaxId());
+    }
+
+    @Test
+    void tornTailIsIgnored() throws IOException {
+        repository = open(64 * 1024 * 1024);
+        repository.save(task(1L));
+        repository.flush();
+        repository.save(task(2L));
+        repository.flush();
+        repository.shutdown();
+
+        // 模拟写第二条记录时崩溃：截掉最后几个字节
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        repository = open(64 * 1024 * 1024);
+        assertEquals(1, repository.findAll().size());
+
+        // 之后的写入在新日志段中，不受损坏的记录影响
+        repository.save(task(3L));
+        repository.flush();
+        assertEquals(2, reopen(64 * 1024 * 1024).findAll().size());
+    }
+
+    @Test
+    void corruptedRecordStopsReplayOfSegment() throws IOException {
+        repository = open(64 * 1024 * 1024);
+        repository.save(task(1L));
+        repository.flush();
+        repository.shutdown();
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), channel.size() - 1);
+        }
+        repository = open(64 * 1024 * 1024);
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    @Test
+    void snapshotCompactsSegments() throws Exception {
+        repository = open(4 * 1024);
+        for (int round = 0; round < 20; round++) {
+            for (long id = 1; id <= 10; id++) {
+                VideoTask task = task(id);
+                task.setProgress(round);
+                repository.save(task);
+            }
+            repository.flush();
+        }
+        repository.shutdown();
+
+        assertTrue(Files.exists(directory.resolve("tasks.snapshot")));
+        assertTrue(segments().size() < 20);
+
+        List<VideoTask> tasks = reopen(4 * 1024).findAll();
+        assertEquals(10, tasks.size());
+        for (VideoTask task : tasks) {
+            assertEquals(19, task.getProgress());
+        }
+    }
+
+    private JournalTaskRepository reopen(long snapshotThreshold) throws IOException {
+        repository.shutdown();
+        repository = open(snapshotThreshold);
+        return repository;
+    }
+
+    private JournalTaskRepository open(long snapshotThreshold) throws IOException {
+        JournalTaskRepository journal = new JournalTaskRepository();
+        ReflectionTestUtils.setField(journal, "journalPath", directory.toString());
+        // 测试中手动 flush，后台刷新间隔设得足够长
+        ReflectionTestUtils.setField(journal, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(journal, "fsync", false);
+        ReflectionTestUtils.setField(journal, "snapshotThreshold", snapshotThreshold);
+        journal.init();
+        return journal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("journal-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static VideoTask task(Long id) {
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        task.setFileName("video" + id + ".mp4");
+        task.setFilePath("/uploads/video" + id + ".mp4");
+        task.setOriginalName("视频.mp4");
+        task.setFileSize(1024L);
+        task.setStatus("UPLOADED");
+        task.setProgress(0);
+        task.setCurrentStep("文件上传并验证完成");
+        task.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123456789));
+        task.setUpdateTime(LocalDateTime.now());
+        return task;
+    }
+}
@@ -0,0 +1,186 @@
+package com.video.service.impl;
+
+import com.video.model.UploadSession;
+import com.video.model.VideoTask;
+import com.video.service.StorageLifecycleService;
+import com.video.service.VideoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分片上传：重传覆盖、校验失败、并发重复分片、到达即检查容器头部
+ */
+class ChunkedUploadServiceImplTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private VideoService videoService;
+    private ChunkedUploadServiceImpl service;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        videoService = mock(VideoService.class);
+        StorageLifecycleService storage = mock(StorageLifecycleService.class);
+        when(storage.ensureCapacity(anyString(), anyLong())).thenReturn(true);
+        service = new ChunkedUploadServiceImpl(videoService, storage);
+        ReflectionTestUtils.setField(service, "uploadPath", directory.toString());
+        ReflectionTestUtils.setField(service, "defaultChunkSize", 4);
+        ReflectionTestUtils.setField(service, "minChunkSize", 1);
+        ReflectionTestUtils.setField(service, "maxChunkSize", 1024);
+        ReflectionTestUtils.setField(service, "maxFileSize", 1L << 20);
+        ReflectionTestUtils.setField(service, "sessionTimeoutMs", 60_000L);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        service.shutdown();
+    }
+
+    @Test
+    void resentChunksReplaceDataAndBadHashesStayMissing() throws IOException {
+        UploadSession session = service.initUpload("clip.bin", CONTENT.length, null);
+        String id = session.getUploadId();
+        assertEquals(3, session.getTotalChunks());
+
+        write(id, 0, "0123");
+        IllegalArgumentException mismatch = assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 1, stream("4567"), sha256("xxxx")));
+        assertTrue(mismatch.getMessage().contains("校验失败"));
+        assertEquals(Arrays.asList(1, 2), service.getUpload(id).getMissingChunks());
+
+        // 已收到的分片重传失败后重新计为缺失
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 0, stream("0000"), sha256("0123")));
+        assertEquals(Arrays.asList(0, 1, 2), service.getUpload(id).getMissingChunks());
+        assertThrows(IllegalArgumentException.class, () -> service.completeUpload(id));
+
+        write(id, 2, "89");
+        write(id, 1, "4567");
+        write(id, 0, "0123");
+        assertEquals(Collections.emptyList(), service.getUpload(id).getMissingChunks());
+
+        VideoTask task = new VideoTask();
+        when(videoService.registerUploadedFile(anyString(), eq("clip.bin"))).thenAnswer(invocation -> {
+            assertArrayEquals(CONTENT, Files.readAllBytes(Paths.get((String) invocation.getArgument(0))));
+            return task;
+        });
+        assertEquals(task, service.completeUpload(id));
+        assertThrows(IllegalArgumentException.class, () -> service.getUpload(id));
+    }
+
+    @Test
+    void rejectsChunksOfWrongLengthOrIndex() {
+        String id = service.initUpload("clip.bin", CONTENT.length, null).getUploadId();
+
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 0, stream("01234"), sha256("01234")));
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 0, stream("012"), sha256("012")));
+        // 最后一片只有 2 字节
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 2, stream("890"), sha256("890")));
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 3, stream("x"), sha256("x")));
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(id, 0, stream("0123"), null));
+        assertEquals(3, service.getUpload(id).getMissingChunks().size());
+    }
+
+    @Test
+    void concurrentDuplicateChunkIsRejected() throws Exception {
+        String id = service.initUpload("clip.bin", CONTENT.length, null).getUploadId();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slow = new InputStream() {
+            private final InputStream data = stream("0123");
+
+            @Override
+            public int read() throws IOException {
+                return data.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return data.read(b, off, len);
+            }
+        };
+        Future<UploadSession> first = executor.submit(() -> service.writeChunk(id, 0, slow, sha256("0123")));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // 第一个请求还在写时，重复的请求不能覆盖同一分片
+        IllegalArgumentException busy = assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 0, stream("XXXX"), sha256("XXXX")));
+        assertTrue(busy.getMessage().contains("正在写入"));
+
+        release.countDown();
+        assertEquals(1, first.get(10, TimeUnit.SECONDS).getReceivedChunks());
+        write(id, 1, "4567");
+        write(id, 2, "89");
+        when(videoService.registerUploadedFile(anyString(), anyString())).thenAnswer(invocation -> {
+            assertArrayEquals(CONTENT, Files.readAllBytes(Paths.get((String) invocation.getArgument(0))));
+            return new VideoTask();
+        });
+        service.completeUpload(id);
+    }
+
+    @Test
+    void firstChunkRevealsMp4WithoutMoov() {
+        // mdat 的 size 为 0 表示延伸到文件结尾，moov 不可能在它后面
+        byte[] header = {0, 0, 0, 0, 'm', 'd', 'a', 't'};
+        String id = service.initUpload("clip.mp4", 64, 16).getUploadId();
+        byte[] chunk = Arrays.copyOf(header, 16);
+
+        IllegalArgumentException rejected = assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(id, 0, new ByteArrayInputStream(chunk),
+                        ContentStorageServiceImpl.toHex(ContentStorageServiceImpl.sha256().digest(chunk))));
+        assertTrue(rejected.getMessage().contains("moov"));
+        assertThrows(IllegalArgumentException.class, () -> service.getUpload(id));
+    }
+
+    private void write(String id, int index, String data) {
+        service.writeChunk(id, index, stream(data), sha256(data));
+    }
+
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String sha256(String data) {
+        return ContentStorageServiceImpl.toHex(
+                ContentStorageServiceImpl.sha256().digest(data.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
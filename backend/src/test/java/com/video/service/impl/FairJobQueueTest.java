@@ -0,0 +1,92 @@
+package com.video.service.impl;
+
+import com.video.service.ProcessingPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 入口队列：同一优先级内客户端轮流出队，交互式优先但不饿死批量任务
+ */
+class FairJobQueueTest {
+
+    @Test
+    void clientsTakeTurnsWithinPriority() {
+        FairJobQueue queue = new FairJobQueue(10, 4);
+        queue.offer(job(ProcessingPriority.BULK, "a", "a1"));
+        queue.offer(job(ProcessingPriority.BULK, "a", "a2"));
+        queue.offer(job(ProcessingPriority.BULK, "a", "a3"));
+        queue.offer(job(ProcessingPriority.BULK, "b", "b1"));
+        queue.offer(job(ProcessingPriority.BULK, "c", "c1"));
+        queue.offer(job(ProcessingPriority.BULK, "b", "b2"));
+
+        assertEquals(3, queue.sizeOf("a"));
+        assertEquals(Arrays.asList("a1", "b1", "c1", "a2", "b2", "a3"), drain(queue));
+        assertEquals(0, queue.sizeOf("a"));
+    }
+
+    @Test
+    void interactiveFirstButBulkNotStarved() {
+        FairJobQueue queue = new FairJobQueue(20, 2);
+        for (int i = 1; i <= 3; i++) {
+            queue.offer(job(ProcessingPriority.BULK, "batch", "b" + i));
+        }
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(job(ProcessingPriority.INTERACTIVE, "user", "i" + i));
+        }
+        assertEquals(5, queue.size(ProcessingPriority.INTERACTIVE));
+        assertEquals(5 * 100, queue.estimatedMs(ProcessingPriority.INTERACTIVE));
+
+        assertEquals(Arrays.asList("i1", "i2", "b1", "i3", "i4", "b2", "i5", "b3"), drain(queue));
+        assertEquals(0, queue.estimatedMs(ProcessingPriority.BULK));
+    }
+
+    @Test
+    void boundedCapacityAndRemoval() {
+        FairJobQueue queue = new FairJobQueue(2, 4);
+        FairJobQueue.Job first = job(ProcessingPriority.INTERACTIVE, "a", "a1");
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(() -> { }));
+        assertFalse(queue.offer(job(ProcessingPriority.INTERACTIVE, "a", "a2")));
+        assertEquals(0, queue.remainingCapacity());
+
+        assertTrue(queue.remove(first));
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.size(ProcessingPriority.BULK));
+        assertEquals(0, queue.sizeOf("a"));
+    }
+
+    private static FairJobQueue.Job job(ProcessingPriority priority, String clientId, String name) {
+        return new FairJobQueue.Job(priority, clientId, 100, new Named(name));
+    }
+
+    private static List<String> drain(FairJobQueue queue) {
+        List<String> names = new ArrayList<>();
+        Runnable job;
+        while ((job = queue.poll()) != null) {
+            job.run();
+            names.add(Named.last);
+        }
+        return names;
+    }
+
+    private static final class Named implements Runnable {
+        static String last;
+        private final String name;
+
+        Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            last = name;
+        }
+    }
+}
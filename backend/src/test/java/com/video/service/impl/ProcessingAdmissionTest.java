@@ -0,0 +1,159 @@
+package com.video.service.impl;
+
+import com.video.service.AdmissionRejectedException;
+import com.video.service.ProcessingPriority;
+import com.video.service.StorageLifecycleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 准入控制：客户端超限返回 429，队列（含交互式预留）、临时目录空间和最长等待超限返回 503，都带建议的重试秒数
+ * 单个媒体线程被占住，提交的任务都留在容量为 4 的入口队列里；按 1s/MB 估算，每个 10MB 的任务 10 秒
+ */
+class ProcessingAdmissionTest {
+
+    private static final long FILE_SIZE = 10L * 1024 * 1024;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final StorageLifecycleService storage = mock(StorageLifecycleService.class);
+    private ThreadPoolTaskExecutor executor;
+    private PipelineStage stage;
+    private FairJobQueue queue;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        executor = new ThreadPoolTaskExecutor() {
+            @Override
+            protected BlockingQueue<Runnable> createQueue(int capacity) {
+                return new FairJobQueue(capacity, 4);
+            }
+        };
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(4);
+        executor.setPrestartAllCoreThreads(true);
+        executor.initialize();
+        stage = new PipelineStage("test", executor);
+        queue = (FairJobQueue) executor.getThreadPoolExecutor().getQueue();
+        when(storage.hasCapacity(anyString(), anyLong())).thenReturn(true);
+
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void clientOverLimitGets429() {
+        ProcessingAdmission admission = admission(2, 0, 0);
+        submit(admission, ProcessingPriority.BULK, "a");
+        submit(admission, ProcessingPriority.BULK, "a");
+
+        AdmissionRejectedException e = reject(admission, ProcessingPriority.BULK, "a");
+        assertTrue(e.isClientLimited());
+        // 该客户端排队的 2 个任务处理完的时间
+        assertEquals(20, e.getRetryAfterSeconds());
+
+        // 其他客户端不受影响
+        submit(admission, ProcessingPriority.BULK, "b");
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void bulkCannotTakeInteractiveReserve() {
+        ProcessingAdmission admission = admission(0, 1, 0);
+        for (String client : new String[]{"a", "b", "c"}) {
+            submit(admission, ProcessingPriority.BULK, client);
+        }
+
+        AdmissionRejectedException e = reject(admission, ProcessingPriority.BULK, "d");
+        assertFalse(e.isClientLimited());
+        // 平均一个任务的处理时间
+        assertEquals(10, e.getRetryAfterSeconds());
+
+        // 预留的位置留给交互式任务，之后队列全满
+        submit(admission, ProcessingPriority.INTERACTIVE, "d");
+        e = reject(admission, ProcessingPriority.INTERACTIVE, "e");
+        assertFalse(e.isClientLimited());
+        assertEquals(10, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    void insufficientTempSpaceGets503() {
+        when(storage.hasCapacity(anyString(), anyLong())).thenReturn(false);
+        ProcessingAdmission admission = admission(0, 0, 0);
+
+        AdmissionRejectedException e = reject(admission, ProcessingPriority.INTERACTIVE, "a");
+        assertFalse(e.isClientLimited());
+        assertEquals(30, e.getRetryAfterSeconds());
+        verify(storage).hasCapacity(StorageLifecycleService.TEMP, FILE_SIZE / 4);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void overMaxWaitGets503() {
+        ProcessingAdmission admission = admission(0, 0, 25_000);
+        submit(admission, ProcessingPriority.BULK, "a");
+        submit(admission, ProcessingPriority.BULK, "b");
+
+        // 批量任务排在全部任务之后：20 秒 + 自身 10 秒，超出上限 5 秒
+        AdmissionRejectedException e = reject(admission, ProcessingPriority.BULK, "c");
+        assertFalse(e.isClientLimited());
+        assertEquals(5, e.getRetryAfterSeconds());
+
+        // 交互式任务只需等一个穿插的批量任务
+        submit(admission, ProcessingPriority.INTERACTIVE, "c");
+    }
+
+    @Test
+    void mediaWorkUpdatesEstimate() {
+        ProcessingAdmission admission = admission(0, 0, 0);
+        assertEquals(10_000, admission.estimateMs(FILE_SIZE));
+
+        // 新样本 2s/MB，权重 0.2
+        admission.recordMediaWork(FILE_SIZE, 20_000);
+        assertEquals(12_000, admission.estimateMs(FILE_SIZE));
+    }
+
+    private ProcessingAdmission admission(int maxQueuedPerClient, int interactiveReserve, long maxWaitMs) {
+        return new ProcessingAdmission(stage, queue, 1, 4, storage, maxQueuedPerClient, interactiveReserve,
+                maxWaitMs, 30_000, 1000);
+    }
+
+    private static void submit(ProcessingAdmission admission, ProcessingPriority priority, String client) {
+        admission.submit(priority, client, FILE_SIZE, () -> { });
+    }
+
+    private static AdmissionRejectedException reject(ProcessingAdmission admission, ProcessingPriority priority,
+            String client) {
+        return assertThrows(AdmissionRejectedException.class, () -> submit(admission, priority, client));
+    }
+}
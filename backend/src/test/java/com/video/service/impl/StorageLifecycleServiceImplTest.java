@@ -0,0 +1,145 @@
+package com.video.service.impl;
+
+import com.video.service.StorageLifecycleService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 配额淘汰：中间文件先淘汰，任务字幕、仍被引用的源文件和 retain 中的文件或目录不淘汰，源文件只在开启 evict-task-files 时淘汰
+ */
+class StorageLifecycleServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void taskFilesAreKeptByDefault() throws IOException {
+        Fixture fixture = new Fixture(directory);
+        StorageLifecycleServiceImpl service = service(false);
+        service.registerTaskFileOwner(fixture.owner());
+
+        service.sweep();
+
+        assertFalse(Files.exists(fixture.audio));
+        assertTrue(Files.exists(fixture.subtitle));
+        assertTrue(Files.exists(fixture.referenced));
+        assertTrue(Files.exists(fixture.orphan));
+        assertTrue(fixture.evicted.isEmpty());
+    }
+
+    @Test
+    void onlyUnreferencedSourcesAreEvicted() throws IOException {
+        Fixture fixture = new Fixture(directory);
+        StorageLifecycleServiceImpl service = service(true);
+        service.registerTaskFileOwner(fixture.owner());
+
+        service.sweep();
+
+        assertFalse(Files.exists(fixture.audio));
+        assertFalse(Files.exists(fixture.orphan));
+        assertTrue(Files.exists(fixture.subtitle));
+        assertTrue(Files.exists(fixture.referenced));
+        assertEquals(Collections.singletonList(fixture.orphan), fixture.evicted);
+    }
+
+    @Test
+    void sourcesAreKeptWithoutOwner() throws IOException {
+        Fixture fixture = new Fixture(directory);
+        StorageLifecycleServiceImpl service = service(true);
+
+        service.sweep();
+
+        assertTrue(Files.exists(fixture.referenced));
+        assertTrue(Files.exists(fixture.orphan));
+    }
+
+    @Test
+    void retainedFilesAndDirectoriesAreKept() throws IOException {
+        Fixture fixture = new Fixture(directory);
+        Path renderDir = Files.createDirectories(directory.resolve("temp").resolve("render_7"));
+        Path segment = Files.write(renderDir.resolve("segment_000.mp4"), new byte[128]);
+        Path otherSegment = Files.write(Files.createDirectories(directory.resolve("temp").resolve("render_8"))
+                .resolve("segment_000.mp4"), new byte[128]);
+        StorageLifecycleServiceImpl service = service(false);
+        service.retain(fixture.audio.toString());
+        service.retain(renderDir.toString());
+
+        service.sweep();
+
+        assertTrue(Files.exists(fixture.audio));
+        assertTrue(Files.exists(segment));
+        assertFalse(Files.exists(otherSegment));
+
+        service.release(fixture.audio.toString());
+        service.release(renderDir.toString());
+        service.sweep();
+
+        assertFalse(Files.exists(fixture.audio));
+        assertFalse(Files.exists(segment));
+    }
+
+    private StorageLifecycleServiceImpl service(boolean evictTaskFiles) {
+        StorageLifecycleServiceImpl service = new StorageLifecycleServiceImpl();
+        ReflectionTestUtils.setField(service, "uploadPath", directory.resolve("uploads").toString());
+        ReflectionTestUtils.setField(service, "tempPath", directory.resolve("temp").toString());
+        // 配额 1 字节：所有可淘汰的文件都会被淘汰
+        ReflectionTestUtils.setField(service, "uploadQuota", 1L);
+        ReflectionTestUtils.setField(service, "tempQuota", 1L);
+        ReflectionTestUtils.setField(service, "minFreeSpace", 0L);
+        ReflectionTestUtils.setField(service, "minIdleMs", 0L);
+        ReflectionTestUtils.setField(service, "evictTaskFiles", evictTaskFiles);
+        service.init();
+        return service;
+    }
+
+    /**
+     * 上传目录两个源文件（一个仍被任务引用），临时目录一个提取的音频和一个任务字幕
+     */
+    private static final class Fixture {
+        final Path referenced;
+        final Path orphan;
+        final Path audio;
+        final Path subtitle;
+        final List<Path> evicted = new ArrayList<>();
+
+        Fixture(Path root) throws IOException {
+            Path uploads = Files.createDirectories(root.resolve("uploads").resolve("ab"));
+            Path temp = Files.createDirectories(root.resolve("temp"));
+            referenced = write(uploads.resolve("ab12.mp4"));
+            orphan = write(uploads.resolve("ab34.mp4"));
+            audio = write(temp.resolve("ab12_extracted.wav"));
+            subtitle = write(temp.resolve("7_subtitle.srt"));
+        }
+
+        StorageLifecycleService.TaskFileOwner owner() {
+            return new StorageLifecycleService.TaskFileOwner() {
+                @Override
+                public Set<Path> referencedFiles() {
+                    return Collections.singleton(referenced);
+                }
+
+                @Override
+                public void fileEvicted(Path path) {
+                    evicted.add(path);
+                }
+            };
+        }
+
+        private static Path write(Path path) throws IOException {
+            return Files.write(path, new byte[128]).toAbsolutePath().normalize();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.video.service.impl;
+
+import com.video.model.VideoTask;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 历史任务归档：编码后能原样还原，移出后槽位和字节堆可复用
+ */
+class TaskArchiveTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Test
+    void restoresEveryField() {
+        TaskArchive archive = new TaskArchive();
+        VideoTask completed = completed(12);
+        VideoTask failed = new VideoTask(completed(13));
+        failed.setContentHash("not-a-sha256");
+        failed.setStatus("FAILED");
+        failed.setProgress(null);
+        failed.setSourceTaskId(null);
+        failed.setOutputPath(null);
+        failed.setErrorMessage("音频提取失败: exit 1");
+        failed.setCurrentStep("处理失败: 音频提取失败: exit 1");
+        // 原样存放含占位符字符的字符串
+        failed.setOriginalName("a\u0001b.mp4");
+
+        assertTrue(archive.add(completed));
+        assertTrue(archive.add(failed));
+        assertEquals(2, archive.size());
+        assertSameTask(completed, archive.get(12));
+        assertSameTask(failed, archive.get(13));
+        assertNull(archive.get(14));
+    }
+
+    @Test
+    void removedTasksFreeTheirSlots() {
+        TaskArchive archive = new TaskArchive();
+        // 每个任务带 1KB 的错误信息，移出三分之二后字节堆里的垃圾超过一半，触发整理
+        for (long id = 1; id <= 3000; id++) {
+            archive.add(withLongError(id));
+        }
+        assertTrue(archive.referencesFile("/data/uploads/objects/9f/" + HASH + ".mp4"));
+        for (long id = 1; id <= 3000; id++) {
+            if (id % 3 != 0) {
+                assertTrue(archive.remove(id));
+            }
+        }
+        assertFalse(archive.remove(1));
+        assertEquals(1000, archive.size());
+        assertFalse(archive.contains(1));
+
+        VideoTask updated = completed(1);
+        updated.setOriginalName("重新上传.mp4");
+        archive.add(updated);
+        archive.add(completed(2));
+        assertEquals(1002, archive.size());
+        assertSameTask(updated, archive.get(1));
+        assertSameTask(completed(2), archive.get(2));
+        assertSameTask(withLongError(3), archive.get(3));
+        assertSameTask(withLongError(3000), archive.get(3000));
+    }
+
+    @Test
+    void rejectsIdsOutsideDirectAddressing() {
+        TaskArchive archive = new TaskArchive();
+        assertFalse(archive.add(completed(Integer.MAX_VALUE + 1L)));
+        assertEquals(0, archive.size());
+    }
+
+    private static VideoTask completed(long id) {
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        task.setVersion(1_700_000_000_000_000L + id);
+        task.setFileName(HASH + ".mp4");
+        task.setFilePath("/data/uploads/objects/9f/" + HASH + ".mp4");
+        task.setOriginalName("会议录像 " + id + ".mp4");
+        task.setFileSize(1024L * 1024 * id);
+        task.setContentHash(HASH);
+        task.setSourceTaskId(id > 1 ? 1L : null);
+        task.setStatus("COMPLETED");
+        task.setProgress(100);
+        task.setCurrentStep("处理完成");
+        task.setSubtitlePath("/data/temp/" + id + "_subtitle.srt");
+        task.setOutputPath("/data/output/" + id + "_burned.mp4");
+        task.setEncoderPreset("veryfast");
+        task.setCreateTime(LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000));
+        task.setUpdateTime(LocalDateTime.of(2024, 3, 1, 9, 45, 0, 456_000_000));
+        return task;
+    }
+
+    private static VideoTask withLongError(long id) {
+        VideoTask task = completed(id);
+        StringBuilder error = new StringBuilder("任务 ").append(id).append(" 失败:");
+        while (error.length() < 1000) {
+            error.append(' ').append(id);
+        }
+        task.setErrorMessage(error.toString());
+        return task;
+    }
+
+    private static void assertSameTask(VideoTask expected, VideoTask actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getFileName(), actual.getFileName());
+        assertEquals(expected.getFilePath(), actual.getFilePath());
+        assertEquals(expected.getOriginalName(), actual.getOriginalName());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getContentHash(), actual.getContentHash());
+        assertEquals(expected.getSourceTaskId(), actual.getSourceTaskId());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getProgress(), actual.getProgress());
+        assertEquals(expected.getCurrentStep(), actual.getCurrentStep());
+        assertEquals(expected.getSubtitlePath(), actual.getSubtitlePath());
+        assertEquals(expected.getOutputPath(), actual.getOutputPath());
+        assertEquals(expected.getEncoderPreset(), actual.getEncoderPreset());
+        assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+        assertEquals(expected.getCreateTime(), actual.getCreateTime());
+        assertEquals(expected.getUpdateTime(), actual.getUpdateTime());
+    }
+}
@@ -0,0 +1,148 @@
+package com.video.service.impl;
+
+import com.video.model.VideoTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 关闭跟不上的订阅者：complete() 与卡住的 send() 争用同一个锁，关闭不能阻塞调度线程和发布线程
+ */
+class TaskEventServiceImplTest {
+
+    private final TaskEventServiceImpl service = new TaskEventServiceImpl();
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void stuckSendDoesNotBlockSchedulerOrPublisher() throws Exception {
+        init(1000);
+        FakeConnection stuck = connect(true);
+
+        service.publish(task(1L));
+        assertTrue(stuck.sendEntered.await(5, TimeUnit.SECONDS));
+
+        // 发送超时后由心跳关闭；调度线程没有被卡住，另一个订阅者继续收到心跳
+        FakeConnection healthy = connect(false);
+        waitFor(() -> service.getSubscriberCount() == 1);
+        int sent = healthy.sends.get();
+        waitFor(() -> healthy.sends.get() > sent + 1);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> service.publish(task(2L)));
+        assertEquals(0, stuck.completes.get(), "卡住的发送结束前不会结束连接");
+
+        // 卡住的发送结束后，由发送线程结束连接
+        stuck.release.countDown();
+        waitFor(() -> stuck.completes.get() == 1);
+    }
+
+    @Test
+    void pendingOverflowClosesWithoutBlockingPublisher() throws Exception {
+        init(1);
+        FakeConnection stuck = connect(true);
+
+        service.publish(task(1L));
+        assertTrue(stuck.sendEntered.await(5, TimeUnit.SECONDS));
+
+        // 发布线程上超过 max-pending：只移除订阅者
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            service.publish(task(2L));
+            service.publish(task(3L));
+        });
+        assertEquals(0, service.getSubscriberCount());
+        assertEquals(0, stuck.completes.get());
+
+        stuck.release.countDown();
+        waitFor(() -> stuck.completes.get() == 1);
+    }
+
+    private void init(int maxPending) {
+        ReflectionTestUtils.setField(service, "coalesceWindowMs", 0L);
+        ReflectionTestUtils.setField(service, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "heartbeatIntervalMs", 50L);
+        ReflectionTestUtils.setField(service, "senderThreads", 4);
+        ReflectionTestUtils.setField(service, "senderQueueCapacity", 100);
+        ReflectionTestUtils.setField(service, "maxPending", maxPending);
+        ReflectionTestUtils.setField(service, "sendTimeoutMs", 300L);
+        service.init();
+    }
+
+    /**
+     * 订阅并把 SseEmitter 接到模拟的连接上，blocking 时写入任务数据一直阻塞到 release
+     */
+    private FakeConnection connect(boolean blocking) throws Exception {
+        SseEmitter emitter = service.subscribe(null, null);
+        FakeConnection connection = new FakeConnection(blocking);
+        Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+        Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[]{handlerType},
+                (proxy, method, args) -> {
+                    if ("send".equals(method.getName())) {
+                        connection.send(args[0]);
+                    } else if ("complete".equals(method.getName()) || "completeWithError".equals(method.getName())) {
+                        connection.completes.incrementAndGet();
+                    }
+                    return null;
+                });
+        Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+        initialize.setAccessible(true);
+        initialize.invoke(emitter, handler);
+        return connection;
+    }
+
+    private static VideoTask task(Long id) {
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        return task;
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.met()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean met();
+    }
+
+    private static final class FakeConnection {
+        final boolean blocking;
+        final CountDownLatch sendEntered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger sends = new AtomicInteger();
+        final AtomicInteger completes = new AtomicInteger();
+
+        FakeConnection(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        /**
+         * 只在写任务数据时阻塞，心跳等文本照常写出
+         */
+        void send(Object data) throws InterruptedException {
+            sends.incrementAndGet();
+            if (blocking && data instanceof VideoTask) {
+                sendEntered.countDown();
+                release.await();
+            }
+        }
+    }
+}
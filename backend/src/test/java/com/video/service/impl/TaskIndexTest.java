@@ -0,0 +1,132 @@
+package com.video.service.impl;
+
+import com.video.model.TaskPage;
+import com.video.model.VideoTask;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 任务索引：游标分页、状态过滤、计数和增量查询
+ */
+class TaskIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+
+    private final Map<Long, VideoTask> tasks = new HashMap<>();
+    private final TaskIndex index = new TaskIndex(tasks::get);
+    private long version;
+
+    @Test
+    void pagesFollowCreationTimeNewestFirst() {
+        // 乱序加入，同一时刻的两个任务按 ID 倒序
+        for (long id : new long[]{3, 1, 5, 2, 4}) {
+            publish(task(id, "UPLOADED", BASE.plusSeconds(id == 5 ? 4 : id)));
+        }
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            TaskPage<VideoTask> page = index.page(null, cursor, 2);
+            assertEquals(5L, page.getTotal());
+            ids.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(Arrays.asList(5L, 4L, 3L, 2L, 1L), ids);
+    }
+
+    @Test
+    void statusChangesMoveTasksBetweenIndexes() {
+        for (long id = 1; id <= 6; id++) {
+            publish(task(id, "UPLOADED", BASE.plusSeconds(id)));
+        }
+        for (long id : new long[]{1, 3, 5}) {
+            publish(withStatus(id, "COMPLETED"));
+        }
+        publish(withStatus(2, "FAILED"));
+
+        assertEquals(6, index.count());
+        assertEquals(3L, index.countByStatus().get("COMPLETED"));
+        assertEquals(2L, index.countByStatus().get("UPLOADED"));
+        assertEquals(1L, index.countByStatus().get("FAILED"));
+
+        TaskPage<VideoTask> completed = index.page(Collections.singletonList("COMPLETED"), null, 0);
+        assertEquals(Arrays.asList(5L, 3L, 1L), ids(completed));
+        assertNull(completed.getNextCursor());
+
+        TaskPage<VideoTask> first = index.page(Arrays.asList("COMPLETED", "FAILED"), null, 3);
+        assertEquals(Arrays.asList(5L, 3L, 2L), ids(first));
+        assertEquals(4L, first.getTotal());
+        TaskPage<VideoTask> second = index.page(Arrays.asList("COMPLETED", "FAILED"), first.getNextCursor(), 3);
+        assertEquals(Collections.singletonList(1L), ids(second));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void changedSinceReturnsEachTaskOnceInVersionOrder() {
+        for (long id = 1; id <= 4; id++) {
+            publish(task(id, "UPLOADED", BASE.plusSeconds(id)));
+        }
+        long since = version;
+        publish(withStatus(3, "PROCESSING"));
+        publish(withStatus(1, "PROCESSING"));
+        publish(withStatus(3, "COMPLETED"));
+
+        TaskPage<VideoTask> delta = index.changedSince(since, version, 0);
+        assertEquals(Arrays.asList(1L, 3L), ids(delta));
+        assertEquals("COMPLETED", delta.getItems().get(1).getStatus());
+        assertEquals(version, delta.getVersion());
+
+        // 截断时返回的版本只覆盖已返回的任务，用它继续查询能拿到剩下的
+        TaskPage<VideoTask> first = index.changedSince(0, version, 3);
+        assertEquals(Arrays.asList(2L, 4L, 1L), ids(first));
+        TaskPage<VideoTask> rest = index.changedSince(first.getVersion(), version, 3);
+        assertEquals(Collections.singletonList(3L), ids(rest));
+        assertEquals(version, rest.getVersion());
+
+        assertEquals(0, index.changedSince(version, version, 0).getItems().size());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> index.page(null, "abc", 10));
+    }
+
+    /**
+     * 与 VideoServiceImpl 一样：分配新版本、替换快照再更新索引
+     */
+    private void publish(VideoTask task) {
+        task.setVersion(++version);
+        tasks.put(task.getId(), task);
+        index.update(task);
+    }
+
+    private VideoTask withStatus(long id, String status) {
+        VideoTask task = new VideoTask(tasks.get(id));
+        task.setStatus(status);
+        return task;
+    }
+
+    private static VideoTask task(long id, String status, LocalDateTime createTime) {
+        VideoTask task = new VideoTask();
+        task.setId(id);
+        task.setStatus(status);
+        task.setCreateTime(createTime);
+        return task;
+    }
+
+    private static List<Long> ids(TaskPage<VideoTask> page) {
+        return page.getItems().stream().map(VideoTask::getId).collect(Collectors.toList());
+    }
+}
@@ -11,16 +11,20 @@ CREATE TABLE video_tasks (
     file_path VARCHAR(500) NOT NULL COMMENT '文件路径',
     original_name VARCHAR(255) NOT NULL COMMENT '原始文件名',
     file_size BIGINT NOT NULL COMMENT '文件大小(字节)',
+    content_hash VARCHAR(64) COMMENT '文件内容SHA-256',
+    source_task_id BIGINT COMMENT '复用其处理结果的任务ID（内容相同）',
     status VARCHAR(20) NOT NULL DEFAULT 'UPLOADED' COMMENT '状态: UPLOADED, PROCESSING, COMPLETED, FAILED',
     progress INT DEFAULT 0 COMMENT '进度百分比',
     current_step VARCHAR(100) COMMENT '当前步骤描述',
     subtitle_path VARCHAR(500) COMMENT '字幕文件路径',
     output_path VARCHAR(500) COMMENT '输出文件路径',
+    encoder_preset VARCHAR(20) COMMENT '烧录字幕的编码预设',
     error_message TEXT COMMENT '错误信息',
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_status (status),
-    INDEX idx_create_time (create_time)
+    INDEX idx_create_time (create_time),
+    INDEX idx_content_hash (content_hash)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='视频处理任务表';
 
 -- 字幕内容表
@@ -49,4 +53,11 @@ CREATE TABLE process_logs (
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (task_id) REFERENCES video_tasks(id) ON DELETE CASCADE,
     INDEX idx_task_step (task_id, step_name)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='处理日志表'; 
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='处理日志表';
+
+-- 已有数据库升级
+-- ALTER TABLE video_tasks
+--     ADD COLUMN content_hash VARCHAR(64) COMMENT '文件内容SHA-256' AFTER file_size,
+--     ADD COLUMN source_task_id BIGINT COMMENT '复用其处理结果的任务ID（内容相同）' AFTER content_hash,
+--     ADD COLUMN encoder_preset VARCHAR(20) COMMENT '烧录字幕的编码预设' AFTER output_path,
+--     ADD INDEX idx_content_hash (content_hash);
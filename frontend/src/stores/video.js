@@ -141,11 +141,11 @@ export const useVideoStore = defineStore('video', () => {
       if (result.code === 0) {
         // 更新任务列表中的对应任务
         const index = tasks.value.findIndex(task => task.id === taskId)
-        if (index !== -1) {
+        if (index !== -1 && !isOlder(result.data, tasks.value[index])) {
           tasks.value[index] = result.data
         }
 
-        if (currentTask.value && currentTask.value.id === taskId) {
+        if (currentTask.value && currentTask.value.id === taskId && !isOlder(result.data, currentTask.value)) {
           currentTask.value = result.data
         }
 
@@ -166,7 +166,7 @@ export const useVideoStore = defineStore('video', () => {
       const result = await response.json()
 
       if (result.code === 0) {
-        tasks.value = result.data
+        mergeTasks(result.data.items)
       } else {
         throw new Error(result.msg)
       }
@@ -202,20 +202,82 @@ export const useVideoStore = defineStore('video', () => {
     }
   }
 
-  // 轮询任务状态
+  // 任务快照的 version 每次修改递增：较旧的快照（拉取的列表晚于推送到达、推送乱序）不能覆盖较新的
+  const isOlder = (task, existing) =>
+    existing != null && task.version != null && existing.version != null && task.version < existing.version
+
+  // 合并拉取的任务列表：列表决定顺序，同一任务保留 version 较大的一份；
+  // 列表生成之后才创建、只通过推送收到的任务排在最前面
+  const mergeTasks = (fetched) => {
+    const current = new Map(tasks.value.map(task => [task.id, task]))
+    const fetchedIds = new Set(fetched.map(task => task.id))
+    const newestFetched = fetched.reduce((max, task) => Math.max(max, task.version || 0), 0)
+    const merged = fetched.map(task => {
+      const existing = current.get(task.id)
+      return isOlder(task, existing) ? existing : task
+    })
+    const added = tasks.value.filter(task => !fetchedIds.has(task.id) && (task.version || 0) > newestFetched)
+    tasks.value = [...added, ...merged]
+  }
+
+  // 合并服务端推送的任务状态，忽略比已有快照旧的事件
+  const applyTaskUpdate = (task) => {
+    const index = tasks.value.findIndex(item => item.id === task.id)
+    if (index !== -1) {
+      if (!isOlder(task, tasks.value[index])) {
+        tasks.value[index] = task
+      }
+    } else {
+      tasks.value.unshift(task)
+    }
+
+    if (currentTask.value && currentTask.value.id === task.id && !isOlder(task, currentTask.value)) {
+      currentTask.value = task
+    }
+  }
+
+  const isFinished = (task) =>
+    task.status === 'COMPLETED' || task.status === 'FAILED' || task.status === 'UPLOAD_FAILED'
+
+  // 订阅单个任务的状态变化（SSE），不支持 EventSource 时退回定时轮询
+  let taskEvents = null
   let pollingTimer = null
 
   const startPolling = (taskId) => {
-    if (pollingTimer) {
-      clearInterval(pollingTimer)
+    stopPolling()
+
+    if (typeof EventSource === 'undefined') {
+      startIntervalPolling(taskId)
+      return
+    }
+
+    taskEvents = new EventSource(`${API_BASE}/video/task/${taskId}/events`)
+    taskEvents.addEventListener('task', (event) => {
+      const task = JSON.parse(event.data)
+      applyTaskUpdate(task)
+
+      // 如果任务完成或失败，停止订阅
+      if (isFinished(task)) {
+        stopPolling()
+      }
+    })
+    taskEvents.onerror = () => {
+      // 连接断开时 EventSource 会自动重连；被服务端拒绝（例如任务不存在）时才会关闭
+      if (taskEvents && taskEvents.readyState === EventSource.CLOSED) {
+        console.error('任务状态订阅失败，改为轮询')
+        stopPolling()
+        startIntervalPolling(taskId)
+      }
     }
+  }
 
+  const startIntervalPolling = (taskId) => {
     pollingTimer = setInterval(async () => {
       try {
         const task = await getTask(taskId)
 
         // 如果任务完成或失败，停止轮询
-        if (task.status === 'COMPLETED' || task.status === 'FAILED') {
+        if (isFinished(task)) {
           stopPolling()
         }
       } catch (error) {
@@ -226,12 +288,36 @@ export const useVideoStore = defineStore('video', () => {
   }
 
   const stopPolling = () => {
+    if (taskEvents) {
+      taskEvents.close()
+      taskEvents = null
+    }
     if (pollingTimer) {
       clearInterval(pollingTimer)
       pollingTimer = null
     }
   }
 
+  // 订阅全部任务的状态变化，用于任务列表页面
+  let taskListEvents = null
+
+  const watchTasks = () => {
+    if (taskListEvents || typeof EventSource === 'undefined') {
+      return
+    }
+    taskListEvents = new EventSource(`${API_BASE}/video/tasks/events`)
+    taskListEvents.addEventListener('task', (event) => {
+      applyTaskUpdate(JSON.parse(event.data))
+    })
+  }
+
+  const unwatchTasks = () => {
+    if (taskListEvents) {
+      taskListEvents.close()
+      taskListEvents = null
+    }
+  }
+
   const setCurrentTask = (task) => {
     currentTask.value = task
   }
@@ -272,6 +358,8 @@ export const useVideoStore = defineStore('video', () => {
     updateSubtitle,
     startPolling,
     stopPolling,
+    watchTasks,
+    unwatchTasks,
     setCurrentTask,
     addLog,
     clearLogs